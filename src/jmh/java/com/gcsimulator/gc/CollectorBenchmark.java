@@ -0,0 +1,34 @@
+package com.gcsimulator.gc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full {@code collect()} of every collector on the same heap shapes.
+ * Each invocation collects a freshly built heap, so the numbers cover a
+ * collection of the whole shape rather than of what an earlier one left.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CollectorBenchmark {
+
+    public static class CollectorState extends HeapShape {
+        @Param({"SERIAL_GC", "PARALLEL_GC", "CMS", "G1_JAVA8", "G1_JAVA17", "ZGC_JAVA17", "SHENANDOAH",
+                "G1_JAVA21", "GENERATIONAL_ZGC", "GENERATIONAL_SHENANDOAH"})
+        public GCAlgorithm algorithm;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            populate((AbstractGarbageCollector) GarbageCollectorFactory.create(algorithm));
+        }
+    }
+
+    @Benchmark
+    public boolean collect(CollectorState state) {
+        return state.collector.collect();
+    }
+}
@@ -0,0 +1,84 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.jvm.AllocationEngine;
+import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.objects.SimulatedObject;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * A synthetic heap for the collector benchmarks: {@code objectCount} objects of
+ * {@link #OBJECT_SIZE} bytes allocated in the young generation, linked into
+ * trees with {@code fanOut} references per object. The first {@code liveRatio}
+ * share of the objects is reachable from a single root; the rest is an
+ * unreachable tree of garbage.
+ */
+@State(Scope.Thread)
+public abstract class HeapShape {
+    public static final long OBJECT_SIZE = 64;
+
+    @Param({"10000", "100000"})
+    public int objectCount;
+
+    @Param({"2", "8"})
+    public int fanOut;
+
+    @Param({"0.1", "0.5", "0.9"})
+    public double liveRatio;
+
+    protected JVMSimulator jvm;
+    protected AbstractGarbageCollector collector;
+
+    /**
+     * Build a fresh JVM with this shape, collected by the given collector.
+     */
+    protected void populate(AbstractGarbageCollector collector) {
+        shutdown();
+        // Large enough that the whole shape fits in the young generation of every heap layout
+        long heapSize = Math.max(64L * 1024 * 1024, objectCount * OBJECT_SIZE * 16);
+        jvm = new JVMSimulator(heapSize * 2, heapSize, 64L * 1024 * 1024);
+        collector.setLoggingEnabled(false);
+        collector.initialize(jvm);
+        collector.getPacer().setDutyCycle(1.0); // Measure the concurrent phases' work, not their pacing
+        this.collector = collector;
+
+        AllocationEngine allocator = jvm.getAllocationEngine();
+        SimulatedObject[] objects = new SimulatedObject[objectCount];
+        for (int i = 0; i < objectCount; i++) {
+            objects[i] = allocator.allocate(OBJECT_SIZE, "Node");
+        }
+        int live = (int) Math.round(objectCount * liveRatio);
+        link(objects, 0, live);
+        link(objects, live, objectCount);
+        if (live > 0) {
+            jvm.getRootSet().addRoot(objects[0]);
+        }
+        allocator.retireTlabs(); // Make the young generation parsable
+    }
+
+    /**
+     * Link objects[from, to) into a tree rooted at objects[from].
+     */
+    private void link(SimulatedObject[] objects, int from, int to) {
+        for (int parent = from; parent < to; parent++) {
+            for (int i = 1; i <= fanOut; i++) {
+                long child = from + (long) (parent - from) * fanOut + i;
+                if (child >= to) {
+                    return;
+                }
+                objects[parent].addReference(objects[(int) child]);
+            }
+        }
+    }
+
+    protected void shutdown() {
+        if (collector != null) {
+            collector.shutdown();
+            collector = null;
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.gc.java8.SerialGC;
+import com.gcsimulator.model.objects.SimulatedObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The shared tracing and sweeping paths of {@link AbstractGarbageCollector}.
+ * Marking leaves the heap as it was, so one shape serves a whole trial;
+ * sweeping frees the garbage, so every invocation gets a fresh shape.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class MarkSweepBenchmark {
+
+    public static class MarkState extends HeapShape {
+        @Setup(Level.Trial)
+        public void setUp() {
+            populate(new SerialGC());
+        }
+    }
+
+    public static class SweepState extends HeapShape {
+        Set<SimulatedObject> reachable;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            populate(new SerialGC());
+            reachable = collector.mark();
+        }
+    }
+
+    @Benchmark
+    public Set<SimulatedObject> mark(MarkState state) {
+        return state.collector.mark();
+    }
+
+    @Benchmark
+    public long sweep(SweepState state) {
+        return state.collector.sweep(state.jvm.getHeap().getYoungGen().getEden(), state.reachable);
+    }
+}
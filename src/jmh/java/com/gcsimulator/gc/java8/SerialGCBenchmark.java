@@ -0,0 +1,32 @@
+package com.gcsimulator.gc.java8;
+
+import com.gcsimulator.gc.HeapShape;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Serial collector's minor GC alone: card scan, young mark and copy.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SerialGCBenchmark {
+
+    public static class MinorGCState extends HeapShape {
+        SerialGC serial;
+
+        @Setup(Level.Invocation)
+        public void setUp() {
+            serial = new SerialGC();
+            populate(serial);
+        }
+    }
+
+    @Benchmark
+    public long minorGC(MinorGCState state) {
+        return state.serial.minorGC();
+    }
+}
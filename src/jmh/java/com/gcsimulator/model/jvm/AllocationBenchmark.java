@@ -0,0 +1,59 @@
+package com.gcsimulator.model.jvm;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The allocation path, TLAB and shared, without a collector: once the heap is
+ * full it is cleared and allocation starts over.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class AllocationBenchmark {
+    private static final long HEAP_SIZE = 256L * 1024 * 1024;
+
+    @Param({"64", "4096"})
+    public long size;
+
+    @Param({"true", "false"})
+    public boolean tlabs;
+
+    private JVMSimulator jvm;
+    private AllocationEngine allocator;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jvm = new JVMSimulator(HEAP_SIZE * 2, HEAP_SIZE, 64L * 1024 * 1024);
+        allocator = jvm.getAllocationEngine();
+        allocator.setTlabsEnabled(tlabs);
+    }
+
+    @Benchmark
+    public SimulatedObject allocate() {
+        try {
+            return allocator.allocate(size, "Object");
+        } catch (OutOfMemoryError e) {
+            jvm.reset();
+            return allocator.allocate(size, "Object");
+        }
+    }
+
+    /**
+     * A tree of 85 objects: depth 3, four children per object.
+     */
+    @Benchmark
+    public SimulatedObject allocateObjectGraph() {
+        try {
+            return allocator.allocateObjectGraph(3, 4);
+        } catch (OutOfMemoryError e) {
+            jvm.reset();
+            return allocator.allocateObjectGraph(3, 4);
+        }
+    }
+}
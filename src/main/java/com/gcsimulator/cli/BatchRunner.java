@@ -0,0 +1,266 @@
+package com.gcsimulator.cli;
+
+import com.gcsimulator.gc.GCAlgorithm;
+import com.gcsimulator.workload.ComparisonEngine;
+import com.gcsimulator.workload.ObjectSizeDistribution;
+import com.gcsimulator.workload.SimulationResult;
+import com.gcsimulator.workload.SimulationRunner;
+import com.gcsimulator.workload.WorkloadSpec;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Headless entry point: runs one workload against a list of collectors, one
+ * after the other at full speed or all at the same time, and writes a
+ * machine-readable report or a side-by-side table. Needs no display, so it
+ * runs on build servers.
+ */
+public class BatchRunner {
+    private static final String USAGE = String.join("\n",
+            "Usage: BatchRunner [options]",
+            "  --collectors=LIST    Comma-separated GCAlgorithm names, or all (default: all)",
+            "  --duration=TIME      Run time per collector, e.g. 10s or 500ms (default: 10s)",
+            "  --heap=SIZE          Heap size, e.g. 256m (default: 256m)",
+            "  --ram=SIZE           Simulated RAM (default: 512m)",
+            "  --metaspace=SIZE     Metaspace size (default: 64m)",
+            "  --threads=N          Mutator threads (default: 4)",
+            "  --rate=N             Objects per second per thread, 0 = unthrottled (default: 0)",
+            "  --sizes=DIST         default, fixed:SIZE, uniform:MIN-MAX or exp:MEAN[-MAX] (default: default)",
+            "  --retention=P        Chance that a new object becomes a long-lived root (default: 0.05)",
+            "  --max-retained=N     Long-lived roots kept per thread (default: 256)",
+            "  --seed=N             Seed of the mutators' allocation streams (default: 42)",
+            "  --parallel           Run all collectors at the same time, each on its own JVM and thread;",
+            "                       pauses are only comparable if there are enough cores for every run",
+            "  --format=FORMAT      json, csv or table (default: json)",
+            "  --output=FILE        Write the report to a file instead of standard output",
+            "  --gc-log=FILE        Also write a JDK-format GC log (-Xlog:gc*) per collector; with more than",
+            "                       one collector, the collector's name is added to the file name",
+            "  --timeline=FILE      Also write every traced GC phase (pauses and concurrent work) as CSV",
+            "                       for a timeline view; keeps the last 4096 phases per collector",
+            "  --verbose            Print the collectors' logs",
+            "  --help               Show this message");
+
+    private final WorkloadSpec workload = new WorkloadSpec();
+    private List<GCAlgorithm> collectors = List.of(GCAlgorithm.values());
+    private String format = "json";
+    private Path output;
+    private Path timeline;
+    private Path gcLog;
+    private boolean verbose;
+    private boolean parallel;
+
+    public static void main(String[] args) {
+        BatchRunner runner = new BatchRunner();
+        try {
+            if (!runner.parse(args)) {
+                System.out.println(USAGE);
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try {
+            runner.run();
+        } catch (IOException e) {
+            System.err.println("Error: could not write report: " + e.getMessage());
+            System.exit(1);
+        } catch (UncheckedIOException e) {
+            System.err.println("Error: " + e.getMessage() + ": " + e.getCause().getMessage());
+            System.exit(1);
+        }
+        System.exit(0); // Collector worker threads must not keep the JVM alive
+    }
+
+    /**
+     * @return false if only the usage was asked for
+     */
+    boolean parse(String[] args) {
+        for (String arg : args) {
+            if (arg.equals("--help") || arg.equals("-h")) {
+                return false;
+            }
+            if (arg.equals("--verbose")) {
+                verbose = true;
+                continue;
+            }
+            if (arg.equals("--parallel")) {
+                parallel = true;
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            String name = arg.substring(2, eq);
+            String value = arg.substring(eq + 1);
+            switch (name) {
+                case "collectors" -> collectors = parseCollectors(value);
+                case "duration" -> workload.setDurationMs(parseDuration(value));
+                case "heap" -> workload.setHeapSize(ObjectSizeDistribution.parseSize(value));
+                case "ram" -> workload.setRamSize(ObjectSizeDistribution.parseSize(value));
+                case "metaspace" -> workload.setMetaspaceSize(ObjectSizeDistribution.parseSize(value));
+                case "threads" -> workload.setThreads(parseInt(name, value));
+                case "rate" -> workload.setAllocationRate(parseInt(name, value));
+                case "sizes" -> workload.setSizeDistribution(value);
+                case "retention" -> workload.setRetentionRate(parseDouble(name, value));
+                case "max-retained" -> workload.setMaxRetainedPerThread(parseInt(name, value));
+                case "seed" -> workload.setSeed(parseLong(name, value));
+                case "format" -> {
+                    if (!value.equals("json") && !value.equals("csv") && !value.equals("table")) {
+                        throw new IllegalArgumentException("Unknown format: " + value);
+                    }
+                    format = value;
+                }
+                case "output" -> output = Path.of(value);
+                case "timeline" -> timeline = Path.of(value);
+                case "gc-log" -> gcLog = Path.of(value);
+                default -> throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return true;
+    }
+
+    void run() throws IOException {
+        SimulationRunner runner = new SimulationRunner(workload);
+        runner.setLoggingEnabled(verbose);
+        if (gcLog != null) {
+            runner.setGcLogFiles(this::gcLogFile);
+        }
+        List<SimulationResult> results = new ArrayList<>();
+        if (parallel) {
+            ComparisonEngine engine = new ComparisonEngine(runner);
+            engine.setOnStart(algorithm -> System.err.println(
+                    "Running " + algorithm + " for " + workload.getDurationMs() + "ms"));
+            try {
+                results.addAll(engine.compare(collectors));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        } else {
+            for (GCAlgorithm algorithm : collectors) {
+                System.err.println("Running " + algorithm + " for " + workload.getDurationMs() + "ms");
+                results.add(runner.run(algorithm));
+            }
+        }
+
+        ResultsReport report = new ResultsReport(workload, results);
+        PrintWriter out = output != null
+                ? new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))
+                : new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            if (format.equals("csv")) {
+                report.writeCsv(out);
+            } else if (format.equals("table")) {
+                new ComparisonTable(results).write(out);
+            } else {
+                report.writeJson(out);
+            }
+        } finally {
+            if (output != null) {
+                out.close();
+            } else {
+                out.flush();
+            }
+        }
+        if (out.checkError()) {
+            throw new IOException("write failed");
+        }
+
+        if (timeline != null) {
+            try (PrintWriter timelineOut = new PrintWriter(Files.newBufferedWriter(timeline, StandardCharsets.UTF_8))) {
+                report.writeTimeline(timelineOut);
+                if (timelineOut.checkError()) {
+                    throw new IOException("write failed");
+                }
+            }
+        }
+    }
+
+    /**
+     * The GC log of one collector: the given file, or for several collectors
+     * the file with the collector's name before the extension, e.g. gc-ZGC_JAVA17.log.
+     */
+    private Path gcLogFile(GCAlgorithm algorithm) {
+        if (collectors.size() == 1) {
+            return gcLog;
+        }
+        String name = gcLog.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String file = dot > 0
+                ? name.substring(0, dot) + "-" + algorithm.name() + name.substring(dot)
+                : name + "-" + algorithm.name();
+        return gcLog.resolveSibling(file);
+    }
+
+    private static List<GCAlgorithm> parseCollectors(String value) {
+        if (value.equals("all")) {
+            return List.of(GCAlgorithm.values());
+        }
+        List<GCAlgorithm> algorithms = new ArrayList<>();
+        for (String name : value.split(",")) {
+            try {
+                algorithms.add(GCAlgorithm.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                StringJoiner names = new StringJoiner(", ");
+                for (GCAlgorithm algorithm : GCAlgorithm.values()) {
+                    names.add(algorithm.name());
+                }
+                throw new IllegalArgumentException("Unknown collector: " + name + " (expected one of " + names + ")");
+            }
+        }
+        return algorithms;
+    }
+
+    /**
+     * Parse a duration such as {@code 500ms}, {@code 10s} or {@code 2m}; a bare number is milliseconds.
+     */
+    static long parseDuration(String value) {
+        String text = value.trim().toLowerCase(Locale.ROOT);
+        long unit = 1;
+        if (text.endsWith("ms")) {
+            text = text.substring(0, text.length() - 2);
+        } else if (text.endsWith("s")) {
+            unit = 1000;
+            text = text.substring(0, text.length() - 1);
+        } else if (text.endsWith("m")) {
+            unit = 60_000;
+            text = text.substring(0, text.length() - 1);
+        }
+        return parseLong("duration", text) * unit;
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid --" + name + ": " + value);
+        }
+    }
+
+    private static long parseLong(String name, String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid --" + name + ": " + value);
+        }
+    }
+
+    private static double parseDouble(String name, String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid --" + name + ": " + value);
+        }
+    }
+}
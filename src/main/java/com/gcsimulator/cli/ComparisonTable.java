@@ -0,0 +1,97 @@
+package com.gcsimulator.cli;
+
+import com.gcsimulator.gc.GCStatistics;
+import com.gcsimulator.gc.PauseHistogram;
+import com.gcsimulator.workload.SimulationResult;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Human-readable side-by-side comparison of collectors that ran the same
+ * workload: one aligned row per collector. Collectors with a pause-time
+ * target also show the share of pauses that met it and how far off their
+ * pause predictions were; the others show "-" there.
+ */
+public class ComparisonTable {
+    private static final String[] HEADERS = {
+            "Collector", "Throughput", "Collections", "Total pause", "p50 pause", "p99 pause", "Max pause",
+            "Reclaimed", "Promoted", "OOMs", "Target met", "Pred. error"
+    };
+
+    private final List<SimulationResult> results;
+
+    public ComparisonTable(List<SimulationResult> results) {
+        this.results = List.copyOf(results);
+    }
+
+    public void write(PrintWriter out) {
+        List<String[]> rows = new ArrayList<>();
+        rows.add(HEADERS);
+        for (SimulationResult result : results) {
+            GCStatistics stats = result.getStatistics();
+            PauseHistogram pauses = stats.getPauseHistogram();
+            boolean predicted = stats.getPredictedPauses() > 0;
+            rows.add(new String[] {
+                    result.getAlgorithm().name(),
+                    formatBytes(result.getAllocationRate()) + "/s",
+                    String.valueOf(stats.getTotalCollections()),
+                    formatMs(stats.getTotalPauseNanos() / 1_000_000.0),
+                    formatMs(pauses.getPercentileMs(50)),
+                    formatMs(pauses.getPercentileMs(99)),
+                    formatMs(pauses.getMaxNanos() / 1_000_000.0),
+                    formatBytes(stats.getTotalBytesCollected()),
+                    formatBytes(result.getPromotedBytes()),
+                    String.valueOf(result.getOutOfMemoryErrors()),
+                    predicted ? String.format(Locale.ROOT, "%.1f%%", stats.getPauseTargetCompliance() * 100) : "-",
+                    predicted ? formatMs(stats.getAveragePredictionErrorMs()) : "-"
+            });
+        }
+
+        int[] widths = new int[HEADERS.length];
+        for (String[] row : rows) {
+            for (int i = 0; i < row.length; i++) {
+                widths[i] = Math.max(widths[i], row[i].length());
+            }
+        }
+        for (int r = 0; r < rows.size(); r++) {
+            String[] row = rows.get(r);
+            StringBuilder line = new StringBuilder();
+            for (int i = 0; i < row.length; i++) {
+                if (i > 0) {
+                    line.append("  ");
+                }
+                line.append(pad(row[i], widths[i], i > 0)); // Names left-aligned, numbers right-aligned
+            }
+            out.println(line.toString().stripTrailing());
+            if (r == 0) {
+                StringJoiner rule = new StringJoiner("  ");
+                for (int width : widths) {
+                    rule.add("-".repeat(width));
+                }
+                out.println(rule);
+            }
+        }
+        out.flush();
+    }
+
+    private static String pad(String text, int width, boolean right) {
+        String fill = " ".repeat(width - text.length());
+        return right ? fill + text : text + fill;
+    }
+
+    private static String formatMs(double ms) {
+        return String.format(Locale.ROOT, "%.3f ms", ms);
+    }
+
+    private static String formatBytes(double bytes) {
+        if (bytes < 1024) {
+            return String.format(Locale.ROOT, "%.0f B", bytes);
+        } else if (bytes < 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f KB", bytes / 1024);
+        } else if (bytes < 1024L * 1024 * 1024) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / (1024 * 1024));
+        }
+        return String.format(Locale.ROOT, "%.2f GB", bytes / (1024L * 1024 * 1024));
+    }
+}
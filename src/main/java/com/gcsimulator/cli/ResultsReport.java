@@ -0,0 +1,184 @@
+package com.gcsimulator.cli;
+
+import com.gcsimulator.gc.GCStatistics;
+import com.gcsimulator.gc.PauseHistogram;
+import com.gcsimulator.gc.PhaseEvent;
+import com.gcsimulator.workload.SimulationResult;
+import com.gcsimulator.workload.WorkloadSpec;
+
+import java.io.PrintWriter;
+import java.util.*;
+
+/**
+ * Machine-readable report of a batch run, as JSON (the workload and one
+ * entry per collector, with its pauses broken down by phase) or CSV (one
+ * row per collector), plus a CSV timeline of every traced GC phase. Figures
+ * a collector does not have, e.g. the young and old cycles of a collector
+ * without separate generation cycles or the pause-target compliance of a
+ * collector without a pause-time target, are null in JSON and empty in CSV.
+ */
+public class ResultsReport {
+    private static final String[] COLUMNS = {
+            "algorithm", "elapsedMs", "allocations", "bytesAllocated", "allocationRateBytesPerSec",
+            "outOfMemoryErrors", "collections", "totalPauseMs", "avgPauseMs", "pauses", "p50PauseMs",
+            "p90PauseMs", "p99PauseMs", "p999PauseMs", "maxPauseMs", "bytesCollected", "bytesPromoted", "safepoints", "avgTimeToSafepointMs", "mutatorUtilization", "heapUsed",
+            "youngCollections", "youngPauseMs", "youngMaxPauseMs", "youngBytesCollected",
+            "oldCollections", "oldPauseMs", "oldMaxPauseMs", "oldBytesCollected",
+            "pauseTargetMisses", "pauseTargetCompliance", "avgPredictionErrorMs",
+            "humongousAllocations", "humongousBytesAllocated", "humongousReclaimed", "humongousBytesReclaimed",
+            "loadBarrierLoads", "loadBarrierSlowPaths", "loadBarrierSlowPathRate", "loadBarrierSlowPathMs"
+    };
+
+    private final WorkloadSpec workload;
+    private final List<SimulationResult> results;
+
+    public ResultsReport(WorkloadSpec workload, List<SimulationResult> results) {
+        this.workload = workload;
+        this.results = List.copyOf(results);
+    }
+
+    public void writeJson(PrintWriter out) {
+        out.println("{");
+        out.println("  \"workload\": {");
+        Map<String, Object> spec = new LinkedHashMap<>();
+        spec.put("ramSize", workload.getRamSize());
+        spec.put("heapSize", workload.getHeapSize());
+        spec.put("metaspaceSize", workload.getMetaspaceSize());
+        spec.put("threads", workload.getThreads());
+        spec.put("allocationRate", workload.getAllocationRate());
+        spec.put("sizeDistribution", workload.getSizeDistribution());
+        spec.put("retentionRate", workload.getRetentionRate());
+        spec.put("maxRetainedPerThread", workload.getMaxRetainedPerThread());
+        spec.put("durationMs", workload.getDurationMs());
+        spec.put("seed", workload.getSeed());
+        writeJsonFields(out, spec, "    ", false);
+        out.println("  },");
+        out.println("  \"results\": [");
+        for (int i = 0; i < results.size(); i++) {
+            SimulationResult result = results.get(i);
+            out.println("    {");
+            writeJsonFields(out, row(result), "      ", true);
+            writePhases(out, result.getStatistics().getPhaseHistograms());
+            out.println(i < results.size() - 1 ? "    }," : "    }");
+        }
+        out.println("  ]");
+        out.println("}");
+        out.flush();
+    }
+
+    public void writeCsv(PrintWriter out) {
+        out.println(String.join(",", COLUMNS));
+        for (SimulationResult result : results) {
+            StringJoiner line = new StringJoiner(",");
+            for (Object value : row(result).values()) {
+                line.add(value != null ? format(value) : "");
+            }
+            out.println(line);
+        }
+        out.flush();
+    }
+
+    /**
+     * One row per traced phase, pauses and concurrent phases alike, with its
+     * start relative to the start of the collector's run.
+     */
+    public void writeTimeline(PrintWriter out) {
+        out.println("algorithm,cycle,phase,kind,worker,startMs,durationMs,objectsVisited,bytesMoved");
+        for (SimulationResult result : results) {
+            for (PhaseEvent event : result.getPhaseEvents()) {
+                StringJoiner line = new StringJoiner(",");
+                line.add(result.getAlgorithm().name());
+                line.add(format(event.getCycle()));
+                line.add("\"" + event.getPhase().replace("\"", "\"\"") + "\"");
+                line.add(event.getKind().name());
+                line.add(format(event.getWorker()));
+                line.add(format((event.getStartNanos() - result.getStartNanos()) / 1_000_000.0));
+                line.add(format(event.getDurationNanos() / 1_000_000.0));
+                line.add(format(event.getObjectsVisited()));
+                line.add(format(event.getBytesMoved()));
+                out.println(line);
+            }
+        }
+        out.flush();
+    }
+
+    private static Map<String, Object> row(SimulationResult result) {
+        GCStatistics stats = result.getStatistics();
+        PauseHistogram pauses = stats.getPauseHistogram();
+        GCStatistics young = result.getGenerationStatistics("young");
+        GCStatistics old = result.getGenerationStatistics("old");
+        boolean predicted = stats.getPredictedPauses() > 0;
+        Object[] values = {
+                result.getAlgorithm().name(), result.getElapsedMs(), result.getAllocations(),
+                result.getBytesAllocated(), result.getAllocationRate(), result.getOutOfMemoryErrors(),
+                stats.getTotalCollections(), stats.getTotalPauseNanos() / 1_000_000.0, stats.getAveragePauseTimeMs(),
+                pauses.getCount(), pauses.getPercentileMs(50), pauses.getPercentileMs(90),
+                pauses.getPercentileMs(99), pauses.getPercentileMs(99.9), pauses.getMaxNanos() / 1_000_000.0,
+                stats.getTotalBytesCollected(), result.getPromotedBytes(), stats.getSafepointCount(),
+                stats.getAverageTimeToSafepointMs(), result.getMutatorUtilization(), result.getHeapUsed(),
+                young != null ? young.getTotalCollections() : null,
+                young != null ? young.getTotalPauseNanos() / 1_000_000.0 : null,
+                young != null ? young.getMaxPauseNanos() / 1_000_000.0 : null,
+                young != null ? young.getTotalBytesCollected() : null,
+                old != null ? old.getTotalCollections() : null,
+                old != null ? old.getTotalPauseNanos() / 1_000_000.0 : null,
+                old != null ? old.getMaxPauseNanos() / 1_000_000.0 : null,
+                old != null ? old.getTotalBytesCollected() : null,
+                predicted ? stats.getPauseTargetMisses() : null,
+                predicted ? stats.getPauseTargetCompliance() : null,
+                predicted ? stats.getAveragePredictionErrorMs() : null,
+                stats.getHumongousAllocations(), stats.getHumongousBytesAllocated(),
+                stats.getHumongousReclaimed(), stats.getHumongousBytesReclaimed(),
+                stats.getLoadBarrierInvocations(), stats.getLoadBarrierSlowPaths(),
+                stats.getLoadBarrierSlowPathRate(), stats.getLoadBarrierSlowPathMs()
+        };
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            row.put(COLUMNS[i], values[i]);
+        }
+        return row;
+    }
+
+    private static void writePhases(PrintWriter out, Map<String, PauseHistogram> phases) {
+        out.println("      \"pausePhases\": {");
+        Iterator<Map.Entry<String, PauseHistogram>> it = phases.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, PauseHistogram> phase = it.next();
+            PauseHistogram pauses = phase.getValue();
+            Map<String, Object> fields = new LinkedHashMap<>();
+            fields.put("count", pauses.getCount());
+            fields.put("totalMs", pauses.getTotalNanos() / 1_000_000.0);
+            fields.put("p50Ms", pauses.getPercentileMs(50));
+            fields.put("p99Ms", pauses.getPercentileMs(99));
+            fields.put("maxMs", pauses.getMaxNanos() / 1_000_000.0);
+            out.println("        \"" + escape(phase.getKey()) + "\": {");
+            writeJsonFields(out, fields, "          ", false);
+            out.println(it.hasNext() ? "        }," : "        }");
+        }
+        out.println("      }");
+    }
+
+    /**
+     * @param more whether more fields follow, so the last one needs a comma
+     */
+    private static void writeJsonFields(PrintWriter out, Map<String, Object> fields, String indent, boolean more) {
+        Iterator<Map.Entry<String, Object>> it = fields.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Object> field = it.next();
+            Object value = field.getValue();
+            String json = value instanceof String text ? "\"" + escape(text) + "\"" : format(value);
+            out.println(indent + "\"" + field.getKey() + "\": " + json + (it.hasNext() || more ? "," : ""));
+        }
+    }
+
+    private static String format(Object value) {
+        if (value instanceof Double number) {
+            return String.format(Locale.ROOT, "%.4f", number);
+        }
+        return String.valueOf(value);
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
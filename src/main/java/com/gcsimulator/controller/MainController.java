@@ -1,11 +1,11 @@
 package com.gcsimulator.controller;
 
 import com.gcsimulator.gc.*;
-import com.gcsimulator.gc.java8.*;
-import com.gcsimulator.gc.java17.*;
-import com.gcsimulator.gc.java21.*;
 import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.memory.HeapRegion;
+import com.gcsimulator.model.memory.RegionHeap;
 import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.workload.MutatorEngine;
 
 import javafx.animation.*;
 import javafx.application.Platform;
@@ -72,6 +72,8 @@ public class MainController {
     private Label lastPauseTimeLabel;
     @FXML
     private Label avgPauseTimeLabel;
+    @FXML
+    private Label recentP99PauseLabel;
 
     @FXML
     private TextArea logTextArea;
@@ -81,9 +83,13 @@ public class MainController {
     // Model
     private JVMSimulator jvm;
     private GarbageCollector currentGC;
+    private MutatorEngine mutatorEngine;
     private Timeline simulationTimeline;
     private boolean isPlaying;
 
+    private static final int MUTATOR_THREADS = 4;
+    private static final long MUTATOR_ALLOCATION_RATE = 50; // Objects per second per thread
+
     // Chart data
     private XYChart.Series<Number, Number> heapSeries;
     private XYChart.Series<Number, Number> youngGenSeries;
@@ -95,8 +101,9 @@ public class MainController {
         // Initialize JVM with 512MB RAM, 256MB heap, 64MB metaspace
         jvm = new JVMSimulator(512 * 1024 * 1024L, 256 * 1024 * 1024L, 64 * 1024 * 1024L);
 
-        // Set up event listener
-        jvm.addEventListener(this::onJVMEvent);
+        // Set up event listener; per-object events are too verbose for the log
+        jvm.addEventListener(this::onJVMEvent, JVMSimulator.JVMEvent.EventType.GC_STARTED,
+                JVMSimulator.JVMEvent.EventType.GC_COMPLETED, JVMSimulator.JVMEvent.EventType.OUT_OF_MEMORY);
 
         // Initialize GC algorithm combo box
         gcAlgorithmComboBox.setItems(FXCollections.observableArrayList(GCAlgorithm.values()));
@@ -141,33 +148,37 @@ public class MainController {
     private void switchGCAlgorithm() {
         GCAlgorithm algorithm = gcAlgorithmComboBox.getValue();
 
-        currentGC = switch (algorithm) {
-            case SERIAL_GC -> new SerialGC();
-            case PARALLEL_GC -> new ParallelGC();
-            case CMS -> new ConcurrentMarkSweep();
-            case G1_JAVA8 -> new G1GC();
-            case G1_JAVA17 -> new G1GCJava17();
-            case ZGC_JAVA17 -> new ZGC();
-            case SHENANDOAH -> new ShenandoahGC();
-            case G1_JAVA21 -> new G1GCJava21();
-            case GENERATIONAL_ZGC -> new GenerationalZGC();
-            case GENERATIONAL_SHENANDOAH -> new GenerationalShenandoah();
-        };
+        if (mutatorEngine != null) {
+            mutatorEngine.stop();
+        }
+        if (currentGC != null) {
+            currentGC.shutdown();
+        }
+
+        currentGC = GarbageCollectorFactory.create(algorithm);
 
         currentGC.initialize(jvm);
+        mutatorEngine = new MutatorEngine(jvm, currentGC, MUTATOR_THREADS, MutatorEngine.ThreadMode.VIRTUAL);
+        mutatorEngine.setAllocationRate(MUTATOR_ALLOCATION_RATE);
+        if (isPlaying) {
+            mutatorEngine.start();
+        }
         log("Switched to: " + algorithm);
     }
 
     private void allocateObjects() {
         int count = 50;
-        for (int i = 0; i < count; i++) {
-            SimulatedObject obj = jvm.getAllocationEngine().allocateRandom();
+        // The FX thread is not a registered mutator, so the burst runs with the mutators and collector stopped
+        mutatorEngine.runAtSafepoint(() -> {
+            for (int i = 0; i < count; i++) {
+                SimulatedObject obj = jvm.getAllocationEngine().allocateRandom();
 
-            // Randomly add some objects to root set (10% chance)
-            if (Math.random() < 0.1) {
-                jvm.getRootSet().addRoot(obj);
+                // Randomly add some objects to root set (10% chance)
+                if (Math.random() < 0.1) {
+                    jvm.getRootSet().addRoot(obj);
+                }
             }
-        }
+        });
 
         log("Allocated " + count + " objects");
         updateUI();
@@ -181,14 +192,24 @@ public class MainController {
 
     private void triggerGC() {
         log("--- Manual GC Triggered ---");
-        currentGC.collect();
-        updateUI();
-        log("--- GC Complete ---");
+        // Concurrent collectors finish in the background; never block the FX thread on them
+        mutatorEngine.collectAsync(true).whenComplete((collected, error) -> {
+            if (error != null) {
+                log("[ERROR] GC failed: " + error.getMessage());
+            }
+            updateUI();
+            log("--- GC Complete ---");
+        });
     }
 
     private void reset() {
+        boolean wasRunning = mutatorEngine.isRunning();
+        mutatorEngine.stop();
+        currentGC.reset(); // Ends a running cycle before the heap is cleared under it
         jvm.reset();
-        currentGC.reset();
+        if (wasRunning) {
+            mutatorEngine.start();
+        }
         chartTime = 0;
         heapSeries.getData().clear();
         youngGenSeries.getData().clear();
@@ -200,10 +221,13 @@ public class MainController {
     private void togglePlayPause() {
         isPlaying = !isPlaying;
         if (isPlaying) {
+            mutatorEngine.start();
             simulationTimeline.play();
             playPauseButton.setText("Pause");
-            log("Simulation started");
+            log("Simulation started with " + mutatorEngine.getThreadCount() + " "
+                    + mutatorEngine.getThreadMode().name().toLowerCase() + " mutator threads");
         } else {
+            mutatorEngine.stop();
             simulationTimeline.stop();
             playPauseButton.setText("Play");
             log("Simulation paused");
@@ -211,39 +235,34 @@ public class MainController {
     }
 
     private void simulationStep() {
-        // Allocate some objects automatically
-        for (int i = 0; i < 10; i++) {
-            try {
-                SimulatedObject obj = jvm.getAllocationEngine().allocateRandom();
-                if (Math.random() < 0.05) {
-                    jvm.getRootSet().addRoot(obj);
-                }
-            } catch (OutOfMemoryError e) {
-                log("Out of memory - triggering GC");
-                currentGC.collect();
-                break;
-            }
-        }
-
-        // Trigger GC if needed
-        if (currentGC.shouldCollect()) {
-            currentGC.collect();
-        }
-
+        // Mutator threads allocate and trigger collections; the timeline only refreshes the view
         updateUI();
     }
 
     private void updateUI() {
         Platform.runLater(() -> {
             // Update progress bars
-            updateProgressBar(edenUsageBar, edenLabel, "Eden",
-                    jvm.getHeap().getYoungGen().getEden());
-            updateProgressBar(survivor0UsageBar, survivor0Label, "Survivor-0",
-                    jvm.getHeap().getYoungGen().getSurvivor0());
-            updateProgressBar(survivor1UsageBar, survivor1Label, "Survivor-1",
-                    jvm.getHeap().getYoungGen().getSurvivor1());
-            updateProgressBar(oldGenUsageBar, oldGenLabel, "Old Gen",
-                    jvm.getHeap().getOldGen().getTenured());
+            RegionHeap regions = jvm.getHeap().getRegionHeap();
+            if (regions != null) {
+                // Region layout: each bar shows one region type's share of the heap
+                updateProgressBar(edenUsageBar, edenLabel, "Eden",
+                        regions.getSpace(HeapRegion.RegionType.EDEN));
+                updateProgressBar(survivor0UsageBar, survivor0Label, "Survivor",
+                        regions.getSpace(HeapRegion.RegionType.SURVIVOR));
+                updateProgressBar(survivor1UsageBar, survivor1Label, "Humongous",
+                        regions.getSpace(HeapRegion.RegionType.HUMONGOUS));
+                updateProgressBar(oldGenUsageBar, oldGenLabel, "Old Gen",
+                        regions.getSpace(HeapRegion.RegionType.OLD));
+            } else {
+                updateProgressBar(edenUsageBar, edenLabel, "Eden",
+                        jvm.getHeap().getYoungGen().getEden());
+                updateProgressBar(survivor0UsageBar, survivor0Label, "Survivor-0",
+                        jvm.getHeap().getYoungGen().getSurvivor0());
+                updateProgressBar(survivor1UsageBar, survivor1Label, "Survivor-1",
+                        jvm.getHeap().getYoungGen().getSurvivor1());
+                updateProgressBar(oldGenUsageBar, oldGenLabel, "Old Gen",
+                        jvm.getHeap().getOldGen().getTenured());
+            }
             updateProgressBar(metaspaceUsageBar, metaspaceLabel, "Metaspace",
                     jvm.getMetaspace());
             updateProgressBar(ramUsageBar, ramLabel, "RAM", jvm.getRam());
@@ -252,16 +271,21 @@ public class MainController {
             totalAllocationsLabel.setText(String.valueOf(jvm.getTotalAllocations()));
             totalGCsLabel.setText(String.valueOf(jvm.getTotalGCs()));
             GCStatistics stats = currentGC.getStatistics();
-            lastPauseTimeLabel.setText(stats.getLastPauseTimeMs() + " ms");
-            avgPauseTimeLabel.setText(String.format("%.2f ms", stats.getAveragePauseTimeMs()));
+            lastPauseTimeLabel.setText(String.format("%.3f ms", stats.getLastPauseNanos() / 1_000_000.0));
+            avgPauseTimeLabel.setText(String.format("%.3f ms", stats.getAveragePauseTimeMs()));
+            recentP99PauseLabel.setText(String.format("%.3f ms", stats.getRecentPauseHistogram().getPercentileMs(99)));
 
             // Update chart
             chartTime++;
             heapSeries.getData().add(new XYChart.Data<>(chartTime, jvm.getHeap().getUsed() / (1024 * 1024)));
-            youngGenSeries.getData()
-                    .add(new XYChart.Data<>(chartTime, jvm.getHeap().getYoungGen().getUsed() / (1024 * 1024)));
-            oldGenSeries.getData()
-                    .add(new XYChart.Data<>(chartTime, jvm.getHeap().getOldGen().getUsed() / (1024 * 1024)));
+            long youngUsed = regions != null
+                    ? regions.getUsed(HeapRegion.RegionType.EDEN) + regions.getUsed(HeapRegion.RegionType.SURVIVOR)
+                    : jvm.getHeap().getYoungGen().getUsed();
+            long oldUsed = regions != null
+                    ? regions.getUsed(HeapRegion.RegionType.OLD) + regions.getUsed(HeapRegion.RegionType.HUMONGOUS)
+                    : jvm.getHeap().getOldGen().getUsed();
+            youngGenSeries.getData().add(new XYChart.Data<>(chartTime, youngUsed / (1024 * 1024)));
+            oldGenSeries.getData().add(new XYChart.Data<>(chartTime, oldUsed / (1024 * 1024)));
 
             // Keep chart data manageable
             if (heapSeries.getData().size() > 100) {
@@ -295,8 +319,8 @@ public class MainController {
             case GC_STARTED -> log("[GC] " + event.getMessage());
             case GC_COMPLETED -> log("[GC] Completed in " + event.getData() + "ms");
             case OUT_OF_MEMORY -> log("[ERROR] " + event.getMessage());
-            case OBJECT_ALLOCATED, OBJECT_COLLECTED, PROMOTION -> {
-                // These events are too verbose for the log
+            default -> {
+                // Not subscribed
             }
         }
     }
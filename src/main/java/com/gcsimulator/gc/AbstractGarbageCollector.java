@@ -1,10 +1,18 @@
 package com.gcsimulator.gc;
 
 import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.jvm.SafepointManager;
+import com.gcsimulator.model.objects.LoadBarrier;
 import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.model.objects.WriteBarrier;
 import com.gcsimulator.model.memory.*;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * Abstract base class for garbage collectors with common functionality.
@@ -14,6 +22,21 @@ public abstract class AbstractGarbageCollector implements GarbageCollector {
     protected GCStatistics statistics;
     protected double youngGenThreshold = 0.85; // Collect when 85% full
     protected double oldGenThreshold = 0.75; // Collect when 75% full
+    protected int markingThreads = 1; // 1 = serial marking
+    protected int tenuringThreshold = 15; // Age at which survivors are promoted
+    protected int lastPromotionFailures; // Objects that did not fit in old gen during the last copy
+    protected final ConcurrentPacer pacer = new ConcurrentPacer(); // Paces concurrent phases
+    protected CardTable cardTable; // Old-to-young references, for collectors that trace young GCs from cards
+    private CardTableBarrier cardTableBarrier;
+    private ParallelMarker parallelMarker;
+    private ExecutorService concurrentThread; // Runs concurrent cycles, created on first use
+    private CompletableFuture<Boolean> currentCycle;
+    private final ThreadLocal<CycleState> cycleState = ThreadLocal.withInitial(CycleState::new); // Per thread running collections
+    private final AtomicLong cycleIds = new AtomicLong();
+    protected final PhaseTracer tracer = new PhaseTracer(PhaseTracer.DEFAULT_CAPACITY);
+    private long markStartId; // Last object id at the start of the current concurrent mark
+    private volatile boolean loggingEnabled = true;
+    private volatile GCLogWriter gcLog; // JDK-format GC log, null when off
 
     public AbstractGarbageCollector() {
         this.statistics = new GCStatistics();
@@ -22,6 +45,35 @@ public abstract class AbstractGarbageCollector implements GarbageCollector {
     @Override
     public void initialize(JVMSimulator jvm) {
         this.jvm = jvm;
+        jvm.getBarrierSet().install(WriteBarrier.NONE); // Concurrent collectors install their own
+        jvm.getBarrierSet().installLoadBarrier(LoadBarrier.NONE);
+
+        // Objects already in the heap move to this collector's heap layout, with
+        // the mutators stopped since they bump their TLABs without locking
+        SafepointManager safepoints = jvm.getSafepointManager();
+        int dropped;
+        safepoints.begin();
+        try {
+            jvm.getAllocationEngine().retireTlabs();
+            dropped = jvm.getHeap().installRegionHeap(createRegionHeap());
+        } finally {
+            safepoints.end();
+        }
+        if (dropped > 0) {
+            log("Heap layout changed: " + dropped + " objects did not fit and were dropped");
+        }
+        GCLogWriter log = gcLog;
+        if (log != null) {
+            log.logStart(this, jvm);
+        }
+    }
+
+    /**
+     * Heap layout this collector needs: null for the generational layout, or a
+     * region heap for region-based collectors.
+     */
+    protected RegionHeap createRegionHeap() {
+        return null;
     }
 
     @Override
@@ -29,9 +81,150 @@ public abstract class AbstractGarbageCollector implements GarbageCollector {
         return statistics;
     }
 
+    @Override
+    public PhaseTracer getPhaseTracer() {
+        return tracer;
+    }
+
     @Override
     public void reset() {
+        shutdownConcurrentThread();
+        shutdownParallelMarker();
         statistics.reset();
+        tracer.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdownConcurrentThread();
+        shutdownParallelMarker();
+    }
+
+    @Override
+    public synchronized boolean isCycleInProgress() {
+        return currentCycle != null && !currentCycle.isDone();
+    }
+
+    public ConcurrentPacer getPacer() {
+        return pacer;
+    }
+
+    /**
+     * Run a collection cycle on this collector's concurrent GC thread. Its
+     * stop-the-world phases still bring the mutators to safepoints; everything
+     * in between runs while they keep allocating.
+     *
+     * @return the running cycle, or the one already in progress
+     */
+    protected synchronized CompletableFuture<Boolean> startConcurrentCycle(Callable<Boolean> cycle) {
+        if (isCycleInProgress()) {
+            return currentCycle;
+        }
+        if (concurrentThread == null) {
+            concurrentThread = newGCThread(getName() + " Concurrent Thread");
+        }
+        currentCycle = submitCycle(concurrentThread, cycle);
+        return currentCycle;
+    }
+
+    /**
+     * Single daemon thread for a collector's background work.
+     */
+    protected static ExecutorService newGCThread(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Run a cycle on a GC thread.
+     *
+     * @return completes with the cycle's result, or exceptionally if it failed
+     */
+    protected static CompletableFuture<Boolean> submitCycle(ExecutorService thread, Callable<Boolean> cycle) {
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        thread.execute(() -> {
+            try {
+                future.complete(cycle.call());
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Wait for a cycle to finish. A waiting mutator is treated as stopped, so
+     * the cycle's safepoints do not wait for it.
+     */
+    protected boolean awaitCycle(CompletableFuture<Boolean> cycle) {
+        SafepointManager safepoints = jvm.getSafepointManager();
+        safepoints.enterSafeRegion();
+        try {
+            return cycle.join();
+        } finally {
+            safepoints.leaveSafeRegion();
+        }
+    }
+
+    /**
+     * Stop a GC thread and wait until the cycle it runs has ended, so that no
+     * collector work touches the heap once this returns. The interrupt ends
+     * a paced concurrent phase at its next work unit.
+     */
+    protected void stopGCThread(ExecutorService thread) {
+        thread.shutdownNow();
+        SafepointManager safepoints = jvm.getSafepointManager();
+        safepoints.enterSafeRegion(); // The cycle's remaining safepoints must not wait for the caller
+        boolean interrupted = false;
+        try {
+            while (!thread.isTerminated()) {
+                try {
+                    thread.awaitTermination(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            safepoints.leaveSafeRegion();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void shutdownConcurrentThread() {
+        ExecutorService thread;
+        synchronized (this) {
+            thread = concurrentThread;
+            concurrentThread = null;
+        }
+        // Wait outside the lock: the cycle itself may need it to finish
+        if (thread != null) {
+            stopGCThread(thread);
+        }
+        synchronized (this) {
+            currentCycle = null;
+        }
+    }
+
+    /**
+     * Select serial (1) or parallel work-stealing (greater than 1) marking.
+     */
+    public void setMarkingThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Marking threads must be at least 1");
+        }
+        if (threads != markingThreads) {
+            shutdownParallelMarker();
+        }
+        this.markingThreads = threads;
+    }
+
+    public int getMarkingThreads() {
+        return markingThreads;
     }
 
     @Override
@@ -51,12 +244,324 @@ public abstract class AbstractGarbageCollector implements GarbageCollector {
         return false;
     }
 
+    /**
+     * Run a stop-the-world phase: bring all mutators to a safepoint, make Eden
+     * parsable, run the phase and release the mutators. Time-to-safepoint and
+     * the pause are recorded separately, the pause under the phase's name.
+     */
+    protected <T> T stopTheWorld(String name, Supplier<T> phase) {
+        SafepointManager safepoints = jvm.getSafepointManager();
+        if (safepoints.isHeldByCurrentThread()) {
+            // Already inside a safepoint, e.g. a collection requested from one
+            return phase.get();
+        }
+
+        CycleState state = cycleState.get();
+        long cycle = beginPhase(state);
+        state.phase = name;
+        state.pauses++;
+        long outerObjects = state.objectsVisited;
+        long outerBytes = state.bytesMoved;
+        state.objectsVisited = 0;
+        state.bytesMoved = 0;
+        GCLogWriter log = gcLog;
+        long timeToSafepoint = safepoints.begin();
+        // Heap samples for the GC log are taken while the mutators are stopped;
+        // the time they take is left out of the recorded pause
+        long usedBefore = 0;
+        long usedAfter = 0;
+        long samplingNanos = 0;
+        if (log != null) {
+            long sampleStart = System.nanoTime();
+            usedBefore = jvm.getHeap().getUsed();
+            if (state.heapBefore == null) {
+                state.heapBefore = GCLogWriter.HeapUsage.of(jvm);
+            }
+            samplingNanos = System.nanoTime() - sampleStart;
+        }
+        try {
+            jvm.getAllocationEngine().retireTlabs(); // Make Eden parsable
+            return phase.get();
+        } finally {
+            if (log != null) {
+                long sampleStart = System.nanoTime();
+                usedAfter = jvm.getHeap().getUsed();
+                state.heapAfter = GCLogWriter.HeapUsage.of(jvm);
+                samplingNanos += System.nanoTime() - sampleStart;
+            }
+            long pause = safepoints.end() - samplingNanos;
+            long end = System.nanoTime();
+            state.lastNanos = pause;
+            state.cycleNanos += pause;
+            statistics.recordSafepoint(timeToSafepoint, pause);
+            statistics.recordPause(state.phase, pause);
+            tracer.record(state.phase, PhaseEvent.Kind.PAUSE, cycle, end - pause, end,
+                    state.objectsVisited, state.bytesMoved);
+            if (log != null) {
+                log.logPause(cycle, state.phase, end - pause, end, usedBefore, usedAfter,
+                        jvm.getHeap().getCapacity());
+            }
+            state.objectsVisited = outerObjects;
+            state.bytesMoved = outerBytes;
+        }
+    }
+
+    protected void stopTheWorld(String name, Runnable phase) {
+        stopTheWorld(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    protected <T> T stopTheWorld(Supplier<T> phase) {
+        return stopTheWorld("Pause", phase);
+    }
+
+    protected void stopTheWorld(Runnable phase) {
+        stopTheWorld("Pause", phase);
+    }
+
+    /**
+     * Rename the stop-the-world phase running on this thread, for a pause that
+     * only finds out what it does once it runs, e.g. a young pause that turns
+     * into a full collection.
+     */
+    protected void setPauseName(String name) {
+        cycleState.get().phase = name;
+    }
+
+    /**
+     * Run a phase while the mutators keep running and trace it under its name.
+     */
+    protected <T> T concurrentPhase(String name, Supplier<T> phase) {
+        CycleState state = cycleState.get();
+        long cycle = beginPhase(state);
+        state.concurrentPhases++;
+        long outerObjects = state.objectsVisited;
+        long outerBytes = state.bytesMoved;
+        state.objectsVisited = 0;
+        state.bytesMoved = 0;
+        long start = System.nanoTime();
+        try {
+            return phase.get();
+        } finally {
+            long end = System.nanoTime();
+            tracer.record(name, PhaseEvent.Kind.CONCURRENT, cycle, start, end,
+                    state.objectsVisited, state.bytesMoved);
+            GCLogWriter log = gcLog;
+            if (log != null) {
+                log.logConcurrentPhase(cycle, name, start, end);
+            }
+            state.objectsVisited = outerObjects;
+            state.bytesMoved = outerBytes;
+        }
+    }
+
+    protected void concurrentPhase(String name, Runnable phase) {
+        concurrentPhase(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    /**
+     * Count work done by the traced phase running on this thread.
+     */
+    protected void traceWork(long objectsVisited, long bytesMoved) {
+        CycleState state = cycleState.get();
+        state.objectsVisited += objectsVisited;
+        state.bytesMoved += bytesMoved;
+    }
+
+    /**
+     * Cycle the calling thread's phases belong to; a new one starts with the
+     * first phase after {@link #recordCollection(long)}.
+     */
+    private long beginPhase(CycleState state) {
+        if (state.cycle == 0) {
+            state.cycle = cycleIds.incrementAndGet();
+            state.pauses = 0;
+            state.concurrentPhases = 0;
+            state.heapBefore = null;
+            state.heapAfter = null;
+        }
+        return state.cycle;
+    }
+
+    /**
+     * Duration of the most recent stop-the-world phase in milliseconds.
+     */
+    protected long getLastPauseMs() {
+        return TimeUnit.NANOSECONDS.toMillis(cycleState.get().lastNanos);
+    }
+
+    /**
+     * Record a finished collection with the stop-the-world time accumulated since
+     * the previous one on the calling thread as its pause time.
+     *
+     * @return the pause time in milliseconds
+     */
+    protected long recordCollection(long bytesCollected) {
+        CycleState state = cycleState.get();
+        long pauseNanos = state.cycleNanos;
+        GCLogWriter log = gcLog;
+        if (log != null && state.cycle != 0 && state.heapBefore != null && state.heapAfter != null) {
+            // Heap as the cycle's first pause found it and its final pause left it
+            log.logCycleEnd(state.cycle, state.heapBefore, state.heapAfter,
+                    state.concurrentPhases > 0 || state.pauses > 1);
+        }
+        state.cycleNanos = 0;
+        state.cycle = 0;
+        state.heapBefore = null;
+        state.heapAfter = null;
+        statistics.recordCollectionNanos(pauseNanos, bytesCollected);
+        return TimeUnit.NANOSECONDS.toMillis(pauseNanos);
+    }
+
+    /**
+     * Remember which objects exist when a concurrent mark starts. Objects created
+     * later are implicitly live for the rest of the cycle (allocated black).
+     */
+    protected void recordMarkStart() {
+        markStartId = SimulatedObject.getLastId();
+    }
+
+    protected boolean isAllocatedSinceMarkStart(SimulatedObject obj) {
+        return obj.getId() > markStartId;
+    }
+
+    /**
+     * Move the write barrier's counters for the finished cycle into the statistics.
+     */
+    protected void recordBarrierActivity(QueueingWriteBarrier barrier) {
+        long invocations = barrier.takeInvocations();
+        long enqueued = barrier.takeEnqueued();
+        statistics.recordBarrierActivity(invocations, enqueued);
+        log(String.format("  Write barrier: %d calls, %d objects logged", invocations, enqueued));
+    }
+
+    /**
+     * Record the load barrier work of a cycle in the statistics and the log.
+     */
+    protected void recordBarrierActivity(ColoredPointerBarrier barrier) {
+        long loads = barrier.takeLoads();
+        long slowPaths = barrier.takeSlowPaths();
+        long slowPathNanos = barrier.takeSlowPathNanos();
+        statistics.recordLoadBarrierActivity(loads, slowPaths, slowPathNanos);
+        log(String.format("  Load barrier: %d loads, %d slow paths (%.2f%%), %.3fms in slow paths",
+                loads, slowPaths, loads > 0 ? slowPaths * 100.0 / loads : 0.0, slowPathNanos / 1_000_000.0));
+    }
+
+    /**
+     * Use a card table for young collections and install its post-write barrier,
+     * dirtying a card on every store into a covered region.
+     */
+    protected void installCardTable(CardTable table) {
+        installCardTable(table, (holder, newValue) -> true);
+    }
+
+    /**
+     * Use a card table for young collections and install its post-write barrier.
+     *
+     * @param filter returns false for reference stores that need no card
+     */
+    protected void installCardTable(CardTable table, BiPredicate<SimulatedObject, SimulatedObject> filter) {
+        this.cardTable = table;
+        this.cardTableBarrier = new CardTableBarrier(table, filter);
+        jvm.getBarrierSet().install(cardTableBarrier);
+    }
+
+    /**
+     * Objects on dirty cards, which may hold references into the young
+     * generation. The cards are cleaned; see {@link #rememberOldToYoung}.
+     */
+    protected List<SimulatedObject> scanDirtyCards() {
+        List<SimulatedObject> holders = new ArrayList<>();
+        int cards = cardTable.scanDirtyCards(holders::add);
+        log(String.format("  Scanned %d dirty cards (%d objects)", cards, holders.size()));
+        return holders;
+    }
+
+    /**
+     * Young-collection mark: trace from the roots and from the objects on dirty
+     * cards, following references only into the young generation. The cost
+     * scales with the young live set and the dirty cards, not the heap size.
+     */
+    protected Set<SimulatedObject> markYoung(Collection<SimulatedObject> cardHolders,
+            Predicate<SimulatedObject> isYoung) {
+        List<SimulatedObject> roots = new ArrayList<>(jvm.getRootSet().getRoots());
+        for (SimulatedObject holder : cardHolders) {
+            roots.addAll(holder.getReferences());
+        }
+
+        if (markingThreads > 1) {
+            Set<SimulatedObject> marked = getParallelMarker().mark(roots, isYoung);
+            traceWork(marked.size(), 0);
+            return marked;
+        }
+
+        Set<SimulatedObject> reachable = new HashSet<>();
+        Queue<SimulatedObject> queue = new ArrayDeque<>();
+        for (SimulatedObject root : roots) {
+            if (isYoung.test(root) && reachable.add(root)) {
+                root.setMarked(true);
+                queue.add(root);
+            }
+        }
+        while (!queue.isEmpty()) {
+            SimulatedObject obj = queue.poll();
+            for (SimulatedObject ref : obj.getReferences()) {
+                if (isYoung.test(ref) && reachable.add(ref)) {
+                    ref.setMarked(true);
+                    queue.add(ref);
+                }
+            }
+        }
+        traceWork(reachable.size(), 0);
+        return reachable;
+    }
+
+    /**
+     * After a young collection, dirty the cards of old objects that still
+     * reference young ones, e.g. scanned card holders whose referents survived
+     * in a survivor space, or freshly promoted objects.
+     */
+    protected void rememberOldToYoung(Collection<SimulatedObject> holders, Predicate<SimulatedObject> isYoung) {
+        for (SimulatedObject holder : holders) {
+            if (isYoung.test(holder)) {
+                continue;
+            }
+            for (SimulatedObject ref : holder.getReferences()) {
+                if (isYoung.test(ref)) {
+                    cardTable.dirty(holder);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Move the card-marking barrier's counters for the finished collection into the statistics.
+     */
+    protected void recordCardTableActivity() {
+        long invocations = cardTableBarrier.takeInvocations();
+        long dirtied = cardTable.takeCardsDirtied();
+        statistics.recordBarrierActivity(invocations, dirtied);
+        log(String.format("  Card barrier: %d calls, %d cards dirtied", invocations, dirtied));
+    }
+
     /**
      * Mark phase: mark all reachable objects starting from roots.
      */
     protected Set<SimulatedObject> mark() {
+        if (markingThreads > 1) {
+            Set<SimulatedObject> marked = getParallelMarker().mark(jvm.getRootSet().getRoots());
+            traceWork(marked.size(), 0);
+            return marked;
+        }
+
         Set<SimulatedObject> reachable = new HashSet<>();
-        Queue<SimulatedObject> queue = new LinkedList<>();
+        Queue<SimulatedObject> queue = new ArrayDeque<>();
 
         // Start with root set
         for (SimulatedObject root : jvm.getRootSet().getRoots()) {
@@ -77,55 +582,122 @@ public abstract class AbstractGarbageCollector implements GarbageCollector {
             }
         }
 
+        traceWork(reachable.size(), 0);
         return reachable;
     }
 
+    /**
+     * Lazily create the parallel marker so serial collectors never start threads.
+     */
+    protected ParallelMarker getParallelMarker() {
+        if (parallelMarker == null) {
+            parallelMarker = new ParallelMarker(markingThreads);
+        }
+        return parallelMarker;
+    }
+
+    private void shutdownParallelMarker() {
+        if (parallelMarker != null) {
+            parallelMarker.shutdown();
+            parallelMarker = null;
+        }
+    }
+
     /**
      * Sweep phase: remove unmarked objects.
      */
     protected long sweep(MemoryRegion region, Set<SimulatedObject> reachable) {
-        List<Object> toRemove = new ArrayList<>();
-        long bytesCollected = 0;
-
-        for (Object obj : region.getObjects()) {
-            if (obj instanceof SimulatedObject simObj) {
-                if (!reachable.contains(simObj)) {
-                    toRemove.add(obj);
-                    bytesCollected += simObj.getSize();
-                } else {
-                    simObj.setMarked(false); // Reset mark for next collection
-                }
+        return region.removeIf(simObj -> {
+            if (reachable.contains(simObj)) {
+                simObj.setMarked(false); // Reset mark for next collection
+                return false;
             }
+            jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED, simObj);
+            return true;
+        });
+    }
+
+    /**
+     * Copying young collection: sweep Eden and from-survivor, then move survivors
+     * to to-survivor or promote them once they reach the tenuring threshold.
+     * Objects that cannot be promoted stay where they are and are counted in
+     * {@link #lastPromotionFailures}.
+     */
+    protected long copyYoungGeneration(Set<SimulatedObject> reachable) {
+        YoungGeneration youngGen = jvm.getHeap().getYoungGen();
+        MemoryRegion eden = youngGen.getEden();
+        MemoryRegion fromSurvivor = youngGen.getFromSurvivor();
+        MemoryRegion toSurvivor = youngGen.getToSurvivor();
+
+        // Sweep dead objects out of Eden and from-survivor in one pass each
+        long bytesCollected = eden.removeIf(obj -> !reachable.contains(obj));
+        bytesCollected += fromSurvivor.removeIf(obj -> !reachable.contains(obj));
+
+        // Objects in from-survivor have survived another collection
+        for (SimulatedObject obj : fromSurvivor.getObjects()) {
+            obj.incrementAge();
         }
 
-        for (Object obj : toRemove) {
-            region.removeObject(obj);
-            if (obj instanceof SimulatedObject simObj) {
-                region.subtractUsed(simObj.getSize());
-                jvm.fireEvent(new JVMSimulator.JVMEvent(
-                        JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED,
-                        "Collected object: " + simObj,
-                        simObj));
+        List<SimulatedObject> survivors = new ArrayList<>(eden.getObjects());
+        survivors.addAll(fromSurvivor.getObjects());
+
+        // Move survivors to to-survivor or promote to old gen
+        lastPromotionFailures = 0;
+        long bytesMoved = 0;
+        for (SimulatedObject obj : survivors) {
+            MemoryRegion source = eden.containsObject(obj) ? eden : fromSurvivor;
+            if (obj.getAge() >= tenuringThreshold) {
+                if (promote(obj, source)) {
+                    bytesMoved += obj.getSize();
+                } else {
+                    lastPromotionFailures++;
+                }
+            } else if (toSurvivor.canAllocate(obj.getSize())) {
+                source.removeObject(obj);
+                source.subtractUsed(obj.getSize());
+                toSurvivor.addObject(obj);
+                toSurvivor.addUsed(obj.getSize());
+                bytesMoved += obj.getSize();
             }
         }
+        traceWork(0, bytesMoved);
+
+        youngGen.swapSurvivors();
 
         return bytesCollected;
     }
 
     /**
-     * Promote objects from young to old generation.
+     * Promote one object from a young region to the old generation.
+     *
+     * @return false if the old generation has no free block large enough
      */
-    protected void promoteObjects(List<SimulatedObject> objects) {
+    protected boolean promote(SimulatedObject obj, MemoryRegion source) {
         OldGeneration oldGen = jvm.getHeap().getOldGen();
+        if (!oldGen.canAllocate(obj.getSize())) {
+            return false;
+        }
 
-        for (SimulatedObject obj : objects) {
-            if (oldGen.canAllocate(obj.getSize())) {
-                oldGen.promote(obj);
-                jvm.fireEvent(new JVMSimulator.JVMEvent(
-                        JVMSimulator.JVMEvent.EventType.PROMOTION,
-                        "Promoted object: " + obj,
-                        obj));
-            }
+        source.removeObject(obj);
+        source.subtractUsed(obj.getSize());
+        oldGen.promote(obj);
+        if (cardTable != null && !obj.getReferences().isEmpty()) {
+            cardTable.dirty(obj); // May now be an old object pointing into the young generation
+        }
+        jvm.fireEvent(JVMSimulator.JVMEvent.EventType.PROMOTION, obj);
+        return true;
+    }
+
+    @Override
+    public void setLoggingEnabled(boolean enabled) {
+        this.loggingEnabled = enabled;
+    }
+
+    @Override
+    public void setGCLog(GCLogWriter log) {
+        this.gcLog = log;
+        if (log != null && jvm != null) {
+            log.logStart(this, jvm);
         }
     }
 
@@ -133,6 +705,26 @@ public abstract class AbstractGarbageCollector implements GarbageCollector {
      * Log a GC event.
      */
     protected void log(String message) {
-        System.out.println("[" + getName() + "] " + message);
+        if (loggingEnabled) {
+            System.out.println("[" + getName() + "] " + message);
+        }
+    }
+
+    /**
+     * Stop-the-world time of the collections run by one thread. Kept per thread
+     * so that a collector running cycles on more than one GC thread accounts
+     * every pause to the cycle that caused it.
+     */
+    private static class CycleState {
+        long cycle; // Id of the collection in progress, 0 until its first traced phase
+        long cycleNanos; // Safepoint time accumulated by the current collection
+        long lastNanos; // Duration of the most recent stop-the-world phase
+        String phase; // Name of the stop-the-world phase in progress
+        int pauses; // Phases of the current collection, for the GC log
+        int concurrentPhases;
+        GCLogWriter.HeapUsage heapBefore; // Heap at the start of the cycle's first pause, if logged
+        GCLogWriter.HeapUsage heapAfter; // Heap at the end of its latest pause
+        long objectsVisited; // Work counted by the traced phase in progress
+        long bytesMoved;
     }
 }
@@ -0,0 +1,53 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.memory.CardTable;
+import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.model.objects.WriteBarrier;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * Post-write barrier that dirties the card of the object a reference was
+ * stored into, so that young collections find old-to-young references by
+ * scanning dirty cards. The card table itself ignores objects outside the
+ * regions it covers; an optional filter skips stores that can never matter,
+ * like G1's cross-region check.
+ */
+public class CardTableBarrier implements WriteBarrier {
+    private final CardTable cardTable;
+    private final BiPredicate<SimulatedObject, SimulatedObject> filter;
+    private final LongAdder invocations;
+
+    public CardTableBarrier(CardTable cardTable) {
+        this(cardTable, (holder, newValue) -> true);
+    }
+
+    /**
+     * @param filter returns false for stores that need no card
+     */
+    public CardTableBarrier(CardTable cardTable, BiPredicate<SimulatedObject, SimulatedObject> filter) {
+        this.cardTable = cardTable;
+        this.filter = filter;
+        this.invocations = new LongAdder();
+    }
+
+    @Override
+    public void postWrite(SimulatedObject holder, SimulatedObject newValue) {
+        invocations.increment();
+        if (filter.test(holder, newValue)) {
+            cardTable.dirty(holder);
+        }
+    }
+
+    public CardTable getCardTable() {
+        return cardTable;
+    }
+
+    /**
+     * Barrier calls since the last call.
+     */
+    public long takeInvocations() {
+        return invocations.sumThenReset();
+    }
+}
@@ -0,0 +1,79 @@
+package com.gcsimulator.gc;
+
+/**
+ * ZGC's colored pointers: a 64-bit reference word with the object's heap
+ * offset in the low 42 bits and the pointer color in the metadata bits above
+ * it. Exactly one color is good at any time; a reference whose color is not
+ * the good one is stale and takes the load barrier's slow path.
+ *
+ * The good color alternates between Marked0 and Marked1 from one marking to
+ * the next, so pointers healed by the previous marking are recognized as not
+ * yet visited, and is Remapped while objects are being relocated.
+ *
+ * Generational ZGC relocates both generations independently and uses four
+ * remapped bits instead: each generation flips between two relocation phases,
+ * and the good bit encodes both, so a relocation in either generation makes
+ * every older pointer stale.
+ */
+public final class ColoredPointer {
+    public static final int OFFSET_BITS = 42;
+    public static final long OFFSET_MASK = (1L << OFFSET_BITS) - 1;
+    public static final long MARKED0 = 1L << 42;
+    public static final long MARKED1 = 1L << 43;
+    public static final long REMAPPED = 1L << 44;
+    public static final long FINALIZABLE = 1L << 45;
+    public static final int GENERATIONAL_REMAPPED_SHIFT = 46; // Four bits, see remapped(int, int)
+    public static final long METADATA_MASK = MARKED0 | MARKED1 | REMAPPED | FINALIZABLE
+            | (0xFL << GENERATIONAL_REMAPPED_SHIFT);
+
+    /**
+     * Offset of an object that has no heap address yet, e.g. one still in a TLAB.
+     */
+    public static final long NO_OFFSET = OFFSET_MASK;
+
+    private ColoredPointer() {
+    }
+
+    /**
+     * Generational ZGC's good color for the given young and old relocation phases.
+     */
+    public static long remapped(int youngPhase, int oldPhase) {
+        return 1L << (GENERATIONAL_REMAPPED_SHIFT + 2 * (oldPhase & 1) + (youngPhase & 1));
+    }
+
+    public static long encode(long offset, long color) {
+        return (offset & OFFSET_MASK) | color;
+    }
+
+    public static long offset(long word) {
+        return word & OFFSET_MASK;
+    }
+
+    public static long color(long word) {
+        return word & METADATA_MASK;
+    }
+
+    public static boolean isGood(long word, long goodColor) {
+        return color(word) == goodColor;
+    }
+
+    public static String colorName(long color) {
+        if (color == MARKED0) {
+            return "Marked0";
+        } else if (color == MARKED1) {
+            return "Marked1";
+        } else if (color == REMAPPED) {
+            return "Remapped";
+        } else if (color == FINALIZABLE) {
+            return "Finalizable";
+        }
+        for (int young = 0; young < 2; young++) {
+            for (int old = 0; old < 2; old++) {
+                if (color == remapped(young, old)) {
+                    return "RemappedYoung" + young + "Old" + old;
+                }
+            }
+        }
+        return color == 0 ? "Uncolored" : String.format("0x%x", color >>> OFFSET_BITS);
+    }
+}
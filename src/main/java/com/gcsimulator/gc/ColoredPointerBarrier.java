@@ -0,0 +1,120 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.memory.HeapRegion;
+import com.gcsimulator.model.memory.MemoryRegion;
+import com.gcsimulator.model.memory.RegionHeap;
+import com.gcsimulator.model.objects.LoadBarrier;
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load barrier for {@link ColoredPointer}s over a region heap, whose regions
+ * serve as pages. The fast path only compares the color of the loaded word
+ * with the good color. A stale word goes to the collector's slow path, which
+ * marks, relocates or remaps the referenced object, and the healed word is
+ * written back into the slot so that later loads of it are fast again.
+ */
+public abstract class ColoredPointerBarrier implements LoadBarrier {
+    private final RegionHeap heap;
+    private volatile long goodColor;
+
+    private final LongAdder loads;
+    private final LongAdder slowPaths;
+    private final LongAdder slowPathNanos;
+
+    protected ColoredPointerBarrier(RegionHeap heap) {
+        this.heap = heap;
+        this.goodColor = ColoredPointer.REMAPPED;
+        this.loads = new LongAdder();
+        this.slowPaths = new LongAdder();
+        this.slowPathNanos = new LongAdder();
+    }
+
+    /**
+     * Slow path for a stale word: make the referenced object usable in the
+     * current phase.
+     *
+     * @return the healed word, with the good color and the object's current offset
+     */
+    protected abstract long slowPath(SimulatedObject target, long word);
+
+    public long getGoodColor() {
+        return goodColor;
+    }
+
+    /**
+     * Flip the good color. Only called at a safepoint, so no mutator is inside the barrier.
+     */
+    public void setGoodColor(long goodColor) {
+        this.goodColor = goodColor;
+    }
+
+    @Override
+    public long encode(SimulatedObject target) {
+        return ColoredPointer.encode(heapOffset(target), goodColor);
+    }
+
+    @Override
+    public void onLoad(SimulatedObject holder, SimulatedObject target, long word) {
+        loads.increment();
+        if (ColoredPointer.isGood(word, goodColor)) {
+            return;
+        }
+        long start = System.nanoTime();
+        holder.healReference(target, word, slowPath(target, word));
+        slowPaths.increment();
+        slowPathNanos.add(System.nanoTime() - start);
+    }
+
+    /**
+     * The collector's own access to a reference while tracing: heal it like the
+     * load barrier would, without counting it as an application load.
+     */
+    public void heal(SimulatedObject holder, SimulatedObject target, long word) {
+        if (!ColoredPointer.isGood(word, goodColor)) {
+            holder.healReference(target, word, slowPath(target, word));
+        }
+    }
+
+    /**
+     * Offset of an object in the heap, with each region as a page of its own.
+     */
+    public long heapOffset(SimulatedObject obj) {
+        MemoryRegion region = obj.getRegion();
+        if (region instanceof HeapRegion page && obj.getAddress() >= 0) {
+            return pageStart(page) + obj.getAddress();
+        }
+        return ColoredPointer.NO_OFFSET;
+    }
+
+    public long pageStart(HeapRegion page) {
+        return page.getIndex() * heap.getRegionSize();
+    }
+
+    /**
+     * Page that contains a heap offset, or null for {@link ColoredPointer#NO_OFFSET}.
+     */
+    public HeapRegion pageAt(long offset) {
+        if (offset == ColoredPointer.NO_OFFSET) {
+            return null;
+        }
+        long index = offset / heap.getRegionSize();
+        return index < heap.getRegionCount() ? heap.getRegions().get((int) index) : null;
+    }
+
+    /**
+     * Application loads through the barrier since the last call.
+     */
+    public long takeLoads() {
+        return loads.sumThenReset();
+    }
+
+    public long takeSlowPaths() {
+        return slowPaths.sumThenReset();
+    }
+
+    public long takeSlowPathNanos() {
+        return slowPathNanos.sumThenReset();
+    }
+}
@@ -0,0 +1,107 @@
+package com.gcsimulator.gc;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the work of a concurrent GC thread so that it only takes a share of the
+ * CPU, like a collector running with fewer concurrent threads than cores.
+ * Work is counted in units (usually objects); after every batch the thread
+ * backs off long enough to keep its busy time at the configured duty cycle.
+ * Interrupting the GC thread cancels the phase at its next work unit.
+ */
+public class ConcurrentPacer {
+    private volatile double dutyCycle; // Fraction of wall time the GC thread may run
+    private volatile int batchSize; // Work units between two pacing decisions
+
+    private long batchStart;
+    private int unitsInBatch;
+    private long workUnits;
+    private long pacedNanos;
+
+    public ConcurrentPacer() {
+        this(0.25, 1024);
+    }
+
+    public ConcurrentPacer(double dutyCycle, int batchSize) {
+        setDutyCycle(dutyCycle);
+        setBatchSize(batchSize);
+    }
+
+    /**
+     * Start timing a concurrent phase.
+     */
+    public void startPhase() {
+        batchStart = System.nanoTime();
+        unitsInBatch = 0;
+    }
+
+    /**
+     * Account for one unit of concurrent work and back off at batch boundaries.
+     *
+     * @throws CancellationException if the GC thread was interrupted, e.g. by a reset
+     */
+    public void step() {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("Concurrent phase cancelled");
+        }
+        workUnits++;
+        if (++unitsInBatch >= batchSize) {
+            unitsInBatch = 0;
+            backOff();
+        }
+    }
+
+    /**
+     * @param dutyCycle share of wall time the GC thread may run, in (0, 1]; 1 disables pacing
+     */
+    public void setDutyCycle(double dutyCycle) {
+        if (dutyCycle <= 0 || dutyCycle > 1) {
+            throw new IllegalArgumentException("Duty cycle must be in (0, 1]");
+        }
+        this.dutyCycle = dutyCycle;
+    }
+
+    public double getDutyCycle() {
+        return dutyCycle;
+    }
+
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Total work units processed by concurrent phases.
+     */
+    public long getWorkUnits() {
+        return workUnits;
+    }
+
+    /**
+     * Total time the GC thread spent backing off.
+     */
+    public long getPacedNanos() {
+        return pacedNanos;
+    }
+
+    private void backOff() {
+        long busy = System.nanoTime() - batchStart;
+        double duty = dutyCycle;
+        if (duty < 1.0) {
+            long idle = (long) (busy * (1 - duty) / duty);
+            long parkStart = System.nanoTime();
+            LockSupport.parkNanos(idle);
+            pacedNanos += System.nanoTime() - parkStart;
+        } else {
+            Thread.yield();
+        }
+        batchStart = System.nanoTime();
+    }
+}
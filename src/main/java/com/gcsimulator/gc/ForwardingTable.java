@@ -0,0 +1,76 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.memory.HeapRegion;
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forwarding table of one page in a relocation set: maps the old offset of
+ * every relocated object within the page to its new heap offset. Whichever
+ * thread relocates an object first, the collector or a mutator in the load
+ * barrier, inserts its entry; the table stays valid after the page has been
+ * freed, until the next marking has remapped every stale pointer into it.
+ *
+ * A freed page can be reused while stale pointers into it still exist, so an
+ * entry also records the object and lookups check it. ZGC avoids the
+ * ambiguity with separate virtual address views instead.
+ */
+public class ForwardingTable {
+    private final HeapRegion page;
+    private final long pageStart; // Heap offset of the page
+    private final Map<Long, Entry> entries;
+
+    public static class Entry {
+        private final SimulatedObject object;
+        private final long newOffset;
+
+        Entry(SimulatedObject object, long newOffset) {
+            this.object = object;
+            this.newOffset = newOffset;
+        }
+
+        public SimulatedObject getObject() {
+            return object;
+        }
+
+        public long getNewOffset() {
+            return newOffset;
+        }
+    }
+
+    public ForwardingTable(HeapRegion page, long pageStart) {
+        this.page = page;
+        this.pageStart = pageStart;
+        this.entries = new ConcurrentHashMap<>();
+    }
+
+    public HeapRegion getPage() {
+        return page;
+    }
+
+    /**
+     * Entry of the object that was at {@code oldOffset} (a heap offset), if it
+     * is {@code obj}; null if that object has not been relocated.
+     */
+    public Entry find(long oldOffset, SimulatedObject obj) {
+        Entry entry = entries.get(oldOffset - pageStart);
+        return entry != null && entry.object == obj ? entry : null;
+    }
+
+    /**
+     * Record a relocation; the first insert for an offset wins.
+     *
+     * @return the entry now in the table
+     */
+    public Entry insert(long oldOffset, SimulatedObject obj, long newOffset) {
+        Entry entry = new Entry(obj, newOffset);
+        Entry existing = entries.putIfAbsent(oldOffset - pageStart, entry);
+        return existing != null ? existing : entry;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,352 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.memory.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * GC log in the JDK's unified logging format ({@code -Xlog:gc*} with the
+ * default uptime, level and tags decorations), so existing GC log analyzers
+ * can read it. Collectors hand over lines with the time they happened at; a
+ * background thread formats them in batches and writes them through a file
+ * channel. Logging never blocks a collector: if the writer falls behind, lines
+ * are dropped and counted, like the JDK's asynchronous logging.
+ */
+public class GCLogWriter implements AutoCloseable {
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 4096;
+    private static final long FLUSH_INTERVAL_MS = 100;
+    private static final Line CLOSE = new Line(0, "", "", "");
+    private static final HeapRegion.RegionType[] HEAP_REGION_TYPES = {
+            HeapRegion.RegionType.EDEN, HeapRegion.RegionType.SURVIVOR,
+            HeapRegion.RegionType.OLD, HeapRegion.RegionType.HUMONGOUS
+    };
+
+    private final FileChannel channel;
+    private final long startNanos;
+    private final BlockingQueue<Line> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Create or truncate the log file. Uptimes are counted from now.
+     */
+    public GCLogWriter(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.startNanos = System.nanoTime();
+        this.writer = new Thread(this::writeLoop, "GC Log Writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Log the collector and heap layout in use, like the JDK does at startup.
+     */
+    public void logStart(GarbageCollector collector, JVMSimulator jvm) {
+        long now = System.nanoTime();
+        Heap heap = jvm.getHeap();
+        info(now, "gc", "Using " + jdkName(collector.getAlgorithm()));
+        info(now, "gc,init", "Version: " + collector.getAlgorithm().getJavaVersion() + " (simulated)");
+        RegionHeap regions = heap.getRegionHeap();
+        if (regions != null) {
+            info(now, "gc,init", "Heap Region Size: " + regions.getRegionSize() / (1024 * 1024) + "M");
+        }
+        info(now, "gc,init", "Heap Max Capacity: " + toM(heap.getCapacity()) + "M");
+        info(now, "gc,init", "Metaspace Max Capacity: " + toM(jvm.getMetaspace().getMaxCapacity()) + "M");
+    }
+
+    /**
+     * Log a stop-the-world pause: a {@code gc,start} line when it began and a
+     * {@code gc} line with the heap transition and duration when it ended.
+     */
+    public void logPause(long gcId, String name, long startNanos, long endNanos, long usedBefore,
+            long usedAfter, long capacity) {
+        info(startNanos, "gc,start", "GC(" + gcId + ") " + name);
+        info(endNanos, "gc", "GC(" + gcId + ") " + name + " " + toM(usedBefore) + "M->" + toM(usedAfter)
+                + "M(" + toM(capacity) + "M) " + formatMs(endNanos - startNanos));
+    }
+
+    /**
+     * Log a phase run while the mutators kept running.
+     */
+    public void logConcurrentPhase(long gcId, String name, long startNanos, long endNanos) {
+        info(endNanos, "gc,phases", "GC(" + gcId + ") " + name + " " + formatMs(endNanos - startNanos));
+    }
+
+    /**
+     * Log how the heap changed over a collection cycle, from the start of its
+     * first pause to the end of its last. Cycles with concurrent phases or
+     * several pauses also get a summary line; for a single pause its own
+     * {@code gc} line is the summary.
+     */
+    public void logCycleEnd(long gcId, HeapUsage before, HeapUsage after, boolean summary) {
+        long now = System.nanoTime();
+        String gc = "GC(" + gcId + ") ";
+        if (after.regions) {
+            for (HeapRegion.RegionType type : HEAP_REGION_TYPES) {
+                info(now, "gc,heap", gc + regionName(type) + " regions: " + before.regionCounts[type.ordinal()]
+                        + "->" + after.regionCounts[type.ordinal()]);
+            }
+        } else {
+            info(now, "gc,heap", gc + "Eden: " + transitionK(before.eden, after.eden, after.edenCapacity));
+            info(now, "gc,heap", gc + "Survivor: " + transitionK(before.survivor, after.survivor,
+                    after.survivorCapacity));
+            info(now, "gc,heap", gc + "Old: " + transitionK(before.old, after.old, after.oldCapacity));
+        }
+        info(now, "gc,metaspace", gc + "Metaspace: " + toK(before.metaspace) + "K(" + toK(before.metaspaceCapacity)
+                + "K)->" + toK(after.metaspace) + "K(" + toK(after.metaspaceCapacity) + "K)");
+        if (summary) {
+            info(now, "gc", gc + "Garbage Collection " + toM(before.used) + "M(" + percent(before) + "%)->"
+                    + toM(after.used) + "M(" + percent(after) + "%)");
+        }
+    }
+
+    /**
+     * Queue a line at info level, timestamped on the {@link System#nanoTime()} clock.
+     */
+    public void info(long nanos, String tags, String message) {
+        enqueue(new Line(nanos, "info", tags, message));
+    }
+
+    public void warning(long nanos, String tags, String message) {
+        enqueue(new Line(nanos, "warning", tags, message));
+    }
+
+    /**
+     * Lines lost because the writer could not keep up.
+     */
+    public long getDroppedLines() {
+        return dropped.sum();
+    }
+
+    /**
+     * Write the lines still queued and close the file.
+     *
+     * @throws IOException if any write failed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void enqueue(Line line) {
+        if (!queue.offer(line)) {
+            dropped.increment();
+        }
+    }
+
+    private void writeLoop() {
+        List<Line> batch = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+        long reportedDrops = 0;
+        boolean running = true;
+        while (running) {
+            try {
+                Line first = queue.poll(FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH);
+            } catch (InterruptedException e) {
+                queue.drainTo(batch);
+                running = false;
+            }
+
+            for (Line line : batch) {
+                if (line == CLOSE) {
+                    running = false;
+                    continue;
+                }
+                format(text, line);
+            }
+            batch.clear();
+            long drops = dropped.sum();
+            if (drops > reportedDrops) {
+                format(text, new Line(System.nanoTime(), "warning", "logging",
+                        (drops - reportedDrops) + " messages dropped due to async logging"));
+                reportedDrops = drops;
+            }
+            if (failure == null && text.length() > 0) {
+                try {
+                    write(text, encoder, buffer);
+                } catch (IOException e) {
+                    failure = e; // Reported by close(); later lines are discarded
+                }
+            }
+            text.setLength(0);
+        }
+    }
+
+    private void format(StringBuilder text, Line line) {
+        double uptime = Math.max(0, line.nanos - startNanos) / 1_000_000_000.0;
+        text.append('[').append(String.format(Locale.ROOT, "%.3f", uptime)).append("s][")
+                .append(line.level).append("][").append(line.tags).append("] ")
+                .append(line.message).append('\n');
+    }
+
+    private void write(StringBuilder text, CharsetEncoder encoder, ByteBuffer buffer) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        CoderResult result;
+        do {
+            result = encoder.encode(chars, buffer, true);
+            if (result.isError()) {
+                result.throwException();
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        } while (result.isOverflow());
+    }
+
+    private static String regionName(HeapRegion.RegionType type) {
+        String name = type.name().toLowerCase(Locale.ROOT);
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * The name the JDK prints in its "Using ..." line.
+     */
+    private static String jdkName(GCAlgorithm algorithm) {
+        return switch (algorithm) {
+            case SERIAL_GC -> "Serial";
+            case PARALLEL_GC -> "Parallel";
+            case CMS -> "Concurrent Mark Sweep";
+            case G1_JAVA8, G1_JAVA17, G1_JAVA21 -> "G1";
+            case ZGC_JAVA17, GENERATIONAL_ZGC -> "The Z Garbage Collector";
+            case SHENANDOAH, GENERATIONAL_SHENANDOAH -> "Shenandoah";
+        };
+    }
+
+    private static String transitionK(long before, long after, long capacity) {
+        return toK(before) + "K->" + toK(after) + "K(" + toK(capacity) + "K)";
+    }
+
+    private static long percent(HeapUsage usage) {
+        return usage.capacity > 0 ? Math.round(100.0 * usage.used / usage.capacity) : 0;
+    }
+
+    private static long toK(long bytes) {
+        return bytes / 1024;
+    }
+
+    private static long toM(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+
+    private static String formatMs(long nanos) {
+        return String.format(Locale.ROOT, "%.3fms", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Heap and Metaspace occupancy at one point of a collection cycle.
+     */
+    public static class HeapUsage {
+        private final long used;
+        private final long capacity;
+        private final boolean regions;
+        private final int[] regionCounts = new int[HeapRegion.RegionType.values().length];
+        private long eden;
+        private long edenCapacity;
+        private long survivor;
+        private long survivorCapacity;
+        private long old;
+        private long oldCapacity;
+        private final long metaspace;
+        private final long metaspaceCapacity;
+
+        private HeapUsage(JVMSimulator jvm) {
+            Heap heap = jvm.getHeap();
+            RegionHeap regionHeap = heap.getRegionHeap();
+            this.regions = regionHeap != null;
+            if (regions) {
+                long usedBytes = 0;
+                for (HeapRegion region : regionHeap.getRegions()) {
+                    regionCounts[region.getType().ordinal()]++;
+                    usedBytes += region.getUsed();
+                }
+                this.used = usedBytes;
+                this.capacity = regionHeap.getCapacity();
+            } else {
+                YoungGeneration young = heap.getYoungGen();
+                OldGeneration oldGen = heap.getOldGen();
+                eden = young.getEden().getUsed();
+                edenCapacity = young.getEden().getCapacity();
+                survivor = young.getFromSurvivor().getUsed();
+                survivorCapacity = young.getFromSurvivor().getCapacity();
+                old = oldGen.getUsed();
+                oldCapacity = oldGen.getCapacity();
+                this.used = young.getUsed() + old;
+                this.capacity = young.getCapacity() + oldCapacity;
+            }
+            Metaspace meta = jvm.getMetaspace();
+            this.metaspace = meta.getUsed();
+            this.metaspaceCapacity = meta.getCapacity();
+        }
+
+        public static HeapUsage of(JVMSimulator jvm) {
+            return new HeapUsage(jvm);
+        }
+
+        public long getUsed() {
+            return used;
+        }
+
+        public long getCapacity() {
+            return capacity;
+        }
+    }
+
+    private static class Line {
+        final long nanos;
+        final String level;
+        final String tags;
+        final String message;
+
+        Line(long nanos, String level, String tags, String message) {
+            this.nanos = nanos;
+            this.level = level;
+            this.tags = tags;
+            this.message = message;
+        }
+    }
+}
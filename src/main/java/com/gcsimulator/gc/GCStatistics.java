@@ -1,89 +1,393 @@
 package com.gcsimulator.gc;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 /**
- * Statistics collected during garbage collection.
+ * Statistics collected during garbage collection. Pause times are kept in
+ * nanoseconds: per collection (the sum of its stop-the-world phases), and
+ * per individual pause in histograms, overall, by phase and over a recent
+ * window. A collector may record from several GC threads at once, so the
+ * counters are guarded by this object's monitor; the histograms are lock-free.
  */
 public class GCStatistics {
+    public static final long RECENT_WINDOW_MS = 60_000;
+    private static final int RECENT_WINDOW_INTERVALS = 12;
+
     private long totalCollections;
-    private long totalPauseTimeMs;
+    private long totalPauseNanos;
     private long totalBytesCollected;
-    private long minPauseTimeMs;
-    private long maxPauseTimeMs;
-    private long lastPauseTimeMs;
+    private long minPauseNanos;
+    private long maxPauseNanos;
+    private long lastPauseNanos;
     private long lastCollectionTime;
+    private long promotionFailures;
+    private long concurrentModeFailures;
+    private long safepoints;
+    private long totalTimeToSafepointNanos;
+    private long maxTimeToSafepointNanos;
+    private long totalSafepointPauseNanos;
+    private long barrierInvocations;
+    private long barrierEnqueued;
+    private long loadBarrierInvocations;
+    private long loadBarrierSlowPaths;
+    private long loadBarrierSlowPathNanos;
+    private long predictedPauses;
+    private long pauseTargetMisses;
+    private double totalPredictionErrorMs;
+    private long humongousAllocations;
+    private long humongousBytesAllocated;
+    private long humongousReclaimed;
+    private long humongousBytesReclaimed;
+    private final PauseHistogram pauses;
+    private final Map<String, PauseHistogram> phasePauses; // In order of first occurrence
+    private final RollingPauseHistogram recentPauses;
 
     public GCStatistics() {
         this.totalCollections = 0;
-        this.totalPauseTimeMs = 0;
+        this.totalPauseNanos = 0;
         this.totalBytesCollected = 0;
-        this.minPauseTimeMs = Long.MAX_VALUE;
-        this.maxPauseTimeMs = 0;
-        this.lastPauseTimeMs = 0;
+        this.minPauseNanos = Long.MAX_VALUE;
+        this.maxPauseNanos = 0;
+        this.lastPauseNanos = 0;
         this.lastCollectionTime = 0;
+        this.promotionFailures = 0;
+        this.concurrentModeFailures = 0;
+        this.safepoints = 0;
+        this.totalTimeToSafepointNanos = 0;
+        this.maxTimeToSafepointNanos = 0;
+        this.totalSafepointPauseNanos = 0;
+        this.barrierInvocations = 0;
+        this.barrierEnqueued = 0;
+        this.loadBarrierInvocations = 0;
+        this.loadBarrierSlowPaths = 0;
+        this.loadBarrierSlowPathNanos = 0;
+        this.predictedPauses = 0;
+        this.pauseTargetMisses = 0;
+        this.totalPredictionErrorMs = 0;
+        this.humongousAllocations = 0;
+        this.humongousBytesAllocated = 0;
+        this.humongousReclaimed = 0;
+        this.humongousBytesReclaimed = 0;
+        this.pauses = new PauseHistogram();
+        this.phasePauses = Collections.synchronizedMap(new LinkedHashMap<>());
+        this.recentPauses = new RollingPauseHistogram(
+                TimeUnit.MILLISECONDS.toNanos(RECENT_WINDOW_MS), RECENT_WINDOW_INTERVALS);
+    }
+
+    public synchronized void recordCollection(long pauseTimeMs, long bytesCollected) {
+        recordCollectionNanos(TimeUnit.MILLISECONDS.toNanos(pauseTimeMs), bytesCollected);
     }
 
-    public void recordCollection(long pauseTimeMs, long bytesCollected) {
+    /**
+     * Record a finished collection whose stop-the-world phases took pauseNanos in total.
+     */
+    public synchronized void recordCollectionNanos(long pauseNanos, long bytesCollected) {
         totalCollections++;
-        totalPauseTimeMs += pauseTimeMs;
+        totalPauseNanos += pauseNanos;
         totalBytesCollected += bytesCollected;
-        lastPauseTimeMs = pauseTimeMs;
+        lastPauseNanos = pauseNanos;
         lastCollectionTime = System.currentTimeMillis();
 
-        if (pauseTimeMs < minPauseTimeMs) {
-            minPauseTimeMs = pauseTimeMs;
+        if (pauseNanos < minPauseNanos) {
+            minPauseNanos = pauseNanos;
         }
-        if (pauseTimeMs > maxPauseTimeMs) {
-            maxPauseTimeMs = pauseTimeMs;
+        if (pauseNanos > maxPauseNanos) {
+            maxPauseNanos = pauseNanos;
         }
     }
 
-    public long getTotalCollections() {
+    /**
+     * Record one stop-the-world pause of the named phase, e.g. "Pause Remark".
+     */
+    public void recordPause(String phase, long pauseNanos) {
+        pauses.record(pauseNanos);
+        recentPauses.record(pauseNanos);
+        phasePauses.computeIfAbsent(phase, name -> new PauseHistogram()).record(pauseNanos);
+    }
+
+    /**
+     * Record one stop-the-world safepoint: the time it took to stop all mutators
+     * and the time they were held stopped afterwards.
+     */
+    public synchronized void recordSafepoint(long timeToSafepointNanos, long pauseNanos) {
+        safepoints++;
+        totalTimeToSafepointNanos += timeToSafepointNanos;
+        totalSafepointPauseNanos += pauseNanos;
+        if (timeToSafepointNanos > maxTimeToSafepointNanos) {
+            maxTimeToSafepointNanos = timeToSafepointNanos;
+        }
+    }
+
+    /**
+     * Record write barrier work: calls made by mutators and objects the slow
+     * path had to log for the collector.
+     */
+    public synchronized void recordBarrierActivity(long invocations, long enqueued) {
+        barrierInvocations += invocations;
+        barrierEnqueued += enqueued;
+    }
+
+    /**
+     * Record load barrier work: reference loads by mutators, the loads that
+     * found a stale pointer and took the slow path, and the time spent there.
+     */
+    public synchronized void recordLoadBarrierActivity(long loads, long slowPaths, long slowPathNanos) {
+        loadBarrierInvocations += loads;
+        loadBarrierSlowPaths += slowPaths;
+        loadBarrierSlowPathNanos += slowPathNanos;
+    }
+
+    /**
+     * Record a pause of a collector with a pause-time target: whether the pause
+     * met the target and how far off the collector's own prediction was.
+     */
+    public synchronized void recordPausePrediction(double predictedMs, double actualMs, long targetMs) {
+        predictedPauses++;
+        totalPredictionErrorMs += Math.abs(actualMs - predictedMs);
+        if (actualMs > targetMs) {
+            pauseTargetMisses++;
+        }
+    }
+
+    /**
+     * Record humongous objects allocated since the last collection.
+     */
+    public synchronized void recordHumongousAllocations(long count, long bytes) {
+        humongousAllocations += count;
+        humongousBytesAllocated += bytes;
+    }
+
+    /**
+     * Record dead humongous objects whose regions were freed without copying.
+     */
+    public synchronized void recordHumongousReclaim(long count, long bytes) {
+        humongousReclaimed += count;
+        humongousBytesReclaimed += bytes;
+    }
+
+    public synchronized void recordPromotionFailures(long count) {
+        promotionFailures += count;
+    }
+
+    public synchronized void recordConcurrentModeFailure() {
+        concurrentModeFailures++;
+    }
+
+    public synchronized long getTotalCollections() {
         return totalCollections;
     }
 
-    public long getTotalPauseTimeMs() {
-        return totalPauseTimeMs;
+    public synchronized long getTotalPauseTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(totalPauseNanos);
     }
 
-    public double getAveragePauseTimeMs() {
-        return totalCollections > 0 ? (double) totalPauseTimeMs / totalCollections : 0.0;
+    public synchronized long getTotalPauseNanos() {
+        return totalPauseNanos;
     }
 
-    public long getTotalBytesCollected() {
+    public synchronized double getAveragePauseTimeMs() {
+        return totalCollections > 0 ? totalPauseNanos / 1_000_000.0 / totalCollections : 0.0;
+    }
+
+    public synchronized long getTotalBytesCollected() {
         return totalBytesCollected;
     }
 
-    public long getMinPauseTimeMs() {
-        return minPauseTimeMs == Long.MAX_VALUE ? 0 : minPauseTimeMs;
+    public synchronized long getMinPauseTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(getMinPauseNanos());
+    }
+
+    public synchronized long getMinPauseNanos() {
+        return minPauseNanos == Long.MAX_VALUE ? 0 : minPauseNanos;
+    }
+
+    public synchronized long getMaxPauseTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxPauseNanos);
+    }
+
+    public synchronized long getMaxPauseNanos() {
+        return maxPauseNanos;
     }
 
-    public long getMaxPauseTimeMs() {
-        return maxPauseTimeMs;
+    public synchronized long getLastPauseTimeMs() {
+        return TimeUnit.NANOSECONDS.toMillis(lastPauseNanos);
     }
 
-    public long getLastPauseTimeMs() {
-        return lastPauseTimeMs;
+    public synchronized long getLastPauseNanos() {
+        return lastPauseNanos;
     }
 
-    public long getLastCollectionTime() {
+    /**
+     * Distribution of the individual stop-the-world pauses.
+     */
+    public PauseHistogram getPauseHistogram() {
+        return pauses;
+    }
+
+    /**
+     * Individual pause at the given percentile (0-100), in milliseconds.
+     */
+    public double getPausePercentileMs(double percentile) {
+        return pauses.getPercentileMs(percentile);
+    }
+
+    /**
+     * Individual pauses by phase, in the order the phases first occurred.
+     */
+    public Map<String, PauseHistogram> getPhaseHistograms() {
+        synchronized (phasePauses) {
+            return new LinkedHashMap<>(phasePauses);
+        }
+    }
+
+    /**
+     * Individual pauses within the last {@value #RECENT_WINDOW_MS}ms.
+     */
+    public PauseHistogram getRecentPauseHistogram() {
+        return recentPauses.snapshot();
+    }
+
+    public synchronized long getLastCollectionTime() {
         return lastCollectionTime;
     }
 
-    public void reset() {
+    public synchronized long getPromotionFailures() {
+        return promotionFailures;
+    }
+
+    public synchronized long getConcurrentModeFailures() {
+        return concurrentModeFailures;
+    }
+
+    public synchronized long getSafepointCount() {
+        return safepoints;
+    }
+
+    public synchronized double getTotalTimeToSafepointMs() {
+        return totalTimeToSafepointNanos / 1_000_000.0;
+    }
+
+    public synchronized double getAverageTimeToSafepointMs() {
+        return safepoints > 0 ? getTotalTimeToSafepointMs() / safepoints : 0.0;
+    }
+
+    public synchronized double getMaxTimeToSafepointMs() {
+        return maxTimeToSafepointNanos / 1_000_000.0;
+    }
+
+    public synchronized double getTotalSafepointPauseMs() {
+        return totalSafepointPauseNanos / 1_000_000.0;
+    }
+
+    public synchronized long getBarrierInvocations() {
+        return barrierInvocations;
+    }
+
+    public synchronized long getBarrierEnqueued() {
+        return barrierEnqueued;
+    }
+
+    public synchronized long getLoadBarrierInvocations() {
+        return loadBarrierInvocations;
+    }
+
+    public synchronized long getLoadBarrierSlowPaths() {
+        return loadBarrierSlowPaths;
+    }
+
+    /**
+     * Share of reference loads that took the slow path (0.0 to 1.0).
+     */
+    public synchronized double getLoadBarrierSlowPathRate() {
+        return loadBarrierInvocations > 0 ? (double) loadBarrierSlowPaths / loadBarrierInvocations : 0.0;
+    }
+
+    public synchronized double getLoadBarrierSlowPathMs() {
+        return loadBarrierSlowPathNanos / 1_000_000.0;
+    }
+
+    /**
+     * Pauses recorded with a prediction, i.e. by a collector with a pause-time target.
+     */
+    public synchronized long getPredictedPauses() {
+        return predictedPauses;
+    }
+
+    public synchronized long getPauseTargetMisses() {
+        return pauseTargetMisses;
+    }
+
+    /**
+     * Share of predicted pauses that met the pause target (0.0 to 1.0).
+     */
+    public synchronized double getPauseTargetCompliance() {
+        return predictedPauses > 0 ? 1.0 - (double) pauseTargetMisses / predictedPauses : 1.0;
+    }
+
+    public synchronized double getAveragePredictionErrorMs() {
+        return predictedPauses > 0 ? totalPredictionErrorMs / predictedPauses : 0.0;
+    }
+
+    public synchronized long getHumongousAllocations() {
+        return humongousAllocations;
+    }
+
+    public synchronized long getHumongousBytesAllocated() {
+        return humongousBytesAllocated;
+    }
+
+    public synchronized long getHumongousReclaimed() {
+        return humongousReclaimed;
+    }
+
+    public synchronized long getHumongousBytesReclaimed() {
+        return humongousBytesReclaimed;
+    }
+
+    public synchronized void reset() {
         totalCollections = 0;
-        totalPauseTimeMs = 0;
+        totalPauseNanos = 0;
         totalBytesCollected = 0;
-        minPauseTimeMs = Long.MAX_VALUE;
-        maxPauseTimeMs = 0;
-        lastPauseTimeMs = 0;
+        minPauseNanos = Long.MAX_VALUE;
+        maxPauseNanos = 0;
+        lastPauseNanos = 0;
         lastCollectionTime = 0;
+        promotionFailures = 0;
+        concurrentModeFailures = 0;
+        safepoints = 0;
+        totalTimeToSafepointNanos = 0;
+        maxTimeToSafepointNanos = 0;
+        totalSafepointPauseNanos = 0;
+        barrierInvocations = 0;
+        barrierEnqueued = 0;
+        loadBarrierInvocations = 0;
+        loadBarrierSlowPaths = 0;
+        loadBarrierSlowPathNanos = 0;
+        predictedPauses = 0;
+        pauseTargetMisses = 0;
+        totalPredictionErrorMs = 0;
+        humongousAllocations = 0;
+        humongousBytesAllocated = 0;
+        humongousReclaimed = 0;
+        humongousBytesReclaimed = 0;
+        pauses.reset();
+        phasePauses.clear();
+        recentPauses.reset();
     }
 
     @Override
-    public String toString() {
+    public synchronized String toString() {
         return String.format(
-                "GC Stats: Collections=%d, Total Pause=%dms, Avg Pause=%.2fms, Min=%dms, Max=%dms, Collected=%d bytes",
-                totalCollections, totalPauseTimeMs, getAveragePauseTimeMs(),
-                getMinPauseTimeMs(), maxPauseTimeMs, totalBytesCollected);
+                "GC Stats: Collections=%d, Total Pause=%.3fms, Avg Pause=%.3fms, Min=%.3fms, Max=%.3fms, "
+                        + "Collected=%d bytes, Pauses p50=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms, "
+                        + "Safepoints=%d, Avg TTSP=%.3fms, Max TTSP=%.3fms",
+                totalCollections, totalPauseNanos / 1_000_000.0, getAveragePauseTimeMs(),
+                getMinPauseNanos() / 1_000_000.0, maxPauseNanos / 1_000_000.0, totalBytesCollected,
+                pauses.getPercentileMs(50), pauses.getPercentileMs(99), pauses.getPercentileMs(99.9),
+                pauses.getMaxNanos() / 1_000_000.0,
+                safepoints, getAverageTimeToSafepointMs(), getMaxTimeToSafepointMs());
     }
 }
@@ -2,6 +2,9 @@ package com.gcsimulator.gc;
 
 import com.gcsimulator.model.jvm.JVMSimulator;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Base interface for all garbage collectors.
  */
@@ -12,12 +15,31 @@ public interface GarbageCollector {
     void initialize(JVMSimulator jvm);
 
     /**
-     * Perform garbage collection.
+     * Perform garbage collection and wait for the cycle to finish.
      * 
      * @return true if collection was performed, false otherwise
      */
     boolean collect();
 
+    /**
+     * Start a collection cycle. Stop-the-world collectors finish the cycle
+     * before returning; concurrent collectors run it on their own GC thread and
+     * return while it is in progress. If a cycle is already running, its handle
+     * is returned instead of starting another.
+     *
+     * @return completes with the result of {@link #collect()}
+     */
+    default CompletableFuture<Boolean> collectAsync() {
+        return CompletableFuture.completedFuture(collect());
+    }
+
+    /**
+     * Whether a concurrent cycle is currently running.
+     */
+    default boolean isCycleInProgress() {
+        return false;
+    }
+
     /**
      * Determine if garbage collection should run.
      */
@@ -33,11 +55,43 @@ public interface GarbageCollector {
      */
     GCStatistics getStatistics();
 
+    /**
+     * Statistics of each generation that is collected by cycles of its own,
+     * keyed by generation name, e.g. "young" and "old"; empty for collectors
+     * whose cycles cover the generations together.
+     */
+    default Map<String, GCStatistics> getGenerationStatistics() {
+        return Map.of();
+    }
+
+    /**
+     * Trace of the collector's recent pauses and concurrent phases.
+     */
+    PhaseTracer getPhaseTracer();
+
     /**
      * Reset the collector state.
      */
     void reset();
 
+    /**
+     * Release any worker threads owned by the collector.
+     */
+    default void shutdown() {
+    }
+
+    /**
+     * Turn the collector's phase-by-phase log on or off, e.g. for batch runs.
+     */
+    default void setLoggingEnabled(boolean enabled) {
+    }
+
+    /**
+     * Write a JDK-format GC log ({@code -Xlog:gc*}) to the given writer, or stop with null.
+     */
+    default void setGCLog(GCLogWriter log) {
+    }
+
     /**
      * Get the name of the collector.
      */
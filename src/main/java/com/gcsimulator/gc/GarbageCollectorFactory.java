@@ -0,0 +1,32 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.gc.java8.*;
+import com.gcsimulator.gc.java17.*;
+import com.gcsimulator.gc.java21.*;
+
+/**
+ * Creates the collector implementing a {@link GCAlgorithm}.
+ */
+public final class GarbageCollectorFactory {
+
+    private GarbageCollectorFactory() {
+    }
+
+    /**
+     * A new, uninitialized collector for the algorithm.
+     */
+    public static GarbageCollector create(GCAlgorithm algorithm) {
+        return switch (algorithm) {
+            case SERIAL_GC -> new SerialGC();
+            case PARALLEL_GC -> new ParallelGC();
+            case CMS -> new ConcurrentMarkSweep();
+            case G1_JAVA8 -> new G1GC();
+            case G1_JAVA17 -> new G1GCJava17();
+            case ZGC_JAVA17 -> new ZGC();
+            case SHENANDOAH -> new ShenandoahGC();
+            case G1_JAVA21 -> new G1GCJava21();
+            case GENERATIONAL_ZGC -> new GenerationalZGC();
+            case GENERATIONAL_SHENANDOAH -> new GenerationalShenandoah();
+        };
+    }
+}
@@ -0,0 +1,19 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+/**
+ * Incremental-update barrier, as used by CMS. While marking, every object that
+ * receives a new reference is dirtied, and the collector rescans dirty objects
+ * so that references stored into already-scanned objects are not missed.
+ * Dirtying is tracked per object, i.e. one card per holder.
+ */
+public class IncrementalUpdateBarrier extends QueueingWriteBarrier {
+
+    @Override
+    public void postWrite(SimulatedObject holder, SimulatedObject newValue) {
+        if (enter()) {
+            enqueue(holder);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Parallel work-stealing marking engine.
+ * Each worker traces from its own mark stack and uses the lock-free mark bit on
+ * SimulatedObject to claim objects. When a worker's stack grows large, half of it
+ * is split off as a task that idle workers can steal.
+ */
+public class ParallelMarker {
+    private static final AtomicInteger EPOCH_GENERATOR = new AtomicInteger(0);
+    private static final int ROOT_CHUNK_SIZE = 256;
+    private static final int SPLIT_THRESHOLD = 64;
+
+    private final ForkJoinPool pool;
+    private final boolean ownsPool;
+
+    public ParallelMarker(int parallelism) {
+        this(new ForkJoinPool(parallelism), true);
+    }
+
+    public ParallelMarker(ForkJoinPool pool) {
+        this(pool, false);
+    }
+
+    private ParallelMarker(ForkJoinPool pool, boolean ownsPool) {
+        this.pool = pool;
+        this.ownsPool = ownsPool;
+    }
+
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Mark all objects reachable from the given roots.
+     *
+     * @return the marked objects; the set stays valid until the next marking cycle
+     */
+    public Set<SimulatedObject> mark(Collection<SimulatedObject> roots) {
+        return mark(roots, obj -> true);
+    }
+
+    /**
+     * Mark the objects reachable from the given roots through objects accepted
+     * by {@code filter}, e.g. only the young generation. Rejected objects are
+     * neither marked nor traced.
+     *
+     * @return the marked objects; the set stays valid until the next marking cycle
+     */
+    public Set<SimulatedObject> mark(Collection<SimulatedObject> roots, Predicate<SimulatedObject> filter) {
+        int epoch = nextEpoch();
+        MarkedSet marked = new MarkedSet(epoch, filter);
+        List<SimulatedObject> rootList = new ArrayList<>(roots);
+        pool.invoke(new RootScanTask(rootList, 0, rootList.size(), marked));
+        return marked;
+    }
+
+    /**
+     * Release the worker threads if this marker created its own pool.
+     */
+    public void shutdown() {
+        if (ownsPool) {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Start a new marking cycle. Epoch 0 is never used so that fresh objects are unmarked.
+     */
+    public static int nextEpoch() {
+        int epoch;
+        do {
+            epoch = EPOCH_GENERATOR.incrementAndGet();
+        } while (epoch == 0);
+        return epoch;
+    }
+
+    /**
+     * Partitions the root set into chunks, one initial mark stack per chunk.
+     */
+    private static class RootScanTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<SimulatedObject> roots;
+        private final int from;
+        private final int to;
+        private final MarkedSet marked;
+
+        RootScanTask(List<SimulatedObject> roots, int from, int to, MarkedSet marked) {
+            this.roots = roots;
+            this.from = from;
+            this.to = to;
+            this.marked = marked;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROOT_CHUNK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RootScanTask(roots, from, mid, marked),
+                        new RootScanTask(roots, mid, to, marked));
+                return;
+            }
+
+            ArrayDeque<SimulatedObject> stack = new ArrayDeque<>();
+            List<SimulatedObject> local = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                SimulatedObject root = roots.get(i);
+                if (marked.filter.test(root) && root.tryMark(marked.epoch)) {
+                    local.add(root);
+                    stack.push(root);
+                }
+            }
+            new MarkTask(stack, local, marked).compute();
+        }
+    }
+
+    /**
+     * Drains a per-worker mark stack, splitting off stealable work when it grows.
+     */
+    private static class MarkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ArrayDeque<SimulatedObject> stack;
+        private final List<SimulatedObject> local;
+        private final MarkedSet marked;
+
+        MarkTask(ArrayDeque<SimulatedObject> stack, List<SimulatedObject> local, MarkedSet marked) {
+            this.stack = stack;
+            this.local = local;
+            this.marked = marked;
+        }
+
+        @Override
+        protected void compute() {
+            List<MarkTask> forked = null;
+            int epoch = marked.epoch;
+
+            while (!stack.isEmpty()) {
+                SimulatedObject obj = stack.pop();
+                for (SimulatedObject ref : obj.getReferences()) {
+                    if (marked.filter.test(ref) && ref.tryMark(epoch)) {
+                        local.add(ref);
+                        stack.push(ref);
+                    }
+                }
+
+                // Only split when other workers are likely to be idle
+                if (stack.size() > SPLIT_THRESHOLD && getSurplusQueuedTaskCount() <= 2) {
+                    ArrayDeque<SimulatedObject> half = new ArrayDeque<>();
+                    for (int i = stack.size() / 2; i > 0; i--) {
+                        half.push(stack.pollLast());
+                    }
+                    MarkTask task = new MarkTask(half, new ArrayList<>(), marked);
+                    task.fork();
+                    if (forked == null) {
+                        forked = new ArrayList<>();
+                    }
+                    forked.add(task);
+                }
+            }
+
+            marked.publish(local);
+            if (forked != null) {
+                for (MarkTask task : forked) {
+                    task.join();
+                }
+            }
+        }
+    }
+
+    /**
+     * Result set backed by the mark bits of one marking cycle.
+     * Membership tests are a single field read; iteration walks the per-worker lists.
+     */
+    private static class MarkedSet extends AbstractSet<SimulatedObject> {
+        private final int epoch;
+        private final Predicate<SimulatedObject> filter;
+        private final Queue<List<SimulatedObject>> chunks = new ConcurrentLinkedQueue<>();
+
+        MarkedSet(int epoch, Predicate<SimulatedObject> filter) {
+            this.epoch = epoch;
+            this.filter = filter;
+        }
+
+        void publish(List<SimulatedObject> chunk) {
+            if (!chunk.isEmpty()) {
+                chunks.add(chunk);
+            }
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof SimulatedObject obj && obj.isMarkedIn(epoch);
+        }
+
+        @Override
+        public boolean add(SimulatedObject obj) {
+            if (!obj.tryMark(epoch)) {
+                return false;
+            }
+            publish(new ArrayList<>(List.of(obj)));
+            return true;
+        }
+
+        @Override
+        public Iterator<SimulatedObject> iterator() {
+            return chunks.stream().flatMap(List::stream).iterator();
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (List<SimulatedObject> chunk : chunks) {
+                size += chunk.size();
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.gcsimulator.gc;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of pause times in nanoseconds, laid out like an HDR
+ * histogram: every power of two is split into 128 linear buckets, so a
+ * percentile is within 1% of the recorded value from 1ns up to about half
+ * an hour. Recording is a few atomic increments, safe from any
+ * number of threads; readers racing with recorders see a slightly stale
+ * but valid distribution.
+ */
+public class PauseHistogram {
+    private static final int SUB_BUCKET_BITS = 8;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_BIT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_BIT + 1)) - 1; // Larger values are clamped
+    private static final int BUCKETS = (MAX_BIT - SUB_BUCKET_BITS + 2) * HALF_BUCKETS + HALF_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(MAX_VALUE, nanos));
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        min.accumulateAndGet(value, Math::min);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * Add every value recorded in another histogram to this one.
+     */
+    public void add(PauseHistogram other) {
+        long added = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            long n = other.counts.get(i);
+            if (n > 0) {
+                counts.addAndGet(i, n);
+                added += n;
+            }
+        }
+        if (added == 0) {
+            return;
+        }
+        count.add(added);
+        sum.add(other.sum.sum());
+        min.accumulateAndGet(other.min.get(), Math::min);
+        max.accumulateAndGet(other.max.get(), Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getTotalNanos() {
+        return sum.sum();
+    }
+
+    public long getMinNanos() {
+        long value = min.get();
+        return value == Long.MAX_VALUE ? 0 : value;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public double getMeanNanos() {
+        long n = count.sum();
+        return n > 0 ? (double) sum.sum() / n : 0.0;
+    }
+
+    /**
+     * The value below which the given percentile (0-100) of the recorded
+     * pauses fall, to the histogram's precision; 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100.0, percentile) / 100.0 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public double getPercentileMs(double percentile) {
+        return getValueAtPercentile(percentile) / 1_000_000.0;
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        min.set(Long.MAX_VALUE);
+        max.set(0);
+    }
+
+    /**
+     * Values below SUB_BUCKETS have a bucket each; above that, a value with its
+     * highest bit at h is shifted right by h - SUB_BUCKET_BITS + 1, which
+     * leaves it in the upper half of the sub-buckets.
+     */
+    private static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF_BUCKETS + (int) (value >>> shift);
+    }
+
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF_BUCKETS - 1;
+        long subBucket = index - (long) shift * HALF_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,86 @@
+package com.gcsimulator.gc;
+
+/**
+ * One traced phase of a collection cycle, read back from a {@link PhaseTracer}.
+ */
+public final class PhaseEvent {
+    public enum Kind {
+        PAUSE,
+        CONCURRENT
+    }
+
+    private final String phase;
+    private final Kind kind;
+    private final long cycle;
+    private final int worker;
+    private final long startNanos;
+    private final long endNanos;
+    private final long objectsVisited;
+    private final long bytesMoved;
+
+    public PhaseEvent(String phase, Kind kind, long cycle, int worker, long startNanos, long endNanos,
+            long objectsVisited, long bytesMoved) {
+        this.phase = phase;
+        this.kind = kind;
+        this.cycle = cycle;
+        this.worker = worker;
+        this.startNanos = startNanos;
+        this.endNanos = endNanos;
+        this.objectsVisited = objectsVisited;
+        this.bytesMoved = bytesMoved;
+    }
+
+    /**
+     * Name of the phase, e.g. "Pause Remark" or "Concurrent Mark".
+     */
+    public String getPhase() {
+        return phase;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Collection cycle the phase belongs to, numbered from 1 per collector.
+     */
+    public long getCycle() {
+        return cycle;
+    }
+
+    /**
+     * GC thread that ran the phase, numbered from 0 per collector.
+     */
+    public int getWorker() {
+        return worker;
+    }
+
+    /**
+     * Start time on the {@link System#nanoTime()} clock.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    public long getEndNanos() {
+        return endNanos;
+    }
+
+    public long getDurationNanos() {
+        return endNanos - startNanos;
+    }
+
+    public long getObjectsVisited() {
+        return objectsVisited;
+    }
+
+    public long getBytesMoved() {
+        return bytesMoved;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cycle %d, worker %d: %s (%s) %.3fms, %d objects visited, %d bytes moved",
+                cycle, worker, phase, kind, getDurationNanos() / 1_000_000.0, objectsVisited, bytesMoved);
+    }
+}
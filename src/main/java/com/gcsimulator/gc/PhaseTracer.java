@@ -0,0 +1,135 @@
+package com.gcsimulator.gc;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free ring buffer of GC phase events. Recording claims a
+ * slot with one atomic increment and stores primitives into preallocated
+ * arrays, so it never blocks and allocates nothing; once the ring is full the
+ * oldest events are overwritten. Each slot is guarded like a seqlock: readers
+ * copy an event out and drop it if a writer reused the slot meanwhile.
+ */
+public class PhaseTracer {
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final int mask;
+    private final AtomicLong next = new AtomicLong(); // Sequence number of the next event
+    private final AtomicLongArray published; // Sequence + 1 of the event in each slot, 0 while it is written
+    private final String[] phases;
+    private final PhaseEvent.Kind[] kinds;
+    private final long[] cycles;
+    private final int[] workers;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] objectsVisited;
+    private final long[] bytesMoved;
+    private final AtomicInteger nextWorker = new AtomicInteger();
+    private final ThreadLocal<Integer> worker = ThreadLocal.withInitial(nextWorker::getAndIncrement);
+    private volatile long clearedAt; // Events before this sequence number were cleared
+
+    /**
+     * @param capacity events kept, rounded up to a power of two
+     */
+    public PhaseTracer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 24) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^24: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.published = new AtomicLongArray(size);
+        this.phases = new String[size];
+        this.kinds = new PhaseEvent.Kind[size];
+        this.cycles = new long[size];
+        this.workers = new int[size];
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.objectsVisited = new long[size];
+        this.bytesMoved = new long[size];
+    }
+
+    /**
+     * Record a finished phase run by the calling thread.
+     */
+    public void record(String phase, PhaseEvent.Kind kind, long cycle, long startNanos, long endNanos,
+            long objects, long bytes) {
+        long sequence = next.getAndIncrement();
+        int slot = (int) sequence & mask;
+        published.set(slot, 0);
+        VarHandle.storeStoreFence(); // Invalidate the slot before overwriting it
+        phases[slot] = phase;
+        kinds[slot] = kind;
+        cycles[slot] = cycle;
+        workers[slot] = worker.get();
+        starts[slot] = startNanos;
+        ends[slot] = endNanos;
+        objectsVisited[slot] = objects;
+        bytesMoved[slot] = bytes;
+        published.set(slot, sequence + 1);
+    }
+
+    /**
+     * The events still in the ring, oldest first.
+     */
+    public List<PhaseEvent> getEvents() {
+        return read(-1);
+    }
+
+    /**
+     * The events of one collection cycle still in the ring, oldest first.
+     */
+    public List<PhaseEvent> getCycle(long cycle) {
+        return read(cycle);
+    }
+
+    /**
+     * Events recorded since the tracer was created or cleared, including overwritten ones.
+     */
+    public long getRecorded() {
+        return next.get() - clearedAt;
+    }
+
+    /**
+     * Events overwritten before anyone read them.
+     */
+    public long getOverwritten() {
+        return Math.max(0, getRecorded() - (mask + 1));
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    public void clear() {
+        clearedAt = next.get();
+    }
+
+    private List<PhaseEvent> read(long cycle) {
+        long end = next.get();
+        long start = Math.max(clearedAt, end - (mask + 1));
+        List<PhaseEvent> events = new ArrayList<>();
+        for (long sequence = start; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            if (published.get(slot) != sequence + 1) {
+                continue; // Still being written, or already overwritten
+            }
+            PhaseEvent event = new PhaseEvent(phases[slot], kinds[slot], cycles[slot], workers[slot],
+                    starts[slot], ends[slot], objectsVisited[slot], bytesMoved[slot]);
+            VarHandle.acquireFence(); // Finish reading the slot before checking it again
+            if (published.get(slot) != sequence + 1) {
+                continue;
+            }
+            if (cycle < 0 || event.getCycle() == cycle) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+}
@@ -0,0 +1,173 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.model.objects.WriteBarrier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Base for write barriers that log objects into per-thread buffers while a
+ * concurrent mark is active. A full buffer is handed to a shared queue of
+ * completed buffers that the GC thread drains in batches; partially filled
+ * buffers are flushed at the final marking pause.
+ */
+public abstract class QueueingWriteBarrier implements WriteBarrier {
+    public static final int DEFAULT_BUFFER_SIZE = 256;
+
+    private final int bufferSize;
+    private final ThreadLocal<Buffer> localBuffer;
+    private final Map<Thread, Buffer> buffers; // Every thread's buffer, for the final flush
+    private final Queue<List<SimulatedObject>> completed;
+    private volatile boolean active;
+
+    private final LongAdder invocations;
+    private final LongAdder enqueued;
+    private final LongAdder drainedBatches;
+
+    protected QueueingWriteBarrier() {
+        this(DEFAULT_BUFFER_SIZE);
+    }
+
+    protected QueueingWriteBarrier(int bufferSize) {
+        this.bufferSize = bufferSize;
+        this.localBuffer = new ThreadLocal<>();
+        this.buffers = new ConcurrentHashMap<>();
+        this.completed = new ConcurrentLinkedQueue<>();
+        this.invocations = new LongAdder();
+        this.enqueued = new LongAdder();
+        this.drainedBatches = new LongAdder();
+    }
+
+    /**
+     * Start logging, at the beginning of a concurrent mark.
+     */
+    public void activate() {
+        active = true;
+    }
+
+    /**
+     * Stop logging. Called inside the final marking pause, before the last drain.
+     */
+    public void deactivate() {
+        active = false;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * Process up to {@code maxBatches} completed buffers.
+     *
+     * @return number of objects processed
+     */
+    public int drainCompleted(int maxBatches, Consumer<SimulatedObject> action) {
+        int processed = 0;
+        List<SimulatedObject> batch;
+        for (int i = 0; i < maxBatches && (batch = completed.poll()) != null; i++) {
+            batch.forEach(action);
+            processed += batch.size();
+            drainedBatches.increment();
+        }
+        return processed;
+    }
+
+    /**
+     * Flush every thread's partial buffer and process all logged objects.
+     * Must run while the mutators are stopped.
+     *
+     * @return number of objects processed
+     */
+    public int drainAll(Consumer<SimulatedObject> action) {
+        for (Iterator<Map.Entry<Thread, Buffer>> it = buffers.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Thread, Buffer> entry = it.next();
+            entry.getValue().flush();
+            if (!entry.getKey().isAlive()) {
+                it.remove();
+            }
+        }
+        return drainCompleted(Integer.MAX_VALUE, action);
+    }
+
+    /**
+     * Drop all logged objects, e.g. when a cycle is abandoned.
+     */
+    public void discard() {
+        active = false;
+        for (Buffer buffer : buffers.values()) {
+            buffer.clear();
+        }
+        completed.clear();
+    }
+
+    /**
+     * Barrier calls since the last call, both while active and inactive.
+     */
+    public long takeInvocations() {
+        return invocations.sumThenReset();
+    }
+
+    /**
+     * Objects logged by the slow path since the last call.
+     */
+    public long takeEnqueued() {
+        return enqueued.sumThenReset();
+    }
+
+    public long getDrainedBatches() {
+        return drainedBatches.sum();
+    }
+
+    /**
+     * Common fast path: count the call and report whether the barrier is active.
+     */
+    protected boolean enter() {
+        invocations.increment();
+        return active;
+    }
+
+    /**
+     * Slow path: log an object in the calling thread's buffer.
+     */
+    protected void enqueue(SimulatedObject obj) {
+        Buffer buffer = localBuffer.get();
+        if (buffer == null) {
+            buffer = new Buffer();
+            localBuffer.set(buffer);
+            buffers.put(Thread.currentThread(), buffer);
+        }
+        buffer.add(obj);
+        enqueued.increment();
+    }
+
+    /**
+     * Per-thread log. Synchronized only so that the final flush, run by the GC
+     * thread, sees a consistent buffer; the lock is otherwise uncontended.
+     */
+    private class Buffer {
+        private List<SimulatedObject> entries = new ArrayList<>(bufferSize);
+
+        synchronized void add(SimulatedObject obj) {
+            entries.add(obj);
+            if (entries.size() >= bufferSize) {
+                completed.add(entries);
+                entries = new ArrayList<>(bufferSize);
+            }
+        }
+
+        synchronized void flush() {
+            if (!entries.isEmpty()) {
+                completed.add(entries);
+                entries = new ArrayList<>(bufferSize);
+            }
+        }
+
+        synchronized void clear() {
+            entries.clear();
+        }
+    }
+}
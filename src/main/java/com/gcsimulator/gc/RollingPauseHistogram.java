@@ -0,0 +1,65 @@
+package com.gcsimulator.gc;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Pause histogram over a sliding time window: pauses go into one of a ring
+ * of per-interval histograms, and a snapshot merges the intervals still
+ * inside the window. An interval is cleared by the first pause recorded
+ * after the ring wraps around to it.
+ */
+public class RollingPauseHistogram {
+    private final long intervalNanos;
+    private final PauseHistogram[] intervals;
+    private final AtomicLongArray intervalEpochs; // Which interval of time each slot holds
+
+    public RollingPauseHistogram(long windowNanos, int intervalCount) {
+        if (intervalCount < 1 || windowNanos < intervalCount) {
+            throw new IllegalArgumentException("Window must cover at least one interval of 1ns");
+        }
+        this.intervalNanos = windowNanos / intervalCount;
+        this.intervals = new PauseHistogram[intervalCount];
+        this.intervalEpochs = new AtomicLongArray(intervalCount);
+        for (int i = 0; i < intervalCount; i++) {
+            intervals[i] = new PauseHistogram();
+            intervalEpochs.set(i, Long.MIN_VALUE);
+        }
+    }
+
+    public void record(long nanos) {
+        long epoch = Math.floorDiv(System.nanoTime(), intervalNanos);
+        int slot = (int) Math.floorMod(epoch, (long) intervals.length);
+        long held = intervalEpochs.get(slot);
+        if (held < epoch && intervalEpochs.compareAndSet(slot, held, epoch)) {
+            // A pause recorded into the slot during the reset may be lost; pauses are rare enough
+            intervals[slot].reset();
+        }
+        intervals[slot].record(nanos);
+    }
+
+    /**
+     * A histogram of the pauses recorded within the window, to interval precision.
+     */
+    public PauseHistogram snapshot() {
+        long epoch = Math.floorDiv(System.nanoTime(), intervalNanos);
+        PauseHistogram merged = new PauseHistogram();
+        for (int i = 0; i < intervals.length; i++) {
+            long held = intervalEpochs.get(i);
+            if (held > epoch - intervals.length && held <= epoch) {
+                merged.add(intervals[i]);
+            }
+        }
+        return merged;
+    }
+
+    public long getWindowNanos() {
+        return intervalNanos * intervals.length;
+    }
+
+    public void reset() {
+        for (int i = 0; i < intervals.length; i++) {
+            intervalEpochs.set(i, Long.MIN_VALUE);
+            intervals[i].reset();
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.gcsimulator.gc;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+/**
+ * Snapshot-at-the-beginning (SATB) barrier, as used by G1 and Shenandoah.
+ * While marking, every reference that is about to be overwritten is logged, so
+ * everything reachable when the mark started is still found. Objects allocated
+ * during the mark are live by definition and need no logging.
+ */
+public class SatbWriteBarrier extends QueueingWriteBarrier {
+
+    @Override
+    public void preWrite(SimulatedObject holder, SimulatedObject oldValue) {
+        if (enter() && oldValue != null) {
+            enqueue(oldValue);
+        }
+    }
+}
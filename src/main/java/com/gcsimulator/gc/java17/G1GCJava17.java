@@ -2,6 +2,7 @@ package com.gcsimulator.gc.java17;
 
 import com.gcsimulator.gc.*;
 import com.gcsimulator.gc.java8.G1GC;
+import com.gcsimulator.gc.java8.G1PausePredictor;
 import com.gcsimulator.model.jvm.JVMSimulator;
 
 /**
@@ -15,6 +16,11 @@ public class G1GCJava17 extends G1GC {
         return GCAlgorithm.G1_JAVA17;
     }
 
+    @Override
+    protected G1PausePredictor createPausePredictor() {
+        return new G1PausePredictorJava17();
+    }
+
     @Override
     public boolean collect() {
         // Java 17 improvements:
@@ -0,0 +1,37 @@
+package com.gcsimulator.gc.java17;
+
+import com.gcsimulator.gc.java8.G1PausePredictor;
+
+/**
+ * Java 17 G1 predictor: decaying averages padded by a share of the decaying
+ * standard deviation (G1ConfidencePercent), so recent pauses weigh more and
+ * noisy costs are predicted conservatively.
+ */
+public class G1PausePredictorJava17 extends G1PausePredictor {
+    private final double confidence;
+
+    public G1PausePredictorJava17() {
+        this(0.5);
+    }
+
+    /**
+     * @param confidence standard deviations added to each prediction
+     */
+    public G1PausePredictorJava17(double confidence) {
+        this.confidence = confidence;
+    }
+
+    @Override
+    public String getDescription() {
+        return String.format("decaying average + %.1f sigma", confidence);
+    }
+
+    @Override
+    protected double predict(Sequence sequence, double fallback) {
+        if (sequence.isEmpty()) {
+            return fallback;
+        }
+        // Never predict below the plain average, as HotSpot's G1Predictions
+        return Math.max(sequence.average(), sequence.decayingAverage() + confidence * sequence.decayingStdDev());
+    }
+}
@@ -3,19 +3,88 @@ package com.gcsimulator.gc.java17;
 import com.gcsimulator.gc.*;
 import com.gcsimulator.model.jvm.JVMSimulator;
 import com.gcsimulator.model.memory.*;
+import com.gcsimulator.model.objects.LoadBarrier;
 import com.gcsimulator.model.objects.SimulatedObject;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Shenandoah GC (Java 17): Low-latency collector with concurrent evacuation.
  * Uses Brooks forwarding pointers for concurrent compaction.
+ *
+ * The heap is split into regions, young and old objects alike. After a
+ * snapshot-at-the-beginning mark, the regions with the most garbage form the
+ * collection set, and their live objects are copied out while the application
+ * runs. Every object has a forwarding pointer; the collector and any mutator
+ * that loads a reference into the collection set race to evacuate the object,
+ * and whoever installs the forwarding pointer first wins. Update References
+ * then walks the heap and points every reference at the new copies, after
+ * which the collection set is recycled.
  */
 public class ShenandoahGC extends AbstractGarbageCollector {
-    private final Map<SimulatedObject, SimulatedObject> forwardingPointers;
+    protected static final int DRAIN_INTERVAL = 256; // Objects traced between SATB queue drains
+    protected static final double GARBAGE_THRESHOLD = 0.25; // Regions with more garbage than this join the collection set
+    private static final double TRIGGER_OCCUPANCY = 0.40; // Share of regions in use that starts a cycle
+
+    protected RegionHeap regionHeap;
+    protected final SatbWriteBarrier writeBarrier;
+    private LoadReferenceBarrier loadBarrier;
+    private final Deque<SimulatedObject> markQueue;
+    private Set<SimulatedObject> reachable; // Marked in the current cycle
+    private List<HeapRegion> markStartRegions; // Regions that were in use at Init Mark
+    private List<HeapRegion> immediateGarbage; // Regions without live objects, recycled before evacuation
+    private List<SimulatedObject> evacuationRoots; // Roots captured at Final Mark
+    private List<HeapRegion> degenerated; // Regions the concurrent cycle could not reclaim for lack of free space
+    private volatile Set<HeapRegion> collectionSet;
+    private volatile boolean evacuationInProgress;
+    private volatile boolean hasForwardedObjects; // Some references may still point at from-space copies
+    private final Queue<SimulatedObject> forwarded; // Forwarding pointers to reset at cleanup
+
+    private long evacuatedByCollector;
+    private final LongAdder evacuatedByMutators;
+    private final LongAdder racesLost;
 
     public ShenandoahGC() {
-        this.forwardingPointers = new HashMap<>();
+        this.writeBarrier = new SatbWriteBarrier();
+        this.markQueue = new ArrayDeque<>();
+        this.forwarded = new ConcurrentLinkedQueue<>();
+        this.evacuatedByMutators = new LongAdder();
+        this.racesLost = new LongAdder();
+        clearCycleState();
+    }
+
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+        this.regionHeap = jvm.getHeap().getRegionHeap();
+        this.loadBarrier = new LoadReferenceBarrier();
+        jvm.getBarrierSet().install(writeBarrier);
+        jvm.getBarrierSet().installLoadBarrier(loadBarrier);
+        clearCycleState();
+        log(String.format("Heap divided into %d regions of %d KB",
+                regionHeap.getRegionCount(), regionHeap.getRegionSize() / 1024));
+    }
+
+    @Override
+    protected RegionHeap createRegionHeap() {
+        Heap heap = jvm.getHeap();
+        return new RegionHeap(heap.getYoungGen().getCapacity() + heap.getOldGen().getCapacity());
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        writeBarrier.discard();
+        clearCycleState();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        writeBarrier.discard();
     }
 
     @Override
@@ -23,8 +92,33 @@ public class ShenandoahGC extends AbstractGarbageCollector {
         return GCAlgorithm.SHENANDOAH;
     }
 
+    public RegionHeap getRegionHeap() {
+        return regionHeap;
+    }
+
+    @Override
+    public boolean shouldCollect() {
+        return regionHeap.getFreeRegionCount() < regionHeap.getRegionCount() * (1 - TRIGGER_OCCUPANCY);
+    }
+
     @Override
     public boolean collect() {
+        return awaitCycle(collectAsync());
+    }
+
+    /**
+     * Start a cycle on the concurrent GC thread; the application keeps running
+     * between the stop-the-world phases.
+     */
+    @Override
+    public CompletableFuture<Boolean> collectAsync() {
+        return startConcurrentCycle(this::runCycle);
+    }
+
+    /**
+     * One complete collection cycle, run on the concurrent GC thread.
+     */
+    protected boolean runCycle() {
         long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
 
@@ -34,42 +128,61 @@ public class ShenandoahGC extends AbstractGarbageCollector {
                 "Shenandoah GC started",
                 null));
 
-        long totalPauseTime = 0;
         long bytesCollected = 0;
 
         // Phase 1: Init Mark (short STW)
-        long pause1Start = System.currentTimeMillis();
         log("Phase 1: Init Mark (Stop-The-World)");
-        Set<SimulatedObject> roots = initMark();
-        long pause1 = System.currentTimeMillis() - pause1Start;
-        totalPauseTime += pause1;
-        log("  Init mark completed in " + pause1 + "ms");
+        Set<SimulatedObject> roots = stopTheWorld("Pause Init Mark", this::initMark);
+        log("  Init mark completed in " + getLastPauseMs() + "ms");
 
         // Phase 2: Concurrent Mark
         log("Phase 2: Concurrent Mark (application running)");
-        Set<SimulatedObject> reachable = concurrentMark(roots);
+        concurrentPhase("Concurrent Mark", () -> concurrentMark(roots));
         log("  Concurrent mark completed");
 
         // Phase 3: Final Mark (short STW)
-        long pause2Start = System.currentTimeMillis();
         log("Phase 3: Final Mark (Stop-The-World)");
-        finalMark(reachable);
-        long pause2 = System.currentTimeMillis() - pause2Start;
-        totalPauseTime += pause2;
-        log("  Final mark completed in " + pause2 + "ms");
-
-        // Phase 4: Concurrent Evacuation
-        log("Phase 4: Concurrent Evacuation (application running)");
-        concurrentEvacuation(reachable);
+        stopTheWorld("Pause Final Mark", this::finalMark);
+        log("  Final mark completed in " + getLastPauseMs() + "ms");
+
+        // Phase 4: Concurrent Cleanup of regions without live objects
+        log("Phase 4: Concurrent Cleanup (application running)");
+        bytesCollected += concurrentPhase("Concurrent Cleanup", this::recycleImmediateGarbage);
+
+        // Phase 5: Concurrent Evacuation
+        log("Phase 5: Concurrent Evacuation (application running)");
+        concurrentPhase("Concurrent Evacuation", this::concurrentEvacuation);
         log("  Concurrent evacuation completed");
 
-        // Phase 5: Concurrent Cleanup
-        log("Phase 5: Concurrent Cleanup (application running)");
-        bytesCollected = concurrentCleanup(reachable);
-        log("  Concurrent cleanup completed");
+        // Phase 6: Init Update Refs (short STW)
+        log("Phase 6: Init Update Refs (Stop-The-World)");
+        stopTheWorld("Pause Init Update Refs", this::initUpdateRefs);
+        log("  Init update refs completed in " + getLastPauseMs() + "ms");
+
+        // Phase 7: Concurrent Update References
+        log("Phase 7: Concurrent Update References (application running)");
+        concurrentPhase("Concurrent Update References", this::concurrentUpdateReferences);
+
+        // Phase 8: Final Update Refs (short STW)
+        log("Phase 8: Final Update Refs (Stop-The-World)");
+        stopTheWorld("Pause Final Update Refs", this::finalUpdateRefs);
+        log("  Final update refs completed in " + getLastPauseMs() + "ms");
+
+        // Phase 9: Concurrent Cleanup of the collection set
+        log("Phase 9: Concurrent Cleanup (application running)");
+        bytesCollected += concurrentPhase("Concurrent Cleanup", this::recycleCollectionSet);
+
+        if (!degenerated.isEmpty()) {
+            // Degenerated GC: finish the work in a pause instead of failing allocations
+            log("Degenerated GC (Stop-The-World): compacting " + degenerated.size() + " regions in place");
+            bytesCollected += stopTheWorld("Pause Degenerated GC", this::compactDegenerated);
+            log("  Degenerated GC completed in " + getLastPauseMs() + "ms");
+        }
+        recordBarrierActivity(writeBarrier);
+        recordLoadBarrierActivity();
 
         long totalTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(totalPauseTime, bytesCollected);
+        long totalPauseTime = recordCollection(bytesCollected);
 
         log(String.format("Shenandoah completed: total=%dms, pause=%dms, collected=%d bytes",
                 totalTime, totalPauseTime, bytesCollected));
@@ -82,97 +195,523 @@ public class ShenandoahGC extends AbstractGarbageCollector {
     }
 
     private Set<SimulatedObject> initMark() {
-        Set<SimulatedObject> roots = new HashSet<>(jvm.getRootSet().getRoots());
-        for (SimulatedObject root : roots) {
-            root.setMarked(true);
+        // New objects go to fresh regions; only the regions in use now are marked and evacuated
+        recordMarkStart();
+        regionHeap.beginEvacuation();
+        statistics.recordHumongousAllocations(regionHeap.takeHumongousAllocations(),
+                regionHeap.takeHumongousBytesAllocated());
+        markStartRegions = new ArrayList<>();
+        for (HeapRegion region : regionHeap.getRegions()) {
+            if (!region.isFree()) {
+                markStartRegions.add(region);
+            }
+        }
+
+        Set<SimulatedObject> roots = new HashSet<>();
+        for (SimulatedObject root : markRoots()) {
+            if (isTraced(root)) {
+                root.setMarked(true);
+                roots.add(root);
+            }
         }
+        writeBarrier.activate();
         return roots;
     }
 
-    private Set<SimulatedObject> concurrentMark(Set<SimulatedObject> roots) {
-        Set<SimulatedObject> reachable = new HashSet<>();
-        Queue<SimulatedObject> queue = new LinkedList<>(roots);
-        reachable.addAll(roots);
+    /**
+     * Where the mark starts, called inside the Init Mark pause.
+     */
+    protected Collection<SimulatedObject> markRoots() {
+        return jvm.getRootSet().getRoots();
+    }
+
+    /**
+     * Whether the current cycle marks and collects this object. Shenandoah
+     * collects the whole heap; the generational mode narrows it down.
+     */
+    protected boolean isTraced(SimulatedObject obj) {
+        return true;
+    }
+
+    /**
+     * Whether the current cycle may reclaim or evacuate this region.
+     */
+    protected boolean isCollected(HeapRegion region) {
+        return true;
+    }
 
-        while (!queue.isEmpty()) {
-            SimulatedObject obj = queue.poll();
+    /**
+     * Trace from the roots while the application runs. References overwritten
+     * in the meantime are logged by the SATB barrier and marked as they come in.
+     */
+    private void concurrentMark(Set<SimulatedObject> roots) {
+        pacer.startPhase();
+        reachable = new HashSet<>(roots);
+        markQueue.clear();
+        markQueue.addAll(roots);
+
+        int traced = 0;
+        while (!markQueue.isEmpty()) {
+            SimulatedObject obj = markQueue.poll();
             for (SimulatedObject ref : obj.getReferences()) {
-                if (!reachable.contains(ref)) {
-                    reachable.add(ref);
-                    ref.setMarked(true);
-                    queue.add(ref);
-                }
+                markGrey(ref);
             }
 
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            pacer.step();
+            if (++traced % DRAIN_INTERVAL == 0 || markQueue.isEmpty()) {
+                writeBarrier.drainCompleted(Integer.MAX_VALUE, this::markGrey);
             }
         }
-
-        return reachable;
+        traceWork(traced, 0);
     }
 
-    private void finalMark(Set<SimulatedObject> reachable) {
-        // Re-scan modified objects
+    /**
+     * Final mark: flush the remaining SATB buffers, finish tracing and choose
+     * the collection set (STW).
+     */
+    private void finalMark() {
+        writeBarrier.deactivate();
+        int logged = writeBarrier.drainAll(this::markGrey);
         for (SimulatedObject root : jvm.getRootSet().getRoots()) {
-            if (!reachable.contains(root)) {
-                reachable.add(root);
+            markGrey(root);
+        }
+        while (!markQueue.isEmpty()) {
+            for (SimulatedObject ref : markQueue.poll().getReferences()) {
+                markGrey(ref);
             }
         }
+        log("  Drained " + logged + " SATB entries, " + reachable.size() + " objects marked");
+
+        markingFinished(reachable);
+        chooseCollectionSet();
+        evacuationRoots = new ArrayList<>(jvm.getRootSet().getRoots());
+        evacuationInProgress = true;
+        hasForwardedObjects = true;
     }
 
-    private void concurrentEvacuation(Set<SimulatedObject> reachable) {
-        // Evacuate (move) objects concurrently using Brooks pointers
-        log("  Using Brooks forwarding pointers for concurrent evacuation");
+    /**
+     * Called inside the Final Mark pause once marking is complete, before the
+     * collection set is chosen.
+     */
+    protected void markingFinished(Set<SimulatedObject> marked) {
+    }
 
-        forwardingPointers.clear();
+    private void markGrey(SimulatedObject obj) {
+        // Objects allocated since mark start are implicitly live and never traced
+        if (!isAllocatedSinceMarkStart(obj) && isTraced(obj) && reachable.add(obj)) {
+            obj.setMarked(true);
+            markQueue.add(obj);
+        }
+    }
 
-        // In a real implementation, objects would be copied to new locations
-        // and forwarding pointers would redirect references
-        for (SimulatedObject obj : reachable) {
-            // Simulate forwarding pointer (in reality, objects are copied)
-            forwardingPointers.put(obj, obj);
+    protected boolean isLive(SimulatedObject obj) {
+        return reachable.contains(obj) || isAllocatedSinceMarkStart(obj);
+    }
 
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    /**
+     * Regions whose garbage share exceeds the threshold form the collection
+     * set, most garbage first, as long as their live data fits the free regions.
+     * Regions without live objects are recycled right away instead. If not even
+     * one candidate fits, the cycle degenerates.
+     */
+    private void chooseCollectionSet() {
+        List<HeapRegion> collected = new ArrayList<>();
+        for (HeapRegion region : markStartRegions) {
+            if (!region.isFree() && region.getType() != HeapRegion.RegionType.HUMONGOUS && isCollected(region)) {
+                collected.add(region);
+            }
+        }
+        regionHeap.recordLiveness(collected, this::isLive);
+
+        immediateGarbage = new ArrayList<>();
+        List<HeapRegion> candidates = new ArrayList<>();
+        for (HeapRegion region : collected) {
+            if (region.getLiveBytes() == 0) {
+                immediateGarbage.add(region);
+            } else if (isCandidate(region)) {
+                candidates.add(region);
             }
         }
+        candidates.addAll(additionalCandidates());
+
+        candidates.sort(Comparator.comparingLong(HeapRegion::getGarbageBytes).reversed());
+        long budget = (regionHeap.getFreeRegionCount() + immediateGarbage.size()) * regionHeap.getRegionSize();
+        Set<HeapRegion> selected = new HashSet<>();
+        for (HeapRegion region : candidates) {
+            if (region.getLiveBytes() > budget) {
+                break;
+            }
+            budget -= region.getLiveBytes();
+            selected.add(region);
+        }
+        collectionSet = Set.copyOf(selected);
+        if (collectionSet.isEmpty()) {
+            degenerated.addAll(candidates);
+        }
+
+        log(String.format("  Collection set: %d of %d candidate regions, %d regions of immediate garbage",
+                collectionSet.size(), candidates.size(), immediateGarbage.size()));
     }
 
-    private long concurrentCleanup(Set<SimulatedObject> reachable) {
+    /**
+     * Whether a region with live objects is worth evacuating.
+     */
+    protected boolean isCandidate(HeapRegion region) {
+        return region.getGarbageRatio() > GARBAGE_THRESHOLD;
+    }
+
+    /**
+     * Regions outside the cycle's own marking to evacuate as well, with their
+     * live bytes already known.
+     */
+    protected Collection<HeapRegion> additionalCandidates() {
+        return List.of();
+    }
+
+    /**
+     * Free the regions that hold no live object and the dead humongous objects.
+     */
+    private long recycleImmediateGarbage() {
+        pacer.startPhase();
         long bytesCollected = 0;
+        for (HeapRegion region : immediateGarbage) {
+            bytesCollected += sweepDead(region);
+            regionHeap.freeRegion(region);
+            pacer.step();
+        }
+
+        int freedHumongous = 0;
+        long humongousBytes = 0;
+        for (HeapRegion region : markStartRegions) {
+            if (region.isHumongousStart()) {
+                SimulatedObject obj = region.getHumongousObject();
+                if (obj != null && isTraced(obj) && !isLive(obj)) {
+                    regionHeap.freeHumongous(region);
+                    collected(obj);
+                    freedHumongous++;
+                    humongousBytes += obj.getSize();
+                }
+            }
+        }
+        if (freedHumongous > 0) {
+            statistics.recordHumongousReclaim(freedHumongous, humongousBytes);
+            bytesCollected += humongousBytes;
+        }
 
-        // Clean up unreachable objects
-        OldGeneration oldGen = jvm.getHeap().getOldGen();
-        List<Object> toRemove = new ArrayList<>();
+        log(String.format("  Recycled %d regions of immediate garbage and %d humongous objects",
+                immediateGarbage.size(), freedHumongous));
+        return bytesCollected;
+    }
 
-        for (Object obj : oldGen.getTenured().getObjects()) {
-            if (obj instanceof SimulatedObject simObj && !reachable.contains(simObj)) {
-                toRemove.add(obj);
-                bytesCollected += simObj.getSize();
+    /**
+     * Copy the live objects out of the collection set while the application
+     * runs. Mutators that load a reference to an object the collector has not
+     * reached yet evacuate it themselves.
+     */
+    private void concurrentEvacuation() {
+        pacer.startPhase();
+        long collectorBefore = evacuatedByCollector;
+        long mutatorsBefore = evacuatedByMutators.sum();
+        long failuresBefore = regionHeap.getEvacuationFailures();
+
+        // Roots captured at Final Mark first, then the rest of the collection set
+        int evacuatedRoots = 0;
+        long visited = 0;
+        long bytesMoved = 0;
+        for (SimulatedObject root : evacuationRoots) {
+            if (root.getRegion() instanceof HeapRegion region && collectionSet.contains(region)
+                    && evacuate(root, region)) {
+                evacuatedRoots++;
+                evacuatedByCollector++;
+                bytesMoved += root.getSize();
             }
         }
+        log("  Evacuated " + evacuatedRoots + " root objects");
 
-        for (Object obj : toRemove) {
-            oldGen.getTenured().removeObject(obj);
-            if (obj instanceof SimulatedObject simObj) {
-                oldGen.getTenured().subtractUsed(simObj.getSize());
+        for (HeapRegion region : collectionSet) {
+            for (SimulatedObject obj : region.snapshotObjects()) {
+                if (isLive(obj) && evacuate(obj, region)) {
+                    evacuatedByCollector++;
+                    bytesMoved += obj.getSize();
+                }
+                visited++;
+                pacer.step();
             }
+        }
+        evacuationInProgress = false;
+        traceWork(visited, bytesMoved);
+
+        log(String.format("  Evacuated %d objects (%d by mutators, %d races lost)",
+                evacuatedByCollector - collectorBefore + evacuatedByMutators.sum() - mutatorsBefore,
+                evacuatedByMutators.sum() - mutatorsBefore, racesLost.sumThenReset()));
+        long failures = regionHeap.getEvacuationFailures() - failuresBefore;
+        if (failures > 0) {
+            log("  " + failures + " objects could not be evacuated and stay in place");
+        }
+    }
 
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    /**
+     * Evacuate an object unless another thread already did.
+     *
+     * @return true if this call's copy was installed
+     */
+    private boolean evacuate(SimulatedObject obj, HeapRegion from) {
+        if (obj.isForwarded()) {
+            return false;
+        }
+        if (regionHeap.evacuateConcurrently(obj, from, evacuationDestination(obj, from))) {
+            forwarded.add(obj);
+            evacuated(obj, from);
+            return true;
+        }
+        if (obj.getForwardee() == from) {
+            forwarded.add(obj); // Evacuation failure: forwarded to itself
+        } else {
+            racesLost.increment();
+        }
+        return false;
+    }
+
+    /**
+     * Type of the region an object is copied into.
+     */
+    protected HeapRegion.RegionType evacuationDestination(SimulatedObject obj, HeapRegion from) {
+        return HeapRegion.RegionType.EDEN;
+    }
+
+    /**
+     * Called by the thread whose copy of an object won.
+     */
+    protected void evacuated(SimulatedObject obj, HeapRegion from) {
+    }
+
+    private void initUpdateRefs() {
+        // Every live object of the collection set has been copied, and retiring
+        // the TLABs makes their objects visible to the heap walk.
+        log("  " + forwarded.size() + " objects forwarded");
+    }
+
+    /**
+     * Walk the live objects outside the collection set and point every
+     * reference to a forwarded object at its new copy.
+     */
+    protected void concurrentUpdateReferences() {
+        pacer.startPhase();
+        long updated = 0;
+        long visited = 0;
+        for (HeapRegion region : regionHeap.getRegions()) {
+            if (region.isFree()) {
+                continue;
+            }
+            for (SimulatedObject obj : region.snapshotObjects()) {
+                if (isLive(obj)) {
+                    updated += updateReferences(obj);
+                }
+                visited++;
+                pacer.step();
             }
         }
+        traceWork(visited, 0);
+        log("  Updated " + updated + " references");
+    }
 
+    /**
+     * Point the references of one object at the new copies.
+     *
+     * @return number of references updated
+     */
+    protected int updateReferences(SimulatedObject holder) {
+        int updated = 0;
+        for (Map.Entry<SimulatedObject, Long> ref : holder.getReferenceWords().entrySet()) {
+            SimulatedObject target = ref.getKey();
+            if (target.isForwarded()) {
+                long pointer = loadBarrier.pointer(target);
+                if (ref.getValue() != pointer && holder.healReference(target, ref.getValue(), pointer)) {
+                    updated++;
+                }
+            }
+        }
+        return updated;
+    }
+
+    private void finalUpdateRefs() {
+        // Stores since the walk already hold new addresses; only the roots are left
+        int updated = 0;
+        for (SimulatedObject root : jvm.getRootSet().getRoots()) {
+            if (root.isForwarded()) {
+                updated++;
+            }
+        }
+        hasForwardedObjects = false;
+        log("  Updated " + updated + " root references");
+    }
+
+    /**
+     * Recycle the collection set: its live objects have moved, so what is left
+     * is garbage, unless there was no room to evacuate it.
+     */
+    private long recycleCollectionSet() {
+        pacer.startPhase();
+        long bytesCollected = 0;
+        int freedRegions = 0;
+        for (HeapRegion region : collectionSet) {
+            bytesCollected += sweepDead(region);
+            if (region.getObjectCount() == 0) {
+                regionHeap.freeRegion(region);
+                freedRegions++;
+            } else {
+                degenerated.add(region); // Evacuation failed for some of its objects
+            }
+            pacer.step();
+        }
+
+        SimulatedObject obj;
+        while ((obj = forwarded.poll()) != null) {
+            obj.clearForwardee();
+        }
+        log(String.format("  Recycled %d of %d collection set regions", freedRegions, collectionSet.size()));
+
+        collectionSet = Set.of();
+        evacuationRoots = new ArrayList<>();
+        if (degenerated.isEmpty()) {
+            finishMarking();
+        }
         return bytesCollected;
     }
+
+    /**
+     * Sliding compaction of the regions the concurrent cycle left behind: the
+     * live objects of each region are moved into the one before it until that
+     * is full, and a region that cannot be emptied is compacted in place and
+     * takes the remaining objects (STW).
+     */
+    private long compactDegenerated() {
+        long bytesCollected = 0;
+        int freedRegions = 0;
+        degenerated.sort(Comparator.comparingInt(HeapRegion::getIndex));
+        for (HeapRegion region : degenerated) {
+            bytesCollected += sweepDead(region);
+            HeapRegion.RegionType type = region.getType();
+            for (SimulatedObject obj : region.snapshotObjects()) {
+                if (!regionHeap.evacuate(obj, region, evacuationDestination(obj, region))) {
+                    break;
+                }
+                evacuated(obj, region);
+            }
+            if (region.getObjectCount() == 0) {
+                regionHeap.freeRegion(region);
+                freedRegions++;
+            } else {
+                regionHeap.relocateInPlace(region, type);
+            }
+        }
+        log("  Freed " + freedRegions + " regions");
+        degenerated = new ArrayList<>();
+        finishMarking();
+        return bytesCollected;
+    }
+
+    /**
+     * Remove the dead objects of a region.
+     *
+     * @return bytes freed
+     */
+    protected long sweepDead(HeapRegion region) {
+        return region.removeIf(obj -> {
+            if (isLive(obj)) {
+                obj.setMarked(false);
+                return false;
+            }
+            collected(obj);
+            return true;
+        });
+    }
+
+    private void finishMarking() {
+        for (SimulatedObject live : reachable) {
+            live.setMarked(false);
+        }
+        reachable = new HashSet<>();
+    }
+
+    private void recordLoadBarrierActivity() {
+        long loads = loadBarrier.loads.sumThenReset();
+        long slowPaths = loadBarrier.slowPaths.sumThenReset();
+        long slowPathNanos = loadBarrier.slowPathNanos.sumThenReset();
+        statistics.recordLoadBarrierActivity(loads, slowPaths, slowPathNanos);
+        log(String.format("  Load reference barrier: %d loads, %d slow paths (%.2f%%), %.3fms in slow paths",
+                loads, slowPaths, loads > 0 ? slowPaths * 100.0 / loads : 0.0, slowPathNanos / 1_000_000.0));
+    }
+
+    protected void collected(SimulatedObject obj) {
+        jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED, obj);
+    }
+
+    private void clearCycleState() {
+        markQueue.clear();
+        reachable = new HashSet<>();
+        markStartRegions = new ArrayList<>();
+        immediateGarbage = new ArrayList<>();
+        evacuationRoots = new ArrayList<>();
+        degenerated = new ArrayList<>();
+        collectionSet = Set.of();
+        evacuationInProgress = false;
+        hasForwardedObjects = false;
+        SimulatedObject obj;
+        while ((obj = forwarded.poll()) != null) {
+            obj.clearForwardee();
+        }
+    }
+
+    /**
+     * Shenandoah's load reference barrier. Reference words hold the object's
+     * address; while forwarded objects exist, a load of a reference into the
+     * collection set takes the slow path, which evacuates the object if no
+     * thread has yet and heals the slot with the address of the copy.
+     */
+    private class LoadReferenceBarrier implements LoadBarrier {
+        private final LongAdder loads = new LongAdder();
+        private final LongAdder slowPaths = new LongAdder();
+        private final LongAdder slowPathNanos = new LongAdder();
+
+        @Override
+        public long encode(SimulatedObject target) {
+            return pointer(target);
+        }
+
+        @Override
+        public void onLoad(SimulatedObject holder, SimulatedObject target, long word) {
+            loads.increment();
+            if (!hasForwardedObjects) {
+                return;
+            }
+            MemoryRegion region = target.getRegion();
+            boolean inCollectionSet = region instanceof HeapRegion heapRegion && collectionSet.contains(heapRegion);
+            if (!inCollectionSet && (!target.isForwarded() || word == pointer(target))) {
+                return; // Neither a from-space object nor a stale slot
+            }
+
+            long start = System.nanoTime();
+            if (inCollectionSet && evacuationInProgress && evacuate(target, (HeapRegion) region)) {
+                evacuatedByMutators.increment();
+            }
+            long healed = pointer(target);
+            if (word != healed) {
+                holder.healReference(target, word, healed);
+            }
+            slowPaths.increment();
+            slowPathNanos.add(System.nanoTime() - start);
+        }
+
+        /**
+         * Address of an object in the heap, or -1 while it has none, e.g. in a TLAB.
+         */
+        long pointer(SimulatedObject obj) {
+            MemoryRegion region = obj.getRegion();
+            if (region instanceof HeapRegion heapRegion && obj.getAddress() >= 0) {
+                return heapRegion.getIndex() * regionHeap.getRegionSize() + obj.getAddress();
+            }
+            return -1;
+        }
+    }
 }
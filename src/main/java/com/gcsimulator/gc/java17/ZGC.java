@@ -6,25 +6,87 @@ import com.gcsimulator.model.memory.*;
 import com.gcsimulator.model.objects.SimulatedObject;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * ZGC (Java 17): Scalable low-latency garbage collector.
  * Uses colored pointers and load barriers for concurrent operations.
  * Non-generational version (generational comes in Java 21).
+ *
+ * The heap is split into pages, and every reference word carries a
+ * {@link ColoredPointer} color. The application reads references through a
+ * load barrier: during marking a stale pointer marks the object it refers to,
+ * while a relocation is running it relocates the object if its page is being
+ * evacuated, and the slot is healed to the good color either way. Live objects
+ * on pages with enough garbage are relocated concurrently, the roots' objects
+ * first, so Pause Relocate Start only publishes the relocation set and flips
+ * the good color, however many roots there are; each page's
+ * forwarding table is kept until the next marking has remapped every pointer
+ * that still refers to an old location.
  */
 public class ZGC extends AbstractGarbageCollector {
     private static final int MAX_PAUSE_MS = 10; // Target max pause time
+    private static final long PAGE_SIZE = 2 * 1024 * 1024; // Small pages; objects above half a page get a large page
+    private static final double FRAGMENTATION_LIMIT = 0.25; // Pages with more garbage than this are relocated
+    private static final double TRIGGER_OCCUPANCY = 0.40; // Share of pages in use that starts a cycle
 
-    private enum PointerColor {
-        MARKED_0, MARKED_1, REMAPPED
-    }
+    private RegionHeap regionHeap;
+    private ZLoadBarrier loadBarrier;
+    private volatile boolean marking;
+    private long markColor; // Good color of the current marking, Marked0 or Marked1
+    private Set<SimulatedObject> markRoots; // Roots captured at Pause Mark Start
+    private List<HeapRegion> markStartPages; // Pages that were in use at Pause Mark Start
+    private final Set<SimulatedObject> marked; // Objects marked in the current cycle
+    private final Queue<SimulatedObject> markQueue; // Filled by the collector and by the load barrier
+    private List<HeapRegion> selectedPages; // Relocation set, chosen concurrently and published at Pause Relocate Start
+    private volatile Map<HeapRegion, ForwardingTable> relocationSet;
+    private volatile Map<HeapRegion, ForwardingTable> previousRelocationSet; // Remapped by the next marking
 
-    private PointerColor currentColor;
-    private final Map<SimulatedObject, PointerColor> coloredPointers;
+    private long relocatedByCollector;
+    private final LongAdder relocatedByMutators;
+    private final LongAdder remapped;
+    private final LongAdder relocationFailures; // Objects left in place because no page had room
 
     public ZGC() {
-        this.currentColor = PointerColor.MARKED_0;
-        this.coloredPointers = new HashMap<>();
+        this.markColor = ColoredPointer.MARKED1;
+        this.markRoots = new HashSet<>();
+        this.markStartPages = new ArrayList<>();
+        this.marked = ConcurrentHashMap.newKeySet();
+        this.markQueue = new ConcurrentLinkedQueue<>();
+        this.selectedPages = new ArrayList<>();
+        this.relocationSet = Map.of();
+        this.previousRelocationSet = Map.of();
+        this.relocatedByMutators = new LongAdder();
+        this.remapped = new LongAdder();
+        this.relocationFailures = new LongAdder();
+    }
+
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+        this.regionHeap = jvm.getHeap().getRegionHeap();
+        this.loadBarrier = new ZLoadBarrier(regionHeap);
+        jvm.getBarrierSet().installLoadBarrier(loadBarrier);
+        clearCycleState();
+        log(String.format("Heap divided into %d pages of %d KB",
+                regionHeap.getRegionCount(), regionHeap.getRegionSize() / 1024));
+    }
+
+    @Override
+    protected RegionHeap createRegionHeap() {
+        Heap heap = jvm.getHeap();
+        long heapSize = heap.getYoungGen().getCapacity() + heap.getOldGen().getCapacity();
+        return new RegionHeap(PAGE_SIZE, (int) Math.max(1, heapSize / PAGE_SIZE));
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        clearCycleState();
     }
 
     @Override
@@ -32,8 +94,33 @@ public class ZGC extends AbstractGarbageCollector {
         return GCAlgorithm.ZGC_JAVA17;
     }
 
+    public RegionHeap getRegionHeap() {
+        return regionHeap;
+    }
+
+    @Override
+    public boolean shouldCollect() {
+        return regionHeap.getFreeRegionCount() < regionHeap.getRegionCount() * (1 - TRIGGER_OCCUPANCY);
+    }
+
     @Override
     public boolean collect() {
+        return awaitCycle(collectAsync());
+    }
+
+    /**
+     * Start a cycle on the concurrent GC thread; the application keeps running
+     * between the stop-the-world phases.
+     */
+    @Override
+    public CompletableFuture<Boolean> collectAsync() {
+        return startConcurrentCycle(this::runCycle);
+    }
+
+    /**
+     * One complete collection cycle, run on the concurrent GC thread.
+     */
+    private boolean runCycle() {
         long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
 
@@ -43,40 +130,42 @@ public class ZGC extends AbstractGarbageCollector {
                 "ZGC started",
                 null));
 
-        long totalPauseTime = 0;
         long bytesCollected = 0;
 
         // Phase 1: Pause Mark Start (very short STW)
-        long pause1Start = System.currentTimeMillis();
         log("Phase 1: Pause Mark Start (Stop-The-World)");
-        pauseMarkStart();
-        long pause1 = System.currentTimeMillis() - pause1Start;
-        totalPauseTime += pause1;
-        log("  Completed in " + pause1 + "ms");
+        stopTheWorld("Pause Mark Start", this::pauseMarkStart);
+        log("  Completed in " + getLastPauseMs() + "ms, good color " + ColoredPointer.colorName(markColor));
 
         // Phase 2: Concurrent Mark
         log("Phase 2: Concurrent Mark (application running)");
-        concurrentMark();
+        concurrentPhase("Concurrent Mark", this::concurrentMark);
         log("  Concurrent mark completed");
 
         // Phase 3: Pause Mark End (very short STW)
-        long pause2Start = System.currentTimeMillis();
         log("Phase 3: Pause Mark End (Stop-The-World)");
-        pauseMarkEnd();
-        long pause2 = System.currentTimeMillis() - pause2Start;
-        totalPauseTime += pause2;
-        log("  Completed in " + pause2 + "ms");
+        stopTheWorld("Pause Mark End", this::pauseMarkEnd);
+        log("  Completed in " + getLastPauseMs() + "ms, " + marked.size() + " objects marked");
+
+        // Phase 4: Concurrent Prepare for Relocate
+        log("Phase 4: Concurrent Prepare for Relocate (application running)");
+        bytesCollected += concurrentPhase("Concurrent Prepare for Relocate", this::prepareRelocationSet);
 
-        // Phase 4: Concurrent Process/Relocate
-        log("Phase 4: Concurrent Relocate (application running)");
-        bytesCollected = concurrentRelocate();
-        log("  Concurrent relocate completed");
+        // Phase 5: Pause Relocate Start (very short STW)
+        log("Phase 5: Pause Relocate Start (Stop-The-World)");
+        stopTheWorld("Pause Relocate Start", this::pauseRelocateStart);
+        log("  Completed in " + getLastPauseMs() + "ms, good color Remapped");
+
+        // Phase 6: Concurrent Relocate
+        log("Phase 6: Concurrent Relocate (application running)");
+        bytesCollected += concurrentPhase("Concurrent Relocate", this::concurrentRelocate);
+        recordBarrierActivity(loadBarrier);
 
         long totalTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(totalPauseTime, bytesCollected);
+        long totalPauseTime = recordCollection(bytesCollected);
 
         log(String.format("ZGC completed: total=%dms, pause=%dms (%.1f%% pause), collected=%d bytes",
-                totalTime, totalPauseTime, (totalPauseTime * 100.0 / totalTime), bytesCollected));
+                totalTime, totalPauseTime, (totalPauseTime * 100.0 / Math.max(1, totalTime)), bytesCollected));
         jvm.fireEvent(new JVMSimulator.JVMEvent(
                 JVMSimulator.JVMEvent.EventType.GC_COMPLETED,
                 "ZGC completed",
@@ -86,83 +175,266 @@ public class ZGC extends AbstractGarbageCollector {
     }
 
     private void pauseMarkStart() {
-        // Initialize marking with root set
-        for (SimulatedObject root : jvm.getRootSet().getRoots()) {
-            coloredPointers.put(root, currentColor);
+        // New objects go to fresh pages; only the pages in use now are marked and relocated
+        recordMarkStart();
+        regionHeap.beginEvacuation();
+        statistics.recordHumongousAllocations(regionHeap.takeHumongousAllocations(),
+                regionHeap.takeHumongousBytesAllocated());
+        markStartPages = new ArrayList<>();
+        for (HeapRegion page : regionHeap.getRegions()) {
+            if (!page.isFree()) {
+                markStartPages.add(page);
+            }
         }
+
+        // Flip the mark color: every pointer healed by the last cycle is stale again
+        markColor = markColor == ColoredPointer.MARKED0 ? ColoredPointer.MARKED1 : ColoredPointer.MARKED0;
+        loadBarrier.setGoodColor(markColor);
+
+        // Initialize marking with root set
+        marked.clear();
+        markQueue.clear();
+        markRoots = new HashSet<>(jvm.getRootSet().getRoots());
+        marking = true;
     }
 
     private void concurrentMark() {
+        pacer.startPhase();
         // Mark all reachable objects while application runs
-        Queue<SimulatedObject> queue = new LinkedList<>();
-        Set<SimulatedObject> visited = new HashSet<>();
+        for (SimulatedObject root : markRoots) {
+            markObject(root);
+        }
+        drainMarkQueue(true);
+    }
 
-        for (SimulatedObject root : jvm.getRootSet().getRoots()) {
-            queue.add(root);
-            visited.add(root);
+    /**
+     * Trace marked objects, healing every reference on the way: stale pointers
+     * left by the last relocation are remapped and recolored.
+     */
+    private void drainMarkQueue(boolean paced) {
+        SimulatedObject obj;
+        long visited = 0;
+        while ((obj = markQueue.poll()) != null) {
+            for (Map.Entry<SimulatedObject, Long> ref : obj.getReferenceWords().entrySet()) {
+                loadBarrier.heal(obj, ref.getKey(), ref.getValue());
+                markObject(ref.getKey());
+            }
+            visited++;
+            if (paced) {
+                pacer.step();
+            }
         }
+        traceWork(visited, 0);
+    }
 
-        while (!queue.isEmpty()) {
-            SimulatedObject obj = queue.poll();
-            coloredPointers.put(obj, currentColor);
+    private void markObject(SimulatedObject obj) {
+        // Objects allocated since mark start are implicitly live and never traced
+        if (!isAllocatedSinceMarkStart(obj) && marked.add(obj)) {
+            markQueue.add(obj);
+        }
+    }
 
-            for (SimulatedObject ref : obj.getReferences()) {
-                if (!visited.contains(ref)) {
-                    visited.add(ref);
-                    queue.add(ref);
+    private void pauseMarkEnd() {
+        // Finalize marking: trace what the load barrier marked after the concurrent phase
+        drainMarkQueue(false);
+        marking = false;
+
+        // Every live pointer has been remapped, the last cycle's forwarding tables can go
+        previousRelocationSet = Map.of();
+        log("  Remapped " + remapped.sumThenReset() + " stale pointers");
+    }
+
+    /**
+     * Free pages without live objects and dead large objects, and pick the
+     * pages with the most garbage for relocation.
+     */
+    private long prepareRelocationSet() {
+        pacer.startPhase();
+        Predicate<SimulatedObject> isLive = obj -> marked.contains(obj) || isAllocatedSinceMarkStart(obj);
+        regionHeap.recordLiveness(markStartPages, isLive);
+
+        long bytesCollected = 0;
+        int freedPages = 0;
+        int freedLarge = 0;
+        long largeBytes = 0;
+        List<HeapRegion> candidates = new ArrayList<>();
+        for (HeapRegion page : markStartPages) {
+            if (page.isHumongousStart()) {
+                SimulatedObject obj = page.getHumongousObject();
+                if (obj != null && !isLive.test(obj)) {
+                    freedPages += regionHeap.freeHumongous(page).size();
+                    collected(obj);
+                    freedLarge++;
+                    largeBytes += obj.getSize();
+                }
+            } else if (!page.isFree() && page.getType() != HeapRegion.RegionType.HUMONGOUS) {
+                if (page.getLiveBytes() == 0) {
+                    bytesCollected += sweep(page, Set.of());
+                    regionHeap.freeRegion(page);
+                    freedPages++;
+                } else if (page.getGarbageRatio() > FRAGMENTATION_LIMIT) {
+                    candidates.add(page);
                 }
             }
+            pacer.step();
+        }
+
+        if (freedLarge > 0) {
+            statistics.recordHumongousReclaim(freedLarge, largeBytes);
+            bytesCollected += largeBytes;
+        }
 
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+        // Most garbage first, as long as the live data fits the free pages
+        candidates.sort(Comparator.comparingLong(HeapRegion::getGarbageBytes).reversed());
+        long budget = regionHeap.getFreeRegionCount() * regionHeap.getRegionSize();
+        selectedPages = new ArrayList<>();
+        for (HeapRegion page : candidates) {
+            if (page.getLiveBytes() > budget) {
+                break;
             }
+            budget -= page.getLiveBytes();
+            selectedPages.add(page);
         }
+
+        log(String.format("  Freed %d empty pages, relocation set: %d of %d candidate pages",
+                freedPages, selectedPages.size(), candidates.size()));
+        return bytesCollected;
     }
 
-    private void pauseMarkEnd() {
-        // Finalize marking
-        // Flip color for next cycle
-        currentColor = (currentColor == PointerColor.MARKED_0) ? PointerColor.MARKED_1 : PointerColor.MARKED_0;
+    private void pauseRelocateStart() {
+        Map<HeapRegion, ForwardingTable> tables = new ConcurrentHashMap<>();
+        for (HeapRegion page : selectedPages) {
+            tables.put(page, new ForwardingTable(page, loadBarrier.pageStart(page)));
+        }
+        relocationSet = tables;
+        loadBarrier.setGoodColor(ColoredPointer.REMAPPED);
     }
 
     private long concurrentRelocate() {
+        pacer.startPhase();
         // Relocate (evacuate) objects from pages with most garbage
         long bytesCollected = 0;
+        long mutatorsBefore = relocatedByMutators.sum();
+        long failuresBefore = relocationFailures.sum();
+        long collectorBefore = relocatedByCollector;
+        int freedPages = 0;
+        long visited = 0;
+        long bytesMoved = 0;
 
-        OldGeneration oldGen = jvm.getHeap().getOldGen();
-        YoungGeneration youngGen = jvm.getHeap().getYoungGen();
+        // Roots first: mutators are most likely to touch them next
+        int relocatedRoots = 0;
+        for (SimulatedObject root : markRoots) {
+            ForwardingTable table = root.getRegion() != null ? relocationSet.get(root.getRegion()) : null;
+            if (table != null && relocate(table, root)) {
+                relocatedRoots++;
+                relocatedByCollector++;
+                bytesMoved += root.getSize();
+            }
+            pacer.step();
+        }
+        log("  Relocated " + relocatedRoots + " root objects");
 
-        // Collect from old gen
-        List<Object> toRemove = new ArrayList<>();
-        for (Object obj : oldGen.getTenured().getObjects()) {
-            if (obj instanceof SimulatedObject simObj) {
-                if (!coloredPointers.containsKey(simObj)) {
-                    toRemove.add(obj);
-                    bytesCollected += simObj.getSize();
+        for (HeapRegion page : selectedPages) {
+            ForwardingTable table = relocationSet.get(page);
+            for (SimulatedObject obj : page.snapshotObjects()) {
+                if (marked.contains(obj) && relocate(table, obj)) {
+                    relocatedByCollector++;
+                    bytesMoved += obj.getSize();
                 }
+                visited++;
+                pacer.step();
             }
 
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            // Whatever is left is garbage, unless there was no room to relocate it
+            bytesCollected += sweep(page, marked);
+            if (page.getObjectCount() == 0) {
+                regionHeap.freeRegion(page);
+                freedPages++;
             }
         }
 
-        for (Object obj : toRemove) {
-            oldGen.getTenured().removeObject(obj);
-            if (obj instanceof SimulatedObject simObj) {
-                oldGen.getTenured().subtractUsed(simObj.getSize());
-                coloredPointers.remove(simObj);
+        traceWork(visited, bytesMoved);
+
+        // Stale pointers into the freed pages are remapped by the load barrier or the next marking
+        previousRelocationSet = relocationSet;
+        relocationSet = Map.of();
+
+        log(String.format("  Relocated %d objects (%d by the load barrier), freed %d pages",
+                relocatedByCollector - collectorBefore, relocatedByMutators.sum() - mutatorsBefore, freedPages));
+        long failures = relocationFailures.sum() - failuresBefore;
+        if (failures > 0) {
+            log("  " + failures + " objects could not be relocated and stay in place");
+        }
+        return bytesCollected;
+    }
+
+    /**
+     * Move an object out of a relocation-set page, unless another thread already did.
+     *
+     * @return true if this call relocated the object
+     */
+    private boolean relocate(ForwardingTable table, SimulatedObject obj) {
+        synchronized (table) {
+            if (obj.getRegion() != table.getPage()) {
+                return false;
+            }
+            long oldOffset = loadBarrier.heapOffset(obj);
+            if (!regionHeap.evacuate(obj, table.getPage(), HeapRegion.RegionType.EDEN)) {
+                relocationFailures.increment();
+                return false;
             }
+            table.insert(oldOffset, obj, loadBarrier.heapOffset(obj));
+            return true;
         }
+    }
 
-        log("  Relocated objects concurrently (using load barriers)");
+    private void collected(SimulatedObject obj) {
+        jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED, obj);
+    }
 
-        return bytesCollected;
+    private void clearCycleState() {
+        marking = false;
+        marked.clear();
+        markQueue.clear();
+        markStartPages = new ArrayList<>();
+        selectedPages = new ArrayList<>();
+        relocationSet = Map.of();
+        previousRelocationSet = Map.of();
+        if (loadBarrier != null) {
+            loadBarrier.setGoodColor(ColoredPointer.REMAPPED);
+        }
+    }
+
+    /**
+     * ZGC's load barrier slow path.
+     */
+    private class ZLoadBarrier extends ColoredPointerBarrier {
+        ZLoadBarrier(RegionHeap heap) {
+            super(heap);
+        }
+
+        @Override
+        protected long slowPath(SimulatedObject target, long word) {
+            long offset = ColoredPointer.offset(word);
+            HeapRegion page = pageAt(offset);
+            if (page != null) {
+                ForwardingTable table = relocationSet.get(page);
+                if (table != null) {
+                    // Relocation in progress: relocate the object now if the collector has not yet
+                    if (table.find(offset, target) == null && relocate(table, target)) {
+                        relocatedByMutators.increment();
+                    }
+                } else {
+                    table = previousRelocationSet.get(page);
+                    if (table != null && table.find(offset, target) != null) {
+                        remapped.increment();
+                    }
+                }
+            }
+            if (marking) {
+                markObject(target);
+            }
+            return ColoredPointer.encode(heapOffset(target), getGoodColor());
+        }
     }
 }
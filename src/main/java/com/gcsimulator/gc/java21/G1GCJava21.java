@@ -2,6 +2,7 @@ package com.gcsimulator.gc.java21;
 
 import com.gcsimulator.gc.*;
 import com.gcsimulator.gc.java17.G1GCJava17;
+import com.gcsimulator.gc.java8.G1PausePredictor;
 
 /**
  * G1 GC Java 21: Latest improvements including better NUMA support
@@ -14,6 +15,11 @@ public class G1GCJava21 extends G1GCJava17 {
         return GCAlgorithm.G1_JAVA21;
     }
 
+    @Override
+    protected G1PausePredictor createPausePredictor() {
+        return new G1PausePredictorJava21();
+    }
+
     @Override
     public boolean collect() {
         log("Using Java 21 G1 enhancements (optimized card tables, better NUMA)");
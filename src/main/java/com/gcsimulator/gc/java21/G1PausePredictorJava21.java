@@ -0,0 +1,80 @@
+package com.gcsimulator.gc.java21;
+
+import com.gcsimulator.gc.java17.G1PausePredictorJava17;
+import com.gcsimulator.model.memory.HeapRegion;
+
+import java.util.List;
+
+/**
+ * Java 21 G1 predictor: keeps separate copy costs for young and old regions
+ * (old regions are colder and have more incoming references to fix up) and
+ * learns a fixed per-region overhead, so that collection sets with many
+ * nearly empty regions are no longer predicted as free.
+ */
+public class G1PausePredictorJava21 extends G1PausePredictorJava17 {
+    protected final Sequence oldCopyMsPerByte = new Sequence(HISTORY);
+    protected final Sequence regionOverheadMs = new Sequence(HISTORY);
+
+    @Override
+    public String getDescription() {
+        return super.getDescription() + ", young/old copy costs, per-region overhead";
+    }
+
+    @Override
+    public void recordPause(double pauseFixedMs, List<RegionCost> regions) {
+        fixedMs.add(pauseFixedMs);
+
+        double overhead = predict(regionOverheadMs, 0.0);
+        long youngUsed = 0;
+        long youngCopied = 0;
+        long[] copied = new long[2]; // young, old
+        double[] copyMs = new double[2];
+        double emptyMs = 0;
+        int emptyRegions = 0;
+        for (RegionCost region : regions) {
+            int kind = region.isYoung() ? 0 : 1;
+            if (region.getCopiedBytes() == 0) {
+                emptyMs += region.getMs();
+                emptyRegions++;
+            } else {
+                copied[kind] += region.getCopiedBytes();
+                copyMs[kind] += Math.max(0, region.getMs() - overhead);
+            }
+            if (region.isYoung()) {
+                youngUsed += region.getUsedBytes();
+                youngCopied += region.getCopiedBytes();
+            }
+        }
+
+        if (emptyRegions > 0) {
+            regionOverheadMs.add(emptyMs / emptyRegions);
+        }
+        if (copied[0] > 0) {
+            copyMsPerByte.add(copyMs[0] / copied[0]);
+        }
+        if (copied[1] > 0) {
+            oldCopyMsPerByte.add(copyMs[1] / copied[1]);
+        }
+        if (youngUsed > 0) {
+            youngSurvivalRate.add((double) youngCopied / youngUsed);
+        }
+    }
+
+    @Override
+    public double predictRegionMs(HeapRegion region) {
+        return predict(regionOverheadMs, 0.0) + super.predictRegionMs(region);
+    }
+
+    @Override
+    public double predictYoungRegionMs(long regionSize) {
+        return predict(regionOverheadMs, 0.0) + super.predictYoungRegionMs(regionSize);
+    }
+
+    @Override
+    protected double predictCopyMsPerByte(boolean young) {
+        if (!young && !oldCopyMsPerByte.isEmpty()) {
+            return predict(oldCopyMsPerByte, 0.0);
+        }
+        return super.predictCopyMsPerByte(young);
+    }
+}
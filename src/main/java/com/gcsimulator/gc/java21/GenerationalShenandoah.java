@@ -3,24 +3,591 @@ package com.gcsimulator.gc.java21;
 import com.gcsimulator.gc.*;
 import com.gcsimulator.gc.java17.ShenandoahGC;
 import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.memory.*;
+import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.model.objects.WriteBarrier;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Generational Shenandoah (Java 21): Shenandoah with generational mode.
  * Separates young and old objects for better throughput.
+ *
+ * Every cycle is a young collection: it marks only young objects, starting
+ * from the roots and the old objects on dirty cards, and evacuates only young
+ * regions. Survivors age by one per cycle, also when their region is not
+ * evacuated, and are promoted into old regions at the tenuring threshold,
+ * which adapts to the mortality of each age cohort. A young region with
+ * little garbage whose live objects are all old enough is promoted in place.
+ *
+ * The old generation is marked concurrently, bootstrapped by a young
+ * collection and resumed after each one. The old mark yields whenever a young
+ * collection is due. Once it completes, old regions without live objects are
+ * freed, dead objects in lightly fragmented ones are swept in place, and the
+ * most fragmented ones join the following young collections in batches
+ * (mixed collections).
  */
 public class GenerationalShenandoah extends ShenandoahGC {
+    private static final int INITIAL_TENURING_THRESHOLD = 7;
+    private static final int MAX_AGE = 15;
+    private static final double MAX_COHORT_MORTALITY = 0.10; // Cohorts dying faster than this stay young
+    private static final double OLD_GROWTH_TRIGGER = 0.15; // Old generation growth, as a share of the heap, that starts an old mark
+    private static final double OLD_FREE_TRIGGER = 0.10; // Share of free regions below which an old mark starts
+    private static final int OLD_MARK_SLICE = 8192; // Objects the old mark traces before it may yield to a young collection
+    private static final int MIXED_CYCLES = 4; // Young collections the old candidates are spread over
+
+    private final SatbWriteBarrier oldMarkBarrier;
+    private final Set<SimulatedObject> oldMarked; // Old mark result, plus objects promoted since
+    private final Deque<SimulatedObject> oldMarkQueue;
+    private volatile boolean oldMarking;
+    private volatile boolean oldMarkRequested;
+    private long oldMarkStartId;
+    private int oldRegionsAfterLastMark;
+
+    private List<SimulatedObject> cardHolders; // Old objects on the dirty cards scanned at Init Mark
+    private final Queue<SimulatedObject> promoted; // Promoted in the current cycle
+    private final LongAdder promotedBytes;
+    private Deque<HeapRegion> mixedCandidates; // Fragmented old regions found by the last old mark
+    private int mixedBatchSize;
+    private List<HeapRegion> mixedBatch; // Old regions added to the current collection
+    private long[] survivorCensus; // Live young bytes by age that stayed young in the last cycle
+
+    public GenerationalShenandoah() {
+        this.oldMarkBarrier = new SatbWriteBarrier();
+        this.oldMarked = ConcurrentHashMap.newKeySet();
+        this.oldMarkQueue = new ConcurrentLinkedDeque<>();
+        this.promoted = new ConcurrentLinkedQueue<>();
+        this.promotedBytes = new LongAdder();
+        clearGenerationalState();
+    }
+
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+
+        // Cards for every region; only stores of young references into old objects dirty them
+        CardTable table = new CardTable();
+        for (HeapRegion region : regionHeap.getRegions()) {
+            table.cover(region);
+        }
+        installCardTable(table, (holder, newValue) -> newValue != null && isOld(holder) && !isOld(newValue));
+        jvm.getBarrierSet().install(new GenerationalStoreBarrier(jvm.getBarrierSet().getBarrier()));
+        clearGenerationalState();
+        log(String.format("Generational mode: young target %d regions, tenuring threshold %d",
+                regionHeap.getYoungTargetRegions(), tenuringThreshold));
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        oldMarkBarrier.discard();
+        clearGenerationalState();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        oldMarkBarrier.discard();
+    }
 
     @Override
     public GCAlgorithm getAlgorithm() {
         return GCAlgorithm.GENERATIONAL_SHENANDOAH;
     }
 
+    public boolean isOldMarkInProgress() {
+        return oldMarking;
+    }
+
+    public int getTenuringThreshold() {
+        return tenuringThreshold;
+    }
+
+    @Override
+    public boolean shouldCollect() {
+        return youngCollectionNeeded();
+    }
+
+    private boolean youngCollectionNeeded() {
+        return regionHeap.countRegions(HeapRegion.RegionType.EDEN) >= regionHeap.getYoungTargetRegions()
+                || regionHeap.getFreeRegionCount() < regionHeap.getRegionCount() * OLD_FREE_TRIGGER;
+    }
+
+    private boolean shouldMarkOld() {
+        int oldRegions = regionHeap.countRegions(HeapRegion.RegionType.OLD);
+        return oldRegions >= oldRegionsAfterLastMark + regionHeap.getRegionCount() * OLD_GROWTH_TRIGGER
+                || regionHeap.getFreeRegionCount() < regionHeap.getRegionCount() * OLD_FREE_TRIGGER;
+    }
+
+    /**
+     * An explicit collection also marks the old generation: keep running young
+     * collections until an old mark has started and completed.
+     */
     @Override
     public boolean collect() {
-        log("Using Generational Shenandoah (generational mode enabled)");
-        log("  Separate young generation evacuation for improved throughput");
+        oldMarkRequested = true;
+        boolean collected = awaitCycle(collectAsync());
+        while (oldMarkRequested || oldMarking) {
+            collected = awaitCycle(collectAsync());
+        }
+        return collected;
+    }
+
+    /**
+     * One young or mixed collection, followed by a slice of the old mark if one
+     * is in progress.
+     */
+    @Override
+    protected boolean runCycle() {
+        mixedBatch = takeMixedBatch();
+        if (mixedBatch.isEmpty()) {
+            log("Young collection (generational mode), tenuring threshold " + tenuringThreshold);
+        } else {
+            log("Mixed collection (generational mode): young regions and " + mixedBatch.size()
+                    + " old regions, tenuring threshold " + tenuringThreshold);
+        }
+
+        boolean collected = super.runCycle();
+
+        // Cards scanned at Init Mark stay dirty while their holders still reference young objects
+        rememberOldToYoung(cardHolders, this::isTraced);
+        recordCardTableActivity();
+        log(String.format("  Promoted %d objects (%d bytes) to old regions",
+                promoted.size(), promotedBytes.sumThenReset()));
+        cardHolders = List.of();
+        promoted.clear();
+        mixedBatch = List.of();
+
+        if (oldMarking) {
+            resumeOldMark();
+        }
+        return collected;
+    }
+
+    private List<HeapRegion> takeMixedBatch() {
+        if (oldMarking || mixedCandidates.isEmpty()) {
+            return List.of();
+        }
+        List<HeapRegion> batch = new ArrayList<>();
+        while (batch.size() < mixedBatchSize && !mixedCandidates.isEmpty()) {
+            HeapRegion region = mixedCandidates.poll();
+            if (region.getType() == HeapRegion.RegionType.OLD) {
+                batch.add(region);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Young roots: the root set and whatever the old objects on dirty cards
+     * reference. Also bootstraps an old mark when one is due.
+     */
+    @Override
+    protected Collection<SimulatedObject> markRoots() {
+        cardHolders = scanDirtyCards();
+        if (!oldMarking && mixedCandidates.isEmpty() && (oldMarkRequested || shouldMarkOld())) {
+            startOldMark();
+        }
+
+        List<SimulatedObject> roots = new ArrayList<>(jvm.getRootSet().getRoots());
+        for (SimulatedObject holder : cardHolders) {
+            roots.addAll(holder.getReferences());
+        }
+        return roots;
+    }
+
+    /**
+     * Young collections trace young and humongous objects; humongous objects
+     * never move, but are reclaimed by the first young collection that does not
+     * reach them.
+     */
+    @Override
+    protected boolean isTraced(SimulatedObject obj) {
+        return !isOld(obj);
+    }
+
+    @Override
+    protected boolean isCollected(HeapRegion region) {
+        return region.isYoung();
+    }
+
+    @Override
+    protected Collection<HeapRegion> additionalCandidates() {
+        regionHeap.recordLiveness(mixedBatch, this::isLive);
+        return mixedBatch;
+    }
+
+    /**
+     * Old objects are live if the last old mark found them, or while it is
+     * still running.
+     */
+    @Override
+    protected boolean isLive(SimulatedObject obj) {
+        if (isTraced(obj)) {
+            return super.isLive(obj);
+        }
+        return oldMarking || obj.getId() > oldMarkStartId || oldMarked.contains(obj);
+    }
+
+    /**
+     * Take the age census of the marked young objects, age them and promote
+     * the regions that are ready in place.
+     */
+    @Override
+    protected void markingFinished(Set<SimulatedObject> marked) {
+        long[] census = new long[MAX_AGE + 1];
+        for (SimulatedObject obj : marked) {
+            if (obj.getRegion() instanceof HeapRegion region && region.isYoung()) {
+                census[Math.min(obj.getAge(), MAX_AGE)] += obj.getSize();
+                if (obj.getAge() < MAX_AGE) {
+                    obj.incrementAge();
+                }
+            }
+        }
+        adaptTenuringThreshold(census);
+
+        int promotedRegions = 0;
+        for (HeapRegion region : regionHeap.getRegions()) {
+            if (region.isYoung() && isTenured(region)) {
+                promoteInPlace(region);
+                promotedRegions++;
+            }
+        }
+        if (promotedRegions > 0) {
+            log("  Promoted " + promotedRegions + " young regions in place");
+        }
+    }
+
+    /**
+     * Whether a young region would not be evacuated for its garbage and all of
+     * its live objects have reached the tenuring threshold.
+     */
+    private boolean isTenured(HeapRegion region) {
+        long live = 0;
+        for (SimulatedObject obj : region.getObjects()) {
+            if (isLive(obj)) {
+                if (obj.getAge() < tenuringThreshold) {
+                    return false;
+                }
+                live += obj.getSize();
+            }
+        }
+        return live > 0 && live >= region.getUsed() * (1 - GARBAGE_THRESHOLD);
+    }
+
+    /**
+     * Turn a young region into an old one without copying its objects: sweep
+     * its dead objects and retype it. Runs inside the Final Mark pause, so no
+     * store into its objects can miss the card barrier.
+     */
+    private void promoteInPlace(HeapRegion region) {
+        sweepDead(region);
+        region.setType(HeapRegion.RegionType.OLD);
+        for (SimulatedObject obj : region.getObjects()) {
+            tenured(obj);
+        }
+    }
+
+    /**
+     * Adaptive tenuring from the age census, taken before the survivors age:
+     * an age cohort's mortality is the share of its bytes that died since the
+     * last cycle. The threshold is set
+     * just above the oldest cohort that still dies faster than the limit, so
+     * that survivors past that age, which are likely to live long, are
+     * promoted instead of being copied again.
+     */
+    private void adaptTenuringThreshold(long[] census) {
+        int threshold = tenuringThreshold;
+        if (survivorCensus != null) {
+            int dyingAge = -1;
+            boolean observed = false;
+            for (int age = MAX_AGE; age >= 1; age--) {
+                long before = survivorCensus[age - 1];
+                if (before == 0) {
+                    continue;
+                }
+                observed = true;
+                double mortality = 1.0 - (double) census[age] / before;
+                if (mortality > MAX_COHORT_MORTALITY) {
+                    dyingAge = age;
+                    break;
+                }
+            }
+            if (dyingAge >= tenuringThreshold - 1) {
+                threshold = tenuringThreshold + 1; // The oldest cohort is still dying
+            } else if (dyingAge >= 1) {
+                threshold = dyingAge + 1;
+            } else if (observed) {
+                threshold = tenuringThreshold - 1;
+            }
+            threshold = Math.max(2, Math.min(MAX_AGE, threshold));
+        }
+
+        survivorCensus = new long[MAX_AGE + 1];
+        for (int age = 0; age + 1 < threshold; age++) {
+            survivorCensus[age] = census[age];
+        }
+        if (threshold != tenuringThreshold) {
+            log("  Tenuring threshold " + tenuringThreshold + " -> " + threshold);
+            tenuringThreshold = threshold;
+        }
+    }
+
+    @Override
+    protected HeapRegion.RegionType evacuationDestination(SimulatedObject obj, HeapRegion from) {
+        if (from.isYoung() && obj.getAge() < tenuringThreshold) {
+            return HeapRegion.RegionType.SURVIVOR;
+        }
+        return HeapRegion.RegionType.OLD;
+    }
+
+    /**
+     * Runs on the GC thread or on a mutator in the load barrier.
+     */
+    @Override
+    protected void evacuated(SimulatedObject obj, HeapRegion from) {
+        if (!isOld(obj)) {
+            return;
+        }
+        if (from.isYoung()) {
+            tenured(obj);
+        } else {
+            rememberOld(obj);
+        }
+    }
+
+    private void tenured(SimulatedObject obj) {
+        promoted.add(obj);
+        promotedBytes.add(obj.getSize());
+        rememberOld(obj);
+        jvm.fireEvent(JVMSimulator.JVMEvent.EventType.PROMOTION, obj);
+    }
+
+    /**
+     * Keep an object that became old, or moved within the old generation, live
+     * for the old generation and on a dirty card if it references young objects.
+     */
+    private void rememberOld(SimulatedObject obj) {
+        if (oldMarked.add(obj) && oldMarking) {
+            oldMarkQueue.add(obj); // Its references may not have been traced yet
+        }
+        for (SimulatedObject ref : obj.getReferences()) {
+            if (!isOld(ref)) {
+                cardTable.dirty(obj);
+                break;
+            }
+        }
+    }
+
+    /**
+     * Young collections only walk the young and humongous regions and the old
+     * objects that may reference young ones; mixed collections moved old
+     * objects too and walk the whole heap.
+     */
+    @Override
+    protected void concurrentUpdateReferences() {
+        if (!mixedBatch.isEmpty()) {
+            super.concurrentUpdateReferences();
+            return;
+        }
+        pacer.startPhase();
+        long updated = 0;
+        long visited = 0;
+        for (HeapRegion region : regionHeap.getRegions()) {
+            if (region.isFree() || region.getType() == HeapRegion.RegionType.OLD) {
+                continue;
+            }
+            for (SimulatedObject obj : region.snapshotObjects()) {
+                if (isLive(obj)) {
+                    updated += updateReferences(obj);
+                }
+                visited++;
+                pacer.step();
+            }
+        }
+
+        // Old objects given a young reference since Init Mark are on dirty cards
+        Set<SimulatedObject> holders = new HashSet<>(cardHolders);
+        cardTable.forEachDirtyHolder(holders::add);
+        holders.addAll(promoted);
+        for (SimulatedObject holder : holders) {
+            updated += updateReferences(holder);
+            pacer.step();
+        }
+        traceWork(visited + holders.size(), 0);
+        log("  Updated " + updated + " references (young regions and " + holders.size() + " old objects)");
+    }
+
+    /**
+     * Initial old mark, inside a young collection's Init Mark pause: snapshot
+     * the object ids and the roots and start logging overwritten references.
+     */
+    private void startOldMark() {
+        oldMarkRequested = false;
+        oldMarkStartId = SimulatedObject.getLastId();
+        oldMarked.clear();
+        oldMarkQueue.clear();
+        oldMarking = true;
+        for (SimulatedObject root : jvm.getRootSet().getRoots()) {
+            markOld(root);
+        }
+        oldMarkBarrier.activate();
+        log("  Bootstrapping concurrent old mark from " + oldMarkQueue.size() + " roots");
+    }
+
+    /**
+     * Continue the old mark after a young collection. It traces young and old
+     * objects alike and yields as soon as another young collection is due.
+     */
+    private void resumeOldMark() {
+        log("Concurrent Old Mark (application running)");
+        if (!concurrentPhase("Concurrent Old Mark", this::traceOldMark)) {
+            return;
+        }
+
+        long startTime = System.currentTimeMillis();
+        log("Final Old Mark (Stop-The-World)");
+        long bytesCollected = stopTheWorld("Pause Final Old Mark", this::finalOldMark);
+        log("  Final old mark completed in " + getLastPauseMs() + "ms");
+        recordBarrierActivity(oldMarkBarrier);
+
+        long totalPauseTime = recordCollection(bytesCollected);
+        log(String.format("Old mark completed: total=%dms, pause=%dms, collected=%d bytes, %d mixed candidates",
+                System.currentTimeMillis() - startTime, totalPauseTime, bytesCollected, mixedCandidates.size()));
+        jvm.fireEvent(new JVMSimulator.JVMEvent(
+                JVMSimulator.JVMEvent.EventType.GC_COMPLETED,
+                "Generational Shenandoah old mark completed",
+                totalPauseTime));
+    }
+
+    /**
+     * Trace old mark work until the queue is empty, or until a young
+     * collection is due; returns whether the mark finished.
+     */
+    private boolean traceOldMark() {
+        pacer.startPhase();
+        int traced = 0;
+        do {
+            SimulatedObject obj;
+            while ((obj = oldMarkQueue.poll()) != null) {
+                for (SimulatedObject ref : obj.getReferences()) {
+                    markOld(ref);
+                }
+                pacer.step();
+                if (++traced % DRAIN_INTERVAL == 0) {
+                    oldMarkBarrier.drainCompleted(Integer.MAX_VALUE, this::markOld);
+                    if (traced >= OLD_MARK_SLICE && youngCollectionNeeded()) {
+                        log("  Old mark preempted by a young collection after " + traced + " objects");
+                        traceWork(traced, 0);
+                        return false;
+                    }
+                }
+            }
+        } while (oldMarkBarrier.drainCompleted(Integer.MAX_VALUE, this::markOld) > 0 || !oldMarkQueue.isEmpty());
+        log("  Old mark traced " + traced + " objects");
+        traceWork(traced, 0);
+        return true;
+    }
+
+    private void markOld(SimulatedObject obj) {
+        // Objects allocated since the old mark started are implicitly live
+        if (obj.getId() <= oldMarkStartId && oldMarked.add(obj)) {
+            oldMarkQueue.add(obj);
+        }
+    }
+
+    /**
+     * Finish the old mark and act on the old regions' liveness (STW): free the
+     * empty ones, queue the fragmented ones for mixed collections and sweep the
+     * dead objects of the rest in place.
+     */
+    private long finalOldMark() {
+        oldMarkBarrier.deactivate();
+        int logged = oldMarkBarrier.drainAll(this::markOld);
+        for (SimulatedObject root : jvm.getRootSet().getRoots()) {
+            markOld(root);
+        }
+        SimulatedObject obj;
+        while ((obj = oldMarkQueue.poll()) != null) {
+            for (SimulatedObject ref : obj.getReferences()) {
+                markOld(ref);
+            }
+        }
+        oldMarking = false;
+        log("  Drained " + logged + " SATB entries, " + oldMarked.size() + " objects marked");
+
+        List<HeapRegion> oldRegions = regionHeap.getRegions(HeapRegion.RegionType.OLD);
+        regionHeap.recordLiveness(oldRegions, this::isLive);
+        long bytesCollected = 0;
+        int freedRegions = 0;
+        List<HeapRegion> candidates = new ArrayList<>();
+        for (HeapRegion region : oldRegions) {
+            if (region.getLiveBytes() == 0) {
+                bytesCollected += sweepDead(region);
+                cardTable.clear(region);
+                regionHeap.freeRegion(region);
+                freedRegions++;
+            } else if (region.getGarbageRatio() > GARBAGE_THRESHOLD) {
+                candidates.add(region);
+            } else {
+                bytesCollected += sweepDead(region); // Coalesce and fill: dead objects become free blocks
+            }
+        }
+        candidates.sort(Comparator.comparingLong(HeapRegion::getGarbageBytes).reversed());
+        mixedCandidates = new ArrayDeque<>(candidates);
+        mixedBatchSize = Math.max(1, (candidates.size() + MIXED_CYCLES - 1) / MIXED_CYCLES);
+        oldRegionsAfterLastMark = regionHeap.countRegions(HeapRegion.RegionType.OLD);
+
+        log(String.format("  Freed %d old regions, %d fragmented regions left for mixed collections",
+                freedRegions, candidates.size()));
+        return bytesCollected;
+    }
+
+    private static boolean isOld(SimulatedObject obj) {
+        return obj.getRegion() instanceof HeapRegion region && region.getType() == HeapRegion.RegionType.OLD;
+    }
+
+    private void clearGenerationalState() {
+        oldMarked.clear();
+        oldMarkQueue.clear();
+        oldMarking = false;
+        oldMarkRequested = false;
+        oldMarkStartId = 0;
+        oldRegionsAfterLastMark = 0;
+        cardHolders = List.of();
+        promoted.clear();
+        promotedBytes.reset();
+        mixedCandidates = new ArrayDeque<>();
+        mixedBatchSize = 1;
+        mixedBatch = List.of();
+        survivorCensus = null;
+        tenuringThreshold = INITIAL_TENURING_THRESHOLD;
+    }
+
+    /**
+     * Store barrier of the generational mode: the SATB pre-write barriers of
+     * the young and the old mark, and the card-marking post-write barrier.
+     */
+    private class GenerationalStoreBarrier implements WriteBarrier {
+        private final WriteBarrier cardBarrier;
+
+        GenerationalStoreBarrier(WriteBarrier cardBarrier) {
+            this.cardBarrier = cardBarrier;
+        }
+
+        @Override
+        public void preWrite(SimulatedObject holder, SimulatedObject oldValue) {
+            writeBarrier.preWrite(holder, oldValue);
+            oldMarkBarrier.preWrite(holder, oldValue);
+        }
 
-        // Use parent's collection logic with generational tracking
-        return super.collect();
+        @Override
+        public void postWrite(SimulatedObject holder, SimulatedObject newValue) {
+            cardBarrier.postWrite(holder, newValue);
+        }
     }
 }
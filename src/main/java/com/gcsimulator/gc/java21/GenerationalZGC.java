@@ -4,20 +4,114 @@ import com.gcsimulator.gc.*;
 import com.gcsimulator.model.jvm.JVMSimulator;
 import com.gcsimulator.model.memory.*;
 import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.model.objects.WriteBarrier;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
  * Generational ZGC (Java 21): ZGC with generational support.
  * Separates young and old generations for better performance.
+ *
+ * Pages are young (Eden for new objects, Survivor for relocated ones) or old.
+ * Large pages start out young as well: a minor collection frees the dead ones
+ * and ages the live ones, which are promoted in place, without copying, once
+ * they reach the tenuring threshold.
+ * Young and old collections are separate cycles on separate GC threads, each
+ * with ZGC's mark and relocate phases, so minor collections keep running
+ * while an old collection is in progress. A major collection is a young
+ * collection whose mark also finds the old generation's roots and then hands
+ * over to the old thread.
+ *
+ * A store barrier maintains the remembered set of old objects that were given
+ * a reference to a young object, so minor collections never trace the old
+ * generation; while a generation is being marked it also marks the value a
+ * store overwrites. The load barrier only remaps and relocates, with a good
+ * color that changes whenever either generation starts relocating. Young
+ * objects age by one with every minor collection they survive and are
+ * promoted once they reach the tenuring threshold.
  */
 public class GenerationalZGC extends AbstractGarbageCollector {
-    private final Map<SimulatedObject, Integer> objectGenerations;
-    private int currentGeneration;
+    private static final long PAGE_SIZE = 2 * 1024 * 1024; // Small pages; objects above half a page get a large page
+    private static final double FRAGMENTATION_LIMIT = 0.25; // Old pages with more garbage than this are relocated
+    private static final double TRIGGER_OCCUPANCY = 0.40; // Share of pages in use that starts a minor collection
+    private static final double OLD_GROWTH_TRIGGER = 0.15; // Old generation growth, as a share of the heap, that starts a major collection
+    private static final double OLD_FREE_TRIGGER = 0.10; // Share of free pages after a young collection below which the next one is major
+
+    private RegionHeap regionHeap;
+    private GenZLoadBarrier loadBarrier;
+    private GenZStoreBarrier storeBarrier;
+    private final Generation young;
+    private final Generation old;
+    private volatile Set<SimulatedObject> rememberedSet; // Old objects given a young reference since the last minor mark start
+    private Set<SimulatedObject> scannedRememberedSet; // The remembered set taken over by the current minor collection
+    private boolean majorCycle; // The current young collection starts an old one
+    private volatile boolean majorRequested;
+    private volatile int oldPagesAfterLastMajor; // Written by the old thread, read by the young one
+    private volatile int freePagesAfterLastYoung;
+    private final Set<HeapRegion> oldLargePages; // Start pages of the large pages promoted in place
+
+    private ExecutorService oldThread; // Runs old collections, created on first use
+    private volatile CompletableFuture<Boolean> oldCycle;
 
     public GenerationalZGC() {
-        this.objectGenerations = new HashMap<>();
-        this.currentGeneration = 0;
+        this.young = new Generation("Young");
+        this.old = new Generation("Old");
+        this.rememberedSet = ConcurrentHashMap.newKeySet();
+        this.scannedRememberedSet = Set.of();
+        this.oldLargePages = ConcurrentHashMap.newKeySet();
+        this.oldCycle = CompletableFuture.completedFuture(false);
+    }
+
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+        this.regionHeap = jvm.getHeap().getRegionHeap();
+        this.loadBarrier = new GenZLoadBarrier(regionHeap);
+        this.storeBarrier = new GenZStoreBarrier();
+        jvm.getBarrierSet().installLoadBarrier(loadBarrier);
+        jvm.getBarrierSet().install(storeBarrier);
+        clearCycleState();
+
+        // Old objects taken over from another layout may already reference young ones
+        for (HeapRegion page : regionHeap.getRegions()) {
+            if (!page.isFree() && !isYoungPage(page)) {
+                for (SimulatedObject obj : page.getObjects()) {
+                    if (!obj.getReferences().isEmpty()) {
+                        rememberedSet.add(obj);
+                    }
+                }
+            }
+        }
+        log(String.format("Heap divided into %d pages of %d KB, tenuring threshold %d",
+                regionHeap.getRegionCount(), regionHeap.getRegionSize() / 1024, tenuringThreshold));
+    }
+
+    @Override
+    protected RegionHeap createRegionHeap() {
+        Heap heap = jvm.getHeap();
+        long heapSize = heap.getYoungGen().getCapacity() + heap.getOldGen().getCapacity();
+        return new RegionHeap(PAGE_SIZE, (int) Math.max(1, heapSize / PAGE_SIZE));
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        shutdownOldThread();
+        young.statistics.reset();
+        old.statistics.reset();
+        clearCycleState();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        shutdownOldThread();
     }
 
     @Override
@@ -25,123 +119,739 @@ public class GenerationalZGC extends AbstractGarbageCollector {
         return GCAlgorithm.GENERATIONAL_ZGC;
     }
 
+    public RegionHeap getRegionHeap() {
+        return regionHeap;
+    }
+
+    /**
+     * Statistics of the minor (young) collections only.
+     */
+    public GCStatistics getYoungStatistics() {
+        return young.statistics;
+    }
+
+    /**
+     * Statistics of the old collections only.
+     */
+    public GCStatistics getOldStatistics() {
+        return old.statistics;
+    }
+
+    @Override
+    public Map<String, GCStatistics> getGenerationStatistics() {
+        Map<String, GCStatistics> generations = new LinkedHashMap<>();
+        generations.put("young", young.statistics);
+        generations.put("old", old.statistics);
+        return generations;
+    }
+
+    public boolean isOldCycleInProgress() {
+        return !oldCycle.isDone();
+    }
+
+    @Override
+    public boolean shouldCollect() {
+        return regionHeap.getFreeRegionCount() < regionHeap.getRegionCount() * (1 - TRIGGER_OCCUPANCY);
+    }
+
+    private boolean shouldCollectOld() {
+        return countOldPages() >= oldPagesAfterLastMajor + regionHeap.getRegionCount() * OLD_GROWTH_TRIGGER
+                || freePagesAfterLastYoung < regionHeap.getRegionCount() * OLD_FREE_TRIGGER;
+    }
+
+    /**
+     * An explicit collection is a major one: wait for a young collection that
+     * starts an old collection, and for the old collection.
+     */
     @Override
     public boolean collect() {
+        majorRequested = true;
+        boolean collected = awaitCycle(collectAsync());
+        if (majorRequested && !isOldCycleInProgress()) {
+            // The young collection already running when asked was a minor one
+            collected = awaitCycle(collectAsync());
+        }
+        awaitCycle(oldCycle);
+        return collected;
+    }
+
+    /**
+     * Start a young collection on the concurrent GC thread; the application
+     * keeps running between the stop-the-world phases.
+     */
+    @Override
+    public CompletableFuture<Boolean> collectAsync() {
+        return startConcurrentCycle(this::runYoungCycle);
+    }
+
+    /**
+     * One young collection, on its own or as the start of a major collection,
+     * run on the concurrent GC thread.
+     */
+    private boolean runYoungCycle() {
         long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
+        majorCycle = !isOldCycleInProgress() && (majorRequested || shouldCollectOld());
+        if (majorCycle) {
+            majorRequested = false;
+        }
 
-        log("Starting Generational ZGC collection");
+        String kind = majorCycle ? "Major" : "Minor";
+        log("Starting " + kind + " collection");
         jvm.fireEvent(new JVMSimulator.JVMEvent(
                 JVMSimulator.JVMEvent.EventType.GC_STARTED,
-                "Generational ZGC started",
+                "Generational ZGC " + kind.toLowerCase() + " collection started",
                 null));
 
-        long totalPauseTime = 0;
         long bytesCollected = 0;
 
-        // Young Generation Collection (frequent, very fast)
-        log("Phase 1: Young Generation Collection");
-        long youngStart = System.currentTimeMillis();
-        bytesCollected += collectYoungGeneration();
-        long youngPause = System.currentTimeMillis() - youngStart;
-        totalPauseTime += youngPause;
-        log("  Young GC completed in " + youngPause + "ms");
+        young.log("Pause Mark Start" + (majorCycle ? " (Major)" : ""));
+        stopTheWorld("Pause Young Mark Start", this::pauseYoungMarkStart);
+        young.log("  Completed in " + getLastPauseMs() + "ms, " + scannedRememberedSet.size() + " remembered old objects");
 
-        // Old Generation Collection (infrequent)
-        if (shouldCollectOldGeneration()) {
-            log("Phase 2: Old Generation Collection");
-            long oldStart = System.currentTimeMillis();
-            bytesCollected += collectOldGeneration();
-            long oldPause = System.currentTimeMillis() - oldStart;
-            totalPauseTime += oldPause;
-            log("  Old GC completed in " + oldPause + "ms");
+        young.log("Concurrent Mark");
+        concurrentPhase("Concurrent Young Mark", this::concurrentYoungMark);
+
+        young.log("Pause Mark End");
+        stopTheWorld("Pause Young Mark End", this::pauseYoungMarkEnd);
+        young.log("  Completed in " + getLastPauseMs() + "ms, " + young.marked.size() + " young objects marked");
+
+        if (majorCycle) {
+            startOldCycle();
         }
 
-        currentGeneration++;
+        young.log("Concurrent Select Relocation Set");
+        bytesCollected += concurrentPhase("Concurrent Young Select Relocation Set",
+                () -> prepareRelocationSet(young, pacer));
+
+        long promotedBefore = young.promoted.sum();
+        young.log("Pause Relocate Start");
+        stopTheWorld("Pause Young Relocate Start", () -> pauseRelocateStart(young));
+        young.log("  Completed in " + getLastPauseMs() + "ms, good color " + ColoredPointer.colorName(loadBarrier.getGoodColor()));
 
+        young.log("Concurrent Relocate");
+        bytesCollected += concurrentPhase("Concurrent Young Relocate", () -> concurrentRelocate(young, pacer));
+        rebuildRememberedSet();
+        freePagesAfterLastYoung = regionHeap.getFreeRegionCount();
+        young.log(String.format("  Promoted %d objects, remembered set: %d old objects",
+                young.promoted.sum() - promotedBefore, rememberedSet.size()));
+
+        recordBarrierActivity(loadBarrier);
+        storeBarrier.recordActivity();
+        long pauseTime = recordCycle(young, bytesCollected);
         long totalTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(totalPauseTime, bytesCollected);
 
-        log(String.format("Generational ZGC completed: total=%dms, pause=%dms, collected=%d bytes",
-                totalTime, totalPauseTime, bytesCollected));
+        log(String.format("%s collection completed: total=%dms, pause=%dms, collected=%d bytes",
+                kind, totalTime, pauseTime, bytesCollected));
         jvm.fireEvent(new JVMSimulator.JVMEvent(
                 JVMSimulator.JVMEvent.EventType.GC_COMPLETED,
-                "Generational ZGC completed",
-                totalPauseTime));
+                "Generational ZGC " + kind.toLowerCase() + " collection completed",
+                pauseTime));
 
         return true;
     }
 
-    private long collectYoungGeneration() {
-        // Very short pause - mark and relocate young objects
-        YoungGeneration youngGen = jvm.getHeap().getYoungGen();
+    private void pauseYoungMarkStart() {
+        // New objects go to fresh pages; only the pages in use now are marked and relocated
+        regionHeap.beginEvacuation();
+        statistics.recordHumongousAllocations(regionHeap.takeHumongousAllocations(),
+                regionHeap.takeHumongousBytesAllocated());
+        List<SimulatedObject> roots = new ArrayList<>(jvm.getRootSet().getRoots());
+        young.startMark(pagesWhere(this::isYoungPage), roots);
+        if (majorCycle) {
+            old.startMark(pagesWhere(page -> !isYoungPage(page)), roots);
+        }
 
-        Set<SimulatedObject> reachable = mark();
+        // Stores from now on are remembered for the next minor collection
+        scannedRememberedSet = rememberedSet;
+        rememberedSet = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Trace the young generation from the roots and the remembered old objects.
+     * A major collection also collects the old generation's roots on the way:
+     * old objects referenced by roots or by live young objects.
+     */
+    private void concurrentYoungMark() {
+        pacer.startPhase();
+        for (SimulatedObject root : young.roots) {
+            young.mark(root);
+            if (majorCycle) {
+                old.mark(root);
+            }
+        }
+        for (SimulatedObject holder : scannedRememberedSet) {
+            if (holder.getRegion() == null || isYoung(holder)) {
+                continue; // Collected or relocated back into the young generation
+            }
+            for (Map.Entry<SimulatedObject, Long> ref : holder.getReferenceWords().entrySet()) {
+                loadBarrier.heal(holder, ref.getKey(), ref.getValue());
+                young.mark(ref.getKey());
+            }
+            pacer.step();
+        }
+        drainMarkQueue(young, pacer);
+    }
+
+    /**
+     * Trace a generation's marked objects, healing every reference on the way.
+     * References into the other generation are not followed. Pass a null pacer
+     * inside a pause.
+     */
+    private void drainMarkQueue(Generation gen, ConcurrentPacer pacer) {
+        SimulatedObject obj;
+        long visited = 0;
+        while ((obj = gen.markQueue.poll()) != null) {
+            visited++;
+            for (Map.Entry<SimulatedObject, Long> ref : obj.getReferenceWords().entrySet()) {
+                loadBarrier.heal(obj, ref.getKey(), ref.getValue());
+                gen.mark(ref.getKey());
+                if (gen == young && majorCycle) {
+                    old.mark(ref.getKey());
+                }
+            }
+            if (pacer != null) {
+                pacer.step();
+            }
+        }
+        traceWork(visited, 0);
+    }
+
+    private void pauseYoungMarkEnd() {
+        drainMarkQueue(young, null);
+        young.marking = false;
+
+        // Every live pointer into the young generation has been remapped
+        young.previousRelocationSet = Map.of();
+        young.log("  Remapped " + young.remapped.sumThenReset() + " stale pointers into young pages");
+    }
+
+    private void startOldCycle() {
+        synchronized (this) {
+            if (oldThread == null) {
+                oldThread = newGCThread(getName() + " Old Generation Thread");
+            }
+            oldCycle = submitCycle(oldThread, this::runOldCycle);
+        }
+    }
+
+    /**
+     * The old part of a major collection, run on the old GC thread while minor
+     * collections go on.
+     */
+    private boolean runOldCycle() {
+        long startTime = System.currentTimeMillis();
+        jvm.incrementGCs();
+        jvm.fireEvent(new JVMSimulator.JVMEvent(
+                JVMSimulator.JVMEvent.EventType.GC_STARTED,
+                "Generational ZGC old collection started",
+                null));
+        ConcurrentPacer oldPacer = new ConcurrentPacer(pacer.getDutyCycle(), pacer.getBatchSize());
         long bytesCollected = 0;
 
-        // Collect Eden
-        List<Object> toRemove = new ArrayList<>();
-        for (Object obj : youngGen.getEden().getObjects()) {
-            if (obj instanceof SimulatedObject simObj) {
-                if (!reachable.contains(simObj)) {
-                    toRemove.add(obj);
-                    bytesCollected += simObj.getSize();
-                } else {
-                    // Track generation
-                    objectGenerations.put(simObj, currentGeneration);
+        old.log("Concurrent Mark");
+        concurrentPhase("Concurrent Old Mark", () -> {
+            oldPacer.startPhase();
+            drainMarkQueue(old, oldPacer);
+        });
+
+        old.log("Pause Mark End");
+        stopTheWorld("Pause Old Mark End", () -> {
+            drainMarkQueue(old, null);
+            old.marking = false;
+            old.previousRelocationSet = Map.of();
+        });
+        old.log("  Completed in " + getLastPauseMs() + "ms, " + old.marked.size() + " old objects marked, remapped "
+                + old.remapped.sumThenReset() + " stale pointers into old pages");
+
+        old.log("Concurrent Select Relocation Set");
+        bytesCollected += concurrentPhase("Concurrent Old Select Relocation Set",
+                () -> prepareRelocationSet(old, oldPacer));
+
+        old.log("Pause Relocate Start");
+        stopTheWorld("Pause Old Relocate Start", () -> pauseRelocateStart(old));
+        old.log("  Completed in " + getLastPauseMs() + "ms, good color " + ColoredPointer.colorName(loadBarrier.getGoodColor()));
+
+        old.log("Concurrent Relocate");
+        bytesCollected += concurrentPhase("Concurrent Old Relocate", () -> concurrentRelocate(old, oldPacer));
+        oldPagesAfterLastMajor = countOldPages();
+
+        long pauseTime = recordCycle(old, bytesCollected);
+        log(String.format("Old collection completed: total=%dms, pause=%dms, collected=%d bytes",
+                System.currentTimeMillis() - startTime, pauseTime, bytesCollected));
+        jvm.fireEvent(new JVMSimulator.JVMEvent(
+                JVMSimulator.JVMEvent.EventType.GC_COMPLETED,
+                "Generational ZGC old collection completed",
+                pauseTime));
+        return true;
+    }
+
+    /**
+     * Free empty pages and dead large objects, and pick the pages to relocate:
+     * every young page, so that survivors age, but only old pages with enough
+     * garbage, most garbage first. Live young large objects are never copied;
+     * they age here and are promoted in place.
+     */
+    private long prepareRelocationSet(Generation gen, ConcurrentPacer pacer) {
+        pacer.startPhase();
+        regionHeap.recordLiveness(gen.pages, gen::isLive);
+
+        long bytesCollected = 0;
+        int freedPages = 0;
+        int freedLarge = 0;
+        long largeBytes = 0;
+        int promotedLarge = 0;
+        List<HeapRegion> candidates = new ArrayList<>();
+        for (HeapRegion page : gen.pages) {
+            if (page.isHumongousStart()) {
+                SimulatedObject obj = page.getHumongousObject();
+                if (obj != null && !gen.isLive(obj)) {
+                    oldLargePages.remove(page);
+                    freedPages += regionHeap.freeHumongous(page).size();
+                    collected(obj);
+                    freedLarge++;
+                    largeBytes += obj.getSize();
+                } else if (obj != null && gen == young && obj.getId() <= young.markStartId) {
+                    obj.incrementAge();
+                    if (obj.getAge() >= tenuringThreshold) {
+                        oldLargePages.add(page);
+                        promoted(obj);
+                        promotedLarge++;
+                    }
+                }
+            } else if (!page.isFree() && page.getType() != HeapRegion.RegionType.HUMONGOUS) {
+                if (page.getLiveBytes() == 0) {
+                    bytesCollected += sweep(page, Set.of());
+                    regionHeap.freeRegion(page);
+                    freedPages++;
+                } else if (gen == young || page.getGarbageRatio() > FRAGMENTATION_LIMIT) {
+                    candidates.add(page);
                 }
             }
+            pacer.step();
         }
 
-        for (Object obj : toRemove) {
-            youngGen.getEden().removeObject(obj);
-            if (obj instanceof SimulatedObject simObj) {
-                youngGen.getEden().subtractUsed(simObj.getSize());
-                objectGenerations.remove(simObj);
+        if (freedLarge > 0) {
+            statistics.recordHumongousReclaim(freedLarge, largeBytes);
+            bytesCollected += largeBytes;
+        }
+
+        candidates.sort(Comparator.comparingLong(HeapRegion::getGarbageBytes).reversed());
+        gen.selectedPages = candidates;
+
+        gen.log(String.format("  Freed %d empty pages (%d large), relocation set: %d pages", freedPages, freedLarge,
+                candidates.size()));
+        if (promotedLarge > 0) {
+            gen.log("  Promoted " + promotedLarge + " large pages in place");
+        }
+        return bytesCollected;
+    }
+
+    private void pauseRelocateStart(Generation gen) {
+        Map<HeapRegion, ForwardingTable> tables = new ConcurrentHashMap<>();
+        for (HeapRegion page : gen.selectedPages) {
+            tables.put(page, new ForwardingTable(page, loadBarrier.pageStart(page)));
+        }
+        gen.relocationSet = tables;
+        gen.phase ^= 1;
+        loadBarrier.setGoodColor(ColoredPointer.remapped(young.phase, old.phase));
+    }
+
+    private long concurrentRelocate(Generation gen, ConcurrentPacer pacer) {
+        pacer.startPhase();
+        long bytesCollected = 0;
+        long barrierBefore = gen.relocatedByBarrier.sum();
+        long collectorBefore = gen.relocatedByCollector;
+        int freedPages = 0;
+        int inPlacePages = 0;
+        long visited = 0;
+        long bytesMoved = 0;
+
+        // Roots first: mutators are most likely to touch them next
+        int relocatedRoots = 0;
+        for (SimulatedObject root : gen.roots) {
+            ForwardingTable table = root.getRegion() != null ? gen.relocationSet.get(root.getRegion()) : null;
+            if (table != null && relocate(gen, table, root)) {
+                relocatedRoots++;
+                gen.relocatedByCollector++;
+                bytesMoved += root.getSize();
             }
+            pacer.step();
         }
+        gen.log("  Relocated " + relocatedRoots + " root objects");
+
+        for (HeapRegion page : gen.selectedPages) {
+            ForwardingTable table = gen.relocationSet.get(page);
+            boolean targetFull = false;
+            for (SimulatedObject obj : page.snapshotObjects()) {
+                visited++;
+                if (gen.marked.contains(obj)) {
+                    if (relocate(gen, table, obj)) {
+                        gen.relocatedByCollector++;
+                        bytesMoved += obj.getSize();
+                    } else if (obj.getRegion() == page) {
+                        targetFull = true;
+                        break;
+                    }
+                }
+                pacer.step();
+            }
 
-        log("  Using colored pointers and load barriers (generational mode)");
+            // Whatever is left is garbage, unless there was no room to relocate it
+            bytesCollected += sweep(page, gen.marked);
+            if (page.getObjectCount() == 0) {
+                regionHeap.freeRegion(page);
+                freedPages++;
+            } else if (targetFull) {
+                relocateInPlace(gen, table);
+                inPlacePages++;
+            }
+        }
 
+        traceWork(visited, bytesMoved);
+
+        // Stale pointers into the freed pages are remapped by the load barrier or the next marking
+        gen.previousRelocationSet = gen.relocationSet;
+        gen.relocationSet = Map.of();
+
+        gen.log(String.format("  Relocated %d objects (%d by the load barrier), freed %d pages",
+                gen.relocatedByCollector - collectorBefore, gen.relocatedByBarrier.sum() - barrierBefore, freedPages));
+        if (inPlacePages > 0) {
+            gen.log("  No free page to relocate into, " + inPlacePages + " pages compacted in place");
+        }
         return bytesCollected;
     }
 
-    private boolean shouldCollectOldGeneration() {
-        return jvm.getHeap().getOldGen().getUtilization() >= 0.7;
+    /**
+     * Move an object out of a relocation-set page, unless another thread already
+     * did. Young objects age by one and are promoted at the tenuring threshold.
+     *
+     * @return true if this call relocated the object
+     */
+    private boolean relocate(Generation gen, ForwardingTable table, SimulatedObject obj) {
+        boolean promoted;
+        synchronized (table) {
+            if (obj.getRegion() != table.getPage()) {
+                return false;
+            }
+            promoted = gen == old || obj.getAge() + 1 >= tenuringThreshold;
+            long oldOffset = loadBarrier.heapOffset(obj);
+            if (!regionHeap.evacuate(obj, table.getPage(),
+                    promoted ? HeapRegion.RegionType.OLD : HeapRegion.RegionType.SURVIVOR)) {
+                return false;
+            }
+            table.insert(oldOffset, obj, loadBarrier.heapOffset(obj));
+        }
+        if (gen == young) {
+            obj.incrementAge();
+            if (promoted) {
+                promoted(obj);
+            }
+        }
+        return true;
     }
 
-    private long collectOldGeneration() {
-        // Concurrent old generation collection
-        OldGeneration oldGen = jvm.getHeap().getOldGen();
+    /**
+     * Compact a relocation-set page whose objects found no free page to move to.
+     * It becomes a Survivor (or Old) page and the target for further relocations;
+     * its objects get forwarding entries, so nobody tries to move them again.
+     */
+    private void relocateInPlace(Generation gen, ForwardingTable table) {
+        HeapRegion page = table.getPage();
+        synchronized (table) {
+            Map<SimulatedObject, Long> oldOffsets = new HashMap<>();
+            for (SimulatedObject obj : page.snapshotObjects()) {
+                oldOffsets.put(obj, loadBarrier.heapOffset(obj));
+            }
+            regionHeap.relocateInPlace(page, gen == young ? HeapRegion.RegionType.SURVIVOR : HeapRegion.RegionType.OLD);
+            for (Map.Entry<SimulatedObject, Long> entry : oldOffsets.entrySet()) {
+                table.insert(entry.getValue(), entry.getKey(), loadBarrier.heapOffset(entry.getKey()));
+                if (gen == young) {
+                    entry.getKey().incrementAge();
+                }
+            }
+        }
+    }
 
-        log("  Concurrent marking and relocation of old objects");
+    private void promoted(SimulatedObject obj) {
+        young.promoted.increment();
+        if (!obj.getReferences().isEmpty()) {
+            rememberedSet.add(obj); // May now be an old object pointing into the young generation
+        }
+        jvm.fireEvent(JVMSimulator.JVMEvent.EventType.PROMOTION, obj);
+    }
 
-        Set<SimulatedObject> reachable = mark();
-        long bytesCollected = 0;
+    /**
+     * Keep the scanned old objects that still reference young objects, i.e.
+     * survivors that were not promoted, remembered for the next minor collection.
+     */
+    private void rebuildRememberedSet() {
+        for (SimulatedObject holder : scannedRememberedSet) {
+            if (holder.getRegion() == null || isYoung(holder)) {
+                continue;
+            }
+            for (SimulatedObject ref : holder.getReferences()) {
+                if (isYoung(ref)) {
+                    rememberedSet.add(holder);
+                    break;
+                }
+            }
+        }
+        scannedRememberedSet = Set.of();
+    }
+
+    private boolean isYoung(SimulatedObject obj) {
+        return !(obj.getRegion() instanceof HeapRegion page) || isYoungPage(page);
+    }
+
+    /**
+     * Eden and Survivor pages, and large pages that have not been promoted yet.
+     */
+    private boolean isYoungPage(HeapRegion page) {
+        if (page.getType() == HeapRegion.RegionType.HUMONGOUS) {
+            return !oldLargePages.contains(page.getHumongousStart());
+        }
+        return page.isYoung();
+    }
+
+    /**
+     * Pages in use by the old generation: Old pages and promoted large pages.
+     */
+    private int countOldPages() {
+        int oldPages = regionHeap.countRegions(HeapRegion.RegionType.OLD);
+        for (HeapRegion start : oldLargePages) {
+            oldPages += start.getHumongousRegions();
+        }
+        return oldPages;
+    }
+
+    private List<HeapRegion> pagesWhere(Predicate<HeapRegion> filter) {
+        List<HeapRegion> pages = new ArrayList<>();
+        for (HeapRegion page : regionHeap.getRegions()) {
+            if (!page.isFree() && filter.test(page)) {
+                pages.add(page);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Record a finished young or old collection, in the overall and in the
+     * generation's statistics. Both GC threads record, so the pair of updates
+     * is made under the statistics monitor.
+     *
+     * @return the pause time in milliseconds
+     */
+    private long recordCycle(Generation gen, long bytesCollected) {
+        synchronized (statistics) {
+            long pauseTime = recordCollection(bytesCollected);
+            gen.statistics.recordCollectionNanos(statistics.getLastPauseNanos(), bytesCollected);
+            return pauseTime;
+        }
+    }
+
+    private void collected(SimulatedObject obj) {
+        jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED, obj);
+    }
 
-        List<Object> toRemove = new ArrayList<>();
-        for (Object obj : oldGen.getTenured().getObjects()) {
-            if (obj instanceof SimulatedObject simObj && !reachable.contains(simObj)) {
-                toRemove.add(obj);
-                bytesCollected += simObj.getSize();
+    private void shutdownOldThread() {
+        ExecutorService thread;
+        synchronized (this) {
+            thread = oldThread;
+            oldThread = null;
+        }
+        if (thread != null) {
+            stopGCThread(thread);
+        }
+        oldCycle = CompletableFuture.completedFuture(false);
+    }
+
+    private void clearCycleState() {
+        young.clear();
+        old.clear();
+        rememberedSet.clear();
+        scannedRememberedSet = Set.of();
+        majorCycle = false;
+        majorRequested = false;
+        oldPagesAfterLastMajor = 0;
+        freePagesAfterLastYoung = Integer.MAX_VALUE;
+        oldLargePages.clear();
+        if (loadBarrier != null) {
+            loadBarrier.setGoodColor(ColoredPointer.remapped(young.phase, old.phase));
+        }
+    }
+
+    /**
+     * Marking and relocation state of one generation.
+     */
+    private class Generation {
+        private final String name;
+        private final String logPrefix;
+        private final GCStatistics statistics;
+        private volatile boolean marking;
+        private long markStartId; // Objects created later are implicitly live
+        private Set<HeapRegion> pages; // Pages of the generation at mark start
+        private List<SimulatedObject> roots; // Roots captured at mark start, relocated first
+        private final Set<SimulatedObject> marked;
+        private final Queue<SimulatedObject> markQueue; // Filled by the GC thread and by the store barrier
+        private List<HeapRegion> selectedPages;
+        private volatile Map<HeapRegion, ForwardingTable> relocationSet;
+        private volatile Map<HeapRegion, ForwardingTable> previousRelocationSet; // Remapped by the next marking
+        private int phase; // Relocation phase, part of the load barrier's good color
+
+        private long relocatedByCollector;
+        private final LongAdder relocatedByBarrier;
+        private final LongAdder remapped;
+        private final LongAdder promoted;
+
+        Generation(String name) {
+            this.name = name;
+            this.logPrefix = name.substring(0, 1) + ": ";
+            this.statistics = new GCStatistics();
+            this.pages = Set.of();
+            this.roots = List.of();
+            this.marked = ConcurrentHashMap.newKeySet();
+            this.markQueue = new ConcurrentLinkedQueue<>();
+            this.selectedPages = new ArrayList<>();
+            this.relocationSet = Map.of();
+            this.previousRelocationSet = Map.of();
+            this.relocatedByBarrier = new LongAdder();
+            this.remapped = new LongAdder();
+            this.promoted = new LongAdder();
+        }
+
+        void startMark(List<HeapRegion> markPages, List<SimulatedObject> markRoots) {
+            markStartId = SimulatedObject.getLastId();
+            pages = new HashSet<>(markPages);
+            roots = markRoots;
+            marked.clear();
+            markQueue.clear();
+            marking = true;
+        }
+
+        /**
+         * Mark an object if it was on one of this generation's pages at mark start.
+         *
+         * @return true if the object was not marked before
+         */
+        boolean mark(SimulatedObject obj) {
+            if (obj.getRegion() instanceof HeapRegion page && pages.contains(page)
+                    && obj.getId() <= markStartId && marked.add(obj)) {
+                markQueue.add(obj);
+                return true;
             }
+            return false;
+        }
+
+        boolean isLive(SimulatedObject obj) {
+            return marked.contains(obj) || obj.getId() > markStartId;
         }
 
-        for (Object obj : toRemove) {
-            oldGen.getTenured().removeObject(obj);
-            if (obj instanceof SimulatedObject simObj) {
-                oldGen.getTenured().subtractUsed(simObj.getSize());
-                objectGenerations.remove(simObj);
+        /**
+         * Load barrier slow path for a pointer into one of this generation's pages.
+         *
+         * @return true if the page is in the current or the previous relocation set
+         */
+        boolean relocateOrRemap(HeapRegion page, long offset, SimulatedObject target) {
+            ForwardingTable table = relocationSet.get(page);
+            if (table != null) {
+                // Relocation in progress: relocate the object now if the GC thread has not yet
+                if (table.find(offset, target) == null && relocate(this, table, target)) {
+                    relocatedByBarrier.increment();
+                }
+                return true;
+            }
+            table = previousRelocationSet.get(page);
+            if (table != null && table.find(offset, target) != null) {
+                remapped.increment();
+                return true;
             }
+            return false;
+        }
+
+        void log(String message) {
+            GenerationalZGC.this.log(logPrefix + message);
+        }
+
+        void clear() {
+            marking = false;
+            pages = Set.of();
+            roots = List.of();
+            marked.clear();
+            markQueue.clear();
+            selectedPages = new ArrayList<>();
+            relocationSet = Map.of();
+            previousRelocationSet = Map.of();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /**
+     * Load barrier slow path: relocate or remap, in whichever generation the
+     * stale pointer points into. Marking is left to the store barrier.
+     */
+    private class GenZLoadBarrier extends ColoredPointerBarrier {
+        GenZLoadBarrier(RegionHeap heap) {
+            super(heap);
+        }
+
+        @Override
+        protected long slowPath(SimulatedObject target, long word) {
+            long offset = ColoredPointer.offset(word);
+            HeapRegion page = pageAt(offset);
+            if (page != null && !young.relocateOrRemap(page, offset, target)) {
+                old.relocateOrRemap(page, offset, target);
+            }
+            return ColoredPointer.encode(heapOffset(target), getGoodColor());
+        }
+    }
 
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+    /**
+     * Store barrier: remembers old objects that are given a reference to a
+     * young one, and while a generation is being marked, marks the reference
+     * a store removes (snapshot at the beginning).
+     */
+    private class GenZStoreBarrier implements WriteBarrier {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder remembered = new LongAdder();
+        private final LongAdder logged = new LongAdder();
+
+        @Override
+        public void preWrite(SimulatedObject holder, SimulatedObject oldValue) {
+            invocations.increment();
+            if (oldValue == null) {
+                return;
+            }
+            if (young.marking && young.mark(oldValue)) {
+                logged.increment();
+            }
+            if (old.marking && old.mark(oldValue)) {
+                logged.increment();
             }
         }
 
-        return bytesCollected;
+        @Override
+        public void postWrite(SimulatedObject holder, SimulatedObject newValue) {
+            invocations.increment();
+            if (newValue != null && !isYoung(holder) && isYoung(newValue) && rememberedSet.add(holder)) {
+                remembered.increment();
+            }
+        }
+
+        /**
+         * Move the counters since the last minor collection into the statistics.
+         */
+        void recordActivity() {
+            long calls = invocations.sumThenReset();
+            long added = remembered.sumThenReset();
+            long markedObjects = logged.sumThenReset();
+            statistics.recordBarrierActivity(calls, added + markedObjects);
+            young.log(String.format("  Store barrier: %d calls, %d remembered-set entries, %d overwritten references marked",
+                    calls, added, markedObjects));
+        }
     }
 }
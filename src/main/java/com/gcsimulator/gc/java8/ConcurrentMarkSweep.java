@@ -6,16 +6,50 @@ import com.gcsimulator.model.memory.*;
 import com.gcsimulator.model.objects.SimulatedObject;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * CMS (Concurrent Mark Sweep): Low-latency collector with concurrent marking.
  * Minimizes pause times but may cause fragmentation.
  */
 public class ConcurrentMarkSweep extends AbstractGarbageCollector {
+    private static final int DRAIN_INTERVAL = 256; // Objects traced between barrier queue drains
+
     private Set<SimulatedObject> markedObjects;
+    private final Deque<SimulatedObject> markStack;
+    private final IncrementalUpdateBarrier writeBarrier;
 
     public ConcurrentMarkSweep() {
         this.markedObjects = new HashSet<>();
+        this.markStack = new ArrayDeque<>();
+        this.writeBarrier = new IncrementalUpdateBarrier();
+    }
+
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+        jvm.getBarrierSet().install(writeBarrier);
+
+        // CMS never compacts during a normal cycle, so the tenured space is
+        // managed as a segregated free list that the sweeper returns blocks to
+        MemoryRegion tenured = jvm.getHeap().getOldGen().getTenured();
+        if (!(tenured.getFreeList() instanceof SegregatedFreeList)) {
+            tenured.setFreeList(new SegregatedFreeList());
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        writeBarrier.discard();
+        markedObjects.clear();
+        markStack.clear();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        writeBarrier.discard();
     }
 
     @Override
@@ -25,6 +59,22 @@ public class ConcurrentMarkSweep extends AbstractGarbageCollector {
 
     @Override
     public boolean collect() {
+        return awaitCycle(collectAsync());
+    }
+
+    /**
+     * Start a cycle on the concurrent GC thread; the application keeps running
+     * between the stop-the-world phases.
+     */
+    @Override
+    public CompletableFuture<Boolean> collectAsync() {
+        return startConcurrentCycle(this::runCycle);
+    }
+
+    /**
+     * One complete collection cycle, run on the concurrent GC thread.
+     */
+    private boolean runCycle() {
         long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
 
@@ -35,36 +85,42 @@ public class ConcurrentMarkSweep extends AbstractGarbageCollector {
                 null));
 
         long bytesCollected = 0;
-        long totalPauseTime = 0;
-
-        // Phase 1: Initial Mark (STW - short pause)
-        long pause1Start = System.currentTimeMillis();
-        log("Phase 1: Initial Mark (Stop-The-World)");
-        initialMark();
-        long pause1 = System.currentTimeMillis() - pause1Start;
-        totalPauseTime += pause1;
-        log("  Initial mark completed in " + pause1 + "ms");
-
-        // Phase 2: Concurrent Mark (application continues)
-        log("Phase 2: Concurrent Mark (application running)");
-        concurrentMark();
-        log("  Concurrent mark completed");
-
-        // Phase 3: Remark (STW - short pause)
-        long pause2Start = System.currentTimeMillis();
-        log("Phase 3: Remark (Stop-The-World)");
-        remark();
-        long pause2 = System.currentTimeMillis() - pause2Start;
-        totalPauseTime += pause2;
-        log("  Remark completed in " + pause2 + "ms");
-
-        // Phase 4: Concurrent Sweep (application continues)
-        log("Phase 4: Concurrent Sweep (application running)");
-        bytesCollected = concurrentSweep();
-        log("  Concurrent sweep completed");
+
+        // Young collection (STW, copying like ParNew)
+        log("Young Collection (Stop-The-World)");
+        bytesCollected += stopTheWorld("Pause Young", () -> copyYoungGeneration(mark()));
+        log("  Young collection completed in " + getLastPauseMs() + "ms");
+
+        if (lastPromotionFailures > 0) {
+            // Old gen is too fragmented or full to absorb promotions
+            statistics.recordPromotionFailures(lastPromotionFailures);
+            bytesCollected += stopTheWorld("Pause Full", this::concurrentModeFailure);
+            log("  Full collection completed in " + getLastPauseMs() + "ms");
+        } else if (jvm.getHeap().getOldGen().getUtilization() >= oldGenThreshold) {
+            // Phase 1: Initial Mark (STW - short pause)
+            log("Phase 1: Initial Mark (Stop-The-World)");
+            stopTheWorld("Pause Initial Mark", this::initialMark);
+            log("  Initial mark completed in " + getLastPauseMs() + "ms");
+
+            // Phase 2: Concurrent Mark (application continues)
+            log("Phase 2: Concurrent Mark (application running)");
+            concurrentPhase("Concurrent Mark", this::concurrentMark);
+            log("  Concurrent mark completed");
+
+            // Phase 3: Remark (STW - short pause)
+            log("Phase 3: Remark (Stop-The-World)");
+            stopTheWorld("Pause Remark", this::remark);
+            log("  Remark completed in " + getLastPauseMs() + "ms");
+
+            // Phase 4: Concurrent Sweep (application continues)
+            log("Phase 4: Concurrent Sweep (application running)");
+            bytesCollected += concurrentPhase("Concurrent Sweep", this::concurrentSweep);
+            log("  Concurrent sweep completed");
+            recordBarrierActivity(writeBarrier);
+        }
 
         long totalTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(totalPauseTime, bytesCollected);
+        long totalPauseTime = recordCollection(bytesCollected);
 
         log(String.format("CMS collection completed: total=%dms, pause=%dms, collected=%d bytes",
                 totalTime, totalPauseTime, bytesCollected));
@@ -80,89 +136,137 @@ public class ConcurrentMarkSweep extends AbstractGarbageCollector {
      * Initial Mark: Mark objects directly reachable from roots (STW).
      */
     private void initialMark() {
+        recordMarkStart();
         markedObjects.clear();
+        markStack.clear();
         for (SimulatedObject root : jvm.getRootSet().getRoots()) {
-            markedObjects.add(root);
-            root.setMarked(true);
+            markGrey(root);
         }
+        writeBarrier.activate();
     }
 
     /**
      * Concurrent Mark: Trace object graph while application runs.
+     * Objects dirtied by the write barrier are rescanned as their buffers fill up.
      */
     private void concurrentMark() {
-        Queue<SimulatedObject> queue = new LinkedList<>(markedObjects);
-
-        while (!queue.isEmpty()) {
-            SimulatedObject obj = queue.poll();
-            for (SimulatedObject ref : obj.getReferences()) {
-                if (!markedObjects.contains(ref)) {
-                    markedObjects.add(ref);
-                    ref.setMarked(true);
-                    queue.add(ref);
+        pacer.startPhase();
+        int traced = 0;
+        do {
+            while (!markStack.isEmpty()) {
+                scan(markStack.pop());
+                pacer.step();
+                if (++traced % DRAIN_INTERVAL == 0) {
+                    writeBarrier.drainCompleted(1, this::rescanDirty);
                 }
             }
-
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
-        }
+            // Precleaning: keep draining until no completed buffers are left
+        } while (writeBarrier.drainCompleted(Integer.MAX_VALUE, this::rescanDirty) > 0 || !markStack.isEmpty());
+        traceWork(traced, 0);
     }
 
     /**
      * Remark: Catch any modifications made during concurrent mark (STW).
+     * Dirty objects are rescanned, and roots in full since root stores have no barrier.
      */
     private void remark() {
-        // Re-scan objects that may have changed during concurrent mark
-        Set<SimulatedObject> newMarks = new HashSet<>();
+        writeBarrier.deactivate();
+        int dirty = writeBarrier.drainAll(this::rescanDirty);
         for (SimulatedObject root : jvm.getRootSet().getRoots()) {
-            if (!markedObjects.contains(root)) {
-                newMarks.add(root);
-            }
+            markGrey(root);
+        }
+        while (!markStack.isEmpty()) {
+            scan(markStack.pop());
+        }
+        log("  Rescanned " + dirty + " dirty objects");
+    }
+
+    private void markGrey(SimulatedObject obj) {
+        if (markedObjects.add(obj)) {
+            obj.setMarked(true);
+            markStack.push(obj);
+        }
+    }
+
+    private void scan(SimulatedObject obj) {
+        for (SimulatedObject ref : obj.getReferences()) {
+            markGrey(ref);
+        }
+    }
+
+    /**
+     * Rescan an object that received a reference during the mark. Objects not
+     * yet marked will be scanned when reached; objects allocated during the
+     * cycle are never traced, so they are scanned here.
+     */
+    private void rescanDirty(SimulatedObject holder) {
+        if (markedObjects.contains(holder) || isAllocatedSinceMarkStart(holder)) {
+            scan(holder);
         }
-        markedObjects.addAll(newMarks);
     }
 
     /**
      * Concurrent Sweep: Reclaim unmarked objects while application runs.
      */
     private long concurrentSweep() {
+        pacer.startPhase();
         OldGeneration oldGen = jvm.getHeap().getOldGen();
         MemoryRegion tenured = oldGen.getTenured();
 
-        List<Object> toRemove = new ArrayList<>();
+        List<SimulatedObject> toRemove = new ArrayList<>();
         long bytesCollected = 0;
+        List<SimulatedObject> swept = tenured.snapshotObjects();
 
-        for (Object obj : tenured.getObjects()) {
-            if (obj instanceof SimulatedObject simObj) {
-                if (!markedObjects.contains(simObj)) {
-                    toRemove.add(obj);
-                    bytesCollected += simObj.getSize();
-                } else {
-                    simObj.setMarked(false); // Reset for next collection
-                }
+        for (SimulatedObject simObj : swept) {
+            if (isAllocatedSinceMarkStart(simObj)) {
+                continue; // Allocated during the cycle, live by definition
             }
-
-            // Simulate concurrent execution
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
+            if (!markedObjects.contains(simObj)) {
+                toRemove.add(simObj);
+                bytesCollected += simObj.getSize();
+            } else {
+                simObj.setMarked(false); // Reset for next collection
             }
+
+            pacer.step();
         }
+        traceWork(swept.size(), 0);
 
-        for (Object obj : toRemove) {
-            tenured.removeObject(obj);
-            if (obj instanceof SimulatedObject simObj) {
-                tenured.subtractUsed(simObj.getSize());
-            }
+        for (SimulatedObject simObj : toRemove) {
+            tenured.removeObject(simObj);
+            tenured.subtractUsed(simObj.getSize());
         }
 
         // Note: CMS doesn't compact, which can lead to fragmentation
-        log("  WARNING: No compaction - fragmentation may occur");
+        log(String.format("  No compaction: %d free blocks, largest free block %d bytes, fragmentation %.1f%%",
+                tenured.getHoleCount(), oldGen.getLargestFreeBlock(), oldGen.getFragmentation() * 100));
+
+        return bytesCollected;
+    }
+
+    /**
+     * Concurrent mode failure: promotion failed, so fall back to a stop-the-world
+     * mark-sweep-compact of the whole heap and retry the promotions.
+     */
+    private long concurrentModeFailure() {
+        OldGeneration oldGen = jvm.getHeap().getOldGen();
+        MemoryRegion tenured = oldGen.getTenured();
+
+        log(String.format("Concurrent mode failure: %d promotions failed (largest free block %d bytes, "
+                + "fragmentation %.1f%%)", lastPromotionFailures, oldGen.getLargestFreeBlock(),
+                oldGen.getFragmentation() * 100));
+        statistics.recordConcurrentModeFailure();
+
+        Set<SimulatedObject> reachable = mark();
+        long bytesCollected = sweep(tenured, reachable);
+        long bytesMoved = tenured.compact();
+        traceWork(0, bytesMoved);
+        log("  Serial full GC compacted old generation, moved " + bytesMoved + " bytes");
+
+        bytesCollected += copyYoungGeneration(reachable);
+        if (lastPromotionFailures > 0) {
+            log("  " + lastPromotionFailures + " objects still could not be promoted");
+        }
 
         return bytesCollected;
     }
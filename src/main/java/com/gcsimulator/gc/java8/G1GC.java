@@ -10,34 +10,85 @@ import java.util.*;
 /**
  * G1 GC (Garbage First): Region-based collector with predictable pause times.
  * Divides heap into regions and collects regions with most garbage first.
+ *
+ * Every collection is an evacuation pause: live objects in the collection set
+ * (all young regions, plus the old regions with the most garbage in a mixed
+ * collection) are copied into free regions and the evacuated regions are freed.
+ *
+ * Young-only pauses trace from the roots and the remembered sets of the young
+ * regions, which are filled from dirty cards at the start of the pause; the
+ * whole heap is only marked once old space passes the initiating occupancy.
+ * That mark runs inside the mixed pause, so its time counts against the pause
+ * target like any other part of the pause.
+ *
+ * Humongous objects live in their own runs of regions and are never copied.
+ * One that no old object references is traced like a young object, so it can
+ * be reclaimed eagerly at any pause as soon as it is dead.
+ *
+ * Pauses aim at a MaxGCPauseMillis-style target: a {@link G1PausePredictor}
+ * learns evacuation costs from previous pauses, the young generation is sized
+ * so that its evacuation fits the target, and mixed collections only add as
+ * many old regions as the remaining budget allows.
  */
 public class G1GC extends AbstractGarbageCollector {
-    private static final int REGION_COUNT = 16;
-    private final List<HeapRegion> regions;
-    private int youngRegionCount;
+    private static final double RESERVE_PERCENT = 0.10; // Free regions kept for evacuation
+    private static final double MIXED_GC_LIVE_THRESHOLD = 0.85; // Old regions fuller than this are not worth copying
+    private static final int MIXED_GC_COUNT_TARGET = 8; // Mixed collections to spread the candidates over
+    private static final double OLD_CSET_REGION_THRESHOLD = 0.10; // Max old regions per pause, share of the heap
+    private static final double MIN_YOUNG_PERCENT = 0.05;
+    private static final double MAX_YOUNG_PERCENT = 0.60;
+
+    private long regionSize; // 0 = ergonomic default
+    private int regionCount; // 0 = as many as fit the heap
+    private double initiatingHeapOccupancy = 0.45;
+    protected RegionHeap regionHeap;
+    private int lastEvacuationFailures;
+    private long maxGCPauseMillis = 200;
+    private final G1PausePredictor predictor;
+    private final List<G1PausePredictor.RegionCost> regionCosts; // Evacuation costs of the current pause
+    private double lastPredictedPauseMs;
 
     public G1GC() {
-        this.regions = new ArrayList<>();
-        this.youngRegionCount = 0;
+        setMarkingThreads(Runtime.getRuntime().availableProcessors());
+        this.predictor = createPausePredictor();
+        this.regionCosts = new ArrayList<>();
+    }
+
+    /**
+     * Pause-time model used for collection-set selection; newer versions plug in better ones.
+     */
+    protected G1PausePredictor createPausePredictor() {
+        return new G1PausePredictor();
     }
 
     @Override
     public void initialize(JVMSimulator jvm) {
         super.initialize(jvm);
+        this.regionHeap = jvm.getHeap().getRegionHeap();
 
-        // Divide heap into regions
-        long heapSize = jvm.getHeap().getCapacity();
-        long regionSize = heapSize / REGION_COUNT;
-
-        for (int i = 0; i < REGION_COUNT; i++) {
-            regions.add(new HeapRegion(i, regionSize, RegionType.FREE));
+        // Cards for every region; the barrier only dirties them for cross-region stores out of old regions
+        CardTable table = new CardTable();
+        for (HeapRegion region : regionHeap.getRegions()) {
+            table.cover(region);
         }
+        installCardTable(table, (holder, newValue) ->
+                holder.getRegion() != newValue.getRegion() && !isYoung(holder));
+        log(String.format("Heap divided into %d regions of %d KB",
+                regionHeap.getRegionCount(), regionHeap.getRegionSize() / 1024));
+        log("Pause target " + maxGCPauseMillis + "ms, prediction: " + predictor.getDescription());
+        updateYoungTarget();
+    }
 
-        // Initially allocate some regions as young
-        youngRegionCount = REGION_COUNT / 3;
-        for (int i = 0; i < youngRegionCount; i++) {
-            regions.get(i).setType(RegionType.EDEN);
+    @Override
+    protected RegionHeap createRegionHeap() {
+        Heap heap = jvm.getHeap();
+        long heapSize = heap.getYoungGen().getCapacity() + heap.getOldGen().getCapacity();
+        long size = regionSize;
+        if (size == 0) {
+            size = regionCount > 0 ? heapSize / regionCount : RegionHeap.defaultRegionSize(heapSize);
         }
+        int count = regionCount > 0 ? regionCount : (int) Math.max(1, Math.round((double) heapSize / size));
+        return new RegionHeap(size, count);
     }
 
     @Override
@@ -45,9 +96,73 @@ public class G1GC extends AbstractGarbageCollector {
         return GCAlgorithm.G1_JAVA8;
     }
 
+    /**
+     * Region size in bytes, 0 for the ergonomic default. Takes effect on the next initialize.
+     */
+    public void setRegionSize(long regionSize) {
+        if (regionSize < 0) {
+            throw new IllegalArgumentException("Region size must not be negative");
+        }
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * Number of regions, 0 to fill the heap. Takes effect on the next initialize.
+     */
+    public void setRegionCount(int regionCount) {
+        if (regionCount < 0) {
+            throw new IllegalArgumentException("Region count must not be negative");
+        }
+        this.regionCount = regionCount;
+    }
+
+    /**
+     * Old-space occupancy (0.0 to 1.0) above which collections also evacuate old regions.
+     */
+    public void setInitiatingHeapOccupancy(double occupancy) {
+        this.initiatingHeapOccupancy = occupancy;
+    }
+
+    /**
+     * Pause-time goal in milliseconds (MaxGCPauseMillis).
+     */
+    public void setMaxGCPauseMillis(long maxGCPauseMillis) {
+        if (maxGCPauseMillis < 1) {
+            throw new IllegalArgumentException("Pause target must be at least 1ms");
+        }
+        this.maxGCPauseMillis = maxGCPauseMillis;
+    }
+
+    public long getMaxGCPauseMillis() {
+        return maxGCPauseMillis;
+    }
+
+    public G1PausePredictor getPausePredictor() {
+        return predictor;
+    }
+
+    public double getLastPredictedPauseMs() {
+        return lastPredictedPauseMs;
+    }
+
+    public RegionHeap getRegionHeap() {
+        return regionHeap;
+    }
+
+    public int getLastEvacuationFailures() {
+        return lastEvacuationFailures;
+    }
+
+    @Override
+    public boolean shouldCollect() {
+        if (regionHeap.countRegions(HeapRegion.RegionType.EDEN) >= regionHeap.getYoungTargetRegions()) {
+            return true;
+        }
+        return regionHeap.getFreeRegionCount() < regionHeap.getRegionCount() * RESERVE_PERCENT;
+    }
+
     @Override
     public boolean collect() {
-        long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
 
         log("Starting G1 collection");
@@ -56,20 +171,75 @@ public class G1GC extends AbstractGarbageCollector {
                 "G1 GC started",
                 null));
 
-        long bytesCollected = 0;
+        // Evacuation pause
+        long bytesCollected = stopTheWorld("Pause Young", () -> {
+            long pauseStart = System.nanoTime();
+            regionCosts.clear();
+            regionHeap.beginEvacuation();
+            statistics.recordHumongousAllocations(regionHeap.takeHumongousAllocations(),
+                    regionHeap.takeHumongousBytesAllocated());
+
+            // Young Generation Collection (always)
+            List<HeapRegion> collectionSet = regionHeap.getRegions(HeapRegion.RegionType.EDEN);
+            collectionSet.addAll(regionHeap.getRegions(HeapRegion.RegionType.SURVIVOR));
+            log("Phase 1: Young Generation Collection (" + collectionSet.size() + " regions)");
+
+            // Update and scan remembered sets
+            updateRememberedSets(scanDirtyCards());
+            Set<SimulatedObject> remembered = new HashSet<>();
+            for (HeapRegion region : collectionSet) {
+                remembered.addAll(region.getRememberedSet());
+            }
 
-        // Young Generation Collection (always)
-        bytesCollected += youngGC();
+            boolean mixed = shouldDoMixedGC();
+            Set<SimulatedObject> reachable;
+            long collected = 0;
+            double markMs = 0;
+            if (mixed) {
+                // Old space is past the initiating occupancy: mark the whole heap for region liveness
+                long markStart = System.nanoTime();
+                reachable = mark();
+                regionHeap.recordLiveness(reachable::contains);
+                markMs = (System.nanoTime() - markStart) / 1_000_000.0;
+                log(String.format("  Full-heap mark took %.2fms of the pause", markMs));
+                collected += reclaimEmptyOldRegions();
+                collected += reclaimHumongous(regionHeap.getHumongousStartRegions(), reachable);
+            } else {
+                Set<HeapRegion> candidates = humongousReclaimCandidates();
+                reachable = markYoung(remembered,
+                        obj -> isYoung(obj) || candidates.contains(obj.getRegion()));
+                regionHeap.recordLiveness(collectionSet, reachable::contains);
+                collected += reclaimHumongous(candidates, reachable);
+            }
+            // The mark has already been spent, so old regions only get what is left of the target
+            lastPredictedPauseMs = markMs + predictor.predictPauseMs(collectionSet);
+
+            // Mixed Collection (if old gen regions need collection)
+            if (mixed) {
+                setPauseName("Pause Young (Mixed)");
+                List<HeapRegion> oldRegions = selectOldRegions(maxGCPauseMillis - lastPredictedPauseMs);
+                collectionSet.addAll(oldRegions);
+                lastPredictedPauseMs = markMs + predictor.predictPauseMs(collectionSet);
+            }
 
-        // Mixed Collection (if old gen regions need collection)
-        if (shouldDoMixedGC()) {
-            bytesCollected += mixedGC();
-        }
+            collected += evacuate(collectionSet, reachable);
+            rememberOldToYoung(remembered, this::isYoung);
+            reachable.forEach(obj -> obj.setMarked(false));
+            recordCardTableActivity();
+            learnFromPause((System.nanoTime() - pauseStart) / 1_000_000.0, markMs);
+            return collected;
+        });
 
-        long pauseTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(pauseTime, bytesCollected);
+        long pauseTime = recordCollection(bytesCollected);
+        updateYoungTarget();
 
         log(String.format("G1 collection completed in %dms, collected %d bytes", pauseTime, bytesCollected));
+        log(String.format("  Regions: %d eden, %d survivor, %d old, %d humongous, %d free",
+                regionHeap.countRegions(HeapRegion.RegionType.EDEN),
+                regionHeap.countRegions(HeapRegion.RegionType.SURVIVOR),
+                regionHeap.countRegions(HeapRegion.RegionType.OLD),
+                regionHeap.countRegions(HeapRegion.RegionType.HUMONGOUS),
+                regionHeap.getFreeRegionCount()));
         jvm.fireEvent(new JVMSimulator.JVMEvent(
                 JVMSimulator.JVMEvent.EventType.GC_COMPLETED,
                 "G1 GC completed",
@@ -78,111 +248,248 @@ public class G1GC extends AbstractGarbageCollector {
         return true;
     }
 
-    private long youngGC() {
-        log("Phase 1: Young Generation Collection");
+    /**
+     * Young objects are in Eden or Survivor regions, or still in a TLAB.
+     */
+    private boolean isYoung(SimulatedObject obj) {
+        return !(obj.getRegion() instanceof HeapRegion region) || region.isYoung();
+    }
 
-        long bytesCollected = 0;
-        Set<SimulatedObject> reachable = mark();
-
-        // Collect all Eden regions
-        for (HeapRegion region : regions) {
-            if (region.getType() == RegionType.EDEN) {
-                List<Object> toRemove = new ArrayList<>();
-                for (Object obj : region.getObjects()) {
-                    if (obj instanceof SimulatedObject simObj && !reachable.contains(simObj)) {
-                        toRemove.add(obj);
-                        bytesCollected += simObj.getSize();
-                    }
+    /**
+     * Refinement: record every reference from an object on a dirty card into a
+     * young or humongous region in that region's remembered set.
+     */
+    private void updateRememberedSets(List<SimulatedObject> cardHolders) {
+        for (SimulatedObject holder : cardHolders) {
+            MemoryRegion from = holder.getRegion();
+            for (SimulatedObject ref : holder.getReferences()) {
+                if (ref.getRegion() instanceof HeapRegion target && target != from
+                        && (target.isYoung() || target.isHumongousStart())) {
+                    target.remember(holder);
                 }
+            }
+        }
+    }
 
-                for (Object obj : toRemove) {
-                    region.removeObject(obj);
+    /**
+     * Humongous objects that can be reclaimed eagerly: no old object references
+     * them, so a young-only trace decides whether they are live. Remembered-set
+     * entries whose holder died or dropped the reference are pruned first.
+     */
+    private Set<HeapRegion> humongousReclaimCandidates() {
+        Set<HeapRegion> candidates = new HashSet<>();
+        for (HeapRegion start : regionHeap.getHumongousStartRegions()) {
+            SimulatedObject obj = start.getHumongousObject();
+            for (SimulatedObject holder : new ArrayList<>(start.getRememberedSet())) {
+                if (holder.getRegion() == null || !holder.getReferences().contains(obj)) {
+                    start.forget(holder);
                 }
-
-                // Reset region after collection
-                region.clear();
-                region.setType(RegionType.EDEN);
+            }
+            if (start.getRememberedSet().isEmpty()) {
+                candidates.add(start);
             }
         }
-
-        return bytesCollected;
+        return candidates;
     }
 
-    private boolean shouldDoMixedGC() {
-        // Check if any old regions are full
-        for (HeapRegion region : regions) {
-            if (region.getType() == RegionType.OLD && region.getUtilization() > 0.8) {
-                return true;
+    /**
+     * Free the whole run of every unreachable humongous object without copying.
+     */
+    private long reclaimHumongous(Collection<HeapRegion> startRegions, Set<SimulatedObject> reachable) {
+        long bytesCollected = 0;
+        int reclaimed = 0;
+        int regions = 0;
+        for (HeapRegion start : startRegions) {
+            SimulatedObject obj = start.getHumongousObject();
+            if (obj == null || reachable.contains(obj)) {
+                continue;
             }
+            for (HeapRegion region : regionHeap.freeHumongous(start)) {
+                cardTable.clear(region);
+                regions++;
+            }
+            jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED, obj);
+            bytesCollected += obj.getSize();
+            reclaimed++;
+        }
+        if (reclaimed > 0) {
+            statistics.recordHumongousReclaim(reclaimed, bytesCollected);
+            log(String.format("  Eagerly reclaimed %d humongous objects (%d regions, %d KB)",
+                    reclaimed, regions, bytesCollected / 1024));
         }
-        return false;
+        return bytesCollected;
     }
 
-    private long mixedGC() {
-        log("Phase 2: Mixed Collection (Young + Old regions)");
+    private boolean shouldDoMixedGC() {
+        long oldUsed = regionHeap.getUsed(HeapRegion.RegionType.OLD)
+                + regionHeap.getUsed(HeapRegion.RegionType.HUMONGOUS);
+        return oldUsed >= regionHeap.getCapacity() * initiatingHeapOccupancy;
+    }
 
-        long bytesCollected = 0;
-        Set<SimulatedObject> reachable = mark();
-
-        // Select old regions with most garbage (Garbage First heuristic)
-        List<HeapRegion> oldRegions = regions.stream()
-                .filter(r -> r.getType() == RegionType.OLD)
-                .sorted((r1, r2) -> Double.compare(r2.getGarbageRatio(), r1.getGarbageRatio()))
-                .limit(3) // Collect top 3 regions with most garbage
-                .toList();
-
-        for (HeapRegion region : oldRegions) {
-            List<Object> toRemove = new ArrayList<>();
-            for (Object obj : region.getObjects()) {
-                if (obj instanceof SimulatedObject simObj && !reachable.contains(simObj)) {
-                    toRemove.add(obj);
-                    bytesCollected += simObj.getSize();
-                }
+    /**
+     * Garbage First: old regions ordered by reclaimable bytes per predicted
+     * millisecond, skipping regions that are mostly live. A minimum share of
+     * the candidates is always taken so that old space keeps shrinking; more
+     * are added while they fit the remaining pause budget.
+     */
+    private List<HeapRegion> selectOldRegions(double budgetMs) {
+        List<HeapRegion> candidates = new ArrayList<>();
+        for (HeapRegion region : regionHeap.getRegions(HeapRegion.RegionType.OLD)) {
+            if (region.getLiveBytes() < region.getCapacity() * MIXED_GC_LIVE_THRESHOLD) {
+                candidates.add(region);
             }
-
-            for (Object obj : toRemove) {
-                region.removeObject(obj);
+        }
+        candidates.sort(Comparator.comparingDouble(this::gcEfficiency).reversed());
+
+        int minCount = (candidates.size() + MIXED_GC_COUNT_TARGET - 1) / MIXED_GC_COUNT_TARGET;
+        int maxCount = Math.max(1, (int) (regionHeap.getRegionCount() * OLD_CSET_REGION_THRESHOLD));
+        List<HeapRegion> selected = new ArrayList<>();
+        double predictedMs = 0;
+        for (HeapRegion region : candidates) {
+            double regionMs = predictor.predictRegionMs(region);
+            if (selected.size() >= maxCount
+                    || (selected.size() >= minCount && predictedMs + regionMs > budgetMs)) {
+                break;
             }
+            selected.add(region);
+            predictedMs += regionMs;
+        }
 
-            log("  Collected region " + region.getId() + " with " +
+        log(String.format("Phase 2: Mixed Collection (Young + %d of %d candidate Old regions, %.2fms predicted)",
+                selected.size(), candidates.size(), predictedMs));
+        for (HeapRegion region : selected) {
+            log("  Collecting region " + region.getIndex() + " with " +
                     String.format("%.1f%% garbage", region.getGarbageRatio() * 100));
         }
-
-        return bytesCollected;
+        return selected;
     }
 
     /**
-     * Represents a heap region in G1.
+     * Bytes reclaimed per predicted millisecond of evacuation.
      */
-    private static class HeapRegion extends MemoryRegion {
-        private final int id;
-        private RegionType type;
+    private double gcEfficiency(HeapRegion region) {
+        double ms = predictor.predictRegionMs(region);
+        return ms > 0 ? region.getGarbageBytes() / ms : Double.MAX_VALUE;
+    }
 
-        public HeapRegion(int id, long capacity, RegionType type) {
-            super("Region-" + id, capacity);
-            this.id = id;
-            this.type = type;
+    /**
+     * Feed the finished pause to the predictor and record how well the target was met.
+     *
+     * @param markMs time of the full-heap mark in a mixed pause, 0 otherwise
+     */
+    private void learnFromPause(double pauseMs, double markMs) {
+        double evacuationMs = 0;
+        for (G1PausePredictor.RegionCost cost : regionCosts) {
+            evacuationMs += cost.getMs();
         }
-
-        public int getId() {
-            return id;
+        predictor.recordPause(Math.max(0, pauseMs - evacuationMs - markMs), regionCosts);
+        if (markMs > 0) {
+            predictor.recordMark(markMs);
         }
+        statistics.recordPausePrediction(lastPredictedPauseMs, pauseMs, maxGCPauseMillis);
+        log(String.format("  Pause %.2fms, predicted %.2fms, target %dms",
+                pauseMs, lastPredictedPauseMs, maxGCPauseMillis));
+    }
 
-        public RegionType getType() {
-            return type;
+    /**
+     * Size Eden so that evacuating it is predicted to fit the pause target,
+     * leaving room for the full-heap mark if the next pause is a mixed one.
+     */
+    private void updateYoungTarget() {
+        double regionMs = predictor.predictYoungRegionMs(regionHeap.getRegionSize());
+        double budgetMs = maxGCPauseMillis - predictor.predictFixedMs();
+        if (shouldDoMixedGC()) {
+            budgetMs -= predictor.predictMarkMs();
         }
+        int regions = regionMs > 0 ? (int) (budgetMs / regionMs) : regionHeap.getRegionCount();
+        int min = Math.max(1, (int) (regionHeap.getRegionCount() * MIN_YOUNG_PERCENT));
+        int max = Math.max(min, (int) (regionHeap.getRegionCount() * MAX_YOUNG_PERCENT));
+        regions = Math.max(min, Math.min(max, regions));
+        regionHeap.setYoungPercent((double) regions / regionHeap.getRegionCount());
+    }
+
+    /**
+     * Copy the live objects out of the collection set and free its regions.
+     * A region whose objects could not all be copied stays in place as an old
+     * region (evacuation failure).
+     */
+    private long evacuate(List<HeapRegion> collectionSet, Set<SimulatedObject> reachable) {
+        long bytesCollected = 0;
+        long copiedBefore = regionHeap.getBytesEvacuated();
+        lastEvacuationFailures = 0;
+
+        for (HeapRegion region : collectionSet) {
+            long regionStart = System.nanoTime();
+            HeapRegion.RegionType type = region.getType();
+            long used = region.getUsed();
+            long copied = 0;
+            bytesCollected += sweep(region, reachable);
+
+            boolean young = region.isYoung();
+            boolean failed = false;
+            for (SimulatedObject obj : new ArrayList<>(region.getObjects())) {
+                HeapRegion.RegionType destination = HeapRegion.RegionType.OLD;
+                if (young) {
+                    obj.incrementAge();
+                    if (obj.getAge() < tenuringThreshold) {
+                        destination = HeapRegion.RegionType.SURVIVOR;
+                    }
+                }
 
-        public void setType(RegionType type) {
-            this.type = type;
+                if (!regionHeap.evacuate(obj, region, destination)) {
+                    failed = true;
+                    lastEvacuationFailures++;
+                    continue;
+                }
+                copied += obj.getSize();
+                if (destination == HeapRegion.RegionType.OLD && !obj.getReferences().isEmpty()) {
+                    cardTable.dirty(obj); // May now be an old object pointing into young regions
+                }
+                if (young && destination == HeapRegion.RegionType.OLD) {
+                    jvm.fireEvent(JVMSimulator.JVMEvent.EventType.PROMOTION, obj);
+                }
+            }
+
+            if (failed) {
+                region.setType(HeapRegion.RegionType.OLD);
+                region.setLiveBytes(region.getUsed());
+                region.clearRememberedSet();
+                for (SimulatedObject obj : region.getObjects()) {
+                    if (!obj.getReferences().isEmpty()) {
+                        cardTable.dirty(obj);
+                    }
+                }
+            } else {
+                cardTable.clear(region);
+                regionHeap.freeRegion(region);
+            }
+            traceWork(0, copied);
+            regionCosts.add(new G1PausePredictor.RegionCost(type, used, copied,
+                    (System.nanoTime() - regionStart) / 1_000_000.0));
         }
 
-        public double getGarbageRatio() {
-            // Simplified: assume 50% of used space is garbage
-            return getUtilization() * 0.5;
+        log(String.format("  Evacuated %d KB into %d survivor and %d old regions",
+                (regionHeap.getBytesEvacuated() - copiedBefore) / 1024,
+                regionHeap.countRegions(HeapRegion.RegionType.SURVIVOR),
+                regionHeap.countRegions(HeapRegion.RegionType.OLD)));
+        if (lastEvacuationFailures > 0) {
+            log("  Evacuation failure: " + lastEvacuationFailures + " objects left in place");
         }
+        return bytesCollected;
     }
 
-    private enum RegionType {
-        FREE, EDEN, SURVIVOR, OLD, HUMONGOUS
+    /**
+     * Cleanup: old regions in which marking found no live object are freed without copying.
+     */
+    private long reclaimEmptyOldRegions() {
+        long bytesCollected = 0;
+        for (HeapRegion region : regionHeap.getRegions(HeapRegion.RegionType.OLD)) {
+            if (region.getLiveBytes() == 0 && region.getUsed() > 0) {
+                bytesCollected += sweep(region, Set.of());
+                cardTable.clear(region);
+                regionHeap.freeRegion(region);
+            }
+        }
+        return bytesCollected;
     }
 }
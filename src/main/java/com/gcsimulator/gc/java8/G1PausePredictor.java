@@ -0,0 +1,211 @@
+package com.gcsimulator.gc.java8;
+
+import com.gcsimulator.model.memory.HeapRegion;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Pause-time prediction for G1, learned from previous evacuation pauses.
+ * A pause is modelled as a fixed part (root scanning, young marking,
+ * bookkeeping) plus the cost of evacuating each region in the collection set,
+ * which grows with the live bytes that have to be copied. A mixed pause also
+ * marks the whole heap first; that time is learned on its own, so it does not
+ * inflate the fixed part of every young pause.
+ *
+ * This baseline predicts plain averages over the last few pauses. Newer G1
+ * versions plug in subclasses that override {@link #predict(Sequence, double)}
+ * or the per-region cost model.
+ */
+public class G1PausePredictor {
+    protected static final int HISTORY = 10;
+    protected static final double DEFAULT_FIXED_MS = 5.0;
+    protected static final double DEFAULT_COPY_MS_PER_MB = 2.0;
+    protected static final double DEFAULT_SURVIVAL_RATE = 0.5;
+
+    protected final Sequence fixedMs = new Sequence(HISTORY);
+    protected final Sequence copyMsPerByte = new Sequence(HISTORY);
+    protected final Sequence youngSurvivalRate = new Sequence(HISTORY);
+    protected final Sequence markMs = new Sequence(HISTORY);
+
+    /**
+     * Evacuation cost of one collection-set region in a finished pause.
+     */
+    public static class RegionCost {
+        private final HeapRegion.RegionType type;
+        private final long usedBytes;
+        private final long copiedBytes;
+        private final double ms;
+
+        public RegionCost(HeapRegion.RegionType type, long usedBytes, long copiedBytes, double ms) {
+            this.type = type;
+            this.usedBytes = usedBytes;
+            this.copiedBytes = copiedBytes;
+            this.ms = ms;
+        }
+
+        public HeapRegion.RegionType getType() {
+            return type;
+        }
+
+        public boolean isYoung() {
+            return type == HeapRegion.RegionType.EDEN || type == HeapRegion.RegionType.SURVIVOR;
+        }
+
+        public long getUsedBytes() {
+            return usedBytes;
+        }
+
+        public long getCopiedBytes() {
+            return copiedBytes;
+        }
+
+        public double getMs() {
+            return ms;
+        }
+    }
+
+    public String getDescription() {
+        return "average of the last " + HISTORY + " pauses";
+    }
+
+    /**
+     * Learn from a finished pause.
+     *
+     * @param pauseFixedMs pause time not spent evacuating regions
+     * @param regions      evacuation cost of every collection-set region
+     */
+    public void recordPause(double pauseFixedMs, List<RegionCost> regions) {
+        fixedMs.add(pauseFixedMs);
+
+        long copied = 0;
+        long youngUsed = 0;
+        long youngCopied = 0;
+        double evacuationMs = 0;
+        for (RegionCost region : regions) {
+            copied += region.getCopiedBytes();
+            evacuationMs += region.getMs();
+            if (region.isYoung()) {
+                youngUsed += region.getUsedBytes();
+                youngCopied += region.getCopiedBytes();
+            }
+        }
+        if (copied > 0) {
+            copyMsPerByte.add(evacuationMs / copied);
+        }
+        if (youngUsed > 0) {
+            youngSurvivalRate.add((double) youngCopied / youngUsed);
+        }
+    }
+
+    /**
+     * Learn the time the full-heap mark of a mixed pause took.
+     */
+    public void recordMark(double ms) {
+        markMs.add(ms);
+    }
+
+    public double predictFixedMs() {
+        return predict(fixedMs, DEFAULT_FIXED_MS);
+    }
+
+    /**
+     * Predicted time of the full-heap mark at the start of a mixed pause.
+     */
+    public double predictMarkMs() {
+        return predict(markMs, 0.0);
+    }
+
+    /**
+     * Predicted time to evacuate a region, from the live bytes found by marking.
+     */
+    public double predictRegionMs(HeapRegion region) {
+        return region.getLiveBytes() * predictCopyMsPerByte(region.isYoung());
+    }
+
+    /**
+     * Predicted time to evacuate a full Eden region, used to size the young generation.
+     */
+    public double predictYoungRegionMs(long regionSize) {
+        return regionSize * predict(youngSurvivalRate, DEFAULT_SURVIVAL_RATE) * predictCopyMsPerByte(true);
+    }
+
+    public double predictPauseMs(List<HeapRegion> collectionSet) {
+        double ms = predictFixedMs();
+        for (HeapRegion region : collectionSet) {
+            ms += predictRegionMs(region);
+        }
+        return ms;
+    }
+
+    protected double predictCopyMsPerByte(boolean young) {
+        return predict(copyMsPerByte, DEFAULT_COPY_MS_PER_MB / (1024 * 1024));
+    }
+
+    /**
+     * Turn a history of samples into a prediction.
+     */
+    protected double predict(Sequence sequence, double fallback) {
+        return sequence.isEmpty() ? fallback : sequence.average();
+    }
+
+    /**
+     * Bounded history of samples with both a plain and a decaying average, like
+     * HotSpot's TruncatedSeq.
+     */
+    public static class Sequence {
+        private static final double DECAY = 0.3; // Weight of the newest sample in the decaying average
+
+        private final int length;
+        private final Deque<Double> samples;
+        private double sum;
+        private double decayingAverage;
+        private double decayingVariance;
+
+        public Sequence(int length) {
+            this.length = length;
+            this.samples = new ArrayDeque<>(length);
+        }
+
+        public void add(double sample) {
+            if (samples.isEmpty()) {
+                decayingAverage = sample;
+                decayingVariance = 0;
+            } else {
+                double delta = sample - decayingAverage;
+                decayingAverage += DECAY * delta;
+                decayingVariance = (1 - DECAY) * (decayingVariance + DECAY * delta * delta);
+            }
+            samples.addLast(sample);
+            sum += sample;
+            if (samples.size() > length) {
+                sum -= samples.removeFirst();
+            }
+        }
+
+        public boolean isEmpty() {
+            return samples.isEmpty();
+        }
+
+        public int size() {
+            return samples.size();
+        }
+
+        public double last() {
+            return samples.isEmpty() ? 0.0 : samples.getLast();
+        }
+
+        public double average() {
+            return samples.isEmpty() ? 0.0 : sum / samples.size();
+        }
+
+        public double decayingAverage() {
+            return decayingAverage;
+        }
+
+        public double decayingStdDev() {
+            return Math.sqrt(decayingVariance);
+        }
+    }
+}
@@ -7,18 +7,37 @@ import com.gcsimulator.model.objects.SimulatedObject;
 
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Predicate;
 
 /**
  * Parallel GC: Multi-threaded throughput-oriented collector.
  * Uses parallel threads for both young and old generation collection.
+ * Minor GCs trace from the roots and the dirty cards of the old generation.
  */
 public class ParallelGC extends AbstractGarbageCollector {
+    private static final int CHUNK_SIZE = 1024; // Objects per work chunk
+    private static final long PLAB_SIZE = 64 * 1024; // Promotion buffer size in bytes
+
     private final int threadCount;
-    private final ExecutorService executor;
+    private ForkJoinPool executor;
+    private ParallelMarker marker;
 
     public ParallelGC() {
-        this.threadCount = Runtime.getRuntime().availableProcessors();
-        this.executor = Executors.newFixedThreadPool(threadCount);
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ParallelGC(int threadCount) {
+        this.threadCount = threadCount;
+        this.markingThreads = threadCount;
+        startWorkers();
+    }
+
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+        CardTable table = new CardTable();
+        table.cover(jvm.getHeap().getOldGen().getTenured());
+        installCardTable(table);
     }
 
     @Override
@@ -26,9 +45,12 @@ public class ParallelGC extends AbstractGarbageCollector {
         return GCAlgorithm.PARALLEL_GC;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
     @Override
     public boolean collect() {
-        long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
 
         log("Starting parallel collection with " + threadCount + " threads (Stop-The-World)");
@@ -37,16 +59,20 @@ public class ParallelGC extends AbstractGarbageCollector {
                 "Parallel GC started",
                 null));
 
-        // Parallel minor GC
-        long bytesCollected = parallelMinorGC();
+        long bytesCollected = stopTheWorld("Pause Young", () -> {
+            // Parallel minor GC
+            long collected = parallelMinorGC();
 
-        // Parallel major GC if needed
-        if (jvm.getHeap().getOldGen().getUtilization() >= oldGenThreshold) {
-            bytesCollected += parallelMajorGC();
-        }
+            // Parallel major GC if needed
+            if (jvm.getHeap().getOldGen().getUtilization() >= oldGenThreshold) {
+                setPauseName("Pause Full");
+                collected += parallelMajorGC();
+            }
+            recordCardTableActivity();
+            return collected;
+        });
 
-        long pauseTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(pauseTime, bytesCollected);
+        long pauseTime = recordCollection(bytesCollected);
 
         log(String.format("Collection completed in %dms, collected %d bytes", pauseTime, bytesCollected));
         jvm.fireEvent(new JVMSimulator.JVMEvent(
@@ -57,48 +83,93 @@ public class ParallelGC extends AbstractGarbageCollector {
         return true;
     }
 
+    @Override
+    public void reset() {
+        super.reset();
+        stopWorkers();
+        startWorkers();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        stopWorkers();
+    }
+
+    @Override
+    protected ParallelMarker getParallelMarker() {
+        return marker;
+    }
+
+    private void startWorkers() {
+        this.executor = new ForkJoinPool(threadCount);
+        this.marker = new ParallelMarker(executor);
+    }
+
+    private void stopWorkers() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     private long parallelMinorGC() {
         log("Phase 1: Parallel Minor GC");
 
-        // In a real implementation, this would use multiple threads
-        // For simulation, we'll just mark it as parallel
         YoungGeneration youngGen = jvm.getHeap().getYoungGen();
+        MemoryRegion eden = youngGen.getEden();
+        MemoryRegion fromSurvivor = youngGen.getFromSurvivor();
+        MemoryRegion toSurvivor = youngGen.getToSurvivor();
+        MemoryRegion tenured = jvm.getHeap().getOldGen().getTenured();
 
-        // Mark phase (parallelized)
-        Set<SimulatedObject> reachable = mark();
+        // Mark phase: roots and dirty-card references are partitioned across the workers
+        Predicate<SimulatedObject> isYoung = obj -> obj.getRegion() != tenured;
+        List<SimulatedObject> cardHolders = scanDirtyCards();
+        Set<SimulatedObject> reachable = markYoung(cardHolders, isYoung);
 
-        // Sweep phase (parallelized)
-        long bytesCollected = 0;
-        bytesCollected += sweep(youngGen.getEden(), reachable);
-        bytesCollected += sweep(youngGen.getFromSurvivor(), reachable);
-
-        // Copy survivors
-        List<SimulatedObject> survivors = new ArrayList<>();
-        for (Object obj : youngGen.getEden().getObjects()) {
-            if (obj instanceof SimulatedObject simObj && reachable.contains(simObj)) {
-                survivors.add(simObj);
+        // Scavenge phase: each worker copies its chunks through its own pair of PLABs.
+        // The work lists are copies, so the source spaces are emptied up front.
+        List<Callable<ScavengeResult>> tasks = new ArrayList<>();
+        Map<Thread, WorkerPlabs> plabs = new ConcurrentHashMap<>();
+        for (MemoryRegion source : List.of(eden, fromSurvivor)) {
+            for (List<SimulatedObject> chunk : chunks(source)) {
+                tasks.add(() -> scavenge(source, chunk, reachable, plabs.computeIfAbsent(Thread.currentThread(),
+                        worker -> new WorkerPlabs(toSurvivor, tenured))));
             }
         }
+        eden.clear();
+        fromSurvivor.clear();
+        List<ScavengeResult> results = runAll(tasks);
+        long plabRefills = 0;
+        for (WorkerPlabs workerPlabs : plabs.values()) {
+            plabRefills += workerPlabs.retire();
+        }
 
-        // Process survivors
-        for (SimulatedObject obj : survivors) {
-            obj.incrementAge();
-            if (obj.getAge() >= 15) {
-                youngGen.getEden().removeObject(obj);
-                youngGen.getEden().subtractUsed(obj.getSize());
-                jvm.getHeap().getOldGen().promote(obj);
-            } else {
-                MemoryRegion toSurvivor = youngGen.getToSurvivor();
-                if (toSurvivor.canAllocate(obj.getSize())) {
-                    youngGen.getEden().removeObject(obj);
-                    youngGen.getEden().subtractUsed(obj.getSize());
-                    toSurvivor.addObject(obj);
-                    toSurvivor.addUsed(obj.getSize());
-                }
+        long bytesCollected = 0;
+        int promoted = 0;
+        lastPromotionFailures = 0;
+        for (ScavengeResult result : results) {
+            bytesCollected += result.bytesCollected;
+            lastPromotionFailures += result.retained.size();
+            promoted += result.promoted.size();
+            for (SimulatedObject obj : result.promoted) {
+                cardHolders.add(obj); // Promoted objects may point into the young generation
+                jvm.fireEvent(JVMSimulator.JVMEvent.EventType.PROMOTION, obj);
             }
+            fireCollected(result.dead);
         }
 
         youngGen.swapSurvivors();
+        rememberOldToYoung(cardHolders, isYoung);
+
+        log(String.format("  Scavenged %d chunks on %d workers, promoted %d objects, %d PLAB refills",
+                tasks.size(), plabs.size(), promoted, plabRefills));
+        if (lastPromotionFailures > 0) {
+            statistics.recordPromotionFailures(lastPromotionFailures);
+            log("  Promotion failed for " + lastPromotionFailures + " objects, left in the young generation");
+        }
 
         return bytesCollected;
     }
@@ -106,16 +177,223 @@ public class ParallelGC extends AbstractGarbageCollector {
     private long parallelMajorGC() {
         log("Phase 2: Parallel Major GC");
 
-        OldGeneration oldGen = jvm.getHeap().getOldGen();
+        MemoryRegion tenured = jvm.getHeap().getOldGen().getTenured();
 
         // Parallel mark
         Set<SimulatedObject> reachable = mark();
 
-        // Parallel sweep and compact
-        long bytesCollected = sweep(oldGen.getTenured(), reachable);
+        // Parallel sweep: each worker sweeps one chunk of the tenured space
+        List<Callable<ScavengeResult>> tasks = new ArrayList<>();
+        for (List<SimulatedObject> chunk : chunks(tenured)) {
+            tasks.add(() -> sweepChunk(tenured, chunk, reachable));
+        }
+        List<ScavengeResult> results = runAll(tasks);
+
+        long bytesCollected = 0;
+        for (ScavengeResult result : results) {
+            bytesCollected += result.bytesCollected;
+            fireCollected(result.dead);
+        }
+
+        log("  Parallel sweep of " + tasks.size() + " chunks");
 
-        log("  Parallel compaction");
+        long bytesMoved = tenured.compact();
+        traceWork(0, bytesMoved);
+        cardTable.rebuild(tenured);
+        log("  Serial compaction moved " + bytesMoved + " bytes");
 
         return bytesCollected;
     }
+
+    /**
+     * Worker body for the minor GC: copy live objects of one chunk to survivor
+     * or old space, through the PLABs of the worker running it. An object
+     * neither space has room for goes back to its source space.
+     */
+    private ScavengeResult scavenge(MemoryRegion source, List<SimulatedObject> chunk,
+            Set<SimulatedObject> reachable, WorkerPlabs plabs) {
+        ScavengeResult result = new ScavengeResult();
+        PromotionBuffer survivorPlab = plabs.survivor;
+        PromotionBuffer oldPlab = plabs.old;
+
+        for (SimulatedObject obj : chunk) {
+            if (!reachable.contains(obj)) {
+                result.dead.add(obj);
+                result.bytesCollected += obj.getSize();
+                continue;
+            }
+
+            obj.setMarked(false); // Reset mark for next collection
+            obj.incrementAge();
+            if (obj.getAge() < tenuringThreshold && survivorPlab.allocate(obj)) {
+                continue;
+            }
+            if (oldPlab.allocate(obj)) {
+                result.promoted.add(obj);
+            } else {
+                source.addObject(obj);
+                source.addUsed(obj.getSize());
+                result.retained.add(obj);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Worker body for the major GC: find the dead objects of one chunk and
+     * remove them from the region in one batch.
+     */
+    private ScavengeResult sweepChunk(MemoryRegion source, List<SimulatedObject> chunk,
+            Set<SimulatedObject> reachable) {
+        ScavengeResult result = new ScavengeResult();
+        for (SimulatedObject obj : chunk) {
+            if (reachable.contains(obj)) {
+                obj.setMarked(false); // Reset mark for next collection
+            } else {
+                result.dead.add(obj);
+            }
+        }
+        result.bytesCollected = source.removeAll(result.dead);
+        return result;
+    }
+
+    private void fireCollected(List<SimulatedObject> dead) {
+        if (!jvm.hasEventListeners(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED)) {
+            return;
+        }
+        for (SimulatedObject obj : dead) {
+            jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_COLLECTED, obj);
+        }
+    }
+
+    /**
+     * Split a region's objects into fixed-size work chunks.
+     */
+    private List<List<SimulatedObject>> chunks(MemoryRegion region) {
+        List<SimulatedObject> objects = new ArrayList<>(region.getObjects());
+
+        List<List<SimulatedObject>> chunks = new ArrayList<>();
+        for (int i = 0; i < objects.size(); i += CHUNK_SIZE) {
+            chunks.add(objects.subList(i, Math.min(i + CHUNK_SIZE, objects.size())));
+        }
+        return chunks;
+    }
+
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Parallel GC interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Parallel GC worker failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * The survivor and old PLABs of one worker thread, kept for a whole minor GC.
+     */
+    private static class WorkerPlabs {
+        private final PromotionBuffer survivor;
+        private final PromotionBuffer old;
+
+        WorkerPlabs(MemoryRegion survivorSpace, MemoryRegion oldSpace) {
+            this.survivor = new PromotionBuffer(survivorSpace);
+            this.old = new PromotionBuffer(oldSpace);
+        }
+
+        /**
+         * @return how often the buffers were refilled
+         */
+        long retire() {
+            return survivor.retire() + old.retire();
+        }
+    }
+
+    /**
+     * Per-thread promotion/survivor buffer (PLAB): a chunk carved from the
+     * destination region in which the worker places objects at their final
+     * offsets. Like a TLAB, it locks the region only to take a new chunk and
+     * to publish a full one.
+     */
+    private static class PromotionBuffer {
+        private final MemoryRegion region;
+        private final List<SimulatedObject> pending;
+        private long top;
+        private long end;
+        private long refills;
+
+        PromotionBuffer(MemoryRegion region) {
+            this.region = region;
+            this.pending = new ArrayList<>();
+            this.top = -1;
+            this.end = -1;
+        }
+
+        /**
+         * Place an object in the buffer, refilling it when full.
+         *
+         * @return false if the region has no room for the object
+         */
+        boolean allocate(SimulatedObject obj) {
+            long size = obj.getSize();
+            if (top < 0 || size > end - top) {
+                long refill = Math.max(PLAB_SIZE, size);
+                long chunk = region.allocateChunk(refill);
+                if (chunk < 0) {
+                    // Not enough room for a full buffer, try a direct allocation
+                    long address = region.allocateChunk(size);
+                    if (address < 0) {
+                        return false;
+                    }
+                    obj.setAddress(address);
+                    region.retireChunk(List.of(obj), address + size, 0);
+                    return true;
+                }
+                publish(); // The tail of the old buffer goes back to the region
+                top = chunk;
+                end = chunk + refill;
+                refills++;
+            }
+            obj.setAddress(top);
+            top += size;
+            pending.add(obj);
+            return true;
+        }
+
+        /**
+         * Publish the buffered objects and give the unused tail back.
+         *
+         * @return how often the buffer was refilled
+         */
+        long retire() {
+            publish();
+            return refills;
+        }
+
+        private void publish() {
+            if (top < 0) {
+                return;
+            }
+            region.retireChunk(pending, top, end - top);
+            pending.clear();
+            top = -1;
+            end = -1;
+        }
+    }
+
+    /**
+     * Per-chunk output of a worker, merged on the VM thread.
+     */
+    private static class ScavengeResult {
+        private final List<SimulatedObject> dead = new ArrayList<>();
+        private final List<SimulatedObject> promoted = new ArrayList<>();
+        private final List<SimulatedObject> retained = new ArrayList<>();
+        private long bytesCollected;
+    }
 }
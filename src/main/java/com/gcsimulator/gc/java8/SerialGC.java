@@ -6,13 +6,23 @@ import com.gcsimulator.model.memory.*;
 import com.gcsimulator.model.objects.SimulatedObject;
 
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Serial GC: Single-threaded stop-the-world collector.
  * Uses mark-sweep-compact for both young and old generations.
+ * Minor GCs trace from the roots and the dirty cards of the old generation.
  */
 public class SerialGC extends AbstractGarbageCollector {
 
+    @Override
+    public void initialize(JVMSimulator jvm) {
+        super.initialize(jvm);
+        CardTable table = new CardTable();
+        table.cover(jvm.getHeap().getOldGen().getTenured());
+        installCardTable(table);
+    }
+
     @Override
     public GCAlgorithm getAlgorithm() {
         return GCAlgorithm.SERIAL_GC;
@@ -20,7 +30,6 @@ public class SerialGC extends AbstractGarbageCollector {
 
     @Override
     public boolean collect() {
-        long startTime = System.currentTimeMillis();
         jvm.incrementGCs();
 
         log("Starting collection (Stop-The-World)");
@@ -29,16 +38,20 @@ public class SerialGC extends AbstractGarbageCollector {
                 "Serial GC started",
                 null));
 
-        // Phase 1: Minor GC (Young Generation)
-        long bytesCollected = minorGC();
+        long bytesCollected = stopTheWorld("Pause Young", () -> {
+            // Phase 1: Minor GC (Young Generation)
+            long collected = minorGC();
 
-        // Phase 2: Major GC (Old Generation) if needed
-        if (jvm.getHeap().getOldGen().getUtilization() >= oldGenThreshold) {
-            bytesCollected += majorGC();
-        }
+            // Phase 2: Major GC (Old Generation) if needed
+            if (jvm.getHeap().getOldGen().getUtilization() >= oldGenThreshold) {
+                setPauseName("Pause Full");
+                collected += majorGC();
+            }
+            recordCardTableActivity();
+            return collected;
+        });
 
-        long pauseTime = System.currentTimeMillis() - startTime;
-        statistics.recordCollection(pauseTime, bytesCollected);
+        long pauseTime = recordCollection(bytesCollected);
 
         log(String.format("Collection completed in %dms, collected %d bytes", pauseTime, bytesCollected));
         jvm.fireEvent(new JVMSimulator.JVMEvent(
@@ -50,78 +63,20 @@ public class SerialGC extends AbstractGarbageCollector {
     }
 
     /**
-     * Minor GC: Collect young generation.
+     * Minor GC: Collect young generation. Package-private for the benchmarks.
      */
-    private long minorGC() {
+    long minorGC() {
         log("Phase 1: Minor GC (Young Generation)");
 
-        YoungGeneration youngGen = jvm.getHeap().getYoungGen();
-        MemoryRegion eden = youngGen.getEden();
-        MemoryRegion fromSurvivor = youngGen.getFromSurvivor();
-        MemoryRegion toSurvivor = youngGen.getToSurvivor();
-
-        // Mark reachable objects
-        Set<SimulatedObject> reachable = mark();
-
-        long bytesCollected = 0;
-        List<SimulatedObject> survivors = new ArrayList<>();
-
-        // Process Eden
-        for (Object obj : new ArrayList<>(eden.getObjects())) {
-            if (obj instanceof SimulatedObject simObj) {
-                if (reachable.contains(simObj)) {
-                    survivors.add(simObj);
-                } else {
-                    eden.removeObject(obj);
-                    eden.subtractUsed(simObj.getSize());
-                    bytesCollected += simObj.getSize();
-                }
-            }
-        }
-
-        // Process from-survivor
-        for (Object obj : new ArrayList<>(fromSurvivor.getObjects())) {
-            if (obj instanceof SimulatedObject simObj) {
-                if (reachable.contains(simObj)) {
-                    simObj.incrementAge();
-                    survivors.add(simObj);
-                } else {
-                    fromSurvivor.removeObject(obj);
-                    fromSurvivor.subtractUsed(simObj.getSize());
-                    bytesCollected += simObj.getSize();
-                }
-            }
-        }
-
-        // Move survivors to to-survivor or promote to old gen
-        List<SimulatedObject> toPromote = new ArrayList<>();
-        for (SimulatedObject obj : survivors) {
-            if (obj.getAge() >= 15) { // Promotion threshold
-                toPromote.add(obj);
-                // Remove from young gen
-                eden.removeObject(obj);
-                fromSurvivor.removeObject(obj);
-                eden.subtractUsed(obj.getSize());
-                fromSurvivor.subtractUsed(obj.getSize());
-            } else {
-                // Move to to-survivor
-                if (toSurvivor.canAllocate(obj.getSize())) {
-                    toSurvivor.addObject(obj);
-                    toSurvivor.addUsed(obj.getSize());
-                    eden.removeObject(obj);
-                    fromSurvivor.removeObject(obj);
-                    eden.subtractUsed(obj.getSize());
-                    fromSurvivor.subtractUsed(obj.getSize());
-                }
-            }
-        }
-
-        // Promote aged objects to old generation
-        promoteObjects(toPromote);
-
-        // Swap survivors
-        youngGen.swapSurvivors();
+        // Mark reachable young objects from roots and dirty cards
+        MemoryRegion tenured = jvm.getHeap().getOldGen().getTenured();
+        Predicate<SimulatedObject> isYoung = obj -> obj.getRegion() != tenured;
+        List<SimulatedObject> cardHolders = scanDirtyCards();
+        Set<SimulatedObject> reachable = markYoung(cardHolders, isYoung);
 
+        // Copy survivors to to-survivor and promote aged objects
+        long bytesCollected = copyYoungGeneration(reachable);
+        rememberOldToYoung(cardHolders, isYoung);
         return bytesCollected;
     }
 
@@ -137,10 +92,15 @@ public class SerialGC extends AbstractGarbageCollector {
         Set<SimulatedObject> reachable = mark();
 
         // Sweep and compact
-        long bytesCollected = sweep(oldGen.getTenured(), reachable);
-
-        // Compact (simulated)
-        log("  Compacting old generation");
+        MemoryRegion tenured = oldGen.getTenured();
+        long bytesCollected = sweep(tenured, reachable);
+
+        double fragmentation = tenured.getFragmentation();
+        long bytesMoved = tenured.compact();
+        traceWork(0, bytesMoved);
+        cardTable.rebuild(tenured);
+        log(String.format("  Compacted old generation: moved %d bytes, fragmentation %.1f%% -> %.1f%%",
+                bytesMoved, fragmentation * 100, tenured.getFragmentation() * 100));
 
         return bytesCollected;
     }
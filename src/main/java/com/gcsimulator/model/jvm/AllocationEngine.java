@@ -2,18 +2,37 @@ package com.gcsimulator.model.jvm;
 
 import com.gcsimulator.model.objects.SimulatedObject;
 
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Handles object allocation in the JVM.
+ * Small objects are bump-allocated in the calling thread's TLAB; large objects
+ * and allocations that do not fit a TLAB take the shared slow path.
  */
 public class AllocationEngine {
     private final JVMSimulator jvm;
     private final Random random;
 
+    private final ThreadLocal<Tlab> currentTlab;
+    private final Map<Thread, Tlab> tlabs;
+    private volatile boolean tlabsEnabled;
+
+    private final LongAdder tlabAllocations;
+    private final LongAdder sharedAllocations;
+    private long retiredRefills; // Refills of TLABs whose threads have terminated
+    private long retiredWaste;
+
     public AllocationEngine(JVMSimulator jvm) {
         this.jvm = jvm;
         this.random = new Random();
+        this.currentTlab = new ThreadLocal<>();
+        this.tlabs = new ConcurrentHashMap<>();
+        this.tlabsEnabled = true;
+        this.tlabAllocations = new LongAdder();
+        this.sharedAllocations = new LongAdder();
     }
 
     /**
@@ -21,14 +40,18 @@ public class AllocationEngine {
      */
     public SimulatedObject allocate(long size, String type) {
         SimulatedObject obj = new SimulatedObject(size, type);
+        obj.setWriteBarrier(jvm.getBarrierSet());
+        obj.setLoadBarrier(jvm.getBarrierSet());
 
         try {
-            jvm.getHeap().allocate(obj);
+            if (tlabsEnabled && !jvm.getHeap().isHumongous(size) && allocateInTlab(obj)) {
+                tlabAllocations.increment();
+            } else {
+                jvm.getHeap().allocate(obj);
+                sharedAllocations.increment();
+            }
             jvm.incrementAllocations();
-            jvm.fireEvent(new JVMSimulator.JVMEvent(
-                    JVMSimulator.JVMEvent.EventType.OBJECT_ALLOCATED,
-                    "Allocated object: " + obj,
-                    obj));
+            jvm.fireEvent(JVMSimulator.JVMEvent.EventType.OBJECT_ALLOCATED, obj);
             return obj;
         } catch (OutOfMemoryError e) {
             jvm.fireEvent(new JVMSimulator.JVMEvent(
@@ -43,11 +66,31 @@ public class AllocationEngine {
      * Allocate a random object.
      */
     public SimulatedObject allocateRandom() {
-        // Random size between 100 bytes and 10KB
-        long size = 100 + random.nextInt(10000);
+        return allocateRandom(random);
+    }
+
+    /**
+     * Allocate a random object using the caller's random source, so that each
+     * mutator thread can have its own reproducible allocation stream.
+     */
+    public SimulatedObject allocateRandom(Random random) {
         String[] types = { "User", "Order", "Product", "Session", "Cache", "Buffer" };
         String type = types[random.nextInt(types.length)];
-        return allocate(size, type);
+        return allocate(randomSize(type, random), type);
+    }
+
+    /**
+     * Random size between 100 bytes and 10KB. Buffers are larger, from 1KB to
+     * 64KB, and one in 64 is a large I/O buffer of 256KB to 2MB.
+     */
+    private static long randomSize(String type, Random random) {
+        if (!"Buffer".equals(type)) {
+            return 100 + random.nextInt(10000);
+        }
+        if (random.nextInt(64) == 0) {
+            return 256 * 1024 + random.nextInt(1792 * 1024);
+        }
+        return 1024 + random.nextInt(63 * 1024);
     }
 
     /**
@@ -65,4 +108,93 @@ public class AllocationEngine {
 
         return root;
     }
+
+    /**
+     * Retire every TLAB so that all allocated objects are visible in Eden.
+     * Must be called before a collection walks or moves Eden, with the
+     * mutators stopped at a safepoint.
+     */
+    public void retireTlabs() {
+        long edenCapacity = jvm.getHeap().getEdenCapacity();
+        for (Tlab tlab : tlabs.values()) {
+            tlab.retireForGC(edenCapacity);
+            if (!tlab.getOwner().isAlive()) {
+                tlabs.remove(tlab.getOwner());
+                retiredRefills += tlab.getRefills();
+                retiredWaste += tlab.getWastedBytes();
+            }
+        }
+    }
+
+    /**
+     * Drop all TLABs without publishing their objects, used on JVM reset.
+     */
+    public void reset() {
+        for (Tlab tlab : tlabs.values()) {
+            tlab.discard();
+        }
+        tlabs.clear();
+        currentTlab.remove();
+        tlabAllocations.reset();
+        sharedAllocations.reset();
+        retiredRefills = 0;
+        retiredWaste = 0;
+    }
+
+    public void setTlabsEnabled(boolean enabled) {
+        if (!enabled) {
+            retireTlabs();
+        }
+        this.tlabsEnabled = enabled;
+    }
+
+    public boolean isTlabsEnabled() {
+        return tlabsEnabled;
+    }
+
+    public int getTlabCount() {
+        return tlabs.size();
+    }
+
+    public long getTlabAllocations() {
+        return tlabAllocations.sum();
+    }
+
+    public long getSharedAllocations() {
+        return sharedAllocations.sum();
+    }
+
+    public long getTlabRefills() {
+        long refills = retiredRefills;
+        for (Tlab tlab : tlabs.values()) {
+            refills += tlab.getRefills();
+        }
+        return refills;
+    }
+
+    /**
+     * Bytes lost to TLAB tails that were retired before they were full.
+     */
+    public long getTlabWasteBytes() {
+        long waste = retiredWaste;
+        for (Tlab tlab : tlabs.values()) {
+            waste += tlab.getWastedBytes();
+        }
+        return waste;
+    }
+
+    private boolean allocateInTlab(SimulatedObject obj) {
+        Tlab tlab = currentTlab.get();
+        if (tlab == null || tlab.isDiscarded()) {
+            Thread thread = Thread.currentThread();
+            tlab = new Tlab(thread, 1.0 / (tlabs.size() + 1));
+            tlabs.put(thread, tlab);
+            currentTlab.set(tlab);
+        }
+
+        if (tlab.tryAllocate(obj)) {
+            return true;
+        }
+        return tlab.refill(jvm.getHeap(), obj);
+    }
 }
@@ -0,0 +1,56 @@
+package com.gcsimulator.model.jvm;
+
+import com.gcsimulator.model.objects.LoadBarrier;
+import com.gcsimulator.model.objects.SimulatedObject;
+import com.gcsimulator.model.objects.WriteBarrier;
+
+/**
+ * The heap's write and load barriers. Every allocated object routes its
+ * reference stores and loads through this set, and the active collector
+ * installs the barriers it needs.
+ */
+public class BarrierSet implements WriteBarrier, LoadBarrier {
+    private volatile WriteBarrier barrier;
+    private volatile LoadBarrier loadBarrier;
+
+    public BarrierSet() {
+        this.barrier = WriteBarrier.NONE;
+        this.loadBarrier = LoadBarrier.NONE;
+    }
+
+    public void install(WriteBarrier barrier) {
+        this.barrier = barrier != null ? barrier : WriteBarrier.NONE;
+    }
+
+    public WriteBarrier getBarrier() {
+        return barrier;
+    }
+
+    public void installLoadBarrier(LoadBarrier loadBarrier) {
+        this.loadBarrier = loadBarrier != null ? loadBarrier : LoadBarrier.NONE;
+    }
+
+    public LoadBarrier getLoadBarrier() {
+        return loadBarrier;
+    }
+
+    @Override
+    public void preWrite(SimulatedObject holder, SimulatedObject oldValue) {
+        barrier.preWrite(holder, oldValue);
+    }
+
+    @Override
+    public void postWrite(SimulatedObject holder, SimulatedObject newValue) {
+        barrier.postWrite(holder, newValue);
+    }
+
+    @Override
+    public long encode(SimulatedObject target) {
+        return loadBarrier.encode(target);
+    }
+
+    @Override
+    public void onLoad(SimulatedObject holder, SimulatedObject target, long word) {
+        loadBarrier.onLoad(holder, target, word);
+    }
+}
@@ -0,0 +1,179 @@
+package com.gcsimulator.model.jvm;
+
+import com.gcsimulator.model.jvm.JVMSimulator.JVMEvent;
+import com.gcsimulator.model.jvm.JVMSimulator.JVMEventListener;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers JVM events to the listeners subscribed to their type, in batches
+ * on a dispatcher thread, so that publishers never run listener code. A type
+ * nobody subscribed to costs a single volatile read: the event is not even
+ * created. The dispatcher starts on the first event and stops after a while
+ * without any.
+ */
+public class JVMEventBus {
+    private static final int QUEUE_CAPACITY = 1 << 16;
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_TIMEOUT_MS = 1000;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile int subscribedTypes; // Bit per EventType ordinal
+    private final BlockingQueue<JVMEvent> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final Object deliveryLock = new Object(); // Notified as batches are delivered
+    private volatile Thread dispatcher;
+
+    /**
+     * Deliver events of the given types, or of every type if none are given.
+     */
+    public void subscribe(JVMEventListener listener, JVMEvent.EventType... types) {
+        Set<JVMEvent.EventType> filter = types.length == 0
+                ? EnumSet.allOf(JVMEvent.EventType.class)
+                : EnumSet.of(types[0], types);
+        subscriptions.add(new Subscription(listener, filter));
+        updateSubscribedTypes();
+    }
+
+    public void unsubscribe(JVMEventListener listener) {
+        subscriptions.removeIf(subscription -> subscription.listener == listener);
+        updateSubscribedTypes();
+    }
+
+    /**
+     * Whether any listener wants events of this type; publishers check this
+     * before building an event.
+     */
+    public boolean hasSubscribers(JVMEvent.EventType type) {
+        return (subscribedTypes & (1 << type.ordinal())) != 0;
+    }
+
+    /**
+     * Queue an event for delivery. Blocks only while the queue is full, so
+     * that no event is lost when listeners fall behind.
+     */
+    public void publish(JVMEvent event) {
+        if (!hasSubscribers(event.getType())) {
+            return;
+        }
+        published.incrementAndGet();
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            markDelivered(1); // Dropped
+            return;
+        }
+        startDispatcher();
+    }
+
+    /**
+     * Wait until every event published so far has been delivered, e.g. before
+     * reading totals a listener accumulated.
+     */
+    public void flush() throws InterruptedException {
+        if (Thread.currentThread() == dispatcher) {
+            return; // A listener flushing would wait for itself
+        }
+        long target = published.get();
+        synchronized (deliveryLock) {
+            while (delivered.get() < target) {
+                deliveryLock.wait();
+            }
+        }
+    }
+
+    private void updateSubscribedTypes() {
+        int types = 0;
+        for (Subscription subscription : subscriptions) {
+            for (JVMEvent.EventType type : subscription.types) {
+                types |= 1 << type.ordinal();
+            }
+        }
+        subscribedTypes = types;
+    }
+
+    private void startDispatcher() {
+        if (dispatching.compareAndSet(false, true)) {
+            Thread thread = new Thread(this::dispatchLoop, "JVM Event Dispatcher");
+            thread.setDaemon(true);
+            dispatcher = thread;
+            thread.start();
+        }
+    }
+
+    private void dispatchLoop() {
+        List<JVMEvent> batch = new ArrayList<>();
+        while (true) {
+            JVMEvent first;
+            try {
+                first = queue.poll(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                first = null;
+            }
+            if (first == null) {
+                dispatching.set(false);
+                // An event queued after the poll timed out found the dispatcher still running
+                if (queue.isEmpty() || !dispatching.compareAndSet(false, true)) {
+                    return;
+                }
+                continue;
+            }
+            batch.add(first);
+            queue.drainTo(batch, MAX_BATCH - 1);
+            deliver(batch);
+            markDelivered(batch.size());
+            batch.clear();
+        }
+    }
+
+    /**
+     * Hand each subscriber the events of its types in the batch, in order and in one call.
+     */
+    private void deliver(List<JVMEvent> batch) {
+        for (Subscription subscription : subscriptions) {
+            List<JVMEvent> events = new ArrayList<>(batch.size());
+            for (JVMEvent event : batch) {
+                if (subscription.types.contains(event.getType())) {
+                    events.add(event);
+                }
+            }
+            if (events.isEmpty()) {
+                continue;
+            }
+            try {
+                subscription.listener.onEvents(events);
+            } catch (RuntimeException e) {
+                System.err.println("JVM event listener failed: " + e);
+            }
+        }
+    }
+
+    private void markDelivered(int count) {
+        delivered.addAndGet(count);
+        synchronized (deliveryLock) {
+            deliveryLock.notifyAll();
+        }
+    }
+
+    private static class Subscription {
+        final JVMEventListener listener;
+        final Set<JVMEvent.EventType> types;
+
+        Subscription(JVMEventListener listener, Set<JVMEvent.EventType> types) {
+            this.listener = listener;
+            this.types = types;
+        }
+    }
+}
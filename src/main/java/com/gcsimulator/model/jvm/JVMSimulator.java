@@ -6,6 +6,7 @@ import com.gcsimulator.model.objects.SimulatedObject;
 
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Main JVM simulator orchestrating memory, stack, and GC.
@@ -17,10 +18,12 @@ public class JVMSimulator {
     private final List<com.gcsimulator.model.memory.Stack> threadStacks;
     private final RootSet rootSet;
     private final AllocationEngine allocationEngine;
-    private final List<JVMEventListener> listeners;
+    private final SafepointManager safepointManager;
+    private final BarrierSet barrierSet;
+    private final JVMEventBus eventBus;
 
-    private long totalAllocations;
-    private long totalGCs;
+    private final LongAdder totalAllocations;
+    private volatile long totalGCs;
 
     public JVMSimulator(long ramSize, long heapSize, long metaspaceSize) {
         this.ram = new SimulatedRAM(ramSize);
@@ -33,16 +36,18 @@ public class JVMSimulator {
         // Metaspace (Java 8+) is dynamic
         this.metaspace = new Metaspace(metaspaceSize / 2, metaspaceSize, true);
 
-        this.threadStacks = new ArrayList<>();
+        this.threadStacks = new CopyOnWriteArrayList<>();
         this.rootSet = new RootSet();
         this.allocationEngine = new AllocationEngine(this);
-        this.listeners = new CopyOnWriteArrayList<>();
+        this.safepointManager = new SafepointManager();
+        this.barrierSet = new BarrierSet();
+        this.eventBus = new JVMEventBus();
 
         // Allocate memory in RAM
         ram.allocate("Heap", heapSize);
         ram.allocate("Metaspace", metaspaceSize / 2);
 
-        this.totalAllocations = 0;
+        this.totalAllocations = new LongAdder();
         this.totalGCs = 0;
     }
 
@@ -70,18 +75,31 @@ public class JVMSimulator {
         return allocationEngine;
     }
 
+    public SafepointManager getSafepointManager() {
+        return safepointManager;
+    }
+
+    public BarrierSet getBarrierSet() {
+        return barrierSet;
+    }
+
+    /**
+     * Add a thread stack; its frames' local references become GC roots.
+     */
     public void addStack(com.gcsimulator.model.memory.Stack stack) {
         threadStacks.add(stack);
+        rootSet.addStack(stack);
         ram.allocate("Stack-" + stack.getThreadName(), stack.getCapacity());
     }
 
     public void removeStack(com.gcsimulator.model.memory.Stack stack) {
         threadStacks.remove(stack);
+        rootSet.removeStack(stack);
         ram.deallocate("Stack-" + stack.getThreadName(), stack.getCapacity());
     }
 
     public void incrementAllocations() {
-        totalAllocations++;
+        totalAllocations.increment();
     }
 
     public void incrementGCs() {
@@ -89,36 +107,64 @@ public class JVMSimulator {
     }
 
     public long getTotalAllocations() {
-        return totalAllocations;
+        return totalAllocations.sum();
     }
 
     public long getTotalGCs() {
         return totalGCs;
     }
 
-    public void addEventListener(JVMEventListener listener) {
-        listeners.add(listener);
+    /**
+     * Subscribe to events of the given types, or of every type if none are
+     * given. Events are delivered in batches on the event dispatcher thread.
+     */
+    public void addEventListener(JVMEventListener listener, JVMEvent.EventType... types) {
+        eventBus.subscribe(listener, types);
     }
 
     public void removeEventListener(JVMEventListener listener) {
-        listeners.remove(listener);
+        eventBus.unsubscribe(listener);
+    }
+
+    /**
+     * Whether anyone listens to events of this type, for publishers that
+     * would do extra work just to report them.
+     */
+    public boolean hasEventListeners(JVMEvent.EventType type) {
+        return eventBus.hasSubscribers(type);
     }
 
     public void fireEvent(JVMEvent event) {
-        for (JVMEventListener listener : listeners) {
-            listener.onEvent(event);
+        eventBus.publish(event);
+    }
+
+    /**
+     * Fire a per-object event. Nothing is created unless someone listens to
+     * the type, and the message is only built if a listener asks for it.
+     */
+    public void fireEvent(JVMEvent.EventType type, SimulatedObject obj) {
+        if (eventBus.hasSubscribers(type)) {
+            eventBus.publish(new JVMEvent(type, null, obj));
         }
     }
 
+    /**
+     * Wait until the listeners have received every event fired so far.
+     */
+    public void flushEvents() throws InterruptedException {
+        eventBus.flush();
+    }
+
     /**
      * Reset the JVM state.
      */
     public void reset() {
+        allocationEngine.reset();
         heap.clear();
         metaspace.clear();
         threadStacks.forEach(com.gcsimulator.model.memory.Stack::clear);
         rootSet.clear();
-        totalAllocations = 0;
+        totalAllocations.reset();
         totalGCs = 0;
     }
 
@@ -127,6 +173,15 @@ public class JVMSimulator {
      */
     public interface JVMEventListener {
         void onEvent(JVMEvent event);
+
+        /**
+         * A batch of events in the order they were fired; by default each is passed to {@link #onEvent}.
+         */
+        default void onEvents(List<JVMEvent> events) {
+            for (JVMEvent event : events) {
+                onEvent(event);
+            }
+        }
     }
 
     /**
@@ -134,9 +189,12 @@ public class JVMSimulator {
      */
     public static class JVMEvent {
         private final EventType type;
-        private final String message;
+        private String message; // Built on first use for per-object events
         private final Object data;
 
+        /**
+         * @param message null for a per-object event, whose message is derived from its object when asked for
+         */
         public JVMEvent(EventType type, String message, Object data) {
             this.type = type;
             this.message = message;
@@ -147,7 +205,15 @@ public class JVMSimulator {
             return type;
         }
 
-        public String getMessage() {
+        public synchronized String getMessage() {
+            if (message == null) {
+                message = switch (type) {
+                    case OBJECT_ALLOCATED -> "Allocated object: " + data;
+                    case OBJECT_COLLECTED -> "Collected object: " + data;
+                    case PROMOTION -> "Promoted object: " + data;
+                    default -> String.valueOf(type);
+                };
+            }
             return message;
         }
 
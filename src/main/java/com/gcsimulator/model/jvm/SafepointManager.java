@@ -0,0 +1,245 @@
+package com.gcsimulator.model.jvm;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coordinates stop-the-world pauses between mutator threads and the collector.
+ * Mutators register themselves and poll at allocation points; a thread that
+ * begins a safepoint waits until every other registered mutator is parked.
+ *
+ * Time-to-safepoint (request until the last mutator parks) is measured
+ * separately from the safepoint itself (last mutator parked until release).
+ * A mutator that blocks outside the heap, e.g. waiting for a lock, enters a
+ * safe region so that a safepoint does not wait for it.
+ */
+public class SafepointManager {
+    private final Object lock;
+    private final Set<Thread> mutators;
+    private volatile boolean requested;
+    private Thread owner;
+    private int parked; // Registered mutators currently blocked, guarded by lock
+    private int depth; // Nesting level of the owner's begin() calls
+    private long reachedAt; // nanoTime when all mutators were parked
+
+    private long safepoints;
+    private long totalTimeToSafepointNanos;
+    private long maxTimeToSafepointNanos;
+    private long totalSafepointNanos;
+
+    public SafepointManager() {
+        this.lock = new Object();
+        this.mutators = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Register the calling thread as a mutator. Waits if a safepoint is in progress.
+     */
+    public void register() {
+        synchronized (lock) {
+            boolean interrupted = false;
+            while (requested) {
+                interrupted |= await();
+            }
+            mutators.add(Thread.currentThread());
+            restoreInterrupt(interrupted);
+        }
+    }
+
+    /**
+     * Deregister the calling thread; a pending safepoint no longer waits for it.
+     */
+    public void deregister() {
+        synchronized (lock) {
+            mutators.remove(Thread.currentThread());
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Safepoint poll: cheap when no safepoint is requested, otherwise parks the
+     * calling mutator until the safepoint ends.
+     */
+    public void poll() {
+        if (requested) {
+            block();
+        }
+    }
+
+    /**
+     * Bring all mutators to a safepoint. Returns once every other registered
+     * mutator is parked. Must be paired with {@link #end()}; nested calls by the
+     * owning thread join the safepoint already in progress.
+     *
+     * @return time-to-safepoint in nanoseconds, 0 for a nested call
+     */
+    public long begin() {
+        Thread current = Thread.currentThread();
+        synchronized (lock) {
+            if (requested && owner == current) {
+                depth++;
+                return 0;
+            }
+
+            // Another thread owns the current safepoint: park like any mutator first
+            while (requested) {
+                parkWhileRequested(current);
+            }
+            long requestedAt = System.nanoTime();
+            requested = true;
+            owner = current;
+            depth = 1;
+            boolean interrupted = false;
+            while (parked < expectedParked(current)) {
+                interrupted |= await();
+            }
+            restoreInterrupt(interrupted);
+
+            reachedAt = System.nanoTime();
+            long timeToSafepoint = reachedAt - requestedAt;
+            totalTimeToSafepointNanos += timeToSafepoint;
+            maxTimeToSafepointNanos = Math.max(maxTimeToSafepointNanos, timeToSafepoint);
+            return timeToSafepoint;
+        }
+    }
+
+    /**
+     * Leave the safepoint and resume all parked mutators.
+     *
+     * @return time spent at the safepoint in nanoseconds, 0 for a nested call
+     */
+    public long end() {
+        synchronized (lock) {
+            if (owner != Thread.currentThread()) {
+                throw new IllegalStateException("Safepoint not owned by " + Thread.currentThread().getName());
+            }
+            if (--depth > 0) {
+                return 0;
+            }
+            long duration = System.nanoTime() - reachedAt;
+            requested = false;
+            owner = null;
+            safepoints++;
+            totalSafepointNanos += duration;
+            lock.notifyAll();
+            return duration;
+        }
+    }
+
+    /**
+     * Mark the calling mutator as safe while it blocks outside the heap.
+     * It must not touch heap objects until {@link #leaveSafeRegion()}.
+     */
+    public void enterSafeRegion() {
+        synchronized (lock) {
+            if (mutators.contains(Thread.currentThread())) {
+                parked++;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Leave a safe region, waiting for a safepoint in progress to end first.
+     */
+    public void leaveSafeRegion() {
+        Thread current = Thread.currentThread();
+        synchronized (lock) {
+            if (!mutators.contains(current)) {
+                return;
+            }
+            boolean interrupted = false;
+            while (requested && owner != current) {
+                interrupted |= await();
+            }
+            parked--;
+            restoreInterrupt(interrupted);
+        }
+    }
+
+    public boolean isAtSafepoint() {
+        return requested;
+    }
+
+    public boolean isHeldByCurrentThread() {
+        synchronized (lock) {
+            return requested && owner == Thread.currentThread();
+        }
+    }
+
+    public int getMutatorCount() {
+        return mutators.size();
+    }
+
+    public long getSafepointCount() {
+        synchronized (lock) {
+            return safepoints;
+        }
+    }
+
+    public long getTotalTimeToSafepointNanos() {
+        synchronized (lock) {
+            return totalTimeToSafepointNanos;
+        }
+    }
+
+    public long getMaxTimeToSafepointNanos() {
+        synchronized (lock) {
+            return maxTimeToSafepointNanos;
+        }
+    }
+
+    public long getTotalSafepointNanos() {
+        synchronized (lock) {
+            return totalSafepointNanos;
+        }
+    }
+
+    private void block() {
+        Thread current = Thread.currentThread();
+        synchronized (lock) {
+            if (requested && owner != current) {
+                parkWhileRequested(current);
+            }
+        }
+    }
+
+    private void parkWhileRequested(Thread current) {
+        boolean mutator = mutators.contains(current);
+        if (mutator) {
+            parked++;
+            lock.notifyAll();
+        }
+        boolean interrupted = false;
+        while (requested) {
+            interrupted |= await();
+        }
+        if (mutator) {
+            parked--;
+        }
+        restoreInterrupt(interrupted);
+    }
+
+    private int expectedParked(Thread current) {
+        return mutators.contains(current) ? mutators.size() - 1 : mutators.size();
+    }
+
+    /**
+     * Wait on the lock; safepoints cannot be abandoned halfway, so interrupts are
+     * only recorded and restored once the wait loop is done.
+     */
+    private boolean await() {
+        try {
+            lock.wait();
+            return false;
+        } catch (InterruptedException e) {
+            return true;
+        }
+    }
+
+    private static void restoreInterrupt(boolean interrupted) {
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.gcsimulator.model.jvm;
+
+import com.gcsimulator.model.memory.Heap;
+import com.gcsimulator.model.memory.MemoryRegion;
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Thread-local allocation buffer (TLAB): a chunk of Eden owned by one mutator
+ * thread. Objects are bump-allocated inside the chunk without touching shared
+ * state and are published to the region the chunk came from in bulk when the
+ * buffer is retired.
+ *
+ * Only the owner allocates, without locking. Other threads retire or discard
+ * the buffer only while the owner is stopped at a safepoint, and those paths
+ * take the buffer's lock.
+ *
+ * Sizing follows the HotSpot ergonomics: each thread aims for a fixed number of
+ * refills per GC, weighted by its share of recent Eden allocation.
+ */
+public class Tlab {
+    static final long MIN_SIZE = 2 * 1024;
+    static final int TARGET_REFILLS = 50; // Refills per thread between two GCs
+    static final int REFILL_WASTE_FRACTION = 64; // Max tail wasted when retiring early
+    static final double FRACTION_WEIGHT = 0.35; // Weight of the newest sample in the EMA
+
+    private final Thread owner;
+    private final List<SimulatedObject> pending;
+    private MemoryRegion region; // Region the current chunk was carved from
+    private long start;
+    private long top;
+    private long end;
+    private volatile boolean discarded;
+
+    private double allocationFraction; // Moving average of this thread's share of Eden allocation
+    private long desiredSize;
+    private long allocatedSinceGC;
+
+    private long refills;
+    private long wastedBytes;
+    private long slowAllocations;
+
+    Tlab(Thread owner, double initialFraction) {
+        this.owner = owner;
+        this.pending = new ArrayList<>();
+        this.start = -1;
+        this.top = -1;
+        this.end = -1;
+        this.allocationFraction = initialFraction;
+    }
+
+    public Thread getOwner() {
+        return owner;
+    }
+
+    boolean isDiscarded() {
+        return discarded;
+    }
+
+    public synchronized long getRemaining() {
+        return end - top;
+    }
+
+    public synchronized long getDesiredSize() {
+        return desiredSize;
+    }
+
+    public synchronized long getRefills() {
+        return refills;
+    }
+
+    public synchronized long getWastedBytes() {
+        return wastedBytes;
+    }
+
+    public synchronized long getSlowAllocations() {
+        return slowAllocations;
+    }
+
+    /**
+     * Fast path: bump-allocate inside the current buffer. Owner thread only.
+     */
+    boolean tryAllocate(SimulatedObject obj) {
+        if (start < 0 || obj.getSize() > end - top) {
+            return false;
+        }
+        obj.setAddress(top);
+        top += obj.getSize();
+        pending.add(obj);
+        allocatedSinceGC += obj.getSize();
+        return true;
+    }
+
+    /**
+     * Slow path: retire the current buffer and claim a new chunk of Eden.
+     *
+     * @return false if the object should be allocated outside the TLAB instead
+     */
+    synchronized boolean refill(Heap heap, SimulatedObject obj) {
+        long size = desiredSize(heap.getEdenCapacity());
+
+        // Keep a buffer with a large tail and allocate this object outside it
+        if (start >= 0 && end - top > size / REFILL_WASTE_FRACTION) {
+            slowAllocations++;
+            return false;
+        }
+        if (obj.getSize() > size) {
+            slowAllocations++;
+            return false;
+        }
+
+        retire(true);
+        MemoryRegion eden = heap.getTlabRegion(size);
+        long chunk = eden != null ? eden.allocateChunk(size) : -1;
+        if (chunk < 0) {
+            slowAllocations++;
+            return false;
+        }
+
+        region = eden;
+        start = chunk;
+        top = chunk;
+        end = chunk + size;
+        refills++;
+        return tryAllocate(obj);
+    }
+
+    /**
+     * Publish pending objects to their region and return the unused tail.
+     */
+    synchronized void retire(boolean countWaste) {
+        if (start < 0) {
+            return;
+        }
+        long tail = end - top;
+        if (countWaste) {
+            wastedBytes += tail;
+        }
+        region.retireChunk(pending, top, tail);
+        pending.clear();
+        region = null;
+        start = -1;
+        top = -1;
+        end = -1;
+    }
+
+    /**
+     * Retire at a GC and update the allocation-fraction average used for sizing.
+     */
+    synchronized void retireForGC(long edenCapacity) {
+        retire(false);
+        double sample = edenCapacity > 0 ? (double) allocatedSinceGC / edenCapacity : 0.0;
+        allocationFraction = FRACTION_WEIGHT * sample + (1 - FRACTION_WEIGHT) * allocationFraction;
+        allocatedSinceGC = 0;
+        desiredSize = 0; // Recomputed on the next refill
+    }
+
+    /**
+     * Drop the buffer without publishing, used when the heap itself is reset.
+     */
+    synchronized void discard() {
+        discarded = true;
+        pending.clear();
+        region = null;
+        start = -1;
+        top = -1;
+        end = -1;
+        allocatedSinceGC = 0;
+    }
+
+    private long desiredSize(long edenCapacity) {
+        if (desiredSize == 0) {
+            long size = (long) (edenCapacity * allocationFraction / TARGET_REFILLS);
+            long max = Math.max(MIN_SIZE, edenCapacity / TARGET_REFILLS);
+            desiredSize = Math.min(max, Math.max(MIN_SIZE, size));
+        }
+        return desiredSize;
+    }
+}
@@ -0,0 +1,230 @@
+package com.gcsimulator.model.memory;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Card table over the regions that young collections do not trace: one card
+ * per 512 bytes of a covered region. The post-write barrier dirties the card
+ * of an object whose references change, and a young collection scans only
+ * the dirty cards instead of the whole old space to find references into the
+ * young generation.
+ *
+ * Scanning a card visits the objects on it. A real collector finds them with
+ * a block offset table; here each dirty card remembers the objects that were
+ * written or promoted onto it, which are the only ones that can hold
+ * references recorded by the card.
+ */
+public class CardTable {
+    public static final int CARD_SHIFT = 9;
+    public static final int CARD_SIZE = 1 << CARD_SHIFT;
+
+    private static final byte CLEAN = 0;
+    private static final byte DIRTY = 1;
+
+    private final Map<MemoryRegion, Cards> covered;
+    private final LongAdder cardsDirtied;
+    private long cardsScanned;
+
+    public CardTable() {
+        this.covered = new ConcurrentHashMap<>();
+        this.cardsDirtied = new LongAdder();
+    }
+
+    /**
+     * Start tracking stores into objects of a region. Objects already in it that
+     * hold references are dirtied, since their earlier stores were not tracked.
+     */
+    public void cover(MemoryRegion region) {
+        Cards cards = covered.computeIfAbsent(region, Cards::new);
+        for (SimulatedObject obj : region.getObjects()) {
+            if (!obj.getReferences().isEmpty() && cards.dirty(obj)) {
+                cardsDirtied.increment();
+            }
+        }
+    }
+
+    public boolean covers(MemoryRegion region) {
+        return region != null && covered.containsKey(region);
+    }
+
+    /**
+     * Barrier slow path: dirty the card holding {@code holder}. Objects outside
+     * the covered regions, e.g. young objects, are ignored.
+     *
+     * @return true if the card was clean before
+     */
+    public boolean dirty(SimulatedObject holder) {
+        MemoryRegion region = holder.getRegion();
+        Cards cards = region != null ? covered.get(region) : null;
+        if (cards == null) {
+            return false;
+        }
+        boolean newlyDirty = cards.dirty(holder);
+        if (newlyDirty) {
+            cardsDirtied.increment();
+        }
+        return newlyDirty;
+    }
+
+    public boolean isDirty(SimulatedObject holder) {
+        MemoryRegion region = holder.getRegion();
+        Cards cards = region != null ? covered.get(region) : null;
+        return cards != null && cards.isDirty(holder);
+    }
+
+    /**
+     * Visit the objects on every dirty card and clean the cards. Must run while
+     * the mutators are stopped. Objects that have left their card's region
+     * since it was dirtied are skipped.
+     *
+     * @return number of cards scanned
+     */
+    public int scanDirtyCards(Consumer<SimulatedObject> visitor) {
+        int scanned = 0;
+        for (Cards cards : covered.values()) {
+            scanned += cards.scan(visitor);
+        }
+        cardsScanned += scanned;
+        return scanned;
+    }
+
+    /**
+     * Visit the objects on every dirty card without cleaning the cards, e.g. to
+     * update their references while the application runs.
+     */
+    public void forEachDirtyHolder(Consumer<SimulatedObject> visitor) {
+        for (Cards cards : covered.values()) {
+            cards.forEachHolder(visitor);
+        }
+    }
+
+    public int getDirtyCardCount() {
+        int dirty = 0;
+        for (Cards cards : covered.values()) {
+            dirty += cards.holders.size();
+        }
+        return dirty;
+    }
+
+    /**
+     * Clean all cards of a region whose objects were all removed or evacuated.
+     */
+    public void clear(MemoryRegion region) {
+        Cards cards = covered.get(region);
+        if (cards != null) {
+            cards.clear();
+        }
+    }
+
+    /**
+     * Clean every card, e.g. after a full collection traced the whole heap.
+     */
+    public void clear() {
+        for (Cards cards : covered.values()) {
+            cards.clear();
+        }
+    }
+
+    /**
+     * Re-dirty a region's cards after its objects moved within it (compaction).
+     */
+    public void rebuild(MemoryRegion region) {
+        Cards cards = covered.get(region);
+        if (cards == null) {
+            return;
+        }
+        List<SimulatedObject> holders = new ArrayList<>();
+        cards.scan(holders::add);
+        for (SimulatedObject holder : holders) {
+            cards.dirty(holder);
+        }
+    }
+
+    /**
+     * Cards dirtied by the barrier since the last call.
+     */
+    public long takeCardsDirtied() {
+        return cardsDirtied.sumThenReset();
+    }
+
+    public long getCardsScanned() {
+        return cardsScanned;
+    }
+
+    /**
+     * Cards of one covered region.
+     */
+    private static class Cards {
+        private final MemoryRegion region;
+        private final byte[] states;
+        private final Map<Integer, Set<SimulatedObject>> holders; // Objects on each dirty card
+
+        Cards(MemoryRegion region) {
+            this.region = region;
+            this.states = new byte[(int) ((region.getCapacity() + CARD_SIZE - 1) >> CARD_SHIFT)];
+            this.holders = new ConcurrentHashMap<>();
+        }
+
+        boolean dirty(SimulatedObject holder) {
+            int card = cardIndex(holder);
+            if (card < 0) {
+                return false;
+            }
+            holders.computeIfAbsent(card, c -> ConcurrentHashMap.newKeySet()).add(holder);
+            if (states[card] == DIRTY) {
+                return false;
+            }
+            states[card] = DIRTY;
+            return true;
+        }
+
+        boolean isDirty(SimulatedObject holder) {
+            int card = cardIndex(holder);
+            return card >= 0 && states[card] == DIRTY;
+        }
+
+        int scan(Consumer<SimulatedObject> visitor) {
+            int scanned = 0;
+            for (Iterator<Map.Entry<Integer, Set<SimulatedObject>>> it = holders.entrySet().iterator(); it.hasNext();) {
+                Map.Entry<Integer, Set<SimulatedObject>> entry = it.next();
+                states[entry.getKey()] = CLEAN;
+                it.remove();
+                for (SimulatedObject holder : entry.getValue()) {
+                    if (holder.getRegion() == region) {
+                        visitor.accept(holder);
+                    }
+                }
+                scanned++;
+            }
+            return scanned;
+        }
+
+        void forEachHolder(Consumer<SimulatedObject> visitor) {
+            for (Set<SimulatedObject> card : holders.values()) {
+                for (SimulatedObject holder : card) {
+                    if (holder.getRegion() == region) {
+                        visitor.accept(holder);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+            holders.clear();
+            Arrays.fill(states, CLEAN);
+        }
+
+        private int cardIndex(SimulatedObject holder) {
+            long address = holder.getAddress();
+            if (address < 0 || holder.getRegion() != region) {
+                return -1;
+            }
+            return (int) Math.min(states.length - 1, address >> CARD_SHIFT);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.gcsimulator.model.memory;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Address-ordered list of free blocks (holes) inside a memory region.
+ * Neighboring blocks are coalesced on free; allocation is first-fit and counts
+ * how many blocks it had to inspect so that allocation cost can be measured.
+ */
+public class FreeList {
+    private final TreeMap<Long, Long> blocks; // start address -> size
+    private final TreeMap<Long, Integer> sizes; // size -> number of blocks
+    private long totalFree;
+    private long probes;
+
+    public FreeList() {
+        this.blocks = new TreeMap<>();
+        this.sizes = new TreeMap<>();
+        this.totalFree = 0;
+        this.probes = 0;
+    }
+
+    /**
+     * Return a block to the list, merging it with adjacent free blocks.
+     */
+    public void free(long start, long size) {
+        if (size <= 0) {
+            return;
+        }
+
+        Map.Entry<Long, Long> before = blocks.floorEntry(start);
+        if (before != null && before.getKey() + before.getValue() == start) {
+            removeBlock(before.getKey(), before.getValue());
+            start = before.getKey();
+            size += before.getValue();
+        }
+
+        Map.Entry<Long, Long> after = blocks.ceilingEntry(start + size);
+        if (after != null && after.getKey() == start + size) {
+            removeBlock(after.getKey(), after.getValue());
+            size += after.getValue();
+        }
+
+        addBlock(start, size);
+    }
+
+    /**
+     * First-fit allocation.
+     *
+     * @return start address of the allocated block, or -1 if no single block fits
+     */
+    public long allocate(long size) {
+        for (Map.Entry<Long, Long> block : blocks.entrySet()) {
+            probes++;
+            if (block.getValue() >= size) {
+                return take(block.getKey(), block.getValue(), size);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Move every block into another free list and empty this one.
+     */
+    public void transferTo(FreeList target) {
+        for (Map.Entry<Long, Long> block : blocks.entrySet()) {
+            target.free(block.getKey(), block.getValue());
+        }
+        clear();
+    }
+
+    /**
+     * If the highest free block ends exactly at {@code top}, remove it and return its start.
+     * Used to give trailing holes back to the bump pointer.
+     */
+    public long trimTail(long top) {
+        Map.Entry<Long, Long> last = blocks.lastEntry();
+        if (last != null && last.getKey() + last.getValue() == top) {
+            removeBlock(last.getKey(), last.getValue());
+            return last.getKey();
+        }
+        return top;
+    }
+
+    public long getTotalFree() {
+        return totalFree;
+    }
+
+    public long getLargestBlock() {
+        return sizes.isEmpty() ? 0 : sizes.lastKey();
+    }
+
+    public int getBlockCount() {
+        return blocks.size();
+    }
+
+    /**
+     * Cumulative number of blocks inspected by allocate().
+     */
+    public long getProbes() {
+        return probes;
+    }
+
+    public void clear() {
+        blocks.clear();
+        sizes.clear();
+        totalFree = 0;
+    }
+
+    /**
+     * Allocate {@code size} bytes from the start of a free block, keeping the remainder free.
+     */
+    protected long take(long start, long blockSize, long size) {
+        removeBlock(start, blockSize);
+        if (blockSize > size) {
+            addBlock(start + size, blockSize - size);
+        }
+        return start;
+    }
+
+    protected long getBlockSize(long start) {
+        Long size = blocks.get(start);
+        return size != null ? size : 0;
+    }
+
+    protected void countProbe() {
+        probes++;
+    }
+
+    protected void addBlock(long start, long size) {
+        blocks.put(start, size);
+        sizes.merge(size, 1, Integer::sum);
+        totalFree += size;
+    }
+
+    protected void removeBlock(long start, long size) {
+        blocks.remove(start);
+        sizes.computeIfPresent(size, (k, count) -> count > 1 ? count - 1 : null);
+        totalFree -= size;
+    }
+}
@@ -2,12 +2,18 @@ package com.gcsimulator.model.memory;
 
 import com.gcsimulator.model.objects.SimulatedObject;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Represents the JVM Heap, containing Young and Old generations.
+ * Region-based collectors can install a {@link RegionHeap} instead; while one
+ * is installed it backs all allocation and the generations stay empty.
  */
 public class Heap implements Memory {
     private final YoungGeneration youngGen;
     private final OldGeneration oldGen;
+    private volatile RegionHeap regionHeap;
 
     public Heap(long youngSize, long oldSize) {
         // Young Gen: 1 Eden + 2 Survivors (Eden = 80%, each Survivor = 10%)
@@ -26,28 +32,118 @@ public class Heap implements Memory {
         return oldGen;
     }
 
+    /**
+     * The installed region layout, or null for the generational layout.
+     */
+    public RegionHeap getRegionHeap() {
+        return regionHeap;
+    }
+
+    /**
+     * Switch between the generational layout and a region layout (null switches
+     * back). Objects already in the heap move over, young objects to young
+     * space and the rest to old space; objects that do not fit are dropped.
+     * Must be called while no mutator is allocating and all TLABs are retired.
+     *
+     * @return number of objects dropped
+     */
+    public synchronized int installRegionHeap(RegionHeap replacement) {
+        if (replacement == regionHeap) {
+            return 0;
+        }
+
+        List<SimulatedObject> young = new ArrayList<>();
+        List<SimulatedObject> old = new ArrayList<>();
+        if (regionHeap != null) {
+            regionHeap.drainObjects(young, old);
+        } else {
+            young.addAll(youngGen.getEden().getObjects());
+            young.addAll(youngGen.getSurvivor0().getObjects());
+            young.addAll(youngGen.getSurvivor1().getObjects());
+            old.addAll(oldGen.getTenured().getObjects());
+            youngGen.clear();
+            oldGen.clear();
+        }
+        regionHeap = replacement;
+
+        int dropped = 0;
+        for (SimulatedObject obj : young) {
+            if (!place(obj, true)) {
+                dropped++;
+            }
+        }
+        for (SimulatedObject obj : old) {
+            if (!place(obj, false)) {
+                dropped++;
+            }
+        }
+        return dropped;
+    }
+
+    /**
+     * Region that TLABs are carved from: Eden, or an Eden region with a free
+     * block of at least {@code size} bytes.
+     *
+     * @return the region, or null if no region can hold the chunk
+     */
+    public MemoryRegion getTlabRegion(long size) {
+        RegionHeap regions = regionHeap;
+        return regions != null ? regions.edenRegionFor(size) : youngGen.getEden();
+    }
+
+    /**
+     * Eden capacity between two young collections, used for TLAB sizing.
+     */
+    public long getEdenCapacity() {
+        RegionHeap regions = regionHeap;
+        return regions != null ? regions.getEdenTargetCapacity() : youngGen.getEden().getCapacity();
+    }
+
+    /**
+     * Whether an object of this size takes the humongous path of the region layout.
+     */
+    public boolean isHumongous(long size) {
+        RegionHeap regions = regionHeap;
+        return regions != null && regions.isHumongous(size);
+    }
+
     @Override
     public long getCapacity() {
-        return youngGen.getCapacity() + oldGen.getCapacity();
+        RegionHeap regions = regionHeap;
+        return regions != null ? regions.getCapacity() : youngGen.getCapacity() + oldGen.getCapacity();
     }
 
     @Override
     public long getUsed() {
-        return youngGen.getUsed() + oldGen.getUsed();
+        RegionHeap regions = regionHeap;
+        return regions != null ? regions.getUsed() : youngGen.getUsed() + oldGen.getUsed();
     }
 
     @Override
     public void clear() {
         youngGen.clear();
         oldGen.clear();
+        RegionHeap regions = regionHeap;
+        if (regions != null) {
+            regions.clear();
+        }
     }
 
     public boolean canAllocate(long size) {
+        RegionHeap regions = regionHeap;
+        if (regions != null) {
+            return regions.canAllocate(size);
+        }
         return youngGen.canAllocate(size) || oldGen.canAllocate(size);
     }
 
-    public void allocate(SimulatedObject obj) {
-        if (youngGen.canAllocate(obj.getSize())) {
+    /**
+     * Shared allocation path; synchronized so the fit check and placement are atomic.
+     */
+    public synchronized void allocate(SimulatedObject obj) {
+        if (regionHeap != null) {
+            regionHeap.allocate(obj);
+        } else if (youngGen.canAllocate(obj.getSize())) {
             youngGen.allocate(obj);
         } else if (oldGen.canAllocate(obj.getSize())) {
             // Direct allocation to old gen for large objects
@@ -56,4 +152,20 @@ public class Heap implements Memory {
             throw new OutOfMemoryError("Heap space exhausted");
         }
     }
+
+    private boolean place(SimulatedObject obj, boolean young) {
+        if (regionHeap != null) {
+            HeapRegion.RegionType type = young ? HeapRegion.RegionType.EDEN : HeapRegion.RegionType.OLD;
+            return regionHeap.place(obj, type);
+        }
+        if (young && youngGen.canAllocate(obj.getSize())) {
+            youngGen.allocate(obj);
+            return true;
+        }
+        if (oldGen.canAllocate(obj.getSize())) {
+            oldGen.allocate(obj);
+            return true;
+        }
+        return false;
+    }
 }
@@ -0,0 +1,155 @@
+package com.gcsimulator.model.memory;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A fixed-size region of a {@link RegionHeap}. Its type changes over its
+ * lifetime: a free region is claimed as Eden for allocation, as Survivor or Old
+ * as an evacuation target, or as part of a humongous object, and becomes free
+ * again once a collection has evacuated or reclaimed it.
+ *
+ * A humongous object occupies a run of contiguous regions. The object itself
+ * is recorded in the first region of the run; every region of the run points
+ * back to that start region.
+ *
+ * The remembered set lists the objects in other regions that reference into
+ * this one, so the region can be evacuated without tracing the rest of the heap.
+ */
+public class HeapRegion extends MemoryRegion {
+    private final int index;
+    private volatile RegionType type;
+    private volatile long liveBytes; // Live data found by the last marking
+    private final Set<SimulatedObject> rememberedSet;
+    private volatile HeapRegion humongousStart; // First region of the humongous run this region belongs to
+    private volatile int humongousRegions; // Length of the run, set on the start region
+
+    public enum RegionType {
+        FREE, EDEN, SURVIVOR, OLD, HUMONGOUS
+    }
+
+    public HeapRegion(int index, long capacity) {
+        super("Region-" + index, capacity);
+        this.index = index;
+        this.type = RegionType.FREE;
+        this.rememberedSet = ConcurrentHashMap.newKeySet();
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public RegionType getType() {
+        return type;
+    }
+
+    public void setType(RegionType type) {
+        this.type = type;
+    }
+
+    public boolean isFree() {
+        return type == RegionType.FREE;
+    }
+
+    public boolean isYoung() {
+        return type == RegionType.EDEN || type == RegionType.SURVIVOR;
+    }
+
+    /**
+     * First region of the humongous run this region is part of, or null.
+     */
+    public HeapRegion getHumongousStart() {
+        return humongousStart;
+    }
+
+    public boolean isHumongousStart() {
+        return humongousStart == this;
+    }
+
+    /**
+     * Number of regions in the run started by this region, 0 if it does not start one.
+     */
+    public int getHumongousRegions() {
+        return isHumongousStart() ? humongousRegions : 0;
+    }
+
+    /**
+     * The humongous object of a start region, or null.
+     */
+    public SimulatedObject getHumongousObject() {
+        if (!isHumongousStart()) {
+            return null;
+        }
+        List<SimulatedObject> objects = getObjects();
+        return objects.isEmpty() ? null : objects.get(0);
+    }
+
+    void startHumongous(HeapRegion start, int regions) {
+        this.type = RegionType.HUMONGOUS;
+        this.humongousStart = start;
+        this.humongousRegions = start == this ? regions : 0;
+    }
+
+    /**
+     * Live bytes as of the last marking that covered this region.
+     */
+    public long getLiveBytes() {
+        return liveBytes;
+    }
+
+    public void setLiveBytes(long liveBytes) {
+        this.liveBytes = liveBytes;
+    }
+
+    /**
+     * Bytes an evacuation of this region would reclaim, based on the last marking.
+     */
+    public long getGarbageBytes() {
+        return Math.max(0, getUsed() - liveBytes);
+    }
+
+    public double getGarbageRatio() {
+        return getUsed() > 0 ? (double) getGarbageBytes() / getUsed() : 0.0;
+    }
+
+    /**
+     * Record an object in another region that references into this one.
+     */
+    public void remember(SimulatedObject holder) {
+        rememberedSet.add(holder);
+    }
+
+    public Set<SimulatedObject> getRememberedSet() {
+        return Collections.unmodifiableSet(rememberedSet);
+    }
+
+    public void forget(SimulatedObject holder) {
+        rememberedSet.remove(holder);
+    }
+
+    public void clearRememberedSet() {
+        rememberedSet.clear();
+    }
+
+    /**
+     * Empty the region and hand it back to the free list of its heap.
+     */
+    void free() {
+        clear();
+        rememberedSet.clear();
+        humongousStart = null;
+        humongousRegions = 0;
+        liveBytes = 0;
+        type = RegionType.FREE;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s[%s, %d/%d KB, live %d KB]",
+                getName(), type, getUsed() / 1024, getCapacity() / 1024, liveBytes / 1024);
+    }
+}
@@ -1,22 +1,47 @@
 package com.gcsimulator.model.memory;
 
+import com.gcsimulator.model.objects.SimulatedObject;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * Represents a memory region (e.g., Eden, Survivor, Old Gen).
+ * Objects are placed at real offsets: bump-pointer allocation at {@code top},
+ * holes left by removed objects go to a free list, and compact() slides live
+ * objects together again.
+ *
+ * Usage accounting is lock-free; structural changes lock only this region, so
+ * threads allocating in different regions never contend.
  */
 public class MemoryRegion implements Memory {
     private final String name;
     private final long capacity;
-    private long used;
-    private final List<Object> objects;
+    private final AtomicLong used;
+    private final ObjectStore objects;
+    private FreeList freeList;
+    private long top; // Bump pointer: everything above is unallocated
+    private int outstandingChunks; // Chunks handed out to allocation buffers and not yet retired
+
+    // Allocation and compaction cost counters
+    private long bumpAllocations;
+    private long freeListAllocations;
+    private long compactions;
+    private long objectsCompacted;
+    private long bytesCompacted;
+    private long pointersUpdated;
 
     public MemoryRegion(String name, long capacity) {
         this.name = name;
         this.capacity = capacity;
-        this.used = 0;
-        this.objects = new ArrayList<>();
+        this.used = new AtomicLong();
+        this.objects = new ObjectStore();
+        this.freeList = new FreeList();
+        this.top = 0;
     }
 
     public String getName() {
@@ -30,36 +55,290 @@ public class MemoryRegion implements Memory {
 
     @Override
     public long getUsed() {
-        return used;
+        return used.get();
     }
 
     public void addUsed(long bytes) {
-        this.used += bytes;
+        used.addAndGet(bytes);
     }
 
     public void subtractUsed(long bytes) {
-        this.used = Math.max(0, this.used - bytes);
+        used.updateAndGet(current -> Math.max(0, current - bytes));
+    }
+
+    /**
+     * Read-only view of the objects in this region. Only stable while mutators
+     * are stopped; concurrent phases use {@link #snapshotObjects()}.
+     */
+    public List<SimulatedObject> getObjects() {
+        return objects.asList();
+    }
+
+    /**
+     * Copy of the objects in this region, safe to iterate while mutators allocate.
+     */
+    public synchronized List<SimulatedObject> snapshotObjects() {
+        return new ArrayList<>(objects.asList());
+    }
+
+    public int getObjectCount() {
+        return objects.size();
     }
 
-    public List<Object> getObjects() {
-        return objects;
+    public synchronized boolean containsObject(SimulatedObject obj) {
+        return objects.contains(obj);
     }
 
-    public void addObject(Object obj) {
+    /**
+     * Place an object in this region, bump-pointer first and then from the free list.
+     */
+    public synchronized void addObject(SimulatedObject obj) {
+        long address = allocateAddress(obj.getSize());
+        if (address < 0) {
+            throw new OutOfMemoryError(name + " has no free block of " + obj.getSize() + " bytes");
+        }
+        obj.setAddress(address);
+        obj.setRegion(this);
         objects.add(obj);
     }
 
-    public void removeObject(Object obj) {
-        objects.remove(obj);
+    /**
+     * Remove a single object in constant time, leaving a hole at its address.
+     */
+    public synchronized boolean removeObject(SimulatedObject obj) {
+        if (!objects.remove(obj)) {
+            return false;
+        }
+        release(obj);
+        return true;
+    }
+
+    /**
+     * Sweep all matching objects out of the region in one pass and release their space.
+     *
+     * @return bytes freed
+     */
+    public synchronized long removeIf(Predicate<? super SimulatedObject> filter) {
+        long freed = objects.removeIf(obj -> {
+            if (filter.test(obj)) {
+                release(obj);
+                return true;
+            }
+            return false;
+        });
+        if (objects.isEmpty() && outstandingChunks == 0) {
+            freeList.clear();
+            top = 0;
+        }
+        subtractUsed(freed);
+        return freed;
+    }
+
+    /**
+     * Remove a batch of objects under one lock, e.g. the dead objects of one
+     * sweep chunk, and release their space.
+     *
+     * @return bytes freed
+     */
+    public synchronized long removeAll(Collection<? extends SimulatedObject> batch) {
+        long freed = 0;
+        for (SimulatedObject obj : batch) {
+            if (objects.remove(obj)) {
+                freed += obj.getSize();
+                release(obj);
+            }
+        }
+        subtractUsed(freed);
+        return freed;
+    }
+
+    /**
+     * Reserve a contiguous chunk, e.g. for a TLAB or PLAB, and count all of it as used.
+     *
+     * @return start address of the chunk, or -1 if no single block is large enough
+     */
+    public synchronized long allocateChunk(long size) {
+        if (getAvailable() < size) {
+            return -1;
+        }
+        long address = allocateAddress(size);
+        if (address >= 0) {
+            used.addAndGet(size);
+            outstandingChunks++;
+        }
+        return address;
+    }
+
+    /**
+     * Retire a chunk: publish the objects that were bump-allocated inside it and
+     * give the unused tail back to the free list.
+     */
+    public synchronized void retireChunk(List<SimulatedObject> chunkObjects, long tailStart, long tailSize) {
+        for (SimulatedObject obj : chunkObjects) {
+            obj.setRegion(this);
+            objects.add(obj);
+        }
+        if (tailSize > 0) {
+            freeList.free(tailStart, tailSize);
+            top = freeList.trimTail(top);
+            subtractUsed(tailSize);
+        }
+        outstandingChunks = Math.max(0, outstandingChunks - 1);
+    }
+
+    /**
+     * Sliding (Lisp-2) compaction: live objects keep their address order and are
+     * moved down to the bottom of the region, leaving one contiguous free block.
+     *
+     * @return bytes moved
+     */
+    public synchronized long compact() {
+        List<SimulatedObject> live = new ArrayList<>(objects.asList());
+        live.sort(Comparator.comparingLong(SimulatedObject::getAddress));
+
+        // Phase 1: compute forwarding addresses
+        long free = 0;
+        for (SimulatedObject obj : live) {
+            obj.setForwardingAddress(free);
+            free += obj.getSize();
+        }
+
+        // Phase 2: adjust pointers. References resolve through the object itself,
+        // so this only accounts for the pointer updates a real heap would do.
+        for (SimulatedObject obj : live) {
+            for (SimulatedObject ref : obj.getReferences()) {
+                long forwardee = ref.getForwardingAddress();
+                if (forwardee >= 0 && forwardee != ref.getAddress()) {
+                    pointersUpdated++;
+                }
+            }
+        }
+
+        // Phase 3: slide objects to their new addresses
+        long moved = 0;
+        for (SimulatedObject obj : live) {
+            if (obj.getForwardingAddress() != obj.getAddress()) {
+                obj.setAddress(obj.getForwardingAddress());
+                objectsCompacted++;
+                moved += obj.getSize();
+            }
+            obj.setForwardingAddress(-1);
+        }
+
+        freeList.clear();
+        top = free;
+        compactions++;
+        bytesCompacted += moved;
+        return moved;
     }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
+        for (SimulatedObject obj : objects.asList()) {
+            obj.setRegion(null);
+        }
         objects.clear();
-        used = 0;
+        freeList.clear();
+        used.set(0);
+        top = 0;
+        outstandingChunks = 0;
+    }
+
+    /**
+     * Allocation needs both enough free bytes and a single contiguous block.
+     */
+    public synchronized boolean canAllocate(long size) {
+        return getAvailable() >= size && getLargestFreeBlock() >= size;
+    }
+
+    /**
+     * Switch the allocator used for holes, moving the current holes over.
+     */
+    public synchronized void setFreeList(FreeList replacement) {
+        freeList.transferTo(replacement);
+        this.freeList = replacement;
+    }
+
+    public FreeList getFreeList() {
+        return freeList;
+    }
+
+    public long getTop() {
+        return top;
+    }
+
+    /**
+     * Size of the largest contiguous free block, including the space above {@code top}.
+     */
+    public synchronized long getLargestFreeBlock() {
+        return Math.max(capacity - top, freeList.getLargestBlock());
+    }
+
+    public int getHoleCount() {
+        return freeList.getBlockCount();
+    }
+
+    /**
+     * Fragmentation as 1 - largest free block / total free space (0.0 to 1.0).
+     */
+    public synchronized double getFragmentation() {
+        long totalFree = capacity - top + freeList.getTotalFree();
+        return totalFree > 0 ? 1.0 - (double) getLargestFreeBlock() / totalFree : 0.0;
+    }
+
+    public long getBumpAllocations() {
+        return bumpAllocations;
+    }
+
+    public long getFreeListAllocations() {
+        return freeListAllocations;
+    }
+
+    public long getFreeListProbes() {
+        return freeList.getProbes();
+    }
+
+    public long getCompactions() {
+        return compactions;
+    }
+
+    public long getObjectsCompacted() {
+        return objectsCompacted;
+    }
+
+    public long getBytesCompacted() {
+        return bytesCompacted;
+    }
+
+    public long getPointersUpdated() {
+        return pointersUpdated;
+    }
+
+    private long allocateAddress(long size) {
+        if (top + size <= capacity) {
+            long address = top;
+            top += size;
+            bumpAllocations++;
+            return address;
+        }
+
+        long address = freeList.allocate(size);
+        if (address >= 0) {
+            freeListAllocations++;
+        }
+        return address;
     }
 
-    public boolean canAllocate(long size) {
-        return getAvailable() >= size;
+    private void release(SimulatedObject obj) {
+        if (objects.isEmpty() && outstandingChunks == 0) {
+            // Last object gone: the whole region is one free block again
+            freeList.clear();
+            top = 0;
+        } else if (obj.getAddress() >= 0) {
+            freeList.free(obj.getAddress(), obj.getSize());
+            top = freeList.trimTail(top);
+        }
+        obj.setAddress(-1);
+        obj.setRegion(null);
     }
 }
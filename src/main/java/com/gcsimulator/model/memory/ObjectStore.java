@@ -0,0 +1,124 @@
+package com.gcsimulator.model.memory;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Object storage for a memory region with constant-time removal.
+ * Objects live in a dense array and remember their own slot index, so removal
+ * swaps the last object into the freed slot instead of shifting the array.
+ * An object can be stored in only one region at a time.
+ */
+public class ObjectStore {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private SimulatedObject[] slots;
+    private int size;
+    private final List<SimulatedObject> view;
+
+    public ObjectStore() {
+        this.slots = new SimulatedObject[INITIAL_CAPACITY];
+        this.size = 0;
+        this.view = new View();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(SimulatedObject obj) {
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size * 2);
+        }
+        slots[size] = obj;
+        obj.setStoreIndex(size);
+        size++;
+    }
+
+    public boolean contains(SimulatedObject obj) {
+        int index = obj.getStoreIndex();
+        return index >= 0 && index < size && slots[index] == obj;
+    }
+
+    /**
+     * Remove an object in O(1) by swapping the last object into its slot.
+     */
+    public boolean remove(SimulatedObject obj) {
+        if (!contains(obj)) {
+            return false;
+        }
+
+        int index = obj.getStoreIndex();
+        SimulatedObject last = slots[--size];
+        slots[index] = last;
+        last.setStoreIndex(index);
+        slots[size] = null;
+        obj.setStoreIndex(-1);
+        return true;
+    }
+
+    /**
+     * Remove all matching objects in a single pass, sliding the survivors down.
+     *
+     * @return total size in bytes of the removed objects
+     */
+    public long removeIf(Predicate<? super SimulatedObject> filter) {
+        long removedBytes = 0;
+        int live = 0;
+
+        for (int i = 0; i < size; i++) {
+            SimulatedObject obj = slots[i];
+            if (filter.test(obj)) {
+                obj.setStoreIndex(-1);
+                removedBytes += obj.getSize();
+            } else {
+                slots[live] = obj;
+                obj.setStoreIndex(live);
+                live++;
+            }
+        }
+
+        Arrays.fill(slots, live, size, null);
+        size = live;
+        return removedBytes;
+    }
+
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            slots[i].setStoreIndex(-1);
+        }
+        Arrays.fill(slots, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Read-only list view over the stored objects.
+     */
+    public List<SimulatedObject> asList() {
+        return view;
+    }
+
+    private class View extends AbstractList<SimulatedObject> implements RandomAccess {
+        @Override
+        public SimulatedObject get(int index) {
+            Objects.checkIndex(index, size);
+            return slots[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof SimulatedObject obj && ObjectStore.this.contains(obj);
+        }
+    }
+}
@@ -31,10 +31,21 @@ public class OldGeneration implements Memory {
         tenured.clear();
     }
 
+    /**
+     * True only if a single free block can hold the object.
+     */
     public boolean canAllocate(long size) {
         return tenured.canAllocate(size);
     }
 
+    public long getLargestFreeBlock() {
+        return tenured.getLargestFreeBlock();
+    }
+
+    public double getFragmentation() {
+        return tenured.getFragmentation();
+    }
+
     public void allocate(SimulatedObject obj) {
         tenured.addObject(obj);
         tenured.addUsed(obj.getSize());
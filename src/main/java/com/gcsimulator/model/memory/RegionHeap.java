@@ -0,0 +1,593 @@
+package com.gcsimulator.model.memory;
+
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Region-based heap layout used by the G1 family. The heap is split into
+ * equally sized {@link HeapRegion}s; generations are just sets of regions of
+ * the same type, so their sizes change from one collection to the next.
+ *
+ * Mutators allocate into the current Eden allocation region and claim a new
+ * free region when it is full. Collections evacuate live objects out of a
+ * collection set into Survivor and Old regions claimed from the free list and
+ * then free the evacuated regions as a whole.
+ *
+ * Objects larger than half a region are humongous: they get a run of
+ * contiguous free regions of their own, are never copied, and the tail of
+ * the last region of the run stays unused until the object dies.
+ */
+public class RegionHeap implements Memory {
+    public static final long MIN_REGION_SIZE = 1024 * 1024;
+    public static final long MAX_REGION_SIZE = 32 * 1024 * 1024;
+    public static final int TARGET_REGION_COUNT = 2048;
+
+    private final long regionSize;
+    private final List<HeapRegion> regions;
+    private HeapRegion edenAllocRegion; // Guarded by this
+    private HeapRegion survivorAllocRegion; // Evacuation targets, only used at safepoints
+    private HeapRegion oldAllocRegion;
+    private HeapRegion relocationAllocRegion; // Eden-type target of collectors without generations
+    private double youngPercent; // Eden target as a share of all regions
+
+    private long bytesEvacuated;
+    private long evacuationFailures;
+    private long humongousAllocations; // Since the last take
+    private long humongousBytesAllocated;
+    private long humongousWasteBytes; // Unused tails of the live humongous runs
+
+    /**
+     * Split {@code heapSize} into regions of the ergonomic default size.
+     */
+    public RegionHeap(long heapSize) {
+        this(defaultRegionSize(heapSize), (int) Math.max(1, heapSize / defaultRegionSize(heapSize)));
+    }
+
+    public RegionHeap(long regionSize, int regionCount) {
+        if (regionSize <= 0 || regionCount < 1) {
+            throw new IllegalArgumentException("Region size and count must be positive");
+        }
+        this.regionSize = regionSize;
+        List<HeapRegion> list = new ArrayList<>(regionCount);
+        for (int i = 0; i < regionCount; i++) {
+            list.add(new HeapRegion(i, regionSize));
+        }
+        this.regions = Collections.unmodifiableList(list);
+        this.youngPercent = 0.25;
+    }
+
+    /**
+     * HotSpot's ergonomic region size: aim for about 2048 regions, rounded down
+     * to a power of two between 1MB and 32MB. Heaps too small for 1MB regions
+     * get at least 16 regions.
+     */
+    public static long defaultRegionSize(long heapSize) {
+        long size = Long.highestOneBit(Math.max(1, heapSize / TARGET_REGION_COUNT));
+        size = Math.max(MIN_REGION_SIZE, Math.min(MAX_REGION_SIZE, size));
+        while (size > 1 && heapSize / size < 16) {
+            size /= 2;
+        }
+        return size;
+    }
+
+    public long getRegionSize() {
+        return regionSize;
+    }
+
+    public int getRegionCount() {
+        return regions.size();
+    }
+
+    public List<HeapRegion> getRegions() {
+        return regions;
+    }
+
+    public List<HeapRegion> getRegions(HeapRegion.RegionType type) {
+        List<HeapRegion> result = new ArrayList<>();
+        for (HeapRegion region : regions) {
+            if (region.getType() == type) {
+                result.add(region);
+            }
+        }
+        return result;
+    }
+
+    public int countRegions(HeapRegion.RegionType type) {
+        int count = 0;
+        for (HeapRegion region : regions) {
+            if (region.getType() == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getFreeRegionCount() {
+        return countRegions(HeapRegion.RegionType.FREE);
+    }
+
+    /**
+     * Share of the regions that Eden may grow to before a young collection is due.
+     */
+    public void setYoungPercent(double youngPercent) {
+        if (youngPercent <= 0 || youngPercent > 1) {
+            throw new IllegalArgumentException("Young percent must be in (0, 1]");
+        }
+        this.youngPercent = youngPercent;
+    }
+
+    public double getYoungPercent() {
+        return youngPercent;
+    }
+
+    public int getYoungTargetRegions() {
+        return Math.max(1, (int) (regions.size() * youngPercent));
+    }
+
+    /**
+     * Eden capacity the mutators are expected to fill between two young collections.
+     */
+    public long getEdenTargetCapacity() {
+        return getYoungTargetRegions() * regionSize;
+    }
+
+    /**
+     * Bytes used by all regions of one type.
+     */
+    public long getUsed(HeapRegion.RegionType type) {
+        long used = 0;
+        for (HeapRegion region : regions) {
+            if (region.getType() == type) {
+                used += region.getUsed();
+            }
+        }
+        return used;
+    }
+
+    /**
+     * View of the regions of one type as a single space, with the whole heap as capacity.
+     */
+    public Memory getSpace(HeapRegion.RegionType type) {
+        return new Memory() {
+            @Override
+            public long getCapacity() {
+                return RegionHeap.this.getCapacity();
+            }
+
+            @Override
+            public long getUsed() {
+                return RegionHeap.this.getUsed(type);
+            }
+
+            @Override
+            public void clear() {
+                throw new UnsupportedOperationException("Region spaces are cleared through the heap");
+            }
+        };
+    }
+
+    /**
+     * Objects above half a region take the humongous path.
+     */
+    public boolean isHumongous(long size) {
+        return size > regionSize / 2;
+    }
+
+    public int humongousRegionsFor(long size) {
+        return (int) ((size + regionSize - 1) / regionSize);
+    }
+
+    /**
+     * Start regions of all humongous runs.
+     */
+    public List<HeapRegion> getHumongousStartRegions() {
+        List<HeapRegion> result = new ArrayList<>();
+        for (HeapRegion region : regions) {
+            if (region.isHumongousStart()) {
+                result.add(region);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public long getCapacity() {
+        return regionSize * regions.size();
+    }
+
+    @Override
+    public long getUsed() {
+        long used = 0;
+        for (HeapRegion region : regions) {
+            used += region.getUsed();
+        }
+        return used;
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (HeapRegion region : regions) {
+            region.free();
+        }
+        humongousWasteBytes = 0;
+        edenAllocRegion = null;
+        survivorAllocRegion = null;
+        oldAllocRegion = null;
+        relocationAllocRegion = null;
+    }
+
+    public synchronized boolean canAllocate(long size) {
+        if (isHumongous(size)) {
+            return findFreeRun(humongousRegionsFor(size)) >= 0;
+        }
+        return (edenAllocRegion != null && edenAllocRegion.canAllocate(size)) || hasFreeRegion();
+    }
+
+    /**
+     * Shared allocation path: place the object in the current Eden region,
+     * claiming a new one when it is full.
+     */
+    public synchronized void allocate(SimulatedObject obj) {
+        if (isHumongous(obj.getSize())) {
+            if (!allocateHumongous(obj)) {
+                throw new OutOfMemoryError("No run of " + humongousRegionsFor(obj.getSize())
+                        + " free regions for a humongous object of " + obj.getSize() + " bytes");
+            }
+            return;
+        }
+        HeapRegion region = edenRegionFor(obj.getSize());
+        if (region == null) {
+            throw new OutOfMemoryError("No free region for " + obj.getSize() + " bytes");
+        }
+        region.addObject(obj);
+        region.addUsed(obj.getSize());
+    }
+
+    /**
+     * Eden region with a free block of at least {@code size} bytes, for a TLAB
+     * refill or a shared allocation.
+     *
+     * @return the region, or null if the object does not fit any region or no free region is left
+     */
+    public synchronized HeapRegion edenRegionFor(long size) {
+        if (size > regionSize) {
+            return null;
+        }
+        if (edenAllocRegion == null || edenAllocRegion.getLargestFreeBlock() < size) {
+            edenAllocRegion = claimRegion(HeapRegion.RegionType.EDEN);
+        }
+        return edenAllocRegion;
+    }
+
+    /**
+     * Humongous allocation: claim the lowest run of contiguous free regions that
+     * can hold the object. The object is placed at the bottom of the first region.
+     *
+     * @return false if no run of free regions is long enough
+     */
+    public synchronized boolean allocateHumongous(SimulatedObject obj) {
+        int count = humongousRegionsFor(obj.getSize());
+        int first = findFreeRun(count);
+        if (first < 0) {
+            return false;
+        }
+
+        HeapRegion start = regions.get(first);
+        long remaining = obj.getSize();
+        for (int i = first; i < first + count; i++) {
+            HeapRegion region = regions.get(i);
+            region.startHumongous(start, count);
+            long chunk = Math.min(regionSize, remaining);
+            region.allocateChunk(chunk);
+            if (region == start) {
+                obj.setAddress(0);
+                region.retireChunk(List.of(obj), chunk, 0);
+            } else {
+                region.retireChunk(List.of(), chunk, 0);
+            }
+            remaining -= chunk;
+        }
+        humongousAllocations++;
+        humongousBytesAllocated += obj.getSize();
+        humongousWasteBytes += count * regionSize - obj.getSize();
+        return true;
+    }
+
+    /**
+     * Free every region of a humongous run, dropping its object.
+     *
+     * @return the regions that were freed
+     */
+    public synchronized List<HeapRegion> freeHumongous(HeapRegion start) {
+        List<HeapRegion> run = new ArrayList<>(regions.subList(start.getIndex(),
+                start.getIndex() + start.getHumongousRegions()));
+        long used = 0;
+        for (HeapRegion region : run) {
+            used += region.getUsed();
+            region.free();
+        }
+        humongousWasteBytes -= run.size() * regionSize - used;
+        return run;
+    }
+
+    /**
+     * Take the lowest free region and give it a type.
+     *
+     * @return the region, or null if none is free
+     */
+    public synchronized HeapRegion claimRegion(HeapRegion.RegionType type) {
+        for (HeapRegion region : regions) {
+            if (region.isFree()) {
+                region.setType(type);
+                return region;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Return a region to the free list. Its objects are dropped.
+     */
+    public synchronized void freeRegion(HeapRegion region) {
+        if (region == edenAllocRegion) {
+            edenAllocRegion = null;
+        }
+        if (region == survivorAllocRegion) {
+            survivorAllocRegion = null;
+        }
+        if (region == oldAllocRegion) {
+            oldAllocRegion = null;
+        }
+        if (region == relocationAllocRegion) {
+            relocationAllocRegion = null;
+        }
+        region.free();
+    }
+
+    /**
+     * Start an evacuation pause: mutators get a fresh Eden region afterwards and
+     * survivors are copied into fresh target regions.
+     */
+    public synchronized void beginEvacuation() {
+        edenAllocRegion = null;
+        survivorAllocRegion = null;
+        oldAllocRegion = null;
+        relocationAllocRegion = null;
+    }
+
+    /**
+     * Copy a live object out of its collection-set region into a Survivor or Old
+     * region, claiming free regions as targets fill up. Collectors without
+     * generations relocate into Eden regions of their own, separate from the
+     * one mutators allocate in.
+     *
+     * @return false on evacuation failure: no target region had room, the object stays in place
+     */
+    public synchronized boolean evacuate(SimulatedObject obj, HeapRegion from, HeapRegion.RegionType destination) {
+        HeapRegion target = evacuationTarget(destination, obj.getSize());
+        if (target == null) {
+            evacuationFailures++;
+            return false;
+        }
+        from.removeObject(obj);
+        from.subtractUsed(obj.getSize());
+        target.addObject(obj);
+        target.addUsed(obj.getSize());
+        target.setLiveBytes(target.getLiveBytes() + obj.getSize()); // Copies are live by definition
+        bytesEvacuated += obj.getSize();
+        return true;
+    }
+
+    /**
+     * Concurrent evacuation with a Brooks forwarding pointer, for collectors
+     * that move objects while the application runs. The calling thread first
+     * copies the object into a relocation region and then tries to install the
+     * forwarding pointer. Collector threads and mutators may race to evacuate
+     * the same object: only the copy whose CAS wins is published, the losers
+     * give their space back. If no region has room, the object is forwarded to
+     * its own region and stays in place.
+     *
+     * @return true if this thread's copy won
+     */
+    public boolean evacuateConcurrently(SimulatedObject obj, HeapRegion from, HeapRegion.RegionType destination) {
+        long size = obj.getSize();
+        HeapRegion target;
+        long address;
+        do {
+            target = copyTarget(destination, size);
+            if (target == null) {
+                if (obj.forwardTo(from)) {
+                    recordEvacuationFailure();
+                }
+                return false;
+            }
+            address = target.allocateChunk(size); // Fails if another thread filled the target first
+        } while (address < 0);
+
+        if (!obj.forwardTo(target)) {
+            target.retireChunk(List.of(), address, size); // Lost the race: roll the copy back
+            return false;
+        }
+        from.removeObject(obj);
+        from.subtractUsed(size);
+        obj.setAddress(address);
+        target.retireChunk(List.of(obj), address + size, 0);
+        recordCopy(target, size);
+        return true;
+    }
+
+    /**
+     * In-place relocation, the fallback when no target region can be claimed:
+     * slide the objects left in a region to its bottom, retype it and make it
+     * the current target for the destination, so that objects relocated from
+     * other regions fill up the rest of it. Dead objects must be removed first.
+     */
+    public synchronized void relocateInPlace(HeapRegion region, HeapRegion.RegionType destination) {
+        region.compact();
+        region.setType(destination);
+        region.setLiveBytes(region.getUsed());
+        switch (destination) {
+            case SURVIVOR -> survivorAllocRegion = region;
+            case EDEN -> relocationAllocRegion = region;
+            default -> oldAllocRegion = region;
+        }
+    }
+
+    /**
+     * Update every in-use region's live bytes from the result of a marking.
+     */
+    public void recordLiveness(Predicate<SimulatedObject> isLive) {
+        recordLiveness(regions, isLive);
+    }
+
+    /**
+     * Update the live bytes of some regions, e.g. the young regions after a young-only mark.
+     */
+    public void recordLiveness(Collection<HeapRegion> marked, Predicate<SimulatedObject> isLive) {
+        for (HeapRegion region : marked) {
+            if (region.isFree()) {
+                continue;
+            }
+            long live = 0;
+            for (SimulatedObject obj : region.getObjects()) {
+                if (isLive.test(obj)) {
+                    live += obj.getSize();
+                }
+            }
+            region.setLiveBytes(live);
+        }
+    }
+
+    /**
+     * Remove every object from the heap, grouped into young and old objects.
+     * Used when the heap layout is switched.
+     */
+    synchronized void drainObjects(List<SimulatedObject> young, List<SimulatedObject> old) {
+        for (HeapRegion region : regions) {
+            if (region.isFree()) {
+                continue;
+            }
+            (region.isYoung() ? young : old).addAll(region.getObjects());
+        }
+        clear();
+    }
+
+    /**
+     * Place an object taken over from another layout in an Eden or Old region.
+     */
+    synchronized boolean place(SimulatedObject obj, HeapRegion.RegionType type) {
+        if (isHumongous(obj.getSize())) {
+            return allocateHumongous(obj);
+        }
+        HeapRegion region = type == HeapRegion.RegionType.EDEN
+                ? edenRegionFor(obj.getSize())
+                : evacuationTarget(type, obj.getSize());
+        if (region == null) {
+            return false;
+        }
+        region.addObject(obj);
+        region.addUsed(obj.getSize());
+        return true;
+    }
+
+    /**
+     * Humongous allocations since the last call.
+     */
+    public synchronized long takeHumongousAllocations() {
+        long count = humongousAllocations;
+        humongousAllocations = 0;
+        return count;
+    }
+
+    /**
+     * Bytes allocated by humongous objects since the last call.
+     */
+    public synchronized long takeHumongousBytesAllocated() {
+        long bytes = humongousBytesAllocated;
+        humongousBytesAllocated = 0;
+        return bytes;
+    }
+
+    /**
+     * Bytes lost to the unused tails of the humongous runs currently in the heap.
+     */
+    public synchronized long getHumongousWasteBytes() {
+        return humongousWasteBytes;
+    }
+
+    public long getBytesEvacuated() {
+        return bytesEvacuated;
+    }
+
+    public long getEvacuationFailures() {
+        return evacuationFailures;
+    }
+
+    private boolean hasFreeRegion() {
+        for (HeapRegion region : regions) {
+            if (region.isFree()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * First-fit search for {@code count} contiguous free regions.
+     *
+     * @return index of the first region of the run, or -1
+     */
+    private int findFreeRun(int count) {
+        int runStart = 0;
+        int runLength = 0;
+        for (int i = 0; i < regions.size(); i++) {
+            if (regions.get(i).isFree()) {
+                if (runLength++ == 0) {
+                    runStart = i;
+                }
+                if (runLength == count) {
+                    return runStart;
+                }
+            } else {
+                runLength = 0;
+            }
+        }
+        return -1;
+    }
+
+    private synchronized HeapRegion copyTarget(HeapRegion.RegionType destination, long size) {
+        return evacuationTarget(destination, size);
+    }
+
+    private synchronized void recordCopy(HeapRegion target, long size) {
+        target.setLiveBytes(target.getLiveBytes() + size);
+        bytesEvacuated += size;
+    }
+
+    private synchronized void recordEvacuationFailure() {
+        evacuationFailures++;
+    }
+
+    private HeapRegion evacuationTarget(HeapRegion.RegionType destination, long size) {
+        HeapRegion current = switch (destination) {
+            case SURVIVOR -> survivorAllocRegion;
+            case EDEN -> relocationAllocRegion;
+            default -> oldAllocRegion;
+        };
+        if (current != null && current.getLargestFreeBlock() >= size) {
+            return current;
+        }
+        if (size > regionSize) {
+            return null;
+        }
+        current = claimRegion(destination);
+        switch (destination) {
+            case SURVIVOR -> survivorAllocRegion = current;
+            case EDEN -> relocationAllocRegion = current;
+            default -> oldAllocRegion = current;
+        }
+        return current;
+    }
+}
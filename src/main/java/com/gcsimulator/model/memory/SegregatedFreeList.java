@@ -0,0 +1,89 @@
+package com.gcsimulator.model.memory;
+
+import java.util.*;
+
+/**
+ * Segregated free list, as used by CMS for the tenured space.
+ * Free blocks are binned by power-of-two size class so that most allocations take
+ * the first block of a suitable bin instead of walking the whole list. Blocks are
+ * still coalesced with their address neighbors when freed.
+ */
+public class SegregatedFreeList extends FreeList {
+    private static final int MIN_CLASS_SHIFT = 6; // Smallest class holds blocks below 128 bytes
+    private static final int CLASS_COUNT = 12; // Last class holds every block of 128KB and up
+
+    private final List<Set<Long>> bins; // Block start addresses per size class
+
+    public SegregatedFreeList() {
+        this.bins = new ArrayList<>(CLASS_COUNT);
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            bins.add(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Allocate from the request's own size class if a block there is big enough,
+     * otherwise from the first non-empty larger class.
+     */
+    @Override
+    public long allocate(long size) {
+        int sizeClass = sizeClass(size);
+
+        // Blocks in the request's own class may still be too small
+        for (long start : bins.get(sizeClass)) {
+            countProbe();
+            long blockSize = getBlockSize(start);
+            if (blockSize >= size) {
+                return take(start, blockSize, size);
+            }
+        }
+
+        // Any block of a larger class fits
+        for (int i = sizeClass + 1; i < CLASS_COUNT; i++) {
+            Set<Long> bin = bins.get(i);
+            if (!bin.isEmpty()) {
+                countProbe();
+                long start = bin.iterator().next();
+                return take(start, getBlockSize(start), size);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Number of free blocks in each size class, smallest class first.
+     */
+    public int[] getBinOccupancy() {
+        int[] occupancy = new int[CLASS_COUNT];
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            occupancy[i] = bins.get(i).size();
+        }
+        return occupancy;
+    }
+
+    @Override
+    public void clear() {
+        super.clear();
+        for (Set<Long> bin : bins) {
+            bin.clear();
+        }
+    }
+
+    @Override
+    protected void addBlock(long start, long size) {
+        super.addBlock(start, size);
+        bins.get(sizeClass(size)).add(start);
+    }
+
+    @Override
+    protected void removeBlock(long start, long size) {
+        super.removeBlock(start, size);
+        bins.get(sizeClass(size)).remove(start);
+    }
+
+    private static int sizeClass(long size) {
+        int log2 = 63 - Long.numberOfLeadingZeros(Math.max(1, size));
+        return Math.min(CLASS_COUNT - 1, Math.max(0, log2 - MIN_CLASS_SHIFT));
+    }
+}
@@ -7,7 +7,7 @@ import java.util.*;
  */
 public class SimulatedRAM implements Memory {
     private final long totalCapacity;
-    private long used;
+    private volatile long used;
     private final Map<String, Long> allocations;
 
     public SimulatedRAM(long totalCapacity) {
@@ -19,7 +19,7 @@ public class SimulatedRAM implements Memory {
     /**
      * Allocate a block of memory with a given name.
      */
-    public boolean allocate(String name, long size) {
+    public synchronized boolean allocate(String name, long size) {
         if (used + size > totalCapacity) {
             return false;
         }
@@ -31,7 +31,7 @@ public class SimulatedRAM implements Memory {
     /**
      * Deallocate a block of memory.
      */
-    public void deallocate(String name, long size) {
+    public synchronized void deallocate(String name, long size) {
         Long current = allocations.get(name);
         if (current != null) {
             long newSize = Math.max(0, current - size);
@@ -44,8 +44,8 @@ public class SimulatedRAM implements Memory {
         }
     }
 
-    public Map<String, Long> getAllocations() {
-        return Collections.unmodifiableMap(allocations);
+    public synchronized Map<String, Long> getAllocations() {
+        return Map.copyOf(allocations);
     }
 
     @Override
@@ -59,7 +59,7 @@ public class SimulatedRAM implements Memory {
     }
 
     @Override
-    public void clear() {
+    public synchronized void clear() {
         allocations.clear();
         used = 0;
     }
@@ -0,0 +1,29 @@
+package com.gcsimulator.model.objects;
+
+/**
+ * Hook invoked by {@link SimulatedObject} on reference stores and loads, so that
+ * collectors with colored pointers can keep metadata in each reference word and
+ * fix up stale references when the application reads them.
+ */
+public interface LoadBarrier {
+    /**
+     * Barrier that does nothing; reference words stay 0.
+     */
+    LoadBarrier NONE = new LoadBarrier() {
+    };
+
+    /**
+     * Reference word to store for a new reference to {@code target}.
+     */
+    default long encode(SimulatedObject target) {
+        return 0;
+    }
+
+    /**
+     * Called when the application loads the reference to {@code target} held in
+     * {@code holder}, with the word currently stored in that slot. The barrier
+     * may heal the slot with {@link SimulatedObject#healReference}.
+     */
+    default void onLoad(SimulatedObject holder, SimulatedObject target, long word) {
+    }
+}
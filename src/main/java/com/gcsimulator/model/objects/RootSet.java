@@ -1,19 +1,38 @@
 package com.gcsimulator.model.objects;
 
+import com.gcsimulator.model.memory.Stack;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents the root set for garbage collection - objects that are always
  * reachable.
  * This includes stack references, static variables, etc.
+ * Safe for concurrent use by several mutator threads; local references held in
+ * registered thread stacks are part of the roots.
  */
 public class RootSet {
     private final Set<SimulatedObject> roots;
     private final Map<String, SimulatedObject> namedRoots;
+    private final List<Stack> stacks;
 
     public RootSet() {
-        this.roots = new HashSet<>();
-        this.namedRoots = new HashMap<>();
+        this.roots = ConcurrentHashMap.newKeySet();
+        this.namedRoots = new ConcurrentHashMap<>();
+        this.stacks = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * Scan a thread stack's frames for local references at every collection.
+     */
+    public void addStack(Stack stack) {
+        stacks.add(stack);
+    }
+
+    public void removeStack(Stack stack) {
+        stacks.remove(stack);
     }
 
     public void addRoot(SimulatedObject obj) {
@@ -37,14 +56,34 @@ public class RootSet {
         }
     }
 
+    /**
+     * Get all roots. Stack locals are only stable while their threads are
+     * stopped, so with registered stacks a snapshot is returned.
+     */
     public Set<SimulatedObject> getRoots() {
-        return Collections.unmodifiableSet(roots);
+        if (stacks.isEmpty()) {
+            return Collections.unmodifiableSet(roots);
+        }
+        Set<SimulatedObject> all = new HashSet<>(roots);
+        for (Stack stack : stacks) {
+            for (Stack.StackFrame frame : stack.getFrames()) {
+                for (Object ref : frame.getLocalReferences()) {
+                    if (ref instanceof SimulatedObject obj) {
+                        all.add(obj);
+                    }
+                }
+            }
+        }
+        return all;
     }
 
     public SimulatedObject getNamedRoot(String name) {
         return namedRoots.get(name);
     }
 
+    /**
+     * Remove all static roots. Registered stacks stay registered.
+     */
     public void clear() {
         roots.clear();
         namedRoots.clear();
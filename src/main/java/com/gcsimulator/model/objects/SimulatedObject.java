@@ -1,22 +1,41 @@
 package com.gcsimulator.model.objects;
 
+import com.gcsimulator.model.memory.MemoryRegion;
+
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Represents a simulated object in the JVM heap.
+ * Each reference is stored as a 64-bit reference word next to the referenced
+ * object; collectors with colored pointers keep their metadata bits in it.
  */
 public class SimulatedObject {
     private static final AtomicLong ID_GENERATOR = new AtomicLong(0);
+    private static final AtomicIntegerFieldUpdater<SimulatedObject> MARK_EPOCH = AtomicIntegerFieldUpdater
+            .newUpdater(SimulatedObject.class, "markEpoch");
+    private static final AtomicReferenceFieldUpdater<SimulatedObject, MemoryRegion> FORWARDEE = AtomicReferenceFieldUpdater
+            .newUpdater(SimulatedObject.class, MemoryRegion.class, "forwardee");
 
     private final long id;
     private final long size;
     private final long creationTime;
     private int age;
     private boolean marked;
+    private volatile int markEpoch; // Lock-free mark bit, valid for one marking cycle
+    private int storeIndex = -1; // Slot in the owning region's object store
+    private long address = -1; // Offset within the owning region, -1 if not placed
+    private volatile MemoryRegion region; // Region holding the object, null while in a TLAB or after removal
+    private long forwardingAddress = -1; // New address while a compaction is in progress
+    private volatile MemoryRegion forwardee; // Brooks pointer: region of the to-space copy, null while not forwarded
     private boolean reachable;
     private String type;
-    private final Set<SimulatedObject> references;
+    private final ConcurrentHashMap<SimulatedObject, Long> references; // Referenced object -> reference word
+    private WriteBarrier writeBarrier = WriteBarrier.NONE; // Set once at allocation
+    private LoadBarrier loadBarrier = LoadBarrier.NONE;
 
     public SimulatedObject(long size, String type) {
         this.id = ID_GENERATOR.incrementAndGet();
@@ -26,7 +45,15 @@ public class SimulatedObject {
         this.age = 0;
         this.marked = false;
         this.reachable = true;
-        this.references = new HashSet<>();
+        this.references = new ConcurrentHashMap<>(); // Traced by concurrent GC phases
+    }
+
+    /**
+     * Id of the most recently created object. Objects with a higher id were
+     * created afterwards, which concurrent collectors use as a top-at-mark-start.
+     */
+    public static long getLastId() {
+        return ID_GENERATOR.get();
     }
 
     public long getId() {
@@ -61,6 +88,94 @@ public class SimulatedObject {
         this.marked = marked;
     }
 
+    /**
+     * Atomically set the mark bit for the given marking cycle.
+     *
+     * @return true if this call marked the object, false if it was already marked
+     */
+    public boolean tryMark(int epoch) {
+        int current;
+        do {
+            current = markEpoch;
+            if (current == epoch) {
+                return false;
+            }
+        } while (!MARK_EPOCH.compareAndSet(this, current, epoch));
+        marked = true;
+        return true;
+    }
+
+    public boolean isMarkedIn(int epoch) {
+        return markEpoch == epoch;
+    }
+
+    public int getStoreIndex() {
+        return storeIndex;
+    }
+
+    public void setStoreIndex(int storeIndex) {
+        this.storeIndex = storeIndex;
+    }
+
+    public long getAddress() {
+        return address;
+    }
+
+    public void setAddress(long address) {
+        this.address = address;
+    }
+
+    /**
+     * Region that currently holds this object, the simulator's equivalent of
+     * deriving the region from an object's address. Null while the object sits
+     * in a TLAB that has not been retired yet, or once it has been removed.
+     */
+    public MemoryRegion getRegion() {
+        return region;
+    }
+
+    public void setRegion(MemoryRegion region) {
+        this.region = region;
+    }
+
+    public long getForwardingAddress() {
+        return forwardingAddress;
+    }
+
+    public void setForwardingAddress(long forwardingAddress) {
+        this.forwardingAddress = forwardingAddress;
+    }
+
+    /**
+     * Region holding the copy that won a concurrent evacuation, or null if the
+     * object has not been forwarded. An object that could not be evacuated is
+     * forwarded to its own region.
+     */
+    public MemoryRegion getForwardee() {
+        return forwardee;
+    }
+
+    public boolean isForwarded() {
+        return forwardee != null;
+    }
+
+    /**
+     * Install the Brooks forwarding pointer. Collector threads and mutators
+     * race to evacuate the same object; only the first CAS wins.
+     *
+     * @return true if this call forwarded the object
+     */
+    public boolean forwardTo(MemoryRegion copy) {
+        return FORWARDEE.compareAndSet(this, null, copy);
+    }
+
+    /**
+     * Reset the forwarding pointer once every reference has been updated.
+     */
+    public void clearForwardee() {
+        forwardee = null;
+    }
+
     public boolean isReachable() {
         return reachable;
     }
@@ -77,19 +192,69 @@ public class SimulatedObject {
         this.type = type;
     }
 
+    public void setWriteBarrier(WriteBarrier writeBarrier) {
+        this.writeBarrier = writeBarrier;
+    }
+
+    public void setLoadBarrier(LoadBarrier loadBarrier) {
+        this.loadBarrier = loadBarrier;
+    }
+
+    /**
+     * Read-only view for the collector, which reads references without the
+     * load barrier; reference stores go through the methods below so that the
+     * write barrier sees them.
+     */
     public Set<SimulatedObject> getReferences() {
-        return references;
+        return Collections.unmodifiableSet(references.keySet());
+    }
+
+    /**
+     * Read-only view of the reference words, keyed by the referenced object.
+     */
+    public Map<SimulatedObject, Long> getReferenceWords() {
+        return Collections.unmodifiableMap(references);
+    }
+
+    /**
+     * Application read of every reference held by this object, through the load barrier.
+     */
+    public List<SimulatedObject> loadReferences() {
+        List<SimulatedObject> loaded = new ArrayList<>(references.size());
+        for (Map.Entry<SimulatedObject, Long> entry : references.entrySet()) {
+            loadBarrier.onLoad(this, entry.getKey(), entry.getValue());
+            loaded.add(entry.getKey());
+        }
+        return loaded;
+    }
+
+    /**
+     * Replace the word of a reference if it still holds {@code expected}. Losing
+     * the race to another thread healing or storing the same slot is fine.
+     *
+     * @return true if the word was replaced
+     */
+    public boolean healReference(SimulatedObject target, long expected, long healed) {
+        return references.replace(target, expected, healed);
     }
 
     public void addReference(SimulatedObject obj) {
-        references.add(obj);
+        if (references.putIfAbsent(obj, loadBarrier.encode(obj)) == null) {
+            writeBarrier.postWrite(this, obj);
+        }
     }
 
     public void removeReference(SimulatedObject obj) {
-        references.remove(obj);
+        if (references.containsKey(obj)) {
+            writeBarrier.preWrite(this, obj);
+            references.remove(obj);
+        }
     }
 
     public void clearReferences() {
+        for (SimulatedObject ref : references.keySet()) {
+            writeBarrier.preWrite(this, ref);
+        }
         references.clear();
     }
 
@@ -0,0 +1,25 @@
+package com.gcsimulator.model.objects;
+
+/**
+ * Hook invoked by {@link SimulatedObject} around every reference store, so that
+ * concurrent collectors can observe mutations made while they are marking.
+ */
+public interface WriteBarrier {
+    /**
+     * Barrier that does nothing, used by stop-the-world collectors.
+     */
+    WriteBarrier NONE = new WriteBarrier() {
+    };
+
+    /**
+     * Called before {@code oldValue} is removed from {@code holder}'s references.
+     */
+    default void preWrite(SimulatedObject holder, SimulatedObject oldValue) {
+    }
+
+    /**
+     * Called after {@code newValue} has been stored into {@code holder}'s references.
+     */
+    default void postWrite(SimulatedObject holder, SimulatedObject newValue) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.gcsimulator.workload;
+
+import com.gcsimulator.gc.GCAlgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+/**
+ * Runs one workload against several collectors at the same time, each on its
+ * own JVM and in its own thread, so that a sweep takes as long as its slowest
+ * run rather than the sum of all runs. Every run starts from the same seed,
+ * so the collectors see the same allocation streams.
+ */
+public class ComparisonEngine {
+    private final SimulationRunner runner;
+    private Consumer<GCAlgorithm> onStart = algorithm -> { };
+
+    public ComparisonEngine(SimulationRunner runner) {
+        this.runner = runner;
+    }
+
+    /**
+     * Called from each run's thread just before its mutators start.
+     */
+    public void setOnStart(Consumer<GCAlgorithm> onStart) {
+        this.onStart = onStart;
+    }
+
+    /**
+     * Run every collector and wait for all of them.
+     *
+     * @return one result per collector, in the order given
+     */
+    public List<SimulationResult> compare(List<GCAlgorithm> algorithms) throws InterruptedException {
+        if (algorithms.isEmpty()) {
+            return List.of();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(algorithms.size(), runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<SimulationResult>> runs = new ArrayList<>();
+            for (GCAlgorithm algorithm : algorithms) {
+                runs.add(executor.submit(() -> {
+                    Thread.currentThread().setName("Comparison-" + algorithm.name());
+                    onStart.accept(algorithm);
+                    return runner.run(algorithm);
+                }));
+            }
+            List<SimulationResult> results = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i++) {
+                try {
+                    results.add(runs.get(i).get());
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(algorithms.get(i) + " run failed", e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
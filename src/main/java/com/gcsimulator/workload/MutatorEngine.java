@@ -0,0 +1,378 @@
+package com.gcsimulator.workload;
+
+import com.gcsimulator.gc.GarbageCollector;
+import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.jvm.SafepointManager;
+import com.gcsimulator.model.memory.Stack;
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives the simulated heap with several application (mutator) threads.
+ * Each mutator has its own thread stack and allocation stream, keeps a bounded
+ * set of long-lived objects as roots, and polls for safepoints between
+ * allocations so that collections can stop every mutator.
+ */
+public class MutatorEngine {
+    private static final long STACK_SIZE = 512 * 1024;
+    private static final long FRAME_SIZE = 256;
+    private static final int OBJECTS_PER_FRAME = 8;
+    private static final int ALLOCATION_STALL_CYCLES = 2; // Collections a failed allocation waits for before giving up
+
+    private final JVMSimulator jvm;
+    private final GarbageCollector collector;
+    private final int threadCount;
+    private final ThreadMode requestedMode;
+    private final List<Thread> threads;
+    private final ReentrantLock collectLock; // One collection at a time
+    private volatile boolean running;
+    private ThreadMode threadMode;
+
+    private volatile long seed;
+    private volatile long allocationRate; // Objects per second per thread, 0 = unthrottled
+    private volatile double retentionRate; // Chance that a new object becomes a long-lived root
+    private volatile int maxRetainedPerThread;
+    private volatile ObjectSizeDistribution sizeDistribution; // Null for the allocation engine's own mix
+
+    private final LongAdder allocations;
+    private final LongAdder bytesAllocated;
+    private final LongAdder outOfMemoryErrors;
+
+    public enum ThreadMode {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    public MutatorEngine(JVMSimulator jvm, GarbageCollector collector, int threadCount, ThreadMode threadMode) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("At least one mutator thread is required");
+        }
+        this.jvm = jvm;
+        this.collector = collector;
+        this.threadCount = threadCount;
+        this.requestedMode = threadMode;
+        this.threadMode = threadMode;
+        this.threads = new CopyOnWriteArrayList<>();
+        this.collectLock = new ReentrantLock();
+        this.seed = System.nanoTime();
+        this.allocationRate = 0;
+        this.retentionRate = 0.05;
+        this.maxRetainedPerThread = 256;
+        this.allocations = new LongAdder();
+        this.bytesAllocated = new LongAdder();
+        this.outOfMemoryErrors = new LongAdder();
+    }
+
+    /**
+     * Start the mutator threads. Virtual threads fall back to platform threads
+     * on runtimes that do not provide them.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        ThreadFactory factory = null;
+        if (requestedMode == ThreadMode.VIRTUAL) {
+            factory = virtualThreadFactory();
+        }
+        threadMode = factory != null ? ThreadMode.VIRTUAL : ThreadMode.PLATFORM;
+        if (factory == null) {
+            AtomicInteger counter = new AtomicInteger();
+            factory = runnable -> {
+                Thread thread = new Thread(runnable, "Mutator-" + counter.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+
+        for (int i = 0; i < threadCount; i++) {
+            int index = i;
+            Thread thread = factory.newThread(() -> runMutator(index));
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop all mutators and wait for them to leave the heap.
+     */
+    public synchronized void stop() {
+        running = false;
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        threads.clear();
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Run a collection and wait for the whole cycle to finish.
+     *
+     * @param force collect even if the collector does not ask for it
+     * @return true if a collection was performed
+     */
+    public boolean collect(boolean force) {
+        CompletableFuture<Boolean> cycle = collectAsync(force);
+        if (cycle.isDone()) {
+            return cycle.join();
+        }
+
+        // A mutator waiting for a concurrent cycle must not hold up its safepoints
+        SafepointManager safepoints = jvm.getSafepointManager();
+        safepoints.enterSafeRegion();
+        try {
+            return cycle.join();
+        } finally {
+            safepoints.leaveSafeRegion();
+        }
+    }
+
+    /**
+     * Start a collection. Stop-the-world collectors run it on the calling
+     * thread and bring the other mutators to a safepoint for each pause;
+     * concurrent collectors return while their cycle runs in the background.
+     *
+     * @param force collect even if the collector does not ask for it
+     * @return the cycle, completing with true if a collection was performed
+     */
+    public CompletableFuture<Boolean> collectAsync(boolean force) {
+        SafepointManager safepoints = jvm.getSafepointManager();
+
+        // A mutator waiting for another thread's collection must not hold up its safepoints
+        safepoints.enterSafeRegion();
+        collectLock.lock();
+        safepoints.leaveSafeRegion();
+        try {
+            // Another mutator may already have started a collection while this one waited
+            if (!force && (collector.isCycleInProgress() || !collector.shouldCollect())) {
+                return CompletableFuture.completedFuture(false);
+            }
+            return collector.collectAsync();
+        } finally {
+            collectLock.unlock();
+        }
+    }
+
+    /**
+     * Run an action while all mutators are stopped.
+     */
+    public void runAtSafepoint(Runnable action) {
+        SafepointManager safepoints = jvm.getSafepointManager();
+        safepoints.begin();
+        try {
+            action.run();
+        } finally {
+            safepoints.end();
+        }
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void setAllocationRate(long objectsPerSecond) {
+        this.allocationRate = Math.max(0, objectsPerSecond);
+    }
+
+    public void setRetentionRate(double retentionRate) {
+        this.retentionRate = Math.max(0.0, Math.min(1.0, retentionRate));
+    }
+
+    public void setMaxRetainedPerThread(int maxRetained) {
+        this.maxRetainedPerThread = Math.max(0, maxRetained);
+    }
+
+    /**
+     * Sizes of the objects the mutators allocate, or null for the allocation
+     * engine's mix of object types.
+     */
+    public void setSizeDistribution(ObjectSizeDistribution sizeDistribution) {
+        this.sizeDistribution = sizeDistribution;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Thread mode actually in use; may differ from the requested one after a fallback.
+     */
+    public ThreadMode getThreadMode() {
+        return threadMode;
+    }
+
+    public long getAllocations() {
+        return allocations.sum();
+    }
+
+    public long getBytesAllocated() {
+        return bytesAllocated.sum();
+    }
+
+    public long getOutOfMemoryErrors() {
+        return outOfMemoryErrors.sum();
+    }
+
+    private void runMutator(int index) {
+        SafepointManager safepoints = jvm.getSafepointManager();
+        Stack stack = new Stack("Mutator-" + index, STACK_SIZE);
+        Random random = new Random(seed + index);
+        Deque<SimulatedObject> retained = new ArrayDeque<>();
+
+        jvm.addStack(stack);
+        safepoints.register();
+        try {
+            while (running) {
+                safepoints.poll();
+                step(stack, random, retained);
+                throttle();
+            }
+        } finally {
+            safepoints.deregister();
+            jvm.removeStack(stack);
+            for (SimulatedObject obj : retained) {
+                jvm.getRootSet().removeRoot(obj);
+            }
+        }
+    }
+
+    /**
+     * One simulated method call: allocate a few objects held by the frame, link
+     * them into a small graph, keep some of them alive beyond the call and read
+     * back some long-lived data.
+     */
+    private void step(Stack stack, Random random, Deque<SimulatedObject> retained) {
+        Stack.StackFrame frame = new Stack.StackFrame("mutatorStep", FRAME_SIZE);
+        stack.pushFrame(frame);
+        try {
+            SimulatedObject parent = null;
+            for (int i = 0; i < OBJECTS_PER_FRAME && running; i++) {
+                SimulatedObject obj = allocate(random, retained);
+                if (obj == null) {
+                    break;
+                }
+                frame.addLocalReference(obj);
+                if (parent != null && random.nextBoolean()) {
+                    parent.addReference(obj);
+                }
+                parent = obj;
+
+                if (random.nextDouble() < retentionRate) {
+                    retain(obj, retained);
+                }
+                jvm.getSafepointManager().poll();
+            }
+            readRetained(random, retained);
+        } finally {
+            stack.popFrame();
+        }
+    }
+
+    /**
+     * Load the references of a long-lived object and of the objects it refers
+     * to, through the load barrier.
+     */
+    private void readRetained(Random random, Deque<SimulatedObject> retained) {
+        SimulatedObject obj = random.nextBoolean() ? retained.peekFirst() : retained.peekLast();
+        if (obj == null) {
+            return;
+        }
+        for (SimulatedObject ref : obj.loadReferences()) {
+            ref.loadReferences();
+        }
+    }
+
+    private SimulatedObject allocate(Random random, Deque<SimulatedObject> retained) {
+        SimulatedObject obj = null;
+        ObjectSizeDistribution sizes = sizeDistribution;
+        // Stall like a concurrent collector does: the cycle already running may
+        // have started long before the heap filled up, so wait for the next one too
+        for (int stalls = 0; obj == null; stalls++) {
+            try {
+                obj = sizes != null
+                        ? jvm.getAllocationEngine().allocate(sizes.nextSize(random), "Object")
+                        : jvm.getAllocationEngine().allocateRandom(random);
+            } catch (OutOfMemoryError e) {
+                if (stalls == ALLOCATION_STALL_CYCLES) {
+                    // The live set does not fit: let this thread's long-lived objects die
+                    outOfMemoryErrors.increment();
+                    releaseRetained(retained);
+                    return null;
+                }
+                collect(true);
+            }
+        }
+        allocations.increment();
+        bytesAllocated.add(obj.getSize());
+
+        if (collector.shouldCollect() && !collector.isCycleInProgress()) {
+            collectAsync(false);
+        }
+        return obj;
+    }
+
+    private void retain(SimulatedObject obj, Deque<SimulatedObject> retained) {
+        if (maxRetainedPerThread == 0) {
+            return;
+        }
+        jvm.getRootSet().addRoot(obj);
+        retained.addLast(obj);
+        while (retained.size() > maxRetainedPerThread) {
+            jvm.getRootSet().removeRoot(retained.removeFirst());
+        }
+    }
+
+    private void releaseRetained(Deque<SimulatedObject> retained) {
+        for (SimulatedObject obj : retained) {
+            jvm.getRootSet().removeRoot(obj);
+        }
+        retained.clear();
+    }
+
+    private void throttle() {
+        long rate = allocationRate;
+        if (rate > 0) {
+            LockSupport.parkNanos(OBJECTS_PER_FRAME * 1_000_000_000L / rate);
+        }
+    }
+
+    /**
+     * Look up the virtual thread factory reflectively so the simulator still runs
+     * on Java 17, where virtual threads do not exist.
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, "Mutator-", 0L);
+            Method factory = builderType.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
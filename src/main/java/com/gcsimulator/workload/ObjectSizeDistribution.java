@@ -0,0 +1,94 @@
+package com.gcsimulator.workload;
+
+import java.util.Random;
+
+/**
+ * Sizes of the objects a workload allocates.
+ */
+public interface ObjectSizeDistribution {
+
+    /**
+     * Next object size in bytes, drawn from the caller's random source.
+     */
+    long nextSize(Random random);
+
+    /**
+     * Every object has the same size.
+     */
+    static ObjectSizeDistribution fixed(long size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Object size must be positive: " + size);
+        }
+        return random -> size;
+    }
+
+    /**
+     * Sizes uniformly distributed between {@code min} and {@code max}, inclusive.
+     */
+    static ObjectSizeDistribution uniform(long min, long max) {
+        if (min <= 0 || max < min) {
+            throw new IllegalArgumentException("Invalid size range: " + min + "-" + max);
+        }
+        return random -> min + (long) (random.nextDouble() * (max - min + 1));
+    }
+
+    /**
+     * Exponentially distributed sizes: many small objects and a long tail of
+     * large ones, capped at {@code max}.
+     */
+    static ObjectSizeDistribution exponential(long mean, long max) {
+        if (mean <= 0 || max < mean) {
+            throw new IllegalArgumentException("Invalid mean/max: " + mean + "/" + max);
+        }
+        return random -> Math.max(1, Math.min(max, (long) (-mean * Math.log(1 - random.nextDouble()))));
+    }
+
+    /**
+     * Parse a distribution: {@code fixed:SIZE}, {@code uniform:MIN-MAX} or
+     * {@code exp:MEAN[-MAX]}, with sizes in bytes and an optional k/m suffix.
+     */
+    static ObjectSizeDistribution parse(String spec) {
+        String[] parts = spec.split(":", 2);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Expected kind:parameters, got " + spec);
+        }
+        String[] bounds = parts[1].split("-", 2);
+        return switch (parts[0]) {
+            case "fixed" -> fixed(parseSize(parts[1]));
+            case "uniform" -> {
+                if (bounds.length != 2) {
+                    throw new IllegalArgumentException("Expected uniform:MIN-MAX, got " + spec);
+                }
+                yield uniform(parseSize(bounds[0]), parseSize(bounds[1]));
+            }
+            case "exp" -> {
+                long mean = parseSize(bounds[0]);
+                yield exponential(mean, bounds.length == 2 ? parseSize(bounds[1]) : mean * 32);
+            }
+            default -> throw new IllegalArgumentException("Unknown size distribution: " + parts[0]);
+        };
+    }
+
+    /**
+     * Parse a byte count with an optional k, m or g suffix, e.g. {@code 256m}.
+     */
+    static long parseSize(String value) {
+        String text = value.trim().toLowerCase();
+        long unit = 1;
+        if (text.endsWith("k")) {
+            unit = 1024;
+        } else if (text.endsWith("m")) {
+            unit = 1024 * 1024;
+        } else if (text.endsWith("g")) {
+            unit = 1024 * 1024 * 1024;
+        }
+        if (unit > 1) {
+            text = text.substring(0, text.length() - 1);
+        }
+        try {
+            return Long.parseLong(text) * unit;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + value);
+        }
+    }
+}
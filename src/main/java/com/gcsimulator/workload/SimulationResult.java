@@ -0,0 +1,125 @@
+package com.gcsimulator.workload;
+
+import com.gcsimulator.gc.GCAlgorithm;
+import com.gcsimulator.gc.GCStatistics;
+import com.gcsimulator.gc.PhaseEvent;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of running one workload against one collector.
+ */
+public class SimulationResult {
+    private final GCAlgorithm algorithm;
+    private final long elapsedMs;
+    private final long allocations;
+    private final long bytesAllocated;
+    private final long outOfMemoryErrors;
+    private final long heapUsed;
+    private final GCStatistics statistics;
+    private final Map<String, GCStatistics> generationStatistics;
+    private final long promotedBytes;
+    private final long startNanos;
+    private final List<PhaseEvent> phaseEvents;
+
+    public SimulationResult(GCAlgorithm algorithm, long elapsedMs, long allocations, long bytesAllocated,
+            long outOfMemoryErrors, long heapUsed, GCStatistics statistics,
+            Map<String, GCStatistics> generationStatistics, long promotedBytes,
+            long startNanos, List<PhaseEvent> phaseEvents) {
+        this.algorithm = algorithm;
+        this.elapsedMs = elapsedMs;
+        this.allocations = allocations;
+        this.bytesAllocated = bytesAllocated;
+        this.outOfMemoryErrors = outOfMemoryErrors;
+        this.heapUsed = heapUsed;
+        this.statistics = statistics;
+        this.generationStatistics = Map.copyOf(generationStatistics);
+        this.promotedBytes = promotedBytes;
+        this.startNanos = startNanos;
+        this.phaseEvents = List.copyOf(phaseEvents);
+    }
+
+    public GCAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Wall-clock time the mutators ran.
+     */
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public long getAllocations() {
+        return allocations;
+    }
+
+    public long getBytesAllocated() {
+        return bytesAllocated;
+    }
+
+    /**
+     * Allocation throughput in bytes per second of wall-clock time.
+     */
+    public double getAllocationRate() {
+        return elapsedMs > 0 ? bytesAllocated * 1000.0 / elapsedMs : 0.0;
+    }
+
+    public long getOutOfMemoryErrors() {
+        return outOfMemoryErrors;
+    }
+
+    /**
+     * Heap occupancy when the mutators stopped.
+     */
+    public long getHeapUsed() {
+        return heapUsed;
+    }
+
+    /**
+     * Share of the run the mutators were not stopped for a collection.
+     */
+    public double getMutatorUtilization() {
+        if (elapsedMs <= 0) {
+            return 0.0;
+        }
+        return Math.max(0.0, 1.0 - statistics.getTotalPauseNanos() / 1_000_000.0 / elapsedMs);
+    }
+
+    /**
+     * Bytes promoted from the young into the old generation.
+     */
+    public long getPromotedBytes() {
+        return promotedBytes;
+    }
+
+    /**
+     * When the mutators started, on the {@link System#nanoTime()} clock.
+     */
+    public long getStartNanos() {
+        return startNanos;
+    }
+
+    /**
+     * The collector's traced phases still in its ring buffer at the end of the run, oldest first.
+     */
+    public List<PhaseEvent> getPhaseEvents() {
+        return phaseEvents;
+    }
+
+    /**
+     * The collector's statistics at the end of the run.
+     */
+    public GCStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Statistics of a generation the collector collects on its own, e.g.
+     * "young" or "old", or null if it has no separate cycles for it.
+     */
+    public GCStatistics getGenerationStatistics(String generation) {
+        return generationStatistics.get(generation);
+    }
+}
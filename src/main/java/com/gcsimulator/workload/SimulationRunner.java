@@ -0,0 +1,128 @@
+package com.gcsimulator.workload;
+
+import com.gcsimulator.gc.GCAlgorithm;
+import com.gcsimulator.gc.GCLogWriter;
+import com.gcsimulator.gc.GarbageCollector;
+import com.gcsimulator.gc.GarbageCollectorFactory;
+import com.gcsimulator.model.jvm.JVMSimulator;
+import com.gcsimulator.model.objects.SimulatedObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Runs a workload against a collector without any UI: a fresh JVM per run,
+ * mutators at the workload's rate for its duration, and the collector's
+ * statistics at the end. Runs share no state, so one runner may run several
+ * collectors at the same time.
+ */
+public class SimulationRunner {
+    private final WorkloadSpec workload;
+    private boolean loggingEnabled;
+    private Function<GCAlgorithm, Path> gcLogFiles;
+
+    public SimulationRunner(WorkloadSpec workload) {
+        this.workload = workload;
+    }
+
+    /**
+     * Print the collectors' phase-by-phase logs; off by default.
+     */
+    public void setLoggingEnabled(boolean loggingEnabled) {
+        this.loggingEnabled = loggingEnabled;
+    }
+
+    /**
+     * Write a JDK-format GC log of each run to the file given for its
+     * collector, or none with null; off by default.
+     */
+    public void setGcLogFiles(Function<GCAlgorithm, Path> gcLogFiles) {
+        this.gcLogFiles = gcLogFiles;
+    }
+
+    public WorkloadSpec getWorkload() {
+        return workload;
+    }
+
+    public SimulationResult run(GCAlgorithm algorithm) {
+        JVMSimulator jvm = workload.createJVM();
+        GarbageCollector collector = GarbageCollectorFactory.create(algorithm);
+        collector.setLoggingEnabled(loggingEnabled);
+        collector.initialize(jvm);
+        GCLogWriter gcLog = openGcLog(algorithm);
+        collector.setGCLog(gcLog);
+        PromotionCounter promotions = new PromotionCounter();
+        jvm.addEventListener(promotions, JVMSimulator.JVMEvent.EventType.PROMOTION);
+        MutatorEngine engine = workload.createMutatorEngine(jvm, collector);
+
+        long start = System.nanoTime();
+        engine.start();
+        try {
+            TimeUnit.MILLISECONDS.sleep(workload.getDurationMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            engine.stop();
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        try {
+            // Let a cycle still running finish, so that its pauses are counted
+            while (collector.isCycleInProgress() && !Thread.currentThread().isInterrupted()) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            jvm.flushEvents(); // Count every promotion before reading the total
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            collector.shutdown();
+            jvm.removeEventListener(promotions);
+            closeGcLog(gcLog);
+        }
+
+        return new SimulationResult(algorithm, elapsedMs, engine.getAllocations(), engine.getBytesAllocated(),
+                engine.getOutOfMemoryErrors(), jvm.getHeap().getUsed(), collector.getStatistics(),
+                collector.getGenerationStatistics(), promotions.bytes.sum(), start, collector.getPhaseTracer().getEvents());
+    }
+
+    private GCLogWriter openGcLog(GCAlgorithm algorithm) {
+        Path file = gcLogFiles != null ? gcLogFiles.apply(algorithm) : null;
+        if (file == null) {
+            return null;
+        }
+        try {
+            return new GCLogWriter(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open GC log " + file, e);
+        }
+    }
+
+    private static void closeGcLog(GCLogWriter gcLog) {
+        if (gcLog == null) {
+            return;
+        }
+        try {
+            gcLog.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write GC log", e);
+        }
+    }
+
+    /**
+     * Counts the volume promoted into the old generation.
+     */
+    private static class PromotionCounter implements JVMSimulator.JVMEventListener {
+        private final LongAdder bytes = new LongAdder();
+
+        @Override
+        public void onEvent(JVMSimulator.JVMEvent event) {
+            if (event.getData() instanceof SimulatedObject obj) {
+                bytes.add(obj.getSize());
+            }
+        }
+    }
+}
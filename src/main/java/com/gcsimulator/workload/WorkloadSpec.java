@@ -0,0 +1,136 @@
+package com.gcsimulator.workload;
+
+import com.gcsimulator.gc.GarbageCollector;
+import com.gcsimulator.model.jvm.JVMSimulator;
+
+/**
+ * A reproducible workload: the simulated JVM's memory sizes and what the
+ * mutator threads do for how long. Defaults match the UI's JVM, with
+ * unthrottled mutators.
+ */
+public class WorkloadSpec {
+    public static final String DEFAULT_SIZES = "default"; // The allocation engine's mix of object types
+
+    private long ramSize = 512 * 1024 * 1024L;
+    private long heapSize = 256 * 1024 * 1024L;
+    private long metaspaceSize = 64 * 1024 * 1024L;
+    private int threads = 4;
+    private long allocationRate; // Objects per second per thread, 0 = unthrottled
+    private String sizeDistribution = DEFAULT_SIZES;
+    private ObjectSizeDistribution sizes; // Null for the allocation engine's own mix
+    private double retentionRate = 0.05;
+    private int maxRetainedPerThread = 256;
+    private long durationMs = 10_000;
+    private long seed = 42;
+
+    /**
+     * A fresh JVM with this workload's memory sizes.
+     */
+    public JVMSimulator createJVM() {
+        return new JVMSimulator(ramSize, heapSize, metaspaceSize);
+    }
+
+    /**
+     * Mutators running this workload against an initialized collector.
+     */
+    public MutatorEngine createMutatorEngine(JVMSimulator jvm, GarbageCollector collector) {
+        MutatorEngine engine = new MutatorEngine(jvm, collector, threads, MutatorEngine.ThreadMode.VIRTUAL);
+        engine.setSeed(seed);
+        engine.setAllocationRate(allocationRate);
+        engine.setSizeDistribution(sizes);
+        engine.setRetentionRate(retentionRate);
+        engine.setMaxRetainedPerThread(maxRetainedPerThread);
+        return engine;
+    }
+
+    public long getRamSize() {
+        return ramSize;
+    }
+
+    public void setRamSize(long ramSize) {
+        this.ramSize = ramSize;
+    }
+
+    public long getHeapSize() {
+        return heapSize;
+    }
+
+    public void setHeapSize(long heapSize) {
+        this.heapSize = heapSize;
+    }
+
+    public long getMetaspaceSize() {
+        return metaspaceSize;
+    }
+
+    public void setMetaspaceSize(long metaspaceSize) {
+        this.metaspaceSize = metaspaceSize;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one mutator thread is required");
+        }
+        this.threads = threads;
+    }
+
+    public long getAllocationRate() {
+        return allocationRate;
+    }
+
+    public void setAllocationRate(long allocationRate) {
+        this.allocationRate = Math.max(0, allocationRate);
+    }
+
+    public String getSizeDistribution() {
+        return sizeDistribution;
+    }
+
+    /**
+     * Object sizes as accepted by {@link ObjectSizeDistribution#parse}, or
+     * {@value #DEFAULT_SIZES} for the allocation engine's mix of object types.
+     */
+    public void setSizeDistribution(String sizeDistribution) {
+        this.sizes = DEFAULT_SIZES.equals(sizeDistribution) ? null : ObjectSizeDistribution.parse(sizeDistribution);
+        this.sizeDistribution = sizeDistribution;
+    }
+
+    public double getRetentionRate() {
+        return retentionRate;
+    }
+
+    public void setRetentionRate(double retentionRate) {
+        this.retentionRate = Math.max(0.0, Math.min(1.0, retentionRate));
+    }
+
+    public int getMaxRetainedPerThread() {
+        return maxRetainedPerThread;
+    }
+
+    public void setMaxRetainedPerThread(int maxRetainedPerThread) {
+        this.maxRetainedPerThread = Math.max(0, maxRetainedPerThread);
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("Duration must be positive: " + durationMs);
+        }
+        this.durationMs = durationMs;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+}